@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A simple implementation of {@link ResultStream} reading the elements
+ * from an Iterator, such as the one returned by
+ * {@link JXPathContext#iterate(String)}. It makes no claims about the
+ * order of the elements and cannot be split.
+ *
+ * @version $Revision$ $Date$
+ */
+public class BasicResultStream implements ResultStream {
+
+    private Iterator iterator;
+    private long maxSize = Long.MAX_VALUE;
+    private boolean consumed = false;
+
+    /**
+     * Create a new BasicResultStream.
+     * @param iterator of the elements
+     */
+    public BasicResultStream(Iterator iterator) {
+        this.iterator = iterator;
+    }
+
+    /**
+     * Create a new BasicResultStream whose elements are provided by
+     * {@link #createIterator()}.
+     */
+    protected BasicResultStream() {
+    }
+
+    /**
+     * Creates the Iterator over the elements once the stream is consumed.
+     * @return Iterator
+     */
+    protected Iterator createIterator() {
+        return iterator;
+    }
+
+    /**
+     * Learn whether this stream has been consumed or limited.
+     * @return boolean
+     */
+    protected boolean isStarted() {
+        return consumed || maxSize != Long.MAX_VALUE;
+    }
+
+    public Iterator iterator() {
+        if (consumed) {
+            throw new IllegalStateException(
+                "The results have already been consumed");
+        }
+        consumed = true;
+        Iterator it = createIterator();
+        iterator = null;
+        return maxSize == Long.MAX_VALUE ? it : new LimitedIterator(it, maxSize);
+    }
+
+    public Object findFirst() {
+        Iterator it = iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    public boolean anyMatch(Predicate predicate) {
+        Iterator it = iterator();
+        while (it.hasNext()) {
+            if (predicate.test(it.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ResultStream limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(
+                "Maximum size must not be negative: " + maxSize);
+        }
+        this.maxSize = Math.min(this.maxSize, maxSize);
+        return this;
+    }
+
+    public List toList() {
+        List list = new ArrayList();
+        Iterator it = iterator();
+        while (it.hasNext()) {
+            list.add(it.next());
+        }
+        return list;
+    }
+
+    public boolean isOrdered() {
+        return false;
+    }
+
+    public boolean isDistinct() {
+        return false;
+    }
+
+    public ResultStream trySplit() {
+        return null;
+    }
+
+    /**
+     * Stops another Iterator after a number of elements.
+     */
+    private static final class LimitedIterator implements Iterator {
+        private final Iterator iterator;
+        private long remaining;
+
+        /**
+         * Create a new LimitedIterator.
+         * @param iterator to limit
+         * @param maxSize number of elements
+         */
+        private LimitedIterator(Iterator iterator, long maxSize) {
+            this.iterator = iterator;
+            this.remaining = maxSize;
+        }
+
+        public boolean hasNext() {
+            return remaining > 0 && iterator.hasNext();
+        }
+
+        public Object next() {
+            if (remaining <= 0) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            return iterator.next();
+        }
+
+        /**
+         * Unsupported.
+         */
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+/**
+ * Receives measurements of the expressions compiled and evaluated by a
+ * {@link JXPathContext} on which it is {@link JXPathContext#setMetrics set}.
+ * Compilation is reported when an expression is parsed rather than found
+ * in the cache of compiled expressions. Evaluation is reported for
+ * <code>getValue</code>, <code>iterate</code>, <code>createPath</code> and
+ * <code>createPathAndSetValue</code>; an iteration is reported once it is
+ * exhausted, with the work done by all calls to the iterator.
+ * <p>
+ * Implementations are called by every thread using the context and
+ * must be thread safe.
+ *
+ * @see HistogramExpressionMetrics
+ * @version $Revision$ $Date$
+ */
+public interface ExpressionMetrics {
+
+    /**
+     * Record the compilation of an expression.
+     * @param xpath the expression
+     * @param nanos time spent parsing, in nanoseconds
+     */
+    void compiled(String xpath, long nanos);
+
+    /**
+     * Record an evaluation of an expression.
+     * @param xpath the expression
+     * @param nanos time spent evaluating, in nanoseconds
+     * @param nodesVisited nodes the evaluation contexts stepped onto
+     * @param pointersAllocated node pointers allocated
+     * @param reflectiveCalls reflective property accesses
+     */
+    void evaluated(String xpath, long nanos, long nodesVisited,
+            long pointersAllocated, long reflectiveCalls);
+}
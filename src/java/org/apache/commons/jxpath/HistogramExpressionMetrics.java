@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates {@link ExpressionMetrics} per expression into histograms with
+ * power-of-two buckets. The statistics can be read through
+ * {@link #getStatistics} or written as text with {@link #export}, e.g.
+ * <pre>
+ * HistogramExpressionMetrics metrics = new HistogramExpressionMetrics();
+ * context.setMetrics(metrics);
+ * ...
+ * metrics.export(System.out);
+ * </pre>
+ * Each expression string is kept until {@link #reset} is called.
+ *
+ * @version $Revision$ $Date$
+ */
+public class HistogramExpressionMetrics implements ExpressionMetrics {
+
+    private final ConcurrentHashMap statistics = new ConcurrentHashMap();
+
+    public void compiled(String xpath, long nanos) {
+        getOrCreate(xpath).compileTime.record(nanos);
+    }
+
+    public void evaluated(String xpath, long nanos, long nodesVisited,
+            long pointersAllocated, long reflectiveCalls) {
+        ExpressionStatistics stats = getOrCreate(xpath);
+        stats.evaluationTime.record(nanos);
+        stats.nodesVisited.record(nodesVisited);
+        stats.pointersAllocated.record(pointersAllocated);
+        stats.reflectiveCalls.record(reflectiveCalls);
+    }
+
+    /**
+     * Get the statistics collected for an expression.
+     * @param xpath the expression
+     * @return ExpressionStatistics or null if nothing was recorded
+     */
+    public ExpressionStatistics getStatistics(String xpath) {
+        return (ExpressionStatistics) statistics.get(xpath);
+    }
+
+    /**
+     * Get the statistics of all expressions, sorted by expression.
+     * @return Map of String to ExpressionStatistics
+     */
+    public Map getAllStatistics() {
+        return new TreeMap(statistics);
+    }
+
+    /**
+     * Discard all statistics.
+     */
+    public void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * Write a summary of every histogram, one line per expression and
+     * measure, sorted by expression. Each line holds the expression, the
+     * measure, the count, the mean, the 50th, 90th and 99th percentile and
+     * the maximum, separated by tabs. Times are in microseconds.
+     * @param out to write to
+     * @throws IOException if out fails
+     */
+    public void export(Appendable out) throws IOException {
+        Iterator it = getAllStatistics().entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry entry = (Map.Entry) it.next();
+            String xpath = (String) entry.getKey();
+            ExpressionStatistics stats = (ExpressionStatistics) entry.getValue();
+            export(out, xpath, "compileMicros", stats.compileTime, 1000);
+            export(out, xpath, "evalMicros", stats.evaluationTime, 1000);
+            export(out, xpath, "nodesVisited", stats.nodesVisited, 1);
+            export(out, xpath, "pointersAllocated", stats.pointersAllocated, 1);
+            export(out, xpath, "reflectiveCalls", stats.reflectiveCalls, 1);
+        }
+    }
+
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        try {
+            export(buffer);
+        }
+        catch (IOException ex) {
+            // StringBuilder does not throw
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Write one line of the export.
+     * @param out to write to
+     * @param xpath the expression
+     * @param measure name of the histogram
+     * @param histogram to summarize
+     * @param unit divisor applied to the recorded values
+     * @throws IOException if out fails
+     */
+    private static void export(Appendable out, String xpath, String measure,
+            Histogram histogram, long unit) throws IOException {
+        long count = histogram.getCount();
+        if (count == 0) {
+            return;
+        }
+        out.append(xpath).append('\t').append(measure)
+            .append('\t').append(String.valueOf(count))
+            .append('\t').append(String.valueOf(histogram.getSum() / count / unit))
+            .append('\t').append(String.valueOf(histogram.getPercentile(50) / unit))
+            .append('\t').append(String.valueOf(histogram.getPercentile(90) / unit))
+            .append('\t').append(String.valueOf(histogram.getPercentile(99) / unit))
+            .append('\t').append(String.valueOf(histogram.getMax() / unit))
+            .append('\n');
+    }
+
+    /**
+     * Get the statistics of an expression, creating them if needed.
+     * @param xpath the expression
+     * @return ExpressionStatistics
+     */
+    private ExpressionStatistics getOrCreate(String xpath) {
+        ExpressionStatistics stats = (ExpressionStatistics) statistics.get(xpath);
+        if (stats == null) {
+            stats = new ExpressionStatistics();
+            ExpressionStatistics existing =
+                (ExpressionStatistics) statistics.putIfAbsent(xpath, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * The histograms recorded for one expression.
+     */
+    public static final class ExpressionStatistics {
+        private final Histogram compileTime = new Histogram();
+        private final Histogram evaluationTime = new Histogram();
+        private final Histogram nodesVisited = new Histogram();
+        private final Histogram pointersAllocated = new Histogram();
+        private final Histogram reflectiveCalls = new Histogram();
+
+        /**
+         * Create a new ExpressionStatistics.
+         */
+        private ExpressionStatistics() {
+        }
+
+        /**
+         * Get the compilation times in nanoseconds.
+         * @return Histogram
+         */
+        public Histogram getCompileTime() {
+            return compileTime;
+        }
+
+        /**
+         * Get the evaluation times in nanoseconds.
+         * @return Histogram
+         */
+        public Histogram getEvaluationTime() {
+            return evaluationTime;
+        }
+
+        /**
+         * Get the numbers of nodes visited per evaluation.
+         * @return Histogram
+         */
+        public Histogram getNodesVisited() {
+            return nodesVisited;
+        }
+
+        /**
+         * Get the numbers of pointers allocated per evaluation.
+         * @return Histogram
+         */
+        public Histogram getPointersAllocated() {
+            return pointersAllocated;
+        }
+
+        /**
+         * Get the numbers of reflective property accesses per evaluation.
+         * @return Histogram
+         */
+        public Histogram getReflectiveCalls() {
+            return reflectiveCalls;
+        }
+    }
+
+    /**
+     * A histogram of non-negative values. Bucket 0 counts zeros and bucket
+     * <i>i</i> counts values from 2<sup><i>i</i>-1</sup> to
+     * 2<sup><i>i</i></sup>-1. Recording takes no lock.
+     */
+    public static final class Histogram {
+        /** Number of buckets */
+        public static final int BUCKETS = 64;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Create a new Histogram.
+         */
+        private Histogram() {
+        }
+
+        /**
+         * Record a value; negative values are recorded as zero.
+         * @param value to record
+         */
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            counts.incrementAndGet(bucketOf(value));
+            sum.addAndGet(value);
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        /**
+         * Get the number of recorded values.
+         * @return long
+         */
+        public long getCount() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * Get the sum of the recorded values.
+         * @return long
+         */
+        public long getSum() {
+            return sum.get();
+        }
+
+        /**
+         * Get the largest recorded value.
+         * @return long
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Get the number of values recorded in a bucket.
+         * @param bucket index
+         * @return long
+         */
+        public long getBucketCount(int bucket) {
+            return counts.get(bucket);
+        }
+
+        /**
+         * Get the largest value counted by a bucket.
+         * @param bucket index
+         * @return long
+         */
+        public static long getBucketLimit(int bucket) {
+            return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        /**
+         * Estimate a percentile as the upper limit of the bucket that
+         * contains it, but no more than the maximum.
+         * @param percent between 0 and 100
+         * @return long
+         */
+        public long getPercentile(double percent) {
+            long count = getCount();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percent / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(getBucketLimit(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        /**
+         * Get the bucket counting a value.
+         * @param value non-negative
+         * @return int
+         */
+        private static int bucketOf(long value) {
+            return Math.min(BUCKETS - Long.numberOfLeadingZeros(value), BUCKETS - 1);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+import java.util.HashMap;
+
+/**
+ * An implementation of the Variables interface that keeps the values in
+ * an array.  Each variable is assigned a slot when it is first declared
+ * and keeps it for the lifetime of this object, so that a variable
+ * reference can be resolved to its slot once and then read by index:
+ * <pre>
+ * IndexedVariables vars = new IndexedVariables();
+ * vars.declareVariable("threshold", Integer.valueOf(10));
+ * context.setVariables(vars);
+ * context.iterate("items[price &gt; $threshold]");
+ * </pre>
+ *
+ * @version $Revision$ $Date$
+ */
+public class IndexedVariables implements Variables {
+    private static final long serialVersionUID = -1839452478406513749L;
+
+    /**
+     * Maps variable names to slot numbers
+     */
+    private HashMap slots = new HashMap();
+
+    /**
+     * Contains the values of the variables by slot
+     */
+    private Object[] values = new Object[8];
+
+    private String[] names = new String[8];
+
+    /**
+     * False for the slots of variables that have been undeclared
+     */
+    private boolean[] declared = new boolean[8];
+
+    private int slotCount = 0;
+
+    /**
+     * Get the slot of a declared variable.
+     * @param varName is a variable name without the "$" sign
+     * @return the slot, or -1 if the variable is not declared
+     */
+    public int getSlot(String varName) {
+        Integer slot = (Integer) slots.get(varName);
+        if (slot == null || !declared[slot.intValue()]) {
+            return -1;
+        }
+        return slot.intValue();
+    }
+
+    /**
+     * Returns the value of the variable in the specified slot.
+     * @param slot as returned by {@link #getSlot(String)}
+     * @return the value of the variable
+     * @throws IllegalArgumentException if the variable has been undeclared
+     */
+    public Object getVariable(int slot) {
+        if (!declared[slot]) {
+            throw new IllegalArgumentException(
+                "No such variable: '" + names[slot] + "'");
+        }
+        return values[slot];
+    }
+
+    /**
+     * Modifies the value of the variable in the specified slot,
+     * declaring it again if it has been undeclared.
+     * @param slot as returned by {@link #getSlot(String)}
+     * @param value is the new value for the variable, which can be null
+     */
+    public void setVariable(int slot, Object value) {
+        values[slot] = value;
+        declared[slot] = true;
+    }
+
+    public boolean isDeclaredVariable(String varName) {
+        return getSlot(varName) != -1;
+    }
+
+    public Object getVariable(String varName) {
+        int slot = getSlot(varName);
+        if (slot == -1) {
+            throw new IllegalArgumentException(
+                "No such variable: '" + varName + "'");
+        }
+        return getVariable(slot);
+    }
+
+    public void declareVariable(String varName, Object value) {
+        Integer slot = (Integer) slots.get(varName);
+        if (slot != null) {
+            values[slot.intValue()] = value;
+            declared[slot.intValue()] = true;
+            return;
+        }
+        if (slotCount == values.length) {
+            Object[] newValues = new Object[slotCount * 2];
+            System.arraycopy(values, 0, newValues, 0, slotCount);
+            values = newValues;
+            String[] newNames = new String[slotCount * 2];
+            System.arraycopy(names, 0, newNames, 0, slotCount);
+            names = newNames;
+            boolean[] newDeclared = new boolean[slotCount * 2];
+            System.arraycopy(declared, 0, newDeclared, 0, slotCount);
+            declared = newDeclared;
+        }
+        slots.put(varName, Integer.valueOf(slotCount));
+        names[slotCount] = varName;
+        values[slotCount] = value;
+        declared[slotCount] = true;
+        slotCount++;
+    }
+
+    /**
+     * Removes an existing variable.  The slot of the variable is kept
+     * and reused if the variable is declared again.
+     *
+     * @param varName is a variable name without the "$" sign
+     */
+    public void undeclareVariable(String varName) {
+        Integer slot = (Integer) slots.get(varName);
+        if (slot != null) {
+            values[slot.intValue()] = null;
+            declared[slot.intValue()] = false;
+        }
+    }
+
+    public String toString() {
+        StringBuffer buffer = new StringBuffer("{");
+        boolean first = true;
+        for (int i = 0; i < slotCount; i++) {
+            if (declared[i]) {
+                if (!first) {
+                    buffer.append(", ");
+                }
+                buffer.append(names[i]).append('=').append(values[i]);
+                first = false;
+            }
+        }
+        return buffer.append('}').toString();
+    }
+}
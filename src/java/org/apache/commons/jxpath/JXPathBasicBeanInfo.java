@@ -21,13 +21,16 @@ import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.jxpath.util.JXPathPropertyDescriptor;
+import org.apache.commons.jxpath.util.NameTable;
 import org.apache.commons.jxpath.util.PropertyIdentifier;
+import org.apache.commons.jxpath.util.SymbolMap;
 
 /**
  * An implementation of JXPathBeanInfo based on JavaBeans' BeanInfo. Properties
@@ -52,41 +55,91 @@ public class JXPathBasicBeanInfo implements JXPathBeanInfo {
 	private boolean atomic = false;
 	protected final Class<?> clazz;
 	private Class<?> dynamicPropertyHandlerClass = null;
-	private transient List<JXPathPropertyDescriptor> propertyDescriptors = null;
-	private transient Map<String, JXPathPropertyDescriptor> descriptorsByPropertyName = null;
-	private transient Map<String, JXPathPropertyDescriptor> descriptorsByXmlName = null;
-
-	private void initCollections() {
-		if (this.propertyDescriptors == null) {
-					if (this.clazz == Object.class) {
-						this.propertyDescriptors = Collections.emptyList();
-					} else {
-						try {
-							final BeanInfo bi;
-							if (this.clazz.isInterface()) {
-								bi = Introspector.getBeanInfo(this.clazz);
-							} else {
-								bi = Introspector.getBeanInfo(this.clazz, Object.class);
-							}
-							final List<JXPathPropertyDescriptor> descriptors = new ArrayList<>(bi.getPropertyDescriptors().length);
-							for(final PropertyDescriptor propertyDescriptor : bi.getPropertyDescriptors()) {
-								descriptors.add(createMappingDescriptor(propertyDescriptor));
-							}
-							Collections.sort(descriptors, getPropertyOrderComparator());
-							final Map<String,JXPathPropertyDescriptor> descriptorsByPropertyName = new LinkedHashMap<>(descriptors.size());
-							final Map<String,JXPathPropertyDescriptor> descriptorsByXmlName = new LinkedHashMap<>(descriptors.size());
-							for(final JXPathPropertyDescriptor propertyDescriptor:descriptors) {
-								descriptorsByXmlName.put(createKey(propertyDescriptor.getId()), propertyDescriptor);
-								descriptorsByPropertyName.put(propertyDescriptor.getPropertyDescriptor().getName(), propertyDescriptor);
-							}
-							this.propertyDescriptors = Collections.unmodifiableList(descriptors);
-							this.descriptorsByPropertyName = Collections.unmodifiableMap(descriptorsByPropertyName);
-							this.descriptorsByXmlName = Collections.unmodifiableMap(descriptorsByXmlName);
-						} catch (final IntrospectionException ex) {
-							throw new JXPathException(ex);
-						}
-					}
+	/**
+	 * The descriptors and their lookup tables, created on first use and
+	 * never modified thereafter, so they can be read without locking.
+	 */
+	private transient volatile Index index = null;
+
+	/**
+	 * Get the index, introspecting the class the first time.
+	 *
+	 * @return Index
+	 */
+	private Index getIndex() {
+		Index result = this.index;
+		if (result == null) {
+			synchronized (this) {
+				result = this.index;
+				if (result == null) {
+					result = createIndex();
+					this.index = result;
 				}
+			}
+		}
+		return result;
+	}
+
+	private Index createIndex() {
+		if (this.clazz == Object.class) {
+			return new Index(Collections.<JXPathPropertyDescriptor>emptyList(),
+					Collections.<String, JXPathPropertyDescriptor>emptyMap(),
+					Collections.<String, JXPathPropertyDescriptor>emptyMap(),
+					null, new SymbolMap(0), null, null);
+		}
+		try {
+			final BeanInfo bi;
+			if (this.clazz.isInterface()) {
+				bi = Introspector.getBeanInfo(this.clazz);
+			} else {
+				bi = Introspector.getBeanInfo(this.clazz, Object.class);
+			}
+			final List<JXPathPropertyDescriptor> descriptors = new ArrayList<>(bi.getPropertyDescriptors().length);
+			for(final PropertyDescriptor propertyDescriptor : bi.getPropertyDescriptors()) {
+				descriptors.add(createMappingDescriptor(propertyDescriptor));
+			}
+			Collections.sort(descriptors, getPropertyOrderComparator());
+			final Map<String,JXPathPropertyDescriptor> descriptorsByPropertyName = new LinkedHashMap<>(descriptors.size());
+			final Map<String,JXPathPropertyDescriptor> descriptorsByXmlName = new LinkedHashMap<>(descriptors.size());
+			final SymbolMap descriptorsBySymbol = isKeyedByLocalName() ? new SymbolMap(descriptors.size()) : null;
+			final SymbolMap indexesByQualifiedName = new SymbolMap(descriptors.size());
+			final int[] elementPropertyIndexes = new int[descriptors.size()];
+			final int[] attributePropertyIndexes = new int[descriptors.size()];
+			int elementCount = 0;
+			int attributeCount = 0;
+			for (int i = 0; i < descriptors.size(); i++) {
+				final JXPathPropertyDescriptor propertyDescriptor = descriptors.get(i);
+				final PropertyIdentifier id = propertyDescriptor.getId();
+				final String key = createKey(id);
+				descriptorsByXmlName.put(key, propertyDescriptor);
+				descriptorsByPropertyName.put(propertyDescriptor.getPropertyDescriptor().getName(), propertyDescriptor);
+				final int qualifiedKey = qualifiedKey(NameTable.intern(id.getNamespaceUri(), id.getLocalName()), id.isAttribute());
+				final int[] indexes = (int[]) indexesByQualifiedName.get(qualifiedKey);
+				if (indexes == null) {
+					indexesByQualifiedName.put(qualifiedKey, new int[]{i});
+				} else {
+					final int[] more = Arrays.copyOf(indexes, indexes.length + 1);
+					more[indexes.length] = i;
+					indexesByQualifiedName.put(qualifiedKey, more);
+				}
+				if (id.isAttribute()) {
+					attributePropertyIndexes[attributeCount++] = i;
+				} else {
+					elementPropertyIndexes[elementCount++] = i;
+				}
+				if (descriptorsBySymbol != null) {
+					descriptorsBySymbol.put(NameTable.intern(null, key), propertyDescriptor);
+				}
+			}
+			return new Index(Collections.unmodifiableList(descriptors),
+					Collections.unmodifiableMap(descriptorsByPropertyName),
+					Collections.unmodifiableMap(descriptorsByXmlName),
+					descriptorsBySymbol, indexesByQualifiedName,
+					attributeCount > 0 ? Arrays.copyOf(elementPropertyIndexes, elementCount) : null,
+					attributeCount > 0 ? Arrays.copyOf(attributePropertyIndexes, attributeCount) : null);
+		} catch (final IntrospectionException ex) {
+			throw new JXPathException(ex);
+		}
 	}
 	/**
 	 * Create a new JXPathBasicBeanInfo.
@@ -149,21 +202,91 @@ public class JXPathBasicBeanInfo implements JXPathBeanInfo {
 	}
 
 
-	public synchronized List<JXPathPropertyDescriptor> getPropertyDescriptors() {
-		initCollections();
-		return this.propertyDescriptors;
+	public List<JXPathPropertyDescriptor> getPropertyDescriptors() {
+		return getIndex().propertyDescriptors;
 	}
 
 	@Override
 	public JXPathPropertyDescriptor getPropertyDescriptor(final String propertyName) {
-		initCollections();
-		return this.descriptorsByPropertyName.get(propertyName);
+		return getIndex().descriptorsByPropertyName.get(propertyName);
 	}
 
 	@Override
 	public JXPathPropertyDescriptor getPropertyDescriptor(final PropertyIdentifier propertyIdentifier) {
-		initCollections();
-		return this.descriptorsByXmlName.get(createKey(propertyIdentifier));
+		final Index index = getIndex();
+		if (index.descriptorsBySymbol != null && propertyIdentifier.getNamespaceUri() == null) {
+			// All keys are interned, so an unknown symbol matches no property
+			return (JXPathPropertyDescriptor) index.descriptorsBySymbol.get(getSymbol(propertyIdentifier));
+		}
+		return index.descriptorsByXmlName.get(createKey(propertyIdentifier));
+	}
+
+	/**
+	 * Get the indexes in {@link #getPropertyDescriptors()} of the properties
+	 * with the namespace URI, local name and kind of the supplied identifier.
+	 * Unlike {@link #getPropertyDescriptor(PropertyIdentifier)}, this does not
+	 * depend on {@link #createKey(PropertyIdentifier)}.
+	 *
+	 * @param propertyIdentifier property name
+	 * @return ascending indexes, which must not be modified, or null if there is no such property
+	 */
+	public int[] getPropertyIndexes(final PropertyIdentifier propertyIdentifier) {
+		final Index index = getIndex();
+		final int symbol = getSymbol(propertyIdentifier);
+		if (symbol == NameTable.UNKNOWN) {
+			// The names of all properties are interned
+			return null;
+		}
+		return (int[]) index.indexesByQualifiedName.get(qualifiedKey(symbol, propertyIdentifier.isAttribute()));
+	}
+
+	/**
+	 * Get the indexes in {@link #getPropertyDescriptors()} of the properties
+	 * mapped to attributes or of those mapped to child elements.
+	 *
+	 * @param attribute whether to get the attribute properties
+	 * @return ascending indexes, which must not be modified, or null if no
+	 * property is mapped to an attribute, in which case all properties
+	 * are visible on either axis
+	 */
+	public int[] getPropertyIndexes(final boolean attribute) {
+		final Index index = getIndex();
+		return attribute ? index.attributePropertyIndexes : index.elementPropertyIndexes;
+	}
+
+	/**
+	 * Get the symbol of an identifier, looking it up again if the identifier
+	 * was created before its name was interned.
+	 *
+	 * @param propertyIdentifier property name
+	 * @return symbol or {@link NameTable#UNKNOWN}
+	 */
+	private static int getSymbol(final PropertyIdentifier propertyIdentifier) {
+		final int symbol = propertyIdentifier.getSymbol();
+		return symbol != NameTable.UNKNOWN ? symbol
+				: NameTable.lookup(propertyIdentifier.getNamespaceUri(), propertyIdentifier.getLocalName());
+	}
+
+	private static int qualifiedKey(final int symbol, final boolean attribute) {
+		return symbol * 2 + (attribute ? 1 : 0);
+	}
+
+	/**
+	 * Learn whether {@link #createKey(PropertyIdentifier)} is the default one,
+	 * keying descriptors by local name only.
+	 *
+	 * @return boolean
+	 */
+	private boolean isKeyedByLocalName() {
+		for (Class<?> c = getClass(); c != JXPathBasicBeanInfo.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod("createKey", PropertyIdentifier.class);
+				return false;
+			} catch (final NoSuchMethodException ex) {
+				// not overridden here
+			}
+		}
+		return true;
 	}
 
 	protected String createKey(final PropertyIdentifier propertyIdentifier) {
@@ -207,4 +330,41 @@ public class JXPathBasicBeanInfo implements JXPathBeanInfo {
 		return buffer.toString();
 	}
 
+	/**
+	 * The immutable result of introspecting the bean class.
+	 */
+	private static final class Index {
+		private final List<JXPathPropertyDescriptor> propertyDescriptors;
+		private final Map<String, JXPathPropertyDescriptor> descriptorsByPropertyName;
+		private final Map<String, JXPathPropertyDescriptor> descriptorsByXmlName;
+		/**
+		 * Descriptors by the {@link NameTable} symbol of their key, if the keys
+		 * are the local names, i.e. {@link JXPathBasicBeanInfo#createKey(PropertyIdentifier)} is
+		 * not overridden.
+		 */
+		private final SymbolMap descriptorsBySymbol;
+		/**
+		 * Ascending indexes into {@link #propertyDescriptors} by the symbol of the
+		 * namespace URI and local name, times two, plus one for attributes.
+		 */
+		private final SymbolMap indexesByQualifiedName;
+		private final int[] elementPropertyIndexes;
+		private final int[] attributePropertyIndexes;
+
+		private Index(final List<JXPathPropertyDescriptor> propertyDescriptors,
+		              final Map<String, JXPathPropertyDescriptor> descriptorsByPropertyName,
+		              final Map<String, JXPathPropertyDescriptor> descriptorsByXmlName,
+		              final SymbolMap descriptorsBySymbol,
+		              final SymbolMap indexesByQualifiedName,
+		              final int[] elementPropertyIndexes,
+		              final int[] attributePropertyIndexes) {
+			this.propertyDescriptors = propertyDescriptors;
+			this.descriptorsByPropertyName = descriptorsByPropertyName;
+			this.descriptorsByXmlName = descriptorsByXmlName;
+			this.descriptorsBySymbol = descriptorsBySymbol;
+			this.indexesByQualifiedName = indexesByQualifiedName;
+			this.elementPropertyIndexes = elementPropertyIndexes;
+			this.attributePropertyIndexes = attributePropertyIndexes;
+		}
+	}
 }
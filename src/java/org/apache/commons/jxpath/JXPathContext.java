@@ -22,6 +22,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.commons.jxpath.util.KeyManagerUtils;
 
@@ -406,6 +408,11 @@ public abstract class JXPathContext {
     private Locale locale;
     private boolean lenientSet = false;
     private boolean lenient = false;
+    private int parallelism = 0;
+    private boolean memoizingSet = false;
+    private boolean memoizing = false;
+    private ExpressionMetrics metrics;
+    private ResultCache resultCache;
 
     /**
      * Creates a new JXPathContext with the specified object as the root node.
@@ -474,6 +481,31 @@ public abstract class JXPathContext {
      */
     public abstract Pointer getContextPointer();
 
+    /**
+     * Makes the specified object the root node of this context, keeping
+     * its variables, functions, namespaces and other settings. Reusing a
+     * context this way is cheaper than creating one per object when the
+     * same expressions are evaluated against many objects, e.g.
+     * <pre>
+     * JXPathContext context = JXPathContext.newContext(null);
+     * CompiledExpression expr = JXPathContext.compile("order/total");
+     * for (...) {
+     *     context.rebind(request);
+     *     Object total = expr.getValue(context);
+     * }
+     * </pre>
+     * A relative context becomes a context for the new root node.  A context
+     * must not be rebound while another thread evaluates an expression in
+     * it or in one of its child contexts.
+     * @param contextBean the new root node
+     * @throws UnsupportedOperationException if the implementation does not
+     *   support rebinding
+     */
+    public void rebind(Object contextBean) {
+        throw new UnsupportedOperationException(
+            getClass().getName() + " cannot be rebound");
+    }
+
     /**
      * Returns a JXPathContext that is relative to the current JXPathContext.
      * The supplied pointer becomes the context pointer of the new context.
@@ -636,6 +668,132 @@ public abstract class JXPathContext {
         return lenient;
     }
 
+    /**
+     * If memoization is enabled, each evaluation remembers the child
+     * pointers it has resolved, keyed by the parent node and the step.
+     * Navigating the same step from the same node again, as in
+     * <code>a/b/c[d = ../e]</code>, then reuses the remembered pointers
+     * instead of calling the getters again.
+     * <p>
+     * This is only safe if the object graph is not modified while an
+     * expression is evaluated, e.g. by extension functions. The memo
+     * is never used by setValue(), createPath() and similar methods.
+     * <p>
+     * By default, memoizing = false
+     * @param memoizing flag
+     */
+    public synchronized void setMemoizing(boolean memoizing) {
+        this.memoizing = memoizing;
+        memoizingSet = true;
+    }
+
+    /**
+     * Learn whether this JXPathContext memoizes child pointers during
+     * an evaluation.
+     * @return boolean
+     * @see #setMemoizing(boolean)
+     */
+    public synchronized boolean isMemoizing() {
+        if (!memoizingSet && parentContext != null) {
+            return parentContext.isMemoizing();
+        }
+        return memoizing;
+    }
+
+    /**
+     * Sets the number of threads that may be used to search the
+     * descendant axis, as in <code>//foo</code>. With a parallelism
+     * greater than one, the subtrees of nodes having several non-leaf
+     * children are walked concurrently by up to <code>parallelism</code>
+     * threads and the results are merged in document order. All contexts
+     * with the same parallelism share one ForkJoinPool of daemon threads.
+     * <p>
+     * Parallel evaluation is only safe if the object model can be
+     * navigated by several threads at once, e.g. DOM documents and
+     * immutable beans that are not modified during the evaluation.
+     * Descendant steps with predicates and all other steps are evaluated
+     * sequentially.
+     * <p>
+     * By default, parallelism = 1, i.e. all evaluation is sequential.
+     * @param parallelism number of threads
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                "Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Get the number of threads that may be used to search the
+     * descendant axis.
+     * @return int
+     * @see #setParallelism(int)
+     */
+    public synchronized int getParallelism() {
+        if (parallelism == 0) {
+            return parentContext == null ? 1 : parentContext.getParallelism();
+        }
+        return parallelism;
+    }
+
+    /**
+     * Installs an {@link ExpressionMetrics} that is told how long each
+     * expression takes to compile and to evaluate, and how much work the
+     * evaluation does. A context without metrics of its own uses those of
+     * its parent context.
+     * <p>
+     * By default, there are no metrics and nothing is measured.
+     * @param metrics to install, or null to remove them
+     * @see HistogramExpressionMetrics
+     */
+    public synchronized void setMetrics(ExpressionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the ExpressionMetrics of this context or its parent.
+     * @return ExpressionMetrics or null
+     * @see #setMetrics(ExpressionMetrics)
+     */
+    public synchronized ExpressionMetrics getMetrics() {
+        if (metrics == null && parentContext != null) {
+            return parentContext.getMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * Installs a {@link ResultCache} that remembers the results of
+     * {@link #getValue(String)} and {@link #selectNodes(String)}, so that
+     * evaluating the same expression against the same, unmodified object
+     * graph with the same variable values does not walk the graph again.
+     * A context without a cache of its own uses that of its parent context.
+     * <p>
+     * This is only safe if neither the object graph nor the variable
+     * values are modified while the cache is installed; call
+     * {@link ResultCache#invalidate(Object)} when replacing the graph.
+     * <p>
+     * By default, there is no cache.
+     * @param resultCache to install, or null to remove it
+     */
+    public synchronized void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Get the ResultCache of this context or its parent.
+     * @return ResultCache or null
+     * @see #setResultCache(ResultCache)
+     */
+    public synchronized ResultCache getResultCache() {
+        if (resultCache == null && parentContext != null) {
+            return parentContext.getResultCache();
+        }
+        return resultCache;
+    }
+
     /**
      * Compiles the supplied XPath and returns an internal representation
      * of the path that can then be evaluated.  Use CompiledExpressions
@@ -699,6 +857,21 @@ public abstract class JXPathContext {
      */
     public abstract Object getValue(String xpath);
 
+    /**
+     * Evaluates several compiled expressions and returns their values,
+     * in the same order. Implementations may share work between the
+     * expressions, e.g. walk a common prefix of several paths only once.
+     * @param expressions to evaluate
+     * @return Object[] the value of each expression
+     */
+    public Object[] getValues(CompiledExpression[] expressions) {
+        Object[] values = new Object[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            values[i] = expressions[i].getValue(this);
+        }
+        return values;
+    }
+
     /**
      * Evaluates the xpath, converts the result to the specified class and
      * returns the resulting object.
@@ -750,6 +923,37 @@ public abstract class JXPathContext {
      */
     public abstract Pointer createPathAndSetValue(String xpath, Object value);
 
+    /**
+     * Modifies the values of the properties described by the keys of the
+     * supplied map, as if {@link #setValue(String, Object)} was called
+     * for each entry in the order of the sorted xpaths. Implementations
+     * may resolve path prefixes shared by several xpaths only once.
+     * @param values map of xpath to value
+     */
+    public void setValues(Map values) {
+        Iterator it = new TreeMap(values).entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry entry = (Map.Entry) it.next();
+            setValue((String) entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Creates the paths described by the keys of the supplied map and sets
+     * their values, as if {@link #createPathAndSetValue(String, Object)}
+     * was called for each entry in the order of the sorted xpaths.
+     * Implementations may resolve or create path prefixes shared by
+     * several xpaths only once.
+     * @param values map of xpath to value
+     */
+    public void createPathsAndSetValues(Map values) {
+        Iterator it = new TreeMap(values).entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry entry = (Map.Entry) it.next();
+            createPathAndSetValue((String) entry.getKey(), entry.getValue());
+        }
+    }
+
     /**
      * Removes the element of the object graph described by the xpath.
      * @param xpath indicating position to remove
@@ -791,6 +995,26 @@ public abstract class JXPathContext {
      */
     public abstract Iterator iteratePointers(String xpath);
 
+    /**
+     * Traverses the xpath and returns a lazily evaluated stream of the
+     * values found, like {@link #iterate(String)}.
+     * @param xpath to evaluate
+     * @return ResultStream
+     */
+    public ResultStream stream(String xpath) {
+        return new BasicResultStream(iterate(xpath));
+    }
+
+    /**
+     * Traverses the xpath and returns a lazily evaluated stream of
+     * Pointers to the nodes found, like {@link #iteratePointers(String)}.
+     * @param xpath to evaluate
+     * @return ResultStream of Pointers
+     */
+    public ResultStream streamPointers(String xpath) {
+        return new BasicResultStream(iteratePointers(xpath));
+    }
+
     /**
      * Install an identity manager that will be used by the context
      * to look up a node by its ID.
@@ -16,12 +16,28 @@
  */
 package org.apache.commons.jxpath;
 
-import java.util.Collections;
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import org.apache.commons.jxpath.util.ClassLoaderUtil;
 
 /**
@@ -48,8 +64,9 @@ public class JXPathIntrospector {
 		}
 	}
 
-	private static final Map byClass = Collections.synchronizedMap(new HashMap());
-	private static final Map byInterface = Collections.synchronizedMap(new HashMap());
+	private static final ConcurrentHashMap byClass = new ConcurrentHashMap();
+	private static final ConcurrentHashMap byInterface = new ConcurrentHashMap();
+	private static final AtomicInteger registrations = new AtomicInteger();
 
 	static {
 		registerAtomicClass(Class.class);
@@ -85,9 +102,8 @@ public class JXPathIntrospector {
 	 * @param beanClass to register
 	 */
 	public static void registerAtomicClass(Class beanClass) {
-		synchronized (JXPathIntrospector.byClass) {
-			JXPathIntrospector.byClass.put(beanClass, new JXPathBasicBeanInfo(beanClass, true));
-		}
+		JXPathIntrospector.byClass.put(beanClass, new JXPathBasicBeanInfo(beanClass, true));
+		JXPathIntrospector.registrations.incrementAndGet();
 	}
 
 	/**
@@ -103,14 +119,23 @@ public class JXPathIntrospector {
 		JXPathBasicBeanInfo bi =
 				new JXPathBasicBeanInfo(beanClass, dynamicPropertyHandlerClass);
 		if (beanClass.isInterface()) {
-			synchronized (JXPathIntrospector.byInterface) {
-				JXPathIntrospector.byInterface.put(beanClass, bi);
-			}
+			JXPathIntrospector.byInterface.put(beanClass, bi);
 		} else {
-			synchronized (JXPathIntrospector.byClass) {
-				JXPathIntrospector.byClass.put(beanClass, bi);
-			}
+			JXPathIntrospector.byClass.put(beanClass, bi);
 		}
+		JXPathIntrospector.registrations.incrementAndGet();
+	}
+
+	/**
+	 * Get a number that changes whenever a class is registered with
+	 * {@link #registerAtomicClass(Class)} or
+	 * {@link #registerDynamicClass(Class, Class)}. Decisions cached on the
+	 * basis of bean infos are stale once it has changed.
+	 *
+	 * @return int
+	 */
+	public static int getRegistrationCount() {
+		return JXPathIntrospector.registrations.get();
 	}
 
 	/**
@@ -139,13 +164,143 @@ public class JXPathIntrospector {
 					beanInfo = JXPathIntrospector.BEAN_INFO_FACTORY.createBeanInfo(beanClass);
 				}
 			}
-			synchronized (JXPathIntrospector.byClass) {
-				JXPathIntrospector.byClass.put(beanClass, beanInfo);
+			final JXPathBeanInfo registered =
+					(JXPathBeanInfo) JXPathIntrospector.byClass.putIfAbsent(beanClass, beanInfo);
+			if (registered != null) {
+				beanInfo = registered;
 			}
 		}
 		return beanInfo;
 	}
 
+	/**
+	 * Introspects the supplied classes using several threads, so that
+	 * evaluations do not have to introspect them later. Atomic classes
+	 * are registered, but not introspected.
+	 *
+	 * @param classes     to introspect
+	 * @param parallelism number of threads
+	 * @throws JXPathException if a class cannot be introspected
+	 */
+	public static void warmUp(final Collection<Class<?>> classes, final int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+		}
+		final List<Callable<Object>> tasks = new ArrayList<>(classes.size());
+		for (final Class<?> beanClass : classes) {
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					final JXPathBeanInfo beanInfo = getBeanInfo(beanClass);
+					if (!beanInfo.isAtomic()) {
+						beanInfo.getPropertyDescriptors();
+					}
+					return null;
+				}
+			});
+		}
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (final Future<Object> future : pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new JXPathException("Interrupted while introspecting classes", ex);
+		} catch (final ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new JXPathException("Cannot introspect classes", ex.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Introspects the top level and nested classes of a package using several
+	 * threads. Subpackages are not included. Classes are found in directories
+	 * and jar files of the class loader; classes that cannot be loaded are
+	 * skipped.
+	 *
+	 * @param packageName name of the package, e.g. "com.example.model"
+	 * @param classLoader to find and load the classes with
+	 * @param parallelism number of threads
+	 * @return the classes introspected
+	 * @throws JXPathException if the package cannot be read or a class cannot be introspected
+	 */
+	public static List<Class<?>> warmUp(final String packageName, final ClassLoader classLoader,
+	                                    final int parallelism) {
+		final String path = packageName.replace('.', '/');
+		final List<String> classNames = new ArrayList<>();
+		try {
+			final Enumeration<URL> resources = classLoader.getResources(path);
+			while (resources.hasMoreElements()) {
+				findClassNames(resources.nextElement(), path, classNames);
+			}
+		} catch (final IOException ex) {
+			throw new JXPathException("Cannot read package " + packageName, ex);
+		}
+		final List<Class<?>> classes = new ArrayList<>(classNames.size());
+		for (final String className : classNames) {
+			try {
+				final Class<?> beanClass = Class.forName(className, false, classLoader);
+				if (!beanClass.isAnonymousClass() && !beanClass.isLocalClass() && !beanClass.isSynthetic()) {
+					classes.add(beanClass);
+				}
+			} catch (final ClassNotFoundException | LinkageError ex) { //NOPMD
+				// Not loadable, so it will not be navigated either
+			}
+		}
+		warmUp(classes, parallelism);
+		return classes;
+	}
+
+	/**
+	 * Lists the names of the classes directly in a package directory.
+	 *
+	 * @param url        of the package directory, "file:" or "jar:"
+	 * @param path       of the package, separated with '/'
+	 * @param classNames receives the class names
+	 * @throws IOException if the directory cannot be listed
+	 */
+	private static void findClassNames(final URL url, final String path, final List<String> classNames)
+			throws IOException {
+		if ("file".equals(url.getProtocol())) {
+			final String[] files;
+			try {
+				files = new File(url.toURI()).list();
+			} catch (final URISyntaxException ex) {
+				throw new IOException("Cannot list " + url, ex);
+			}
+			if (files != null) {
+				for (final String file : files) {
+					if (file.endsWith(".class") && !file.equals("package-info.class")) {
+						classNames.add(toClassName(path + '/' + file));
+					}
+				}
+			}
+		} else if ("jar".equals(url.getProtocol())) {
+			final URLConnection connection = url.openConnection();
+			if (connection instanceof JarURLConnection) {
+				final JarFile jarFile = ((JarURLConnection) connection).getJarFile();
+				final Enumeration<JarEntry> entries = jarFile.entries();
+				while (entries.hasMoreElements()) {
+					final String name = entries.nextElement().getName();
+					if (name.startsWith(path + '/') && name.endsWith(".class")
+							&& !name.endsWith("/package-info.class")
+							&& name.indexOf('/', path.length() + 1) == -1) {
+						classNames.add(toClassName(name));
+					}
+				}
+			}
+		}
+	}
+
+	private static String toClassName(final String classFile) {
+		return classFile.substring(0, classFile.length() - ".class".length()).replace('/', '.');
+	}
+
 	/**
 	 * Find a dynamic bean info if available for any superclasses or
 	 * interfaces.
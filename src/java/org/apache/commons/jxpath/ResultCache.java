@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of {@link JXPathContext#getValue(String)} and
+ * {@link JXPathContext#selectNodes(String)} per expression, context bean,
+ * context node, values of the variables the expression refers to and the
+ * settings of the evaluating context, e.g.
+ * <pre>
+ * ResultCache cache = new ResultCache(10000, 5 * 60 * 1000);
+ * context.setResultCache(cache);
+ * ...
+ * // the snapshot has been replaced
+ * cache.invalidate(oldSnapshot);
+ * </pre>
+ * Objects are compared by identity, variable values by
+ * <code>equals()</code>.  A cached result is therefore only correct as long
+ * as the object graph and the variable values are not modified; a cache
+ * is meant for immutable snapshots that are replaced as a whole.
+ * Expressions calling extension functions are never cached, nor are
+ * values returned by getValue() other than strings, numbers, booleans and
+ * characters, which callers could modify.
+ * <p>
+ * A ResultCache may be shared by several contexts.  The functions, the
+ * URIs of the namespace prefixes used by the expression, the locale and
+ * the lenient flag of the evaluating context are part of the key, so
+ * contexts only share results they would compute the same way.
+ *
+ * @version $Revision$ $Date$
+ */
+public class ResultCache {
+
+    private final int maximumSize;
+    private final long maximumAge;
+    private final Map entries;
+
+    /**
+     * Create a new ResultCache.
+     * @param maximumSize number of results kept, the least recently
+     *   used results are evicted first
+     * @param maximumAge milliseconds a result is kept, 0 to keep
+     *   results until they are evicted or invalidated
+     */
+    public ResultCache(final int maximumSize, long maximumAge) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException(
+                "Maximum size must be positive: " + maximumSize);
+        }
+        if (maximumAge < 0) {
+            throw new IllegalArgumentException(
+                "Maximum age must not be negative: " + maximumAge);
+        }
+        this.maximumSize = maximumSize;
+        this.maximumAge = maximumAge;
+        this.entries = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Get the number of results kept at most.
+     * @return int
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Get the number of milliseconds a result is kept at most.
+     * @return long, 0 if there is no limit
+     */
+    public long getMaximumAge() {
+        return maximumAge;
+    }
+
+    /**
+     * Get a cached result.
+     * @param key of the result
+     * @return the result or null if there is none
+     */
+    public synchronized Object get(Key key) {
+        Entry entry = (Entry) entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (maximumAge != 0
+                && System.currentTimeMillis() - entry.created > maximumAge) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Cache a result.
+     * @param key of the result
+     * @param value the result, not null
+     */
+    public synchronized void put(Key key, Object value) {
+        entries.put(key, new Entry(value, System.currentTimeMillis()));
+    }
+
+    /**
+     * Discard all results.
+     */
+    public synchronized void invalidate() {
+        entries.clear();
+    }
+
+    /**
+     * Discard the results computed for a context bean, typically once
+     * the snapshot has been replaced.
+     * @param contextBean the bean of the evaluating contexts
+     */
+    public synchronized void invalidate(Object contextBean) {
+        Iterator it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (((Key) it.next()).contextBean == contextBean) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the number of results currently cached, including those that
+     * have expired but have not been discarded yet.
+     * @return int
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A cached result.
+     */
+    private static final class Entry {
+        private final Object value;
+        private final long created;
+
+        /**
+         * Create a new Entry.
+         * @param value cached
+         * @param created time in milliseconds
+         */
+        private Entry(Object value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+
+    /**
+     * Identifies a result: the expression, the kind of evaluation, the
+     * context bean and node, all compared by identity, and the parameters
+     * of the evaluation, compared by <code>equals()</code>.
+     */
+    public static final class Key {
+        private final Object expression;
+        private final boolean nodes;
+        private final Object contextBean;
+        private final Object contextNode;
+        private final Object[] parameters;
+        private final int hashCode;
+
+        /**
+         * Create a new Key.
+         * @param expression the compiled expression
+         * @param nodes true for the result of selectNodes(), false for
+         *   the result of getValue()
+         * @param contextBean the bean of the evaluating context
+         * @param contextNode the node of the evaluating context
+         * @param parameters the values of the variables used by the
+         *   expression and the settings of the evaluating context the
+         *   result depends on, in a fixed order
+         */
+        public Key(Object expression, boolean nodes, Object contextBean,
+                Object contextNode, Object[] parameters) {
+            this.expression = expression;
+            this.nodes = nodes;
+            this.contextBean = contextBean;
+            this.contextNode = contextNode;
+            this.parameters = parameters;
+            this.hashCode = ((System.identityHashCode(expression) * 31
+                    + System.identityHashCode(contextBean)) * 31
+                    + System.identityHashCode(contextNode)) * 31
+                    + Arrays.hashCode(parameters) + (nodes ? 1 : 0);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            }
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) object;
+            return hashCode == other.hashCode
+                    && expression == other.expression
+                    && nodes == other.nodes
+                    && contextBean == other.contextBean
+                    && contextNode == other.contextNode
+                    && Arrays.equals(parameters, other.parameters);
+        }
+    }
+}
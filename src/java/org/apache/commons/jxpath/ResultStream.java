@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A lazily evaluated sequence of the results of an XPath, either values or
+ * {@link Pointer}s. Nodes are found only as they are consumed, so
+ * {@link #findFirst()}, {@link #anyMatch anyMatch()} and {@link #limit
+ * limit()} stop the evaluation as soon as the answer is known, unless
+ * the path requires its nodes to be collected and sorted first.
+ * <p>
+ * Like a <code>java.util.stream.Stream</code>, a ResultStream can be
+ * consumed only once. It can be turned into one with
+ * <code>StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+ * results.iterator(), characteristics), false)</code>, where the
+ * characteristics include <code>ORDERED</code> and <code>DISTINCT</code>
+ * as reported by {@link #isOrdered()} and {@link #isDistinct()}.
+ * <p>
+ * To acquire a ResultStream, call {@link JXPathContext#stream
+ * JXPathContext.stream} or {@link JXPathContext#streamPointers
+ * JXPathContext.streamPointers}.
+ *
+ * @version $Revision$ $Date$
+ */
+public interface ResultStream extends Iterable {
+
+    /**
+     * A condition on the elements of a ResultStream.
+     */
+    interface Predicate {
+
+        /**
+         * Evaluates this condition.
+         * @param object value or Pointer
+         * @return boolean
+         */
+        boolean test(Object object);
+    }
+
+    /**
+     * Returns an Iterator over the remaining elements.
+     * @return Iterator
+     * @throws IllegalStateException if the stream has been consumed
+     */
+    Iterator iterator();
+
+    /**
+     * Returns the first element, evaluating the path only as far as
+     * needed to find it.
+     * @return Object, null if there is none
+     * @throws IllegalStateException if the stream has been consumed
+     */
+    Object findFirst();
+
+    /**
+     * Learn whether some element satisfies a condition, evaluating the
+     * path only as far as needed to find it.
+     * @param predicate condition
+     * @return boolean
+     * @throws IllegalStateException if the stream has been consumed
+     */
+    boolean anyMatch(Predicate predicate);
+
+    /**
+     * Restricts this stream to its first elements.
+     * @param maxSize number of elements
+     * @return this stream
+     */
+    ResultStream limit(long maxSize);
+
+    /**
+     * Collects the remaining elements.
+     * @return List
+     * @throws IllegalStateException if the stream has been consumed
+     */
+    List toList();
+
+    /**
+     * Learn whether the elements are produced in document order.
+     * @return boolean, false if that is not known in advance
+     */
+    boolean isOrdered();
+
+    /**
+     * Learn whether the elements are free of duplicate nodes. Even paths
+     * using only the child:: axis can select the same object twice, e.g.
+     * if a collection holds it twice, so this is rarely known in advance.
+     * @return boolean, false if that is not known in advance
+     */
+    boolean isDistinct();
+
+    /**
+     * Splits off the elements of a leading part of this stream into a new
+     * stream, e.g. to be consumed by another thread, like
+     * <code>Spliterator.trySplit()</code>. Possible for paths like
+     * <code>/orders[@open]/items</code> whose first step selects children
+     * and whose other steps stay within the subtrees of those children,
+     * and only as long as the stream has not been consumed or limited.
+     * The first step is evaluated eagerly when a stream is split.
+     * <p>
+     * The split streams must not be consumed concurrently unless the
+     * object model can be navigated by several threads at once.
+     * @return the leading part, or null if this stream cannot be split
+     */
+    ResultStream trySplit();
+}
@@ -23,6 +23,7 @@ import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
 
+import org.apache.commons.jxpath.xml.DocumentCache;
 import org.apache.commons.jxpath.xml.DocumentContainer;
 
 /**
@@ -68,6 +69,30 @@ public class XMLDocumentContainer implements Container {
         }
     }
 
+    /**
+     * Set the cache to share the document with other containers reading
+     * the same URL, see
+     * {@link DocumentContainer#setDocumentCache(DocumentCache)}. If a cache
+     * is set, the document is looked up in it on each access.  A container
+     * reading from a Source always keeps its document.
+     * @param documentCache DocumentCache, or null to keep the document
+     *   in this container only
+     */
+    public void setDocumentCache(DocumentCache documentCache) {
+        if (delegate != null) {
+            delegate.setDocumentCache(documentCache);
+            document = null;
+        }
+    }
+
+    /**
+     * Get the cache this container shares its document through.
+     * @return DocumentCache or null
+     */
+    public DocumentCache getDocumentCache() {
+        return delegate == null ? null : delegate.getDocumentCache();
+    }
+
     /**
      * Reads XML, caches it internally and returns the Document.
      * @return Object value
@@ -82,6 +107,9 @@ public class XMLDocumentContainer implements Container {
                     trans.transform(source, result);
                     document = result.getNode();
                 }
+                else if (delegate.getDocumentCache() != null) {
+                    return delegate.getValue();
+                }
                 else {
                     document = delegate.getValue();
                 }
@@ -31,6 +31,7 @@ import org.apache.commons.jxpath.NodeSet;
 import org.apache.commons.jxpath.Pointer;
 import org.apache.commons.jxpath.ri.axes.RootContext;
 import org.apache.commons.jxpath.ri.model.NodePointer;
+import org.apache.commons.jxpath.util.EvaluationCounters;
 import org.apache.commons.jxpath.util.ReverseComparator;
 
 /**
@@ -132,6 +133,43 @@ public abstract class EvalContext implements ExpressionContext, Iterator {
             }
             return pointerIterator.next();
         }
+        step();
+        return getCurrentNodePointer();
+    }
+
+    /**
+     * Returns the value of the next node in the context, the same as
+     * <code>((Pointer) next()).getValue()</code>.  Where nodes need not be
+     * collected and sorted, the value is read from the current node without
+     * allocating a pointer if the context supports it.
+     * @return Object
+     */
+    public Object nextValue() {
+        if (pointerIterator != null || getDocumentOrder() != 0) {
+            Pointer pointer = (Pointer) next();
+            return pointer == null ? null : pointer.getValue();
+        }
+        step();
+        return getCurrentNodeValue();
+    }
+
+    /**
+     * Moves past the next node in the context like <code>next()</code>,
+     * without asking for its pointer where nodes need not be collected
+     * and sorted.
+     */
+    public void skip() {
+        if (pointerIterator != null || getDocumentOrder() != 0) {
+            next();
+            return;
+        }
+        step();
+    }
+
+    /**
+     * Advances to the next node in document-order-free iteration.
+     */
+    private void step() {
         if (!done && !hasPerformedIteratorStep) {
             performIteratorStep();
         }
@@ -139,7 +177,6 @@ public abstract class EvalContext implements ExpressionContext, Iterator {
             throw new NoSuchElementException();
         }
         hasPerformedIteratorStep = false;
-        return getCurrentNodePointer();
     }
 
     /**
@@ -147,12 +184,12 @@ public abstract class EvalContext implements ExpressionContext, Iterator {
      */
     private void performIteratorStep() {
         done = true;
-        if (position != 0 && nextNode()) {
+        if (position != 0 && visitNextNode()) {
             done = false;
         }
         else {
             while (nextSet()) {
-                if (nextNode()) {
+                if (visitNextNode()) {
                     done = false;
                     break;
                 }
@@ -178,7 +215,7 @@ public abstract class EvalContext implements ExpressionContext, Iterator {
         HashSet set = new HashSet();
         ArrayList list = new ArrayList();
         while (nextSet()) {
-            while (nextNode()) {
+            while (visitNextNode()) {
                 NodePointer pointer = getCurrentNodePointer();
                 if (!set.contains(pointer)) {
                     set.add(pointer);
@@ -224,7 +261,7 @@ public abstract class EvalContext implements ExpressionContext, Iterator {
             reset();
         }
         List list = new ArrayList();
-        while (nextNode()) {
+        while (visitNextNode()) {
             list.add(getCurrentNodePointer());
         }
         if (pos != 0) {
@@ -251,7 +288,7 @@ public abstract class EvalContext implements ExpressionContext, Iterator {
         }
         BasicNodeSet set = new BasicNodeSet();
         while (nextSet()) {
-            while (nextNode()) {
+            while (visitNextNode()) {
                 set.add((Pointer) getCurrentNodePointer().clone());
             }
         }
@@ -310,13 +347,23 @@ public abstract class EvalContext implements ExpressionContext, Iterator {
     public Pointer getSingleNodePointer() {
         reset();
         while (nextSet()) {
-            if (nextNode()) {
+            if (visitNextNode()) {
                 return getCurrentNodePointer();
             }
         }
         return null;
     }
 
+    /**
+     * Returns the value of the current context node.  Contexts that can
+     * read it without materializing a pointer override this method.
+     * @return Object
+     */
+    public Object getCurrentNodeValue() {
+        NodePointer pointer = getCurrentNodePointer();
+        return pointer == null ? null : pointer.getValue();
+    }
+
     /**
      * Returns the current context node. Undefined before the beginning
      * of the iteration.
@@ -338,7 +385,7 @@ public abstract class EvalContext implements ExpressionContext, Iterator {
         if (!startedSetIteration) {
             startedSetIteration = true;
             while (parentContext.nextSet()) {
-                if (parentContext.nextNode()) {
+                if (parentContext.visitNextNode()) {
                     return true;
                 }
             }
@@ -347,14 +394,14 @@ public abstract class EvalContext implements ExpressionContext, Iterator {
 
         // In subsequent calls, we see if the parent context
         // has any nodes left in the current set
-        if (parentContext.nextNode()) {
+        if (parentContext.visitNextNode()) {
             return true;
         }
 
         // If not, we look for the next set that contains
         // at least one node
         while (parentContext.nextSet()) {
-            if (parentContext.nextNode()) {
+            if (parentContext.visitNextNode()) {
                 return true;
             }
         }
@@ -368,6 +415,19 @@ public abstract class EvalContext implements ExpressionContext, Iterator {
      */
     public abstract boolean nextNode();
 
+    /**
+     * Calls nextNode() and counts the node visited, if any, for the
+     * evaluation being measured.
+     * @return boolean
+     */
+    private boolean visitNextNode() {
+        if (nextNode()) {
+            EvaluationCounters.nodeVisited();
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Moves the current position to the specified index. Used with integer
      * predicates to quickly get to the n'th element of the node set.
@@ -18,9 +18,14 @@ package org.apache.commons.jxpath.ri;
 
 import java.util.Iterator;
 
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.jxpath.ri.axes.StreamingPathInterpreter;
+import org.apache.commons.jxpath.ri.compiler.EvaluationPlan;
 import org.apache.commons.jxpath.ri.compiler.Expression;
 import org.apache.commons.jxpath.CompiledExpression;
 import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathException;
 import org.apache.commons.jxpath.Pointer;
 
 /**
@@ -111,4 +116,52 @@ public class JXPathCompiledExpression implements CompiledExpression {
     public void removeAll(JXPathContext context) {
         ((JXPathContextReferenceImpl) context).removeAll(xpath, expression);
     }
+
+    /**
+     * Describes how this expression is evaluated: for each step of a path,
+     * whether it takes the fast path for simple paths or the general one,
+     * whether its nodes need to be collected and sorted into document order
+     * and what kind of predicates it has.
+     * @return a human readable report
+     * @see EvaluationPlan#explain(Expression)
+     */
+    public String explain() {
+        return EvaluationPlan.explain(expression);
+    }
+
+    /**
+     * Evaluates this expression and reports the number of nodes produced
+     * by each step of the path and the time spent on it.
+     * @param context base
+     * @return a human readable report
+     */
+    public String profile(JXPathContext context) {
+        return ((JXPathContextReferenceImpl) context).
+                    profile(xpath, expression);
+    }
+
+    /**
+     * Learn whether this expression can be evaluated over an XML stream
+     * by {@link #iterate(JXPathContext, XMLStreamReader)}.
+     * @return boolean
+     * @see StreamingPathInterpreter
+     */
+    public boolean isStreamable() {
+        return StreamingPathInterpreter.isStreamable(expression);
+    }
+
+    /**
+     * Evaluates this expression over an XML stream, reading it forward only
+     * and as far as needed to produce each value.
+     * @param context providing namespaces, variables and functions,
+     *   may be null
+     * @param reader namespace aware XMLStreamReader
+     * @return Iterator of the string values of the selected nodes
+     * @throws JXPathException if the expression is not streamable
+     * @see #isStreamable()
+     */
+    public Iterator iterate(JXPathContext context, XMLStreamReader reader) {
+        return new StreamingPathInterpreter(context, expression)
+                .iterate(reader);
+    }
 }
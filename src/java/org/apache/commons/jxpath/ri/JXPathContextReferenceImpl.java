@@ -17,17 +17,24 @@
 package org.apache.commons.jxpath.ri;
 
 import java.lang.ref.SoftReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.jxpath.CompiledExpression;
 import org.apache.commons.jxpath.ExceptionHandler;
+import org.apache.commons.jxpath.ExpressionMetrics;
 import org.apache.commons.jxpath.Function;
 import org.apache.commons.jxpath.Functions;
 import org.apache.commons.jxpath.JXPathContext;
@@ -37,20 +44,28 @@ import org.apache.commons.jxpath.JXPathInvalidSyntaxException;
 import org.apache.commons.jxpath.JXPathNotFoundException;
 import org.apache.commons.jxpath.JXPathTypeConversionException;
 import org.apache.commons.jxpath.Pointer;
+import org.apache.commons.jxpath.ResultCache;
+import org.apache.commons.jxpath.ResultStream;
 import org.apache.commons.jxpath.ri.axes.InitialContext;
+import org.apache.commons.jxpath.ri.axes.PointerMemo;
 import org.apache.commons.jxpath.ri.axes.RootContext;
+import org.apache.commons.jxpath.ri.axes.SimplePathInterpreter;
+import org.apache.commons.jxpath.ri.compiler.EvaluationPlan;
 import org.apache.commons.jxpath.ri.compiler.Expression;
 import org.apache.commons.jxpath.ri.compiler.LocationPath;
 import org.apache.commons.jxpath.ri.compiler.Path;
+import org.apache.commons.jxpath.ri.compiler.Step;
 import org.apache.commons.jxpath.ri.compiler.TreeCompiler;
 import org.apache.commons.jxpath.ri.model.NodePointer;
 import org.apache.commons.jxpath.ri.model.NodePointerFactory;
 import org.apache.commons.jxpath.ri.model.VariablePointerFactory;
 import org.apache.commons.jxpath.ri.model.beans.BeanPointerFactory;
 import org.apache.commons.jxpath.ri.model.beans.CollectionPointerFactory;
+import org.apache.commons.jxpath.ri.model.beans.PropertyOwnerPointer;
 import org.apache.commons.jxpath.ri.model.container.ContainerPointerFactory;
 import org.apache.commons.jxpath.ri.model.dynamic.DynamicPointerFactory;
 import org.apache.commons.jxpath.util.ClassLoaderUtil;
+import org.apache.commons.jxpath.util.EvaluationCounters;
 import org.apache.commons.jxpath.util.ReverseComparator;
 import org.apache.commons.jxpath.util.TypeUtils;
 
@@ -116,6 +131,11 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 	protected NamespaceResolver namespaceResolver;
 	private Pointer rootPointer;
 	private Pointer contextPointer;
+	private ExceptionHandler exceptionHandler;
+	/**
+	 * A RootContext that is not in use, see {@link #acquireRootContext()}.
+	 */
+	private final AtomicReference idleRootContext = new AtomicReference();
 
 	/**
 	 * Create a new JXPathContextReferenceImpl.
@@ -190,6 +210,8 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 	 * Call this with a custom NodePointerFactory to add support for
 	 * additional types of objects.  Make sure the factory returns
 	 * a name that puts it in the right position on the list of factories.
+	 * Factories remembered for object classes by
+	 * {@link NodePointer#newNodePointer NodePointer} are discarded.
 	 *
 	 * @param factory NodePointerFactory to add
 	 */
@@ -200,6 +222,24 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 		}
 	}
 
+	/**
+	 * Removes support for additional types of objects. Factories remembered
+	 * for object classes by {@link NodePointer#newNodePointer NodePointer}
+	 * are discarded.
+	 *
+	 * @param factory NodePointerFactory to remove
+	 * @return true if the factory was registered
+	 */
+	public static boolean removeNodePointerFactory(NodePointerFactory factory) {
+		synchronized (nodeFactories) {
+			boolean removed = nodeFactories.remove(factory);
+			if (removed) {
+				nodeFactoryArray = null;
+			}
+			return removed;
+		}
+	}
+
 	/**
 	 * Get the registered NodePointerFactories.
 	 *
@@ -272,7 +312,12 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 			return expr;
 		}
 
+		ExpressionMetrics metrics = getMetrics();
+		long start = metrics == null ? 0 : System.nanoTime();
 		expr = (Expression) Parser.parseExpression(xpath, getCompiler());
+		if (metrics != null) {
+			metrics.compiled(xpath, System.nanoTime() - start);
+		}
 
 		synchronized (compiled) {
 			if (USE_SOFT_CACHE) {
@@ -377,7 +422,121 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 	 * @return Object
 	 */
 	public Object getValue(String xpath, Expression expr) {
-		Object result = expr.computeValue(getEvalContext());
+		ResultCache cache = getResultCache();
+		ResultCache.Key key = cache == null ? null
+				: getResultCacheKey(expr, false);
+		if (key != null) {
+			Object value = cache.get(key);
+			if (value != null) {
+				return value;
+			}
+		}
+		Object value;
+		Metering metering = startMetering(xpath);
+		RootContext rootContext = acquireRootContext();
+		try {
+			value = toValue(xpath, expr,
+					expr.computeValue(new InitialContext(rootContext)));
+		} finally {
+			releaseRootContext(rootContext);
+			if (metering != null) {
+				metering.record();
+			}
+		}
+		if (key != null && isImmutable(value)) {
+			cache.put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Learn whether a value may be handed out to several callers of
+	 * getValue() by the ResultCache.
+	 *
+	 * @param value the result of getValue(), may be null
+	 * @return boolean
+	 */
+	private static boolean isImmutable(Object value) {
+		return value instanceof String || value instanceof Boolean
+				|| value instanceof Character || value instanceof Integer
+				|| value instanceof Long || value instanceof Double
+				|| value instanceof Float || value instanceof Short
+				|| value instanceof Byte || value instanceof BigInteger
+				|| value instanceof BigDecimal;
+	}
+
+	public List selectNodes(String xpath) {
+		ResultCache cache = getResultCache();
+		if (cache == null) {
+			return super.selectNodes(xpath);
+		}
+		Expression expr = compileExpression(xpath);
+		ResultCache.Key key = getResultCacheKey(expr, true);
+		if (key != null) {
+			List nodes = (List) cache.get(key);
+			if (nodes != null) {
+				return new ArrayList(nodes);
+			}
+		}
+		ArrayList list = new ArrayList();
+		Iterator iterator = iteratePointers(xpath, expr);
+		while (iterator.hasNext()) {
+			Pointer pointer = (Pointer) iterator.next();
+			list.add(pointer.getNode());
+		}
+		if (key != null) {
+			cache.put(key, Collections.unmodifiableList(new ArrayList(list)));
+		}
+		return list;
+	}
+
+	/**
+	 * Get the key of the result of an expression in this context for the
+	 * ResultCache. Besides the values of the variables, the key holds the
+	 * settings of this context the result depends on: the functions, the
+	 * URIs of the namespace prefixes used by the expression, the locale
+	 * and the lenient flag.
+	 *
+	 * @param expr  compiled Expression
+	 * @param nodes whether the key is for selectNodes()
+	 * @return the key, or null if the result must not be cached
+	 */
+	private ResultCache.Key getResultCacheKey(Expression expr, boolean nodes) {
+		if (expr.isExtensionFunctionUsed()) {
+			return null;
+		}
+		Set variables = expr.getUsedVariables();
+		Set prefixes = expr.getUsedPrefixes();
+		Object[] parameters =
+			new Object[variables.size() + prefixes.size() + 3];
+		int i = 0;
+		for (Iterator it = variables.iterator(); it.hasNext();) {
+			NodePointer pointer = getVariablePointer((QName) it.next());
+			if (!pointer.isActual()) {
+				// Let the evaluation report the undefined variable
+				return null;
+			}
+			parameters[i++] = pointer.getBaseValue();
+		}
+		for (Iterator it = prefixes.iterator(); it.hasNext();) {
+			parameters[i++] = getNamespaceURI((String) it.next());
+		}
+		parameters[i++] = getFunctionsChain();
+		parameters[i++] = getLocale();
+		parameters[i++] = Boolean.valueOf(isLenient());
+		return new ResultCache.Key(expr, nodes, getContextBean(),
+				getContextPointer().getNode(), parameters);
+	}
+
+	/**
+	 * Converts the result of the evaluation of an expression to a value.
+	 *
+	 * @param xpath  String
+	 * @param expr   Expression
+	 * @param result the computed result
+	 * @return Object
+	 */
+	private Object toValue(String xpath, Expression expr, Object result) {
 		if (result == null) {
 			if (expr instanceof Path && !isLenient()) {
 				throw new JXPathNotFoundException("No value for xpath: "
@@ -403,6 +562,75 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 		return result;
 	}
 
+	/**
+	 * Evaluates the supplied compiled expressions. Simple location paths
+	 * like <code>/order/customer/address/street</code> are evaluated
+	 * together, so that a prefix they share is walked only once.
+	 *
+	 * @param expressions to evaluate
+	 * @return Object[] the value of each expression
+	 */
+	public Object[] getValues(CompiledExpression[] expressions) {
+		Object[] values = new Object[expressions.length];
+		List absolute = new ArrayList();
+		List relative = new ArrayList();
+		for (int i = 0; i < expressions.length; i++) {
+			if (expressions[i] instanceof JXPathCompiledExpression) {
+				Expression expr = ((JXPathCompiledExpression) expressions[i])
+						.getExpression();
+				if (expr instanceof LocationPath
+						&& ((LocationPath) expr).getSteps().length > 0
+						&& ((LocationPath) expr).isSimplePath()) {
+					if (((LocationPath) expr).isAbsolute()) {
+						absolute.add(Integer.valueOf(i));
+					} else {
+						relative.add(Integer.valueOf(i));
+					}
+					continue;
+				}
+			}
+			values[i] = expressions[i].getValue(this);
+		}
+		EvalContext context = getEvalContext();
+		if (!absolute.isEmpty()) {
+			getValues(expressions, absolute,
+					context.getRootContext().getAbsoluteRootContext(), values);
+		}
+		if (!relative.isEmpty()) {
+			getValues(expressions, relative, new InitialContext(context),
+					values);
+		}
+		return values;
+	}
+
+	/**
+	 * Evaluates simple location paths starting from the same root.
+	 *
+	 * @param expressions all expressions
+	 * @param indices     List of Integer indices of the paths to evaluate
+	 * @param rootContext the context the paths start from
+	 * @param values      receives the values
+	 */
+	private void getValues(CompiledExpression[] expressions, List indices,
+			EvalContext rootContext, Object[] values) {
+		Step[][] paths = new Step[indices.size()][];
+		for (int i = 0; i < paths.length; i++) {
+			int index = ((Integer) indices.get(i)).intValue();
+			paths[i] = ((Path) ((JXPathCompiledExpression) expressions[index])
+					.getExpression()).getSteps();
+		}
+		NodePointer[] pointers = SimplePathInterpreter
+				.interpretSimpleLocationPaths(rootContext,
+						(NodePointer) rootContext.getSingleNodePointer(), paths);
+		for (int i = 0; i < pointers.length; i++) {
+			int index = ((Integer) indices.get(i)).intValue();
+			JXPathCompiledExpression compiled =
+					(JXPathCompiledExpression) expressions[index];
+			values[index] = toValue(compiled.getXPath(),
+					compiled.getExpression(), pointers[i]);
+		}
+	}
+
 	/**
 	 * Calls getValue(xpath), converts the result to the required type
 	 * and returns the result of the conversion.
@@ -463,7 +691,28 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 	 * @return Iterator
 	 */
 	public Iterator iterate(String xpath, Expression expr) {
-		return expr.iterate(getEvalContext());
+		Metering metering = startMetering(xpath);
+		if (metering == null) {
+			return expr.iterate(getEvalContext());
+		}
+		try {
+			return new MeteredIterator(expr.iterate(getEvalContext()), metering);
+		} finally {
+			metering.pause();
+		}
+	}
+
+	/**
+	 * Evaluate the specified expression and report the nodes produced
+	 * and the time spent by each of its steps.
+	 *
+	 * @param xpath expression
+	 * @param expr  compiled Expression
+	 * @return String
+	 * @see EvaluationPlan#profile(EvalContext, Expression)
+	 */
+	public String profile(String xpath, Expression expr) {
+		return EvaluationPlan.profile(getEvalContext(), expr);
 	}
 
 	public Pointer getPointer(String xpath) {
@@ -478,9 +727,15 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 	 * @return Pointer
 	 */
 	public Pointer getPointer(String xpath, Expression expr) {
-		Object result = expr.computeValue(getEvalContext());
-		if (result instanceof EvalContext) {
-			result = ((EvalContext) result).getSingleNodePointer();
+		Object result;
+		RootContext rootContext = acquireRootContext();
+		try {
+			result = expr.computeValue(new InitialContext(rootContext));
+			if (result instanceof EvalContext) {
+				result = ((EvalContext) result).getSingleNodePointer();
+			}
+		} finally {
+			releaseRootContext(rootContext);
 		}
 		if (result instanceof Pointer) {
 			if (!isLenient() && !((NodePointer) result).isActual()) {
@@ -524,8 +779,9 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 	 * @return resulting Pointer
 	 */
 	public Pointer createPath(String xpath, Expression expr) {
+		Metering metering = startMetering(xpath);
 		try {
-			Object result = expr.computeValue(getEvalContext());
+			Object result = expr.computeValue(getUpdateEvalContext());
 			Pointer pointer = null;
 
 			if (result instanceof Pointer) {
@@ -541,6 +797,10 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 			return ((NodePointer) pointer).createPath(this);
 		} catch (Throwable ex) {
 			throw new JXPathException(ex);
+		} finally {
+			if (metering != null) {
+				metering.record();
+			}
 		}
 	}
 
@@ -558,12 +818,17 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 	 */
 	public Pointer createPathAndSetValue(String xpath, Expression expr,
 	                                     Object value) {
+		Metering metering = startMetering(xpath);
 		try {
 			return setValue(xpath, expr, value, true);
 		} catch (Throwable ex) {
 			throw new JXPathException(
 					"Exception trying to create xpath " + xpath,
 					ex);
+		} finally {
+			if (metering != null) {
+				metering.record();
+			}
 		}
 	}
 
@@ -578,7 +843,7 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 	 */
 	private Pointer setValue(String xpath, Expression expr, Object value,
 	                         boolean create) {
-		Object result = expr.computeValue(getEvalContext());
+		Object result = expr.computeValue(getUpdateEvalContext());
 		Pointer pointer = null;
 
 		if (result instanceof Pointer) {
@@ -602,6 +867,198 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 		return pointer;
 	}
 
+	/**
+	 * Sets the values of several paths in the order of the sorted xpaths.
+	 * A leading child step shared by consecutive simple paths is resolved
+	 * only once.
+	 *
+	 * @param values map of xpath to value
+	 */
+	public void setValues(Map values) {
+		setValues(values, false);
+	}
+
+	/**
+	 * Creates several paths and sets their values in the order of the
+	 * sorted xpaths. A leading child step shared by consecutive simple
+	 * paths is resolved, and if necessary created, only once.
+	 *
+	 * @param values map of xpath to value
+	 */
+	public void createPathsAndSetValues(Map values) {
+		setValues(values, true);
+	}
+
+	/**
+	 * Sets the values of several paths.
+	 *
+	 * @param values map of xpath to value
+	 * @param create whether to create missing node(s)
+	 */
+	private void setValues(Map values, boolean create) {
+		List batch = new ArrayList();
+		boolean absolute = false;
+		Iterator it = new TreeMap(values).entrySet().iterator();
+		while (it.hasNext()) {
+			Entry entry = (Entry) it.next();
+			String xpath = (String) entry.getKey();
+			Expression expr = compileExpression(xpath);
+			if (expr instanceof LocationPath
+					&& ((LocationPath) expr).getSteps().length > 0
+					&& ((LocationPath) expr).isSimplePath()) {
+				LocationPath path = (LocationPath) expr;
+				if (!batch.isEmpty() && path.isAbsolute() != absolute) {
+					setValues(batch, absolute, create);
+					batch.clear();
+				}
+				absolute = path.isAbsolute();
+				batch.add(new PathValue(xpath, path.getSteps(),
+						entry.getValue()));
+				continue;
+			}
+			if (!batch.isEmpty()) {
+				setValues(batch, absolute, create);
+				batch.clear();
+			}
+			if (create) {
+				createPathAndSetValue(xpath, expr, entry.getValue());
+			} else {
+				setValue(xpath, expr, entry.getValue());
+			}
+		}
+		if (!batch.isEmpty()) {
+			setValues(batch, absolute, create);
+		}
+	}
+
+	/**
+	 * Sets the values of simple paths that start from the same root.
+	 *
+	 * @param batch    List of PathValues
+	 * @param absolute whether the paths are absolute
+	 * @param create   whether to create missing node(s)
+	 */
+	private void setValues(List batch, boolean absolute, boolean create) {
+		EvalContext context = getUpdateEvalContext();
+		EvalContext rootContext = absolute
+				? context.getRootContext().getAbsoluteRootContext()
+				: new InitialContext(context);
+		setValues(rootContext,
+				(NodePointer) rootContext.getSingleNodePointer(), batch, 0,
+				create);
+	}
+
+	/**
+	 * Sets the values of simple paths starting with the step
+	 * <code>currentStep</code>, all of which share the preceding steps.
+	 *
+	 * @param context     evaluation context
+	 * @param parent      the result of the preceding steps
+	 * @param batch       List of PathValues sorted by xpath
+	 * @param currentStep step number
+	 * @param create      whether to create missing node(s)
+	 */
+	private void setValues(EvalContext context, NodePointer parent,
+			List batch, int currentStep, boolean create) {
+		int i = 0;
+		while (i < batch.size()) {
+			PathValue first = (PathValue) batch.get(i);
+			String key = first.getSharedStepKey(currentStep);
+			int j = i + 1;
+			if (key != null) {
+				while (j < batch.size() && key.equals(
+						((PathValue) batch.get(j)).getSharedStepKey(currentStep))) {
+					j++;
+				}
+			}
+			NodePointer child = null;
+			if (j - i > 1) {
+				child = getSharedPointer(context, parent, first, currentStep,
+						create);
+			}
+			if (child != null) {
+				setValues(context, child, batch.subList(i, j),
+						currentStep + 1, create);
+			} else {
+				for (int k = i; k < j; k++) {
+					setValue(context, parent, (PathValue) batch.get(k),
+							currentStep, create);
+				}
+			}
+			i = j;
+		}
+	}
+
+	/**
+	 * Resolves, and if requested creates, the node a step shared by
+	 * several paths leads to.
+	 *
+	 * @param context     evaluation context
+	 * @param parent      the result of the preceding steps
+	 * @param pathValue   one of the paths sharing the step
+	 * @param currentStep step number
+	 * @param create      whether to create a missing node
+	 * @return NodePointer, or <code>null</code> if the step does not lead
+	 * to a single existing node
+	 */
+	private NodePointer getSharedPointer(EvalContext context,
+			NodePointer parent, PathValue pathValue, int currentStep,
+			boolean create) {
+		Step[] steps = new Step[currentStep + 1];
+		System.arraycopy(pathValue.steps, 0, steps, 0, steps.length);
+		NodePointer child = SimplePathInterpreter.interpretSimpleLocationPath(
+				context, parent, steps, currentStep);
+		if (create && child != null
+				&& (!child.isActual() || child.getImmediateNode() == null)) {
+			try {
+				child.createPath(this);
+			} catch (Throwable ex) {
+				throw new JXPathException("Exception trying to create xpath "
+						+ pathValue.xpath, ex);
+			}
+			// The pointer may still hold the old value
+			child = SimplePathInterpreter.interpretSimpleLocationPath(
+					context, parent, steps, currentStep);
+		}
+		if (child == null || !child.isActual() || child.isCollection()
+				|| child.getImmediateNode() == null) {
+			return null;
+		}
+		return child;
+	}
+
+	/**
+	 * Sets the value of a single simple path.
+	 *
+	 * @param context     evaluation context
+	 * @param parent      the result of the preceding steps
+	 * @param pathValue   path and value
+	 * @param currentStep step number
+	 * @param create      whether to create missing node(s)
+	 */
+	private void setValue(EvalContext context, NodePointer parent,
+			PathValue pathValue, int currentStep, boolean create) {
+		try {
+			NodePointer pointer = SimplePathInterpreter
+					.interpretSimpleLocationPath(context, parent,
+							pathValue.steps, currentStep);
+			if (pointer == null) {
+				throw new JXPathException("Cannot set value for xpath: "
+						+ pathValue.xpath);
+			}
+			if (create) {
+				pointer.createPath(this, pathValue.value);
+			} else {
+				pointer.setValue(pathValue.value);
+			}
+		} catch (Throwable ex) {
+			throw new JXPathException(create
+					? "Exception trying to create xpath " + pathValue.xpath
+					: "Exception trying to set value with xpath "
+							+ pathValue.xpath, ex);
+		}
+	}
+
 	/**
 	 * Checks if the path follows the JXPath restrictions on the type
 	 * of path that can be passed to create... methods.
@@ -645,6 +1102,16 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 		return expr.iteratePointers(getEvalContext());
 	}
 
+	public ResultStream stream(String xpath) {
+		return new JXPathResultStream(this, xpath, compileExpression(xpath),
+				false);
+	}
+
+	public ResultStream streamPointers(String xpath) {
+		return new JXPathResultStream(this, xpath, compileExpression(xpath),
+				true);
+	}
+
 	public void removePath(String xpath) {
 		removePath(xpath, compileExpression(xpath));
 	}
@@ -683,17 +1150,11 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 			ArrayList list = new ArrayList();
 			Iterator it = expr.iteratePointers(getEvalContext());
 			while (it.hasNext()) {
-				list.add(it.next());
+				// Some contexts return the same, repositioned pointer
+				list.add(((NodePointer) it.next()).clone());
 			}
 			Collections.sort(list, ReverseComparator.INSTANCE);
-			it = list.iterator();
-			if (it.hasNext()) {
-				NodePointer pointer = (NodePointer) it.next();
-				pointer.remove();
-				while (it.hasNext()) {
-					removePath(((NodePointer) it.next()).asPath());
-				}
-			}
+			removeAll(list);
 		} catch (Throwable ex) {
 			throw new JXPathException(
 					"Exception trying to remove all for xpath " + xpath,
@@ -701,6 +1162,49 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 		}
 	}
 
+	/**
+	 * Removes the nodes the supplied pointers point to. Elements of the
+	 * same collection are removed together, each collection being
+	 * compacted once. A collection is processed at the position of its
+	 * first element in document order, i.e. after the descendants of
+	 * all its removed elements.
+	 *
+	 * @param pointers NodePointers in reverse document order
+	 */
+	private void removeAll(List pointers) {
+		int size = pointers.size();
+		ElementGroup[] groups = new ElementGroup[size];
+		HashMap groupMap = new HashMap();
+		for (int i = 0; i < size; i++) {
+			NodePointer target = (NodePointer) pointers.get(i);
+			while (target instanceof PropertyOwnerPointer
+					&& target.getImmediateParentPointer() != null) {
+				target = target.getImmediateParentPointer();
+			}
+			if (target.getIndex() != NodePointer.WHOLE_COLLECTION
+					&& target.isCollection()) {
+				NodePointer key = (NodePointer) target.clone();
+				key.setIndex(NodePointer.WHOLE_COLLECTION);
+				ElementGroup group = (ElementGroup) groupMap.get(key);
+				if (group == null) {
+					group = new ElementGroup(target);
+					groupMap.put(key, group);
+				}
+				group.add(target.getIndex(), i);
+				groups[i] = group;
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			ElementGroup group = groups[i];
+			if (group == null || group.count == 1) {
+				((NodePointer) pointers.get(i)).remove();
+			} else if (group.last == i) {
+				group.pointer.remove(group.getIndexes());
+			}
+		}
+	}
+
 	public JXPathContext getRelativeContext(Pointer pointer) {
 		Object contextBean = pointer.getNode();
 		if (contextBean == null) {
@@ -715,12 +1219,24 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 		return contextPointer;
 	}
 
+	public void rebind(Object contextBean) {
+		this.contextBean = contextBean;
+		contextPointer = NodePointer.newNodePointer(
+				new QName(null, "root"), contextBean, getLocale());
+		rootPointer = contextPointer;
+		if (exceptionHandler != null) {
+			((NodePointer) rootPointer).setExceptionHandler(exceptionHandler);
+		}
+		namespaceResolver
+				.setNamespaceContextPointer((NodePointer) contextPointer);
+	}
+
 	/**
 	 * Get absolute root pointer.
 	 *
 	 * @return NodePointer
 	 */
-	private NodePointer getAbsoluteRootPointer() {
+	public NodePointer getAbsoluteRootPointer() {
 		return (NodePointer) rootPointer;
 	}
 
@@ -729,11 +1245,50 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 	 *
 	 * @return EvalContext
 	 */
-	private EvalContext getEvalContext() {
+	EvalContext getEvalContext() {
 		return new InitialContext(new RootContext(this,
 				(NodePointer) getContextPointer()));
 	}
 
+	/**
+	 * Get the root of an evaluation context whose contexts do not outlive
+	 * the evaluation, reusing the one of a previous evaluation if possible.
+	 * Must be handed back by {@link #releaseRootContext(RootContext)}.
+	 *
+	 * @return RootContext
+	 */
+	private RootContext acquireRootContext() {
+		RootContext rootContext =
+				(RootContext) idleRootContext.getAndSet(null);
+		NodePointer pointer = (NodePointer) getContextPointer();
+		if (rootContext == null) {
+			return new RootContext(this, pointer);
+		}
+		rootContext.rebind(pointer,
+				isMemoizing() ? new PointerMemo() : null);
+		return rootContext;
+	}
+
+	/**
+	 * Make a RootContext available to the next evaluation.
+	 *
+	 * @param rootContext as returned by {@link #acquireRootContext()}
+	 */
+	private void releaseRootContext(RootContext rootContext) {
+		idleRootContext.set(rootContext);
+	}
+
+	/**
+	 * Get an evaluation context for an operation that modifies the
+	 * object graph, which must not use the pointer memo.
+	 *
+	 * @return EvalContext
+	 */
+	private EvalContext getUpdateEvalContext() {
+		return new InitialContext(new RootContext(this,
+				(NodePointer) getContextPointer(), null));
+	}
+
 	/**
 	 * Get the absolute root context.
 	 *
@@ -755,6 +1310,24 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 				.contextWrapper(this), getLocale());
 	}
 
+	/**
+	 * Get the Functions installed on this context and its ancestors,
+	 * in the order getFunction() searches them.
+	 *
+	 * @return List of Functions
+	 */
+	private List getFunctionsChain() {
+		List chain = new ArrayList();
+		for (JXPathContext funcCtx = this; funcCtx != null;
+				funcCtx = funcCtx.getParentContext()) {
+			Functions funcs = funcCtx.getFunctions();
+			if (funcs != null) {
+				chain.add(funcs);
+			}
+		}
+		return chain;
+	}
+
 	/**
 	 * Get the named Function.
 	 *
@@ -827,8 +1400,226 @@ public class JXPathContextReferenceImpl extends JXPathContext {
 	 * {@inheritDoc}
 	 */
 	public void setExceptionHandler(ExceptionHandler exceptionHandler) {
+		this.exceptionHandler = exceptionHandler;
 		if (rootPointer instanceof NodePointer) {
 			((NodePointer) rootPointer).setExceptionHandler(exceptionHandler);
 		}
 	}
+
+	/**
+	 * Start measuring an evaluation if this context has metrics.
+	 *
+	 * @param xpath the expression evaluated
+	 * @return Metering or null
+	 */
+	private Metering startMetering(String xpath) {
+		ExpressionMetrics metrics = getMetrics();
+		if (metrics == null) {
+			return null;
+		}
+		Metering metering = new Metering(metrics, xpath);
+		metering.resume();
+		return metering;
+	}
+
+	/**
+	 * Measures the time and the work of one evaluation, possibly spread
+	 * over several calls, and reports it to the metrics once.
+	 */
+	private static final class Metering {
+		private final ExpressionMetrics metrics;
+		private final String xpath;
+		private final EvaluationCounters counters = new EvaluationCounters();
+		private long nanos;
+		private long start;
+		private boolean running;
+		private boolean recorded;
+
+		/**
+		 * Create a new Metering.
+		 *
+		 * @param metrics to report to
+		 * @param xpath   the expression evaluated
+		 */
+		private Metering(ExpressionMetrics metrics, String xpath) {
+			this.metrics = metrics;
+			this.xpath = xpath;
+		}
+
+		/**
+		 * Start or continue measuring on the current thread.
+		 */
+		private void resume() {
+			if (!running) {
+				running = true;
+				counters.begin();
+				start = System.nanoTime();
+			}
+		}
+
+		/**
+		 * Stop measuring until resumed.
+		 */
+		private void pause() {
+			if (running) {
+				nanos += System.nanoTime() - start;
+				counters.end();
+				running = false;
+			}
+		}
+
+		/**
+		 * Stop measuring and report, unless already reported.
+		 */
+		private void record() {
+			pause();
+			if (!recorded) {
+				recorded = true;
+				metrics.evaluated(xpath, nanos, counters.getNodesVisited(),
+						counters.getPointersAllocated(),
+						counters.getReflectiveCalls());
+			}
+		}
+	}
+
+	/**
+	 * Measures the work done by an iterator. The evaluation is reported
+	 * when the iterator is exhausted.
+	 */
+	private static final class MeteredIterator implements Iterator {
+		private final Iterator iterator;
+		private final Metering metering;
+
+		/**
+		 * Create a new MeteredIterator.
+		 *
+		 * @param iterator to measure
+		 * @param metering of the evaluation
+		 */
+		private MeteredIterator(Iterator iterator, Metering metering) {
+			this.iterator = iterator;
+			this.metering = metering;
+		}
+
+		public boolean hasNext() {
+			boolean hasNext;
+			metering.resume();
+			try {
+				hasNext = iterator.hasNext();
+			} finally {
+				metering.pause();
+			}
+			if (!hasNext) {
+				metering.record();
+			}
+			return hasNext;
+		}
+
+		public Object next() {
+			metering.resume();
+			try {
+				return iterator.next();
+			} finally {
+				metering.pause();
+			}
+		}
+
+		public void remove() {
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * The elements to remove from a single collection.
+	 */
+	private static final class ElementGroup {
+		private final NodePointer pointer;
+		private int[] indexes = new int[4];
+		private int count;
+		private int last;
+
+		/**
+		 * Create a new ElementGroup.
+		 *
+		 * @param pointer a pointer to one of the elements
+		 */
+		private ElementGroup(NodePointer pointer) {
+			this.pointer = pointer;
+		}
+
+		/**
+		 * Add an element.
+		 *
+		 * @param index    of the element within the collection
+		 * @param position of the pointer in the list of removed nodes
+		 */
+		private void add(int index, int position) {
+			if (count == indexes.length) {
+				indexes = Arrays.copyOf(indexes, count * 2);
+			}
+			indexes[count++] = index;
+			last = position;
+		}
+
+		/**
+		 * Get the distinct indexes in ascending order.
+		 *
+		 * @return int[]
+		 */
+		private int[] getIndexes() {
+			int[] sorted = Arrays.copyOf(indexes, count);
+			Arrays.sort(sorted);
+			int distinct = 0;
+			for (int i = 0; i < sorted.length; i++) {
+				if (distinct == 0 || sorted[i] != sorted[distinct - 1]) {
+					sorted[distinct++] = sorted[i];
+				}
+			}
+			return distinct == sorted.length ? sorted
+					: Arrays.copyOf(sorted, distinct);
+		}
+	}
+
+	/**
+	 * A simple path with the value to set.
+	 */
+	private static final class PathValue {
+		private final String xpath;
+		private final Step[] steps;
+		private final Object value;
+
+		/**
+		 * Create a new PathValue.
+		 *
+		 * @param xpath source
+		 * @param steps compiled steps
+		 * @param value to set
+		 */
+		private PathValue(String xpath, Step[] steps, Object value) {
+			this.xpath = xpath;
+			this.steps = steps;
+			this.value = value;
+		}
+
+		/**
+		 * Get a key identifying the step if it is a child step without
+		 * predicates that is followed by other steps, i.e. a step that
+		 * may be shared with other paths.
+		 *
+		 * @param currentStep step number
+		 * @return String key or <code>null</code>
+		 */
+		private String getSharedStepKey(int currentStep) {
+			if (currentStep >= steps.length - 1) {
+				return null;
+			}
+			Step step = steps[currentStep];
+			Expression[] predicates = step.getPredicates();
+			if (step.getAxis() != Compiler.AXIS_CHILD
+					|| (predicates != null && predicates.length != 0)) {
+				return null;
+			}
+			return step.toString();
+		}
+	}
 }
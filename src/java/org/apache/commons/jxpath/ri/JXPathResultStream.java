@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.jxpath.BasicResultStream;
+import org.apache.commons.jxpath.ResultStream;
+import org.apache.commons.jxpath.ri.compiler.Expression;
+import org.apache.commons.jxpath.ri.compiler.LocationPath;
+
+/**
+ * RI of ResultStream, reading the nodes from the EvalContext chain of the
+ * expression as they are consumed. Unlike BasicResultStream, it knows
+ * when a path produces its nodes in document order and can be split.
+ *
+ * @version $Revision$ $Date$
+ */
+public class JXPathResultStream extends BasicResultStream {
+
+    private final JXPathContextReferenceImpl context;
+    private final String xpath;
+    private final Expression expression;
+    private final boolean pointers;
+    /** Nodes of the first step of a split path, null if not split */
+    private List nodes;
+
+    /**
+     * Create a new JXPathResultStream.
+     * @param context evaluating the expression
+     * @param xpath source
+     * @param expression compiled
+     * @param pointers whether to produce Pointers rather than values
+     */
+    public JXPathResultStream(JXPathContextReferenceImpl context, String xpath,
+            Expression expression, boolean pointers) {
+        this.context = context;
+        this.xpath = xpath;
+        this.expression = expression;
+        this.pointers = pointers;
+    }
+
+    /**
+     * Create a new JXPathResultStream for a part of a split stream.
+     * @param stream split
+     * @param nodes the part of the nodes of the first step
+     */
+    private JXPathResultStream(JXPathResultStream stream, List nodes) {
+        this(stream.context, stream.xpath, stream.expression, stream.pointers);
+        this.nodes = nodes;
+    }
+
+    protected Iterator createIterator() {
+        if (nodes != null) {
+            EvalContext ctx = ((LocationPath) expression).evalRemainingSteps(
+                    context.getEvalContext(), nodes);
+            return pointers ? (Iterator) ctx
+                    : new Expression.ValueIterator(ctx);
+        }
+        return pointers ? context.iteratePointers(xpath, expression)
+                : context.iterate(xpath, expression);
+    }
+
+    public boolean isOrdered() {
+        return expression instanceof LocationPath
+                && ((LocationPath) expression).isOrdered();
+    }
+
+    public ResultStream trySplit() {
+        if (isStarted()) {
+            return null;
+        }
+        if (nodes == null) {
+            if (!(expression instanceof LocationPath)
+                    || !((LocationPath) expression).isSplittable()) {
+                return null;
+            }
+            nodes = ((LocationPath) expression).evalFirstStep(
+                    context.getEvalContext());
+        }
+        if (nodes.size() < 2) {
+            return null;
+        }
+        int half = nodes.size() / 2;
+        ResultStream prefix = new JXPathResultStream(this,
+                new ArrayList(nodes.subList(0, half)));
+        nodes = new ArrayList(nodes.subList(half, nodes.size()));
+        return prefix;
+    }
+
+    public String toString() {
+        return xpath;
+    }
+}
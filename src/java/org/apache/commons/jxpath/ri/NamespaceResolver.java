@@ -18,6 +18,7 @@ package org.apache.commons.jxpath.ri;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.jxpath.Pointer;
 import org.apache.commons.jxpath.ri.model.NodeIterator;
@@ -25,6 +26,11 @@ import org.apache.commons.jxpath.ri.model.NodePointer;
 
 /**
  * Namespace resolver for {@link JXPathContextReferenceImpl}.
+ * <p>
+ * Lookups take no lock: the maps of registered namespaces are never
+ * modified once published, registering a namespace replaces them with
+ * modified copies. Prefixes found by searching the namespace context
+ * pointer are remembered for as long as the pointer stays the same.
  *
  * @author Dmitri Plotnikov
  * @version $Revision$ $Date$
@@ -34,13 +40,14 @@ public class NamespaceResolver implements Cloneable, Serializable {
 
     /** Parent NamespaceResolver */
     protected final NamespaceResolver parent;
-    /** namespace map */
-    protected HashMap namespaceMap = new HashMap();
-    /** reverse lookup map */
-    protected HashMap reverseMap = new HashMap();
+    /** namespace map, replaced rather than modified */
+    protected volatile HashMap namespaceMap = new HashMap();
+    /** reverse lookup map, replaced rather than modified */
+    protected volatile HashMap reverseMap = new HashMap();
     /** pointer */
-    protected NodePointer pointer;
-    private boolean sealed;
+    protected volatile NodePointer pointer;
+    private volatile boolean sealed;
+    private transient volatile PrefixMemo prefixMemo;
 
     /**
      * Find the namespace prefix for the specified namespace URI and NodePointer.
@@ -94,8 +101,12 @@ public class NamespaceResolver implements Cloneable, Serializable {
             throw new IllegalStateException(
                     "Cannot register namespaces on a sealed NamespaceResolver");
         }
-        namespaceMap.put(prefix, namespaceURI);
-        reverseMap.put(namespaceURI, prefix);
+        HashMap newNamespaceMap = (HashMap) namespaceMap.clone();
+        HashMap newReverseMap = (HashMap) reverseMap.clone();
+        newNamespaceMap.put(prefix, namespaceURI);
+        newReverseMap.put(namespaceURI, prefix);
+        namespaceMap = newNamespaceMap;
+        reverseMap = newReverseMap;
     }
 
     /**
@@ -127,10 +138,11 @@ public class NamespaceResolver implements Cloneable, Serializable {
      * @param prefix The namespace prefix to look up
      * @return namespace URI or null if the prefix is undefined.
      */
-    public synchronized String getNamespaceURI(String prefix) {
+    public String getNamespaceURI(String prefix) {
         String uri = getExternallyRegisteredNamespaceURI(prefix);
-        return uri == null && pointer != null ? pointer.getNamespaceURI(prefix)
-                : uri;
+        NodePointer nsPointer = pointer;
+        return uri == null && nsPointer != null
+                ? nsPointer.getNamespaceURI(prefix) : uri;
     }
 
     /**
@@ -140,7 +152,7 @@ public class NamespaceResolver implements Cloneable, Serializable {
      * @return namespace URI or null if the prefix is undefined.
      * @since JXPath 1.3
      */
-     protected synchronized String getExternallyRegisteredNamespaceURI(
+     protected String getExternallyRegisteredNamespaceURI(
             String prefix) {
         String uri = (String) namespaceMap.get(prefix);
         return uri == null && parent != null ? parent
@@ -152,10 +164,38 @@ public class NamespaceResolver implements Cloneable, Serializable {
      * @param namespaceURI the ns URI to check.
      * @return String prefix
      */
-    public synchronized String getPrefix(String namespaceURI) {
+    public String getPrefix(String namespaceURI) {
         String prefix = getExternallyRegisteredPrefix(namespaceURI);
-        return prefix == null && pointer != null ? getPrefix(pointer,
-                namespaceURI) : prefix;
+        NodePointer nsPointer = pointer;
+        return prefix == null && nsPointer != null
+                ? getPrefixFromPointer(nsPointer, namespaceURI) : prefix;
+    }
+
+    /**
+     * Find the prefix for the specified namespace URI declared at the
+     * namespace context pointer or its ancestors, remembering the result.
+     * @param nsPointer the namespace context pointer
+     * @param namespaceURI to check
+     * @return prefix if found
+     */
+    private String getPrefixFromPointer(NodePointer nsPointer,
+            String namespaceURI) {
+        if (namespaceURI == null) {
+            return getPrefix(nsPointer, namespaceURI);
+        }
+        Object node = nsPointer.getNode();
+        PrefixMemo memo = prefixMemo;
+        if (memo == null || memo.pointer != nsPointer || memo.node != node) {
+            memo = new PrefixMemo(nsPointer, node);
+            prefixMemo = memo;
+        }
+        // "" stands for a URI without a prefix, which is never returned
+        String prefix = (String) memo.prefixes.get(namespaceURI);
+        if (prefix == null) {
+            prefix = getPrefix(nsPointer, namespaceURI);
+            memo.prefixes.put(namespaceURI, prefix == null ? "" : prefix);
+        }
+        return "".equals(prefix) ? null : prefix;
     }
 
     /**
@@ -164,7 +204,7 @@ public class NamespaceResolver implements Cloneable, Serializable {
      * @return String prefix if found.
      * @since JXPath 1.3
      */
-    protected synchronized String getExternallyRegisteredPrefix(String namespaceURI) {
+    protected String getExternallyRegisteredPrefix(String namespaceURI) {
         String prefix = (String) reverseMap.get(namespaceURI);
         return prefix == null && parent != null ? parent
                 .getExternallyRegisteredPrefix(namespaceURI) : prefix;
@@ -192,6 +232,7 @@ public class NamespaceResolver implements Cloneable, Serializable {
         try {
             NamespaceResolver result = (NamespaceResolver) super.clone();
             result.sealed = false;
+            result.prefixMemo = null;
             return result;
         }
         catch (CloneNotSupportedException e) {
@@ -200,4 +241,23 @@ public class NamespaceResolver implements Cloneable, Serializable {
             return null;
         }
     }
+
+    /**
+     * Prefixes found at a namespace context pointer, keyed by namespace URI.
+     */
+    private static final class PrefixMemo {
+        private final NodePointer pointer;
+        private final Object node;
+        private final ConcurrentHashMap prefixes = new ConcurrentHashMap();
+
+        /**
+         * Create a new PrefixMemo.
+         * @param pointer namespace context pointer
+         * @param node the node of the pointer
+         */
+        private PrefixMemo(NodePointer pointer, Object node) {
+            this.pointer = pointer;
+            this.node = node;
+        }
+    }
 }
@@ -21,6 +21,7 @@ import org.apache.commons.jxpath.ri.EvalContext;
 import org.apache.commons.jxpath.ri.compiler.NodeTest;
 import org.apache.commons.jxpath.ri.model.NodeIterator;
 import org.apache.commons.jxpath.ri.model.NodePointer;
+import org.apache.commons.jxpath.ri.model.NodeValueIterator;
 
 /**
  * EvalContext that can walk the "child::", "following-sibling::" and
@@ -57,6 +58,16 @@ public class ChildContext extends EvalContext {
         return iterator == null ? null : iterator.getNodePointer();
     }
 
+    public Object getCurrentNodeValue() {
+        if (iterator instanceof NodeValueIterator) {
+            if (position == 0 && !setPosition(1)) {
+                return null;
+            }
+            return ((NodeValueIterator) iterator).getNodeValue();
+        }
+        return super.getCurrentNodeValue();
+    }
+
     /**
      * This method is called on the last context on the path when only
      * one value is needed.  Note that this will return the whole property,
@@ -96,7 +107,7 @@ public class ChildContext extends EvalContext {
         int oldPosition = getCurrentPosition();
         super.setPosition(position);
         if (oldPosition == 0) {
-            prepare();
+            prepare(true);
         }
         return iterator == null ? false : iterator.setPosition(position);
     }
@@ -105,10 +116,26 @@ public class ChildContext extends EvalContext {
      * Allocates a PropertyIterator.
      */
     private void prepare() {
+        prepare(false);
+    }
+
+    /**
+     * Allocates a PropertyIterator.
+     * @param memoize whether the iterator may come from the pointer memo,
+     *   which does not support access to the whole collection at position 0
+     */
+    private void prepare(boolean memoize) {
         NodePointer parent = parentContext.getCurrentNodePointer();
         if (parent == null) {
             return;
         }
+        if (memoize && !startFromParentLocation && !reverse) {
+            PointerMemo memo = getRootContext().getPointerMemo();
+            if (memo != null) {
+                iterator = memo.childIterator(parent, nodeTest);
+                return;
+            }
+        }
         NodePointer useParent = startFromParentLocation ? parent.getParent() : parent;
         iterator = useParent.childIterator(nodeTest, reverse,
                 startFromParentLocation ? parent : null);
@@ -39,6 +39,7 @@ public class DescendantContext extends EvalContext {
     private Stack stack = null;
     private NodePointer currentNodePointer = null;
     private boolean includeSelf;
+    private boolean fused;
     private static final NodeTest ELEMENT_NODE_TEST =
             new NodeTypeTest(Compiler.NODE_TYPE_NODE);
 
@@ -50,9 +51,29 @@ public class DescendantContext extends EvalContext {
      */
     public DescendantContext(EvalContext parentContext, boolean includeSelf,
             NodeTest nodeTest) {
+        this(parentContext, includeSelf, nodeTest, false);
+    }
+
+    /**
+     * Create a new DescendantContext.
+     * @param parentContext parent context
+     * @param includeSelf whether to include this node
+     * @param nodeTest test
+     * @param fused whether this context replaces the pair
+     *  <code>descendant-or-self::node()/child::foo</code> over a document
+     *  tree, where both select the same nodes. If so, the results are
+     *  reported as ordered, like those of the pair.
+     */
+    public DescendantContext(EvalContext parentContext, boolean includeSelf,
+            NodeTest nodeTest, boolean fused) {
         super(parentContext);
         this.includeSelf = includeSelf;
         this.nodeTest = nodeTest;
+        this.fused = fused;
+    }
+
+    public int getDocumentOrder() {
+        return fused ? 1 : super.getDocumentOrder();
     }
 
     public boolean isChildOrderingRequired() {
@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.axes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.jxpath.Pointer;
+import org.apache.commons.jxpath.ri.Compiler;
+import org.apache.commons.jxpath.ri.compiler.NodeTest;
+import org.apache.commons.jxpath.ri.compiler.NodeTypeTest;
+import org.apache.commons.jxpath.ri.model.NodeIterator;
+import org.apache.commons.jxpath.ri.model.NodePointer;
+
+/**
+ * Walks the "descendant::" or "descendant-or-self::" axis of a node using
+ * several threads. Whenever a node has more than one non-leaf child,
+ * the subtrees of its children are searched by separate fork-join tasks,
+ * whose results are then concatenated in document order. The tasks only
+ * apply the node test of the step, so they never touch the shared state
+ * of the evaluation; steps with predicates are not searched in parallel.
+ * <p>
+ * All searches with the same parallelism share a pool with that many
+ * daemon threads, which is created when first needed.
+ * <p>
+ * The object model must support concurrent read access.
+ *
+ * @version $Revision$ $Date$
+ */
+public class ParallelDescendantSearch {
+
+    private static final NodeTest ELEMENT_NODE_TEST =
+            new NodeTypeTest(Compiler.NODE_TYPE_NODE);
+
+    /**
+     * Subtrees deeper than that are searched sequentially.
+     */
+    private static final int MAX_SPLIT_DEPTH = 16;
+
+    /**
+     * Pools by parallelism.
+     */
+    private static final Map POOLS = new HashMap();
+
+    private boolean includeSelf;
+    private NodeTest nodeTest;
+    private ForkJoinPool pool;
+
+    /**
+     * Create a new ParallelDescendantSearch.
+     * @param includeSelf whether this is "descendant-or-self::"
+     * @param nodeTest test
+     * @param parallelism number of threads searching concurrently,
+     *   greater than one
+     */
+    public ParallelDescendantSearch(boolean includeSelf, NodeTest nodeTest,
+            int parallelism) {
+        this.includeSelf = includeSelf;
+        this.nodeTest = nodeTest;
+        this.pool = getPool(parallelism);
+    }
+
+    /**
+     * Get the pool shared by all searches with the same parallelism.
+     * @param parallelism number of threads
+     * @return ForkJoinPool
+     */
+    static ForkJoinPool getPool(int parallelism) {
+        synchronized (POOLS) {
+            Integer key = Integer.valueOf(parallelism);
+            ForkJoinPool pool = (ForkJoinPool) POOLS.get(key);
+            if (pool == null) {
+                pool = new ForkJoinPool(
+                    parallelism,
+                    new DaemonThreadFactory(),
+                    null,
+                    false);
+                POOLS.put(key, pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Walks the subtree of a single node.
+     * @param pointer subtree root
+     * @param result receives the matching nodes in document order
+     * @param pending input nodes not walked yet, may be null. The set
+     *   is read concurrently and must not be modified during the walk.
+     * @param found receives the input nodes found in the subtree
+     * @return <code>false</code> if any part of the subtree was skipped
+     *   to prevent infinite recursion
+     * @see SetPathInterpreter#descendants(List, boolean, NodeTest)
+     */
+    public boolean walk(NodePointer pointer, List result,
+            Set pending, List found) {
+        if (includeSelf && accept(pointer)) {
+            result.add(pointer);
+        }
+        if (pointer.isLeaf()) {
+            return true;
+        }
+        SearchTask task = new SearchTask(pointer, null, pending, 0);
+        pool.invoke(task);
+        result.addAll(task.result);
+        found.addAll(task.found);
+        return task.complete;
+    }
+
+    /**
+     * Applies the node test to a node.
+     * @param pointer to test
+     * @return boolean
+     */
+    private boolean accept(NodePointer pointer) {
+        return pointer.testNode(nodeTest);
+    }
+
+    /**
+     * Checks if a node is reentering a bean we have already seen.
+     * @param ancestors chain of ancestor nodes
+     * @param stack List of NodeIterators walked below the ancestors
+     * @param current NodePointer
+     * @return boolean
+     */
+    private static boolean isRecursive(Ancestor ancestors, List stack,
+            NodePointer current) {
+        Object node = current.getNode();
+        for (int i = stack.size() - 1; --i >= 0;) {
+            NodeIterator it = (NodeIterator) stack.get(i);
+            Pointer pointer = it.getNodePointer();
+            if (pointer != null && pointer.getNode() == node) {
+                return true;
+            }
+        }
+        for (Ancestor a = ancestors; a != null; a = a.parent) {
+            if (a.node == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the daemon worker threads of the shared pool, so that the
+     * pool never keeps the JVM alive.
+     */
+    private static final class DaemonThreadFactory
+            implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool
+                    .defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * An immutable chain of ancestor nodes that may be shared by tasks.
+     */
+    private static final class Ancestor {
+        private final Object node;
+        private final Ancestor parent;
+
+        /**
+         * Create a new Ancestor.
+         * @param node the ancestor node
+         * @param parent the next ancestor up
+         */
+        private Ancestor(Object node, Ancestor parent) {
+            this.node = node;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Searches the descendants of a node, excluding the node itself.
+     */
+    private final class SearchTask extends RecursiveTask {
+        private static final long serialVersionUID = 8543224532108452194L;
+
+        private final NodePointer pointer;
+        private final Ancestor ancestors;
+        private final Set pending;
+        private final int depth;
+        private final List result = new ArrayList();
+        private final List found = new ArrayList();
+        private boolean complete = true;
+
+        /**
+         * Create a new SearchTask.
+         * @param pointer the parent of the nodes to search
+         * @param ancestors the node and its ancestors up to, but excluding
+         *   the root of the search; used to detect recursion
+         * @param pending input nodes not walked yet, may be null
+         * @param depth of the node below the root of the search
+         */
+        private SearchTask(NodePointer pointer, Ancestor ancestors,
+                Set pending, int depth) {
+            this.pointer = pointer;
+            this.ancestors = ancestors;
+            this.pending = pending;
+            this.depth = depth;
+        }
+
+        protected Object compute() {
+            NodeIterator it = pointer.childIterator(ELEMENT_NODE_TEST, false, null);
+            if (it == null) {
+                return null;
+            }
+            List children = new ArrayList();
+            int branches = 0;
+            for (int i = 1; it.setPosition(i); i++) {
+                NodePointer child = it.getNodePointer();
+                children.add(child);
+                if (!child.isLeaf()) {
+                    branches++;
+                }
+            }
+            boolean split = branches > 1 && depth < MAX_SPLIT_DEPTH;
+
+            // Each child takes two segments: the child itself if it matches
+            // and the task searching its subtree, if any
+            Object[] segments = split ? new Object[children.size() * 2] : null;
+            List tasks = split ? new ArrayList() : null;
+            for (int i = 0; i < children.size(); i++) {
+                NodePointer child = (NodePointer) children.get(i);
+                if (isRecursive(ancestors, Collections.EMPTY_LIST, child)) {
+                    complete = false;
+                    continue;
+                }
+                if (pending != null && pending.contains(child)) {
+                    found.add(child);
+                }
+                if (accept(child)) {
+                    add(segments, i * 2, child);
+                }
+                if (!child.isLeaf()) {
+                    Ancestor chain = new Ancestor(child.getNode(), ancestors);
+                    if (split) {
+                        SearchTask task =
+                            new SearchTask(child, chain, pending, depth + 1);
+                        segments[i * 2 + 1] = task;
+                        tasks.add(task);
+                    }
+                    else {
+                        walkSequentially(child, chain);
+                    }
+                }
+            }
+
+            if (split) {
+                invokeAll(tasks);
+                for (int i = 0; i < segments.length; i++) {
+                    if (segments[i] instanceof SearchTask) {
+                        SearchTask task = (SearchTask) segments[i];
+                        result.addAll(task.result);
+                        found.addAll(task.found);
+                        complete &= task.complete;
+                    }
+                    else if (segments[i] != null) {
+                        result.add(segments[i]);
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds a matching child either to its segment or, if the children
+         * are not searched concurrently, directly to the result.
+         * @param segments Object[], null if not splitting
+         * @param index of the segment
+         * @param child NodePointer
+         */
+        private void add(Object[] segments, int index, NodePointer child) {
+            if (segments == null) {
+                result.add(child);
+            }
+            else {
+                segments[index] = child;
+            }
+        }
+
+        /**
+         * Walks the subtree of a child the same way DescendantContext does.
+         * @param child the root of the subtree, already visited
+         * @param chain the child and its ancestors
+         */
+        private void walkSequentially(NodePointer child, Ancestor chain) {
+            List stack = new ArrayList();
+            push(stack, child);
+            while (!stack.isEmpty()) {
+                NodeIterator it = (NodeIterator) stack.get(stack.size() - 1);
+                if (it.setPosition(it.getPosition() + 1)) {
+                    NodePointer current = it.getNodePointer();
+                    if (isRecursive(chain, stack, current)) {
+                        complete = false;
+                        continue;
+                    }
+                    if (pending != null && pending.contains(current)) {
+                        found.add(current);
+                    }
+                    if (!current.isLeaf()) {
+                        push(stack, current);
+                    }
+                    if (accept(current)) {
+                        result.add(current);
+                    }
+                }
+                else {
+                    stack.remove(stack.size() - 1);
+                }
+            }
+        }
+
+        /**
+         * Pushes a child iterator for the pointer, if there is one.
+         * @param stack List of NodeIterators
+         * @param parent NodePointer
+         */
+        private void push(List stack, NodePointer parent) {
+            NodeIterator it = parent.childIterator(ELEMENT_NODE_TEST, false, null);
+            if (it != null) {
+                stack.add(it);
+            }
+        }
+    }
+}
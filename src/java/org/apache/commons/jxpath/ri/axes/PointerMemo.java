@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.axes;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.apache.commons.jxpath.ri.compiler.NodeNameTest;
+import org.apache.commons.jxpath.ri.compiler.NodeTest;
+import org.apache.commons.jxpath.ri.model.NodeIterator;
+import org.apache.commons.jxpath.ri.model.NodePointer;
+
+/**
+ * Remembers the child pointers resolved during a single evaluation, so
+ * that navigating the same step from the same node again, e.g. when
+ * a predicate like <code>[d = ../e]</code> is evaluated for many nodes,
+ * does not invoke the same getters again. Entries are keyed by the
+ * identity of the parent node and by the step; the parent pointers are
+ * compared as well, so a node reached along different paths gets
+ * children with the right parents.
+ * <p>
+ * Cached pointers are cloned before they are handed out. A memo is only
+ * correct as long as the object graph is not modified during the
+ * evaluation, which is why it has to be enabled with
+ * {@link org.apache.commons.jxpath.JXPathContext#setMemoizing(boolean)}.
+ *
+ * @version $Revision$ $Date$
+ */
+public class PointerMemo {
+
+    private IdentityHashMap entries = new IdentityHashMap();
+
+    /**
+     * Get a child iterator for the supplied parent and node test,
+     * iterating in document order from the first child. The first request
+     * for a given parent and node test collects all children.
+     * @param parent parent pointer
+     * @param nodeTest node test
+     * @return NodeIterator, or null if the parent has no child iterator
+     */
+    public NodeIterator childIterator(NodePointer parent, NodeTest nodeTest) {
+        Object node = parent.getNode();
+        if (node == null) {
+            return parent.childIterator(nodeTest, false, null);
+        }
+        Entry entry = find(node, parent, nodeTest);
+        if (entry == null) {
+            List children = null;
+            NodeIterator it = parent.childIterator(nodeTest, false, null);
+            if (it != null) {
+                children = new ArrayList();
+                for (int i = 1; it.setPosition(i); i++) {
+                    children.add(it.getNodePointer().clone());
+                }
+            }
+            entry = store(node, parent, nodeTest, children);
+        }
+        return entry.value == null ? null
+                : new MemoNodeIterator((List) entry.value);
+    }
+
+    /**
+     * Get the remembered child pointer for the supplied parent and step.
+     * @param parent parent pointer
+     * @param step the step, compared by identity
+     * @return a clone of the pointer, or <code>null</code> if not remembered
+     */
+    public NodePointer getChild(NodePointer parent, Object step) {
+        Object node = parent.getNode();
+        if (node == null) {
+            return null;
+        }
+        Entry entry = find(node, parent, step);
+        return entry == null ? null : (NodePointer) ((NodePointer) entry.value).clone();
+    }
+
+    /**
+     * Remembers the child pointer for the supplied parent and step.
+     * @param parent parent pointer
+     * @param step the step, compared by identity
+     * @param child child pointer, which the caller must not modify thereafter
+     */
+    public void putChild(NodePointer parent, Object step, NodePointer child) {
+        Object node = parent.getNode();
+        if (node != null && child != null) {
+            store(node, parent, step, child);
+        }
+    }
+
+    /**
+     * Finds an entry.
+     * @param node parent node
+     * @param parent parent pointer
+     * @param step key
+     * @return Entry or null
+     */
+    private Entry find(Object node, NodePointer parent, Object step) {
+        for (Entry e = (Entry) entries.get(node); e != null; e = e.next) {
+            if (isSameStep(e.step, step)
+                    && (e.parent == parent || e.parent.equals(parent))) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds an entry.
+     * @param node parent node
+     * @param parent parent pointer
+     * @param step key
+     * @param value to remember
+     * @return the new Entry
+     */
+    private Entry store(Object node, NodePointer parent, Object step,
+            Object value) {
+        Entry entry = new Entry((NodePointer) parent.clone(), step, value,
+                (Entry) entries.get(node));
+        entries.put(node, entry);
+        return entry;
+    }
+
+    /**
+     * Compares two steps. Node tests are compared by value, since a new
+     * NodeNameTest is allocated whenever a prefixed name is resolved.
+     * @param step1 first step
+     * @param step2 second step
+     * @return boolean
+     */
+    private static boolean isSameStep(Object step1, Object step2) {
+        if (step1 == step2) {
+            return true;
+        }
+        if (step1 instanceof NodeNameTest && step2 instanceof NodeNameTest) {
+            NodeNameTest test1 = (NodeNameTest) step1;
+            NodeNameTest test2 = (NodeNameTest) step2;
+            String ns1 = test1.getNamespaceURI();
+            String ns2 = test2.getNamespaceURI();
+            return test1.getNodeName().equals(test2.getNodeName())
+                    && (ns1 == null ? ns2 == null : ns1.equals(ns2));
+        }
+        return false;
+    }
+
+    /**
+     * A remembered result.
+     */
+    private static final class Entry {
+        private final NodePointer parent;
+        private final Object step;
+        private final Object value;
+        private final Entry next;
+
+        /**
+         * Create a new Entry.
+         * @param parent parent pointer
+         * @param step key
+         * @param value remembered value
+         * @param next next entry for the same node
+         */
+        private Entry(NodePointer parent, Object step, Object value,
+                Entry next) {
+            this.parent = parent;
+            this.step = step;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Iterates over remembered child pointers, handing out clones.
+     */
+    private static final class MemoNodeIterator implements NodeIterator {
+        private final List children;
+        private int position = 0;
+        private NodePointer current;
+
+        /**
+         * Create a new MemoNodeIterator.
+         * @param children List of NodePointers
+         */
+        private MemoNodeIterator(List children) {
+            this.children = children;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public boolean setPosition(int position) {
+            if (this.position != position) {
+                this.position = position;
+                current = null;
+            }
+            return position >= 1 && position <= children.size();
+        }
+
+        public NodePointer getNodePointer() {
+            if (position == 0) {
+                setPosition(1);
+            }
+            if (current == null && position >= 1 && position <= children.size()) {
+                current = (NodePointer) ((NodePointer) children.get(position - 1)).clone();
+            }
+            return current;
+        }
+    }
+}
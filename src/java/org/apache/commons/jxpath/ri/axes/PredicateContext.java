@@ -24,6 +24,7 @@ import org.apache.commons.jxpath.ri.compiler.NameAttributeTest;
 import org.apache.commons.jxpath.ri.model.NodePointer;
 import org.apache.commons.jxpath.ri.model.beans.PropertyOwnerPointer;
 import org.apache.commons.jxpath.ri.model.beans.PropertyPointer;
+import org.apache.commons.jxpath.util.EvaluationCounters;
 import org.apache.commons.jxpath.util.PropertyIdentifier;
 
 /**
@@ -58,6 +59,7 @@ public class PredicateContext extends EvalContext {
 			return false;
 		}
 		while (this.parentContext.nextNode()) {
+			EvaluationCounters.nodeVisited();
 			if (setupDynamicPropertyPointer()) {
 				final Object pred = this.nameTestExpression.computeValue(this.parentContext);
 				final String propertyName = InfoSetUtil.stringValue(pred);
@@ -16,6 +16,9 @@
  */
 package org.apache.commons.jxpath.ri.axes;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.apache.commons.jxpath.Function;
 import org.apache.commons.jxpath.JXPathContext;
 import org.apache.commons.jxpath.NodeSet;
@@ -35,6 +38,9 @@ public class RootContext extends EvalContext {
     private NodePointer pointer;
     private Object[] registers;
     private int availableRegister = 0;
+    private PointerMemo memo;
+    private RootContext evaluationRoot = this;
+    private volatile Map variablePointers;
     public static final Object UNKNOWN_VALUE = new Object();
     private static final int MAX_REGISTER = 4;
 
@@ -45,9 +51,22 @@ public class RootContext extends EvalContext {
      */
     public RootContext(JXPathContextReferenceImpl jxpathContext,
             NodePointer pointer) {
+        this(jxpathContext, pointer,
+                jxpathContext.isMemoizing() ? new PointerMemo() : null);
+    }
+
+    /**
+     * Create a new RootContext.
+     * @param jxpathContext context
+     * @param pointer pointer
+     * @param memo pointer memo of the evaluation, may be null
+     */
+    public RootContext(JXPathContextReferenceImpl jxpathContext,
+            NodePointer pointer, PointerMemo memo) {
         super(null);
         this.jxpathContext = jxpathContext;
         this.pointer = pointer;
+        this.memo = memo;
         if (pointer != null) {
             pointer.setNamespaceResolver(jxpathContext.getNamespaceResolver());
         }
@@ -62,11 +81,45 @@ public class RootContext extends EvalContext {
     }
 
     /**
-     * Get absolute root context
+     * Get absolute root context.  It is part of this evaluation: it has
+     * a root context of its own, which shares the pointer memo and the
+     * variable lookups of this one.
      * @return EvalContext
      */
     public EvalContext getAbsoluteRootContext() {
-        return jxpathContext.getAbsoluteRootContext();
+        NodePointer absoluteRoot = jxpathContext.getAbsoluteRootPointer();
+        if (pointer != null && pointer == absoluteRoot) {
+            return new InitialContext(this);
+        }
+        return new InitialContext(
+            share(new RootContext(jxpathContext, absoluteRoot, memo)));
+    }
+
+    /**
+     * Prepare this context for another evaluation, forgetting everything
+     * remembered during the previous one.
+     * @param pointer pointer
+     * @param memo pointer memo of the evaluation, may be null
+     */
+    public void rebind(NodePointer pointer, PointerMemo memo) {
+        this.pointer = pointer;
+        this.memo = memo;
+        registers = null;
+        availableRegister = 0;
+        evaluationRoot = this;
+        variablePointers = null;
+        if (pointer != null) {
+            pointer.setNamespaceResolver(jxpathContext.getNamespaceResolver());
+        }
+    }
+
+    /**
+     * Get the pointer memo shared by all contexts of this evaluation.
+     * @return PointerMemo, or <code>null</code> if memoization is disabled
+     * @see JXPathContext#setMemoizing(boolean)
+     */
+    public PointerMemo getPointerMemo() {
+        return memo;
     }
 
     public NodePointer getCurrentNodePointer() {
@@ -101,7 +154,7 @@ public class RootContext extends EvalContext {
     public EvalContext getConstantContext(Object constant) {
         if (constant instanceof NodeSet) {
             return new NodeSetContext(
-                new RootContext(jxpathContext, null),
+                share(new RootContext(jxpathContext, null, memo)),
                 (NodeSet) constant);
         }
 
@@ -115,7 +168,8 @@ public class RootContext extends EvalContext {
                     constant,
                     null);
         }
-        return new InitialContext(new RootContext(jxpathContext, pointer));
+        return new InitialContext(
+                share(new RootContext(jxpathContext, pointer, memo)));
     }
 
     /**
@@ -125,9 +179,52 @@ public class RootContext extends EvalContext {
      */
     public EvalContext getVariableContext(QName variableName) {
         return new InitialContext(
-            new RootContext(
+            share(new RootContext(
                 jxpathContext,
-                jxpathContext.getVariablePointer(variableName)));
+                getVariablePointer(variableName),
+                memo)));
+    }
+
+    /**
+     * Get a pointer to a variable.  A declared variable is looked up only
+     * once per evaluation, every reference to it gets a copy of the pointer;
+     * where the variables are {@link org.apache.commons.jxpath.IndexedVariables
+     * IndexedVariables}, the pointer reads the value by slot.
+     * @param variableName variable name
+     * @return NodePointer
+     */
+    private NodePointer getVariablePointer(QName variableName) {
+        Map pointers = evaluationRoot.variablePointers;
+        if (pointers == null) {
+            synchronized (evaluationRoot) {
+                pointers = evaluationRoot.variablePointers;
+                if (pointers == null) {
+                    pointers = new ConcurrentHashMap();
+                    evaluationRoot.variablePointers = pointers;
+                }
+            }
+        }
+        NodePointer pointer = (NodePointer) pointers.get(variableName);
+        if (pointer == null) {
+            pointer = jxpathContext.getVariablePointer(variableName);
+            if (!pointer.isActual()) {
+                // May be declared later, e.g. by createPath()
+                return pointer;
+            }
+            pointers.put(variableName, pointer);
+        }
+        return (NodePointer) pointer.clone();
+    }
+
+    /**
+     * Make a nested root context share the variable lookups of this
+     * evaluation.
+     * @param context nested root context
+     * @return <code>context</code>
+     */
+    private RootContext share(RootContext context) {
+        context.evaluationRoot = evaluationRoot;
+        return context;
     }
 
     /**
@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.axes;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.jxpath.BasicNodeSet;
+import org.apache.commons.jxpath.Pointer;
+import org.apache.commons.jxpath.ri.Compiler;
+import org.apache.commons.jxpath.ri.EvalContext;
+import org.apache.commons.jxpath.ri.compiler.NodeTest;
+import org.apache.commons.jxpath.ri.compiler.NodeTypeTest;
+import org.apache.commons.jxpath.ri.model.NodeIterator;
+import org.apache.commons.jxpath.ri.model.NodePointer;
+
+/**
+ * Helper methods for the set-at-a-time evaluation of location paths.
+ * Instead of chaining lazy EvalContexts, each step consumes the complete,
+ * duplicate-free node list produced by the previous step and produces
+ * another such list in document order.
+ * <p>
+ * The main benefit is for descendant steps: if a node of the input list
+ * is itself a descendant of another input node, its subtree has already
+ * been walked and is not walked again. Thus, for <code>//a//b</code>,
+ * nested <code>a</code> elements no longer cause the same <code>b</code>
+ * nodes to be visited repeatedly.
+ *
+ * @version $Revision$ $Date$
+ */
+public class SetPathInterpreter {
+
+    private static final NodeTest ELEMENT_NODE_TEST =
+            new NodeTypeTest(Compiler.NODE_TYPE_NODE);
+
+    /**
+     * Collects all nodes of the supplied context, for all positions
+     * of its parent contexts.
+     * @param context EvalContext
+     * @param clone whether the pointers should be cloned, which is needed
+     *   for contexts like InitialContext that reuse a single pointer
+     * @return List of NodePointers
+     */
+    public static List collectNodes(EvalContext context, boolean clone) {
+        List list = new ArrayList();
+        while (context.nextSet()) {
+            while (context.nextNode()) {
+                NodePointer pointer = context.getCurrentNodePointer();
+                list.add(clone ? pointer.clone() : pointer);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Wraps a list of pointers into a context that can be used
+     * as the parent context of a step or as the result of a path.
+     * @param context EvalContext providing access to the root context
+     * @param nodes List of NodePointers
+     * @return EvalContext
+     */
+    public static EvalContext createNodeSetContext(EvalContext context, List nodes) {
+        BasicNodeSet nodeSet = new BasicNodeSet();
+        for (int i = 0; i < nodes.size(); i++) {
+            nodeSet.add((Pointer) nodes.get(i));
+        }
+        return new NodeSetContext(context.getRootContext(), nodeSet);
+    }
+
+    /**
+     * Removes duplicates from the list, keeping the first occurrence.
+     * Duplicates are recognized by NodePointer.equals() rather than by the
+     * identity of the nodes: in a bean graph, the same object reached along
+     * two paths is two distinct nodes.
+     * @param nodes List of NodePointers
+     * @return List without duplicates
+     */
+    public static List distinct(List nodes) {
+        Set set = new HashSet();
+        List list = new ArrayList(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            NodePointer pointer = (NodePointer) nodes.get(i);
+            if (set.add(pointer)) {
+                list.add(pointer);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Sorts the list in document order.
+     * <p>
+     * NodePointer.compareTo() is not a consistent total order in every
+     * object graph: pointers into a DOM document are equal whenever they
+     * point to the same node, so if a bean graph reaches a document along
+     * two paths, nodes on either path may compare as equal to a node that
+     * other nodes order differently. Collections.sort() may reject such
+     * a list with an IllegalArgumentException, so this is a plain merge
+     * sort, which keeps the nodes it cannot order in a deterministic order.
+     * </p>
+     * @param nodes List of NodePointers
+     */
+    public static void sort(List nodes) {
+        Object[] array = nodes.toArray();
+        mergeSort(array, (Object[]) array.clone(), 0, array.length);
+        for (int i = 0; i < array.length; i++) {
+            nodes.set(i, array[i]);
+        }
+    }
+
+    /**
+     * Sorts a range of pointers in place.
+     * @param array to sort
+     * @param buffer copy of the range of <code>array</code>
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     */
+    private static void mergeSort(Object[] array, Object[] buffer,
+            int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        // The sorted halves are written to the buffer, then merged back
+        mergeSort(buffer, array, from, middle);
+        mergeSort(buffer, array, middle, to);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j >= to || i < middle
+                    && ((NodePointer) buffer[i]).compareTo(buffer[j]) <= 0) {
+                array[k] = buffer[i++];
+            }
+            else {
+                array[k] = buffer[j++];
+            }
+        }
+    }
+
+    /**
+     * Walks the "descendant::" or "descendant-or-self::" axis of all nodes
+     * of a list that is free of duplicates and sorted in document order.
+     * Input nodes encountered while walking the subtree of a preceding
+     * input node are not walked again.
+     * @param nodes List of NodePointers
+     * @param includeSelf whether this is "descendant-or-self::"
+     * @param nodeTest test
+     * @return List of NodePointers, free of duplicates and in document order
+     */
+    public static List descendants(List nodes, boolean includeSelf,
+            NodeTest nodeTest) {
+        return descendants(nodes, includeSelf, nodeTest, null);
+    }
+
+    /**
+     * Walks the "descendant::" or "descendant-or-self::" axis like
+     * {@link #descendants(List, boolean, NodeTest)}, using the
+     * supplied search to walk each subtree.
+     * @param nodes List of NodePointers
+     * @param includeSelf whether this is "descendant-or-self::"
+     * @param nodeTest test
+     * @param search parallel search, or null to walk sequentially
+     * @return List of NodePointers, free of duplicates and in document order
+     */
+    public static List descendants(List nodes, boolean includeSelf,
+            NodeTest nodeTest, ParallelDescendantSearch search) {
+        List result = new ArrayList();
+        if (nodes.size() == 1) {
+            NodePointer pointer = (NodePointer) nodes.get(0);
+            boolean complete = search != null
+                    ? search.walk(pointer, result, null, new ArrayList())
+                    : walk(pointer, includeSelf, nodeTest, result,
+                            null, null);
+            if (!complete) {
+                result = distinct(result);
+                sort(result);
+            }
+            return result;
+        }
+
+        Set covered = new HashSet();
+        Set pending = new HashSet();
+        for (int i = 0; i < nodes.size(); i++) {
+            pending.add((NodePointer) nodes.get(i));
+        }
+
+        boolean ordered = true;
+        List found = new ArrayList();
+        for (int i = 0; i < nodes.size(); i++) {
+            NodePointer pointer = (NodePointer) nodes.get(i);
+            if (covered.contains(pointer)) {
+                continue;
+            }
+            pending.remove(pointer);
+            found.clear();
+            Set remaining = pending.isEmpty() ? null : pending;
+            boolean complete = search != null
+                    ? search.walk(pointer, result, remaining, found)
+                    : walk(pointer, includeSelf, nodeTest, result,
+                            remaining, found);
+            if (complete) {
+                for (int j = 0; j < found.size(); j++) {
+                    NodePointer input = (NodePointer) found.get(j);
+                    covered.add(input);
+                    pending.remove(input);
+                }
+            }
+            else {
+                // The walk was cut short to prevent infinite recursion,
+                // so nested input nodes need to be walked on their own
+                ordered = false;
+            }
+        }
+
+        if (!ordered) {
+            result = distinct(result);
+            sort(result);
+        }
+        return result;
+    }
+
+    /**
+     * Walks the subtree of a single node the same way DescendantContext does.
+     * @param pointer subtree root
+     * @param includeSelf whether the root itself is tested
+     * @param nodeTest test
+     * @param result receives the matching nodes
+     * @param pending input nodes not walked yet, may be null
+     * @param found receives the input nodes found in the subtree
+     * @return <code>false</code> if any part of the subtree was skipped
+     *   to prevent infinite recursion
+     */
+    private static boolean walk(NodePointer pointer, boolean includeSelf,
+            NodeTest nodeTest, List result, Set pending, List found) {
+        boolean complete = true;
+        List stack = new ArrayList();
+        if (!pointer.isLeaf()) {
+            push(stack, pointer);
+        }
+        if (includeSelf && pointer.testNode(nodeTest)) {
+            result.add(pointer);
+        }
+
+        while (!stack.isEmpty()) {
+            NodeIterator it = (NodeIterator) stack.get(stack.size() - 1);
+            if (it.setPosition(it.getPosition() + 1)) {
+                NodePointer current = it.getNodePointer();
+                if (isRecursive(stack, current)) {
+                    complete = false;
+                    continue;
+                }
+                if (pending != null && pending.contains(current)) {
+                    found.add(current);
+                }
+                if (!current.isLeaf()) {
+                    push(stack, current);
+                }
+                if (current.testNode(nodeTest)) {
+                    result.add(current);
+                }
+            }
+            else {
+                stack.remove(stack.size() - 1);
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Pushes a child iterator for the pointer, if there is one.
+     * @param stack List of NodeIterators
+     * @param pointer parent
+     */
+    private static void push(List stack, NodePointer pointer) {
+        NodeIterator it = pointer.childIterator(ELEMENT_NODE_TEST, false, null);
+        if (it != null) {
+            stack.add(it);
+        }
+    }
+
+    /**
+     * Checks if we are reentering a bean we have already seen.
+     * @param stack List of NodeIterators
+     * @param current NodePointer
+     * @return boolean
+     */
+    private static boolean isRecursive(List stack, NodePointer current) {
+        Object node = current.getNode();
+        for (int i = stack.size() - 1; --i >= 0;) {
+            NodeIterator it = (NodeIterator) stack.get(i);
+            Pointer pointer = it.getNodePointer();
+            if (pointer != null && pointer.getNode() == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -18,7 +18,10 @@ package org.apache.commons.jxpath.ri.axes;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.jxpath.JXPathException;
 import org.apache.commons.jxpath.ri.Compiler;
@@ -84,6 +87,22 @@ public class SimplePathInterpreter {
         return pointer;
     }
 
+    /**
+     * Interpret the steps of a simple path starting with the step
+     * <code>currentStep</code>, where <code>parent</code> is the result
+     * of the preceding steps.
+     * @param context evaluation context
+     * @param parent parent pointer
+     * @param steps path steps
+     * @param currentStep step number
+     * @return NodePointer
+     */
+    public static NodePointer interpretSimpleLocationPath(
+            EvalContext context, NodePointer parent, Step[] steps,
+            int currentStep) {
+        return doStep(context, parent, steps, currentStep);
+    }
+
     /**
      * Interpret the steps of a simple expression path that
      * starts with the given root, which is the result of evaluation
@@ -109,6 +128,124 @@ public class SimplePathInterpreter {
         return pointer;
     }
 
+    /**
+     * Interpret several simple paths that start with the same root.
+     * The paths are arranged in a prefix tree: a leading
+     * <code>child::name</code> step shared by several paths is evaluated
+     * once, as long as it leads to a single actual property of a bean
+     * or map, and the remaining steps of those paths are evaluated
+     * starting from the resulting pointer. Otherwise, the paths are
+     * evaluated individually, so the results are exactly those of
+     * {@link #interpretSimpleLocationPath(EvalContext, NodePointer, Step[])}.
+     * @param context evaluation context
+     * @param root root pointer
+     * @param paths the steps of each path
+     * @return NodePointer[] the result for each path
+     */
+    public static NodePointer[] interpretSimpleLocationPaths(
+            EvalContext context, NodePointer root, Step[][] paths) {
+        NodePointer[] result = new NodePointer[paths.length];
+        List indices = new ArrayList(paths.length);
+        for (int i = 0; i < paths.length; i++) {
+            indices.add(Integer.valueOf(i));
+        }
+        doSharedStep(context, root, paths, indices, 0, result);
+        return result;
+    }
+
+    /**
+     * Evaluates the step <code>currentStep</code> of the specified paths,
+     * all of which have the same preceding steps.
+     * @param context evaluation context
+     * @param parent parent pointer
+     * @param paths the steps of all paths
+     * @param indices List of Integer indices of the paths to evaluate
+     * @param currentStep step number
+     * @param result receives the result for each path
+     */
+    private static void doSharedStep(
+            EvalContext context, NodePointer parent, Step[][] paths,
+            List indices, int currentStep, NodePointer[] result) {
+        Map groups = new LinkedHashMap();
+        for (int i = 0; i < indices.size(); i++) {
+            Integer index = (Integer) indices.get(i);
+            Step[] steps = paths[index.intValue()];
+            if (currentStep < steps.length - 1
+                    && isShareableStep(steps[currentStep])) {
+                String key = steps[currentStep].toString();
+                List group = (List) groups.get(key);
+                if (group == null) {
+                    group = new ArrayList();
+                    groups.put(key, group);
+                }
+                group.add(index);
+            }
+            else {
+                result[index.intValue()] =
+                    doStep(context, parent, steps, currentStep);
+            }
+        }
+
+        for (Iterator it = groups.values().iterator(); it.hasNext();) {
+            List group = (List) it.next();
+            NodePointer child = null;
+            if (group.size() > 1) {
+                Integer first = (Integer) group.get(0);
+                child = createSharedChildPointer(
+                        parent, paths[first.intValue()][currentStep]);
+            }
+            if (child != null) {
+                doSharedStep(
+                    context, child, paths, group, currentStep + 1, result);
+            }
+            else {
+                for (int i = 0; i < group.size(); i++) {
+                    int index = ((Integer) group.get(i)).intValue();
+                    result[index] =
+                        doStep(context, parent, paths[index], currentStep);
+                }
+            }
+        }
+    }
+
+    /**
+     * Learn whether a step can be shared by several paths.
+     * @param step to check
+     * @return boolean
+     */
+    private static boolean isShareableStep(Step step) {
+        Expression[] predicates = step.getPredicates();
+        return step.getAxis() == Compiler.AXIS_CHILD
+            && (predicates == null || predicates.length == 0);
+    }
+
+    /**
+     * Creates the child pointer for a step that does not depend on the
+     * steps that follow it, i.e. a step that yields a single actual
+     * property of a property owner. This is the case in which
+     * {@link #doStepNoPredicatesPropertyOwner} continues with the
+     * next step without any search.
+     * @param parent parent pointer
+     * @param step current step
+     * @return NodePointer or <code>null</code> if the step
+     * cannot be shared
+     */
+    private static NodePointer createSharedChildPointer(
+            NodePointer parent, Step step) {
+        parent = valuePointer(parent);
+        if (!(parent instanceof PropertyOwnerPointer)) {
+            return null;
+        }
+        NodePointer childPointer =
+            createChildPointerForStep((PropertyOwnerPointer) parent, step);
+        if (childPointer == null
+                || !childPointer.isActual()
+                || childPointer.isCollection()) {
+            return null;
+        }
+        return childPointer;
+    }
+
     /**
      * Recursive evaluation of a path. The general plan is:
      * Look at the current step,
@@ -197,7 +334,7 @@ public class SimplePathInterpreter {
                 Step[] steps, int currentStep) {
         Step step = steps[currentStep];
         NodePointer childPointer =
-            createChildPointerForStep(parentPointer, step);
+            createChildPointerForStep(context, parentPointer, step);
 
         if (childPointer == null) {
             return null;
@@ -310,7 +447,7 @@ public class SimplePathInterpreter {
         Expression[] predicates = step.getPredicates();
 
         NodePointer childPointer =
-            createChildPointerForStep(parentPointer, step);
+            createChildPointerForStep(context, parentPointer, step);
         if (!childPointer.isActual()) {
             // Property does not exist - return a null pointer
             return createNullPointer(
@@ -330,6 +467,34 @@ public class SimplePathInterpreter {
             0);
     }
 
+    /**
+     * Create the child pointer for a given step, using the pointer memo
+     * of the evaluation if there is one.
+     * @param context evaluation context
+     * @param parentPointer parent pointer
+     * @param step associated step
+     * @return NodePointer
+     */
+    private static NodePointer createChildPointerForStep(
+                EvalContext context, PropertyOwnerPointer parentPointer,
+                Step step) {
+        PointerMemo memo = context.getRootContext().getPointerMemo();
+        if (memo == null) {
+            return createChildPointerForStep(parentPointer, step);
+        }
+        NodePointer childPointer = memo.getChild(parentPointer, step);
+        if (childPointer == null) {
+            childPointer = createChildPointerForStep(parentPointer, step);
+            if (childPointer != null && childPointer != parentPointer) {
+                // Resolve the property before the pointer is remembered
+                childPointer.isActual();
+                memo.putChild(parentPointer, step, childPointer);
+                childPointer = (NodePointer) childPointer.clone();
+            }
+        }
+        return childPointer;
+    }
+
     /**
      * Create the child pointer for a given step.
      * @param parentPointer parent pointer
@@ -0,0 +1,1057 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.axes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.jxpath.BasicNodeSet;
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathException;
+import org.apache.commons.jxpath.ri.Compiler;
+import org.apache.commons.jxpath.ri.EvalContext;
+import org.apache.commons.jxpath.ri.JXPathContextReferenceImpl;
+import org.apache.commons.jxpath.ri.QName;
+import org.apache.commons.jxpath.ri.compiler.Constant;
+import org.apache.commons.jxpath.ri.compiler.CoreFunction;
+import org.apache.commons.jxpath.ri.compiler.CoreOperation;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationAdd;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationDivide;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationEqual;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationGreaterThan;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationGreaterThanOrEqual;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationLessThan;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationLessThanOrEqual;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationMod;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationMultiply;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationNegate;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationNotEqual;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationSubtract;
+import org.apache.commons.jxpath.ri.compiler.Expression;
+import org.apache.commons.jxpath.ri.compiler.LocationPath;
+import org.apache.commons.jxpath.ri.compiler.NodeNameTest;
+import org.apache.commons.jxpath.ri.compiler.NodeTest;
+import org.apache.commons.jxpath.ri.compiler.NodeTypeTest;
+import org.apache.commons.jxpath.ri.compiler.Operation;
+import org.apache.commons.jxpath.ri.compiler.Step;
+import org.apache.commons.jxpath.ri.compiler.VariableReference;
+import org.apache.commons.jxpath.ri.model.NodePointer;
+import org.apache.commons.jxpath.ri.model.dom.DOMNodePointer;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Evaluates a subset of location paths directly over an
+ * {@link XMLStreamReader}, without building a tree. The subset consists of
+ * paths whose steps use the child and descendant axes, including the
+ * abbreviation <code>//</code>, optionally followed by a final attribute
+ * step. Predicates may test the attributes of the
+ * element, e.g. <code>[@id = $id]</code>, or its position among its
+ * siblings, e.g. <code>[3]</code> or <code>[position() &lt; 3]</code>;
+ * positional predicates are not supported on the descendant axis.
+ * <p>
+ * The document is read forward only. The interpreter keeps a frame for
+ * each open element, recording which steps the element has matched, so
+ * the memory used does not depend on the size of the document, except
+ * for the string values of matching elements that are still open.
+ * Matches are returned as string values, computed the same way as by
+ * the DOM model, in document order as soon as they are complete.
+ * Relative paths are evaluated from the document node as well.
+ * <p>
+ * Text nodes cannot be selected: a reader may report a CDATA section and
+ * the text around it as one event, where DOM has several text nodes. For
+ * the same reason, string values only match those of the DOM model when
+ * the text next to a CDATA section needs no trimming, unless the reader
+ * reports CDATA sections separately.
+ * <p>
+ * Prefixes in name tests are resolved with the namespaces registered with
+ * the JXPathContext or, failing that, with the namespace declarations
+ * in scope at the root element of the stream.
+ *
+ * @version $Revision$ $Date$
+ */
+public class StreamingPathInterpreter {
+
+    /**
+     * The steps matched by a frame are kept as the bits of a long;
+     * bit 0 stands for the document node.
+     */
+    private static final int MAX_STEPS = 63;
+
+    private static final int CHILD = 0;
+    private static final int DESCENDANT = 1;
+    private static final int DESCENDANT_OR_SELF = 2;
+    private static final int ATTRIBUTE = 3;
+
+    private static final int EQUAL = 0;
+    private static final int NOT_EQUAL = 1;
+    private static final int LESS_THAN = 2;
+    private static final int LESS_THAN_OR_EQUAL = 3;
+    private static final int GREATER_THAN = 4;
+    private static final int GREATER_THAN_OR_EQUAL = 5;
+
+    private JXPathContextReferenceImpl context;
+    private StreamStep[] steps;
+    private String[] prefixes;
+    private String[] namespaceURIs;
+    private List predicatePrefixes;
+
+    /**
+     * Create a new StreamingPathInterpreter.
+     * @param context JXPathContext providing namespaces, variables and
+     *   functions to the predicates; may be null
+     * @param expression to evaluate
+     * @throws JXPathException if the expression is not streamable
+     */
+    public StreamingPathInterpreter(JXPathContext context,
+            Expression expression) {
+        steps = analyze(expression);
+        if (steps == null) {
+            throw new JXPathException("Expression cannot be evaluated "
+                    + "over a stream: " + expression);
+        }
+        this.context = context instanceof JXPathContextReferenceImpl
+                ? (JXPathContextReferenceImpl) context
+                : new JXPathContextReferenceImpl(context, null, null);
+
+        prefixes = new String[steps.length];
+        namespaceURIs = new String[steps.length];
+        predicatePrefixes = new ArrayList();
+        for (int i = 0; i < steps.length; i++) {
+            if (steps[i].nodeTest instanceof NodeNameTest) {
+                String prefix = ((NodeNameTest) steps[i].nodeTest)
+                        .getNodeName().getPrefix();
+                if (prefix != null) {
+                    prefixes[i] = prefix;
+                    namespaceURIs[i] = this.context.getNamespaceURI(prefix);
+                }
+            }
+            for (int j = 0; j < steps[i].predicates.length; j++) {
+                Expression predicate = steps[i].predicates[j].expression;
+                if (predicate != null) {
+                    collectPrefixes(predicate, predicatePrefixes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Learn whether the expression falls into the subset that can be
+     * evaluated over a stream.
+     * @param expression to check
+     * @return boolean
+     */
+    public static boolean isStreamable(Expression expression) {
+        return analyze(expression) != null;
+    }
+
+    /**
+     * Evaluates the path over a stream. If the reader is positioned on
+     * a start element, the path is evaluated over that element as if it
+     * were the root element of a document, and the reader is left on
+     * the matching end element. Otherwise the rest of the document is read.
+     * The reader is advanced only as far as needed to produce the next
+     * value.
+     * @param reader namespace aware XMLStreamReader
+     * @return Iterator of the string values of the matching nodes
+     */
+    public Iterator iterate(XMLStreamReader reader) {
+        return new StreamIterator(reader);
+    }
+
+    /**
+     * Translates a location path into stream steps.
+     * @param expression to translate
+     * @return StreamStep[], or null if the expression is not streamable
+     */
+    private static StreamStep[] analyze(Expression expression) {
+        if (!(expression instanceof LocationPath)) {
+            return null;
+        }
+        Step[] pathSteps = ((LocationPath) expression).getSteps();
+        List list = new ArrayList();
+        for (int i = 0; i < pathSteps.length; i++) {
+            StreamStep step = analyze(pathSteps[i]);
+            if (step == null) {
+                return null;
+            }
+            if (step.kind >= 0) {
+                list.add(step);
+            }
+        }
+        int count = list.size();
+        if (count == 0 || count > MAX_STEPS) {
+            return null;
+        }
+        // A final "node()" would select text nodes as well
+        StreamStep last = (StreamStep) list.get(count - 1);
+        if (last.kind == DESCENDANT_OR_SELF
+                || last.kind != ATTRIBUTE
+                    && !(last.nodeTest instanceof NodeNameTest)) {
+            return null;
+        }
+        for (int i = 0; i < count - 1; i++) {
+            if (((StreamStep) list.get(i)).kind == ATTRIBUTE) {
+                return null;
+            }
+        }
+        return (StreamStep[]) list.toArray(new StreamStep[count]);
+    }
+
+    /**
+     * Translates a single step.
+     * @param step to translate
+     * @return StreamStep, with a negative kind for "self::node()",
+     *   or null if the step is not streamable
+     */
+    private static StreamStep analyze(Step step) {
+        NodeTest nodeTest = step.getNodeTest();
+        boolean nameTest = nodeTest instanceof NodeNameTest;
+        int type = nodeTest instanceof NodeTypeTest
+                ? ((NodeTypeTest) nodeTest).getNodeType() : -1;
+        Expression[] predicates = step.getPredicates();
+        int predicateCount = predicates == null ? 0 : predicates.length;
+
+        int kind;
+        switch (step.getAxis()) {
+            case Compiler.AXIS_SELF:
+                return type == Compiler.NODE_TYPE_NODE && predicateCount == 0
+                        ? new StreamStep(-1, nodeTest, new StreamPredicate[0])
+                        : null;
+            case Compiler.AXIS_CHILD:
+                kind = CHILD;
+                break;
+            case Compiler.AXIS_DESCENDANT:
+                kind = DESCENDANT;
+                break;
+            case Compiler.AXIS_DESCENDANT_OR_SELF:
+                kind = DESCENDANT_OR_SELF;
+                break;
+            case Compiler.AXIS_ATTRIBUTE:
+                kind = ATTRIBUTE;
+                break;
+            default:
+                return null;
+        }
+        if (kind == DESCENDANT_OR_SELF || kind == ATTRIBUTE) {
+            if (predicateCount != 0
+                    || kind == DESCENDANT_OR_SELF
+                        && type != Compiler.NODE_TYPE_NODE
+                    || kind == ATTRIBUTE && !nameTest) {
+                return null;
+            }
+        }
+        else if (!nameTest && type != Compiler.NODE_TYPE_NODE) {
+            return null;
+        }
+
+        StreamPredicate[] streamPredicates = new StreamPredicate[predicateCount];
+        for (int i = 0; i < predicateCount; i++) {
+            StreamPredicate predicate = positionalPredicate(predicates[i]);
+            if (predicate != null) {
+                // Positions would have to count text nodes as well
+                if (kind != CHILD || !nameTest) {
+                    return null;
+                }
+            }
+            else if (isAttributePredicate(predicates[i], true)) {
+                predicate = new StreamPredicate(predicates[i], 0, 0);
+            }
+            else {
+                return null;
+            }
+            streamPredicates[i] = predicate;
+        }
+        return new StreamStep(kind, nodeTest, streamPredicates);
+    }
+
+    /**
+     * Recognizes the predicates <code>[n]</code> and
+     * <code>[position() op n]</code>, where n is a number.
+     * @param expression predicate
+     * @return StreamPredicate or null
+     */
+    private static StreamPredicate positionalPredicate(Expression expression) {
+        if (expression instanceof Constant) {
+            Object value = expression.computeValue(null);
+            return value instanceof Number ? new StreamPredicate(null, EQUAL,
+                    ((Number) value).doubleValue()) : null;
+        }
+        int operator;
+        if (expression instanceof CoreOperationEqual) {
+            operator = EQUAL;
+        }
+        else if (expression instanceof CoreOperationNotEqual) {
+            operator = NOT_EQUAL;
+        }
+        else if (expression instanceof CoreOperationLessThan) {
+            operator = LESS_THAN;
+        }
+        else if (expression instanceof CoreOperationLessThanOrEqual) {
+            operator = LESS_THAN_OR_EQUAL;
+        }
+        else if (expression instanceof CoreOperationGreaterThan) {
+            operator = GREATER_THAN;
+        }
+        else if (expression instanceof CoreOperationGreaterThanOrEqual) {
+            operator = GREATER_THAN_OR_EQUAL;
+        }
+        else {
+            return null;
+        }
+        Expression[] args = ((CoreOperation) expression).getArguments();
+        Object value;
+        if (isPosition(args[0]) && args[1] instanceof Constant) {
+            value = args[1].computeValue(null);
+        }
+        else if (isPosition(args[1]) && args[0] instanceof Constant) {
+            value = args[0].computeValue(null);
+            switch (operator) {
+                case LESS_THAN:
+                    operator = GREATER_THAN;
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    operator = GREATER_THAN_OR_EQUAL;
+                    break;
+                case GREATER_THAN:
+                    operator = LESS_THAN;
+                    break;
+                case GREATER_THAN_OR_EQUAL:
+                    operator = LESS_THAN_OR_EQUAL;
+                    break;
+                default:
+                    break;
+            }
+        }
+        else {
+            return null;
+        }
+        return value instanceof Number ? new StreamPredicate(null, operator,
+                ((Number) value).doubleValue()) : null;
+    }
+
+    /**
+     * Learn whether an expression is a call of <code>position()</code>.
+     * @param expression to check
+     * @return boolean
+     */
+    private static boolean isPosition(Expression expression) {
+        return expression instanceof CoreFunction
+                && ((CoreFunction) expression).getFunctionCode()
+                        == Compiler.FUNCTION_POSITION;
+    }
+
+    /**
+     * Learn whether a predicate only depends on the attributes and the
+     * name of the element it is applied to, and does not evaluate to
+     * a number, which would make it a positional predicate.
+     * @param expression predicate or part of it
+     * @param top whether this is the whole predicate
+     * @return boolean
+     */
+    private static boolean isAttributePredicate(Expression expression,
+            boolean top) {
+        if (expression instanceof Constant) {
+            return !top || !(expression.computeValue(null) instanceof Number);
+        }
+        if (expression instanceof VariableReference) {
+            return !top;
+        }
+        if (expression instanceof LocationPath) {
+            LocationPath path = (LocationPath) expression;
+            Step[] pathSteps = path.getSteps();
+            return !path.isAbsolute() && pathSteps.length == 1
+                    && pathSteps[0].getAxis() == Compiler.AXIS_ATTRIBUTE
+                    && pathSteps[0].getNodeTest() instanceof NodeNameTest
+                    && (pathSteps[0].getPredicates() == null
+                        || pathSteps[0].getPredicates().length == 0);
+        }
+        if (expression instanceof CoreFunction) {
+            CoreFunction function = (CoreFunction) expression;
+            switch (function.getFunctionCode()) {
+                case Compiler.FUNCTION_LAST:
+                case Compiler.FUNCTION_POSITION:
+                case Compiler.FUNCTION_ID:
+                case Compiler.FUNCTION_LANG:
+                case Compiler.FUNCTION_KEY:
+                    return false;
+                case Compiler.FUNCTION_COUNT:
+                case Compiler.FUNCTION_SUM:
+                case Compiler.FUNCTION_FLOOR:
+                case Compiler.FUNCTION_CEILING:
+                case Compiler.FUNCTION_ROUND:
+                    if (top) {
+                        return false;
+                    }
+                    break;
+                case Compiler.FUNCTION_NUMBER:
+                case Compiler.FUNCTION_STRING_LENGTH:
+                    // Without arguments these use the string value
+                    // of the element, not known yet
+                    if (top || function.getArgumentCount() == 0) {
+                        return false;
+                    }
+                    break;
+                case Compiler.FUNCTION_STRING:
+                case Compiler.FUNCTION_NORMALIZE_SPACE:
+                    if (function.getArgumentCount() == 0) {
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return areAttributePredicates(function.getArguments());
+        }
+        if (expression instanceof CoreOperation) {
+            if (top && (expression instanceof CoreOperationAdd
+                    || expression instanceof CoreOperationSubtract
+                    || expression instanceof CoreOperationMultiply
+                    || expression instanceof CoreOperationDivide
+                    || expression instanceof CoreOperationMod
+                    || expression instanceof CoreOperationNegate)) {
+                return false;
+            }
+            return areAttributePredicates(
+                    ((CoreOperation) expression).getArguments());
+        }
+        return false;
+    }
+
+    /**
+     * Checks the arguments of an operation.
+     * @param args Expression[], may be null
+     * @return boolean
+     * @see #isAttributePredicate(Expression, boolean)
+     */
+    private static boolean areAttributePredicates(Expression[] args) {
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                if (!isAttributePredicate(args[i], false)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the prefixes of the attribute names in a predicate.
+     * @param expression predicate or part of it
+     * @param result List of prefixes
+     */
+    private static void collectPrefixes(Expression expression, List result) {
+        if (expression instanceof LocationPath) {
+            NodeTest test = ((LocationPath) expression).getSteps()[0]
+                    .getNodeTest();
+            String prefix = ((NodeNameTest) test).getNodeName().getPrefix();
+            if (prefix != null && !result.contains(prefix)) {
+                result.add(prefix);
+            }
+        }
+        else if (expression instanceof Operation) {
+            Expression[] args = ((Operation) expression).getArguments();
+            if (args != null) {
+                for (int i = 0; i < args.length; i++) {
+                    collectPrefixes(args[i], result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compare two namespace URIs or prefixes, treating null and ""
+     * as equal.
+     * @param s1 String 1
+     * @param s2 String 2
+     * @return boolean
+     */
+    private static boolean equalStrings(String s1, String s2) {
+        if (s1 == s2) {
+            return true;
+        }
+        return (s1 == null ? "" : s1).equals(s2 == null ? "" : s2);
+    }
+
+    /**
+     * Returns a qualified name.
+     * @param prefix may be null or empty
+     * @param localName local name
+     * @return String
+     */
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.length() == 0 ? localName
+                : prefix + ':' + localName;
+    }
+
+    /**
+     * A translated step.
+     */
+    private static final class StreamStep {
+        private final int kind;
+        private final NodeTest nodeTest;
+        private final StreamPredicate[] predicates;
+        private final boolean positional;
+
+        /**
+         * Create a new StreamStep.
+         * @param kind CHILD, DESCENDANT etc.
+         * @param nodeTest node test
+         * @param predicates translated predicates
+         */
+        private StreamStep(int kind, NodeTest nodeTest,
+                StreamPredicate[] predicates) {
+            this.kind = kind;
+            this.nodeTest = nodeTest;
+            this.predicates = predicates;
+            boolean positional = false;
+            for (int i = 0; i < predicates.length; i++) {
+                positional |= predicates[i].expression == null;
+            }
+            this.positional = positional;
+        }
+    }
+
+    /**
+     * A translated predicate: either an expression testing the attributes
+     * or a comparison of the position with a number.
+     */
+    private static final class StreamPredicate {
+        private final Expression expression;
+        private final int operator;
+        private final double position;
+
+        /**
+         * Create a new StreamPredicate.
+         * @param expression attribute predicate, null if positional
+         * @param operator comparison of the position
+         * @param position to compare with
+         */
+        private StreamPredicate(Expression expression, int operator,
+                double position) {
+            this.expression = expression;
+            this.operator = operator;
+            this.position = position;
+        }
+
+        /**
+         * Compares a position.
+         * @param value position
+         * @return boolean
+         */
+        private boolean accept(int value) {
+            switch (operator) {
+                case EQUAL:
+                    return value == position;
+                case NOT_EQUAL:
+                    return value != position;
+                case LESS_THAN:
+                    return value < position;
+                case LESS_THAN_OR_EQUAL:
+                    return value <= position;
+                case GREATER_THAN:
+                    return value > position;
+                default:
+                    return value >= position;
+            }
+        }
+    }
+
+    /**
+     * The state of an open element, or of the document.
+     */
+    private static final class Frame {
+        /** Bit i + 1 is set if the element matched steps 0..i */
+        private long matched;
+        /** Bit i is set if the child elements are candidates for step i */
+        private long expected;
+        /** Number of children that passed each positional predicate */
+        private int[][] positions;
+        private boolean preserve;
+        private Match match;
+    }
+
+    /**
+     * A result, complete once its value is known.
+     */
+    private static final class Match {
+        private StringBuffer buffer;
+        private String value;
+    }
+
+    /**
+     * Pulls events from the reader as the values are requested.
+     */
+    private final class StreamIterator implements Iterator {
+        private final XMLStreamReader reader;
+        private final LinkedList results = new LinkedList();
+        private final List openMatches = new ArrayList();
+        private final StringBuffer text = new StringBuffer();
+        private boolean hasText;
+        private Frame[] stack = new Frame[16];
+        private int depth;
+        private boolean started;
+        private boolean subtree;
+        private boolean finished;
+        private String[] resolvedURIs;
+        private long descendantSteps;
+        private long descendantOrSelfSteps;
+        private RootContext rootContext;
+        private Document document;
+        private Locale locale;
+        private NodePointer pointer;
+
+        /**
+         * Create a new StreamIterator.
+         * @param reader to read from
+         */
+        private StreamIterator(XMLStreamReader reader) {
+            this.reader = reader;
+            for (int i = 0; i < steps.length; i++) {
+                if (steps[i].kind == DESCENDANT) {
+                    descendantSteps |= 1L << i;
+                }
+                else if (steps[i].kind == DESCENDANT_OR_SELF) {
+                    descendantOrSelfSteps |= 1L << (i + 1);
+                }
+            }
+            Frame frame = new Frame();
+            frame.matched = closure(1L);
+            frame.expected = expected(frame.matched, 0L);
+            stack[0] = frame;
+        }
+
+        public boolean hasNext() {
+            while (results.isEmpty()
+                    || ((Match) results.getFirst()).value == null) {
+                if (!advance()) {
+                    break;
+                }
+            }
+            return !results.isEmpty();
+        }
+
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return ((Match) results.removeFirst()).value;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Processes the next event.
+         * @return false if there are no more events
+         */
+        private boolean advance() {
+            if (finished) {
+                return false;
+            }
+            try {
+                int event;
+                if (!started) {
+                    started = true;
+                    event = reader.getEventType();
+                    subtree = event == XMLStreamConstants.START_ELEMENT;
+                    if (!subtree) {
+                        event = nextEvent();
+                    }
+                }
+                else {
+                    event = nextEvent();
+                }
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        flushText();
+                        startElement();
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        flushText();
+                        endElement();
+                        if (subtree && depth == 0) {
+                            finished = true;
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        text.append(reader.getText());
+                        hasText = true;
+                        break;
+                    case XMLStreamConstants.CDATA:
+                        flushText();
+                        text.append(reader.getText());
+                        hasText = true;
+                        flushText();
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                        flushText();
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        flushText();
+                        String data = reader.getPIData();
+                        if (data != null) {
+                            appendToOpenMatches(
+                                    stack[depth].preserve ? data : data.trim());
+                        }
+                        break;
+                    case XMLStreamConstants.END_DOCUMENT:
+                        flushText();
+                        finished = true;
+                        break;
+                    default:
+                        break;
+                }
+                return true;
+            }
+            catch (XMLStreamException e) {
+                throw new JXPathException("Cannot read XML stream", e);
+            }
+        }
+
+        /**
+         * Reads the next event.
+         * @return event type
+         * @throws XMLStreamException if the stream cannot be read
+         */
+        private int nextEvent() throws XMLStreamException {
+            return reader.hasNext() ? reader.next()
+                    : XMLStreamConstants.END_DOCUMENT;
+        }
+
+        /**
+         * Processes a start element.
+         */
+        private void startElement() {
+            Frame parent = stack[depth];
+            if (resolvedURIs == null) {
+                resolveNamespaces();
+            }
+            pointer = null;
+            long matched = 0;
+            for (int i = 0; i < steps.length; i++) {
+                if ((parent.expected & 1L << i) != 0 && accept(i, parent)) {
+                    matched |= 1L << (i + 1);
+                }
+            }
+            matched = closure(matched | parent.matched & descendantOrSelfSteps);
+
+            Frame frame = push();
+            frame.matched = matched;
+            frame.expected = expected(matched, parent.expected);
+            frame.preserve = parent.preserve;
+            String space = reader.getAttributeValue(
+                    XMLConstants.XML_NS_URI, "space");
+            if (space != null) {
+                frame.preserve = "preserve".equals(space);
+            }
+            int last = steps.length - 1;
+            frame.match = null;
+            if ((matched & 1L << steps.length) != 0) {
+                Match match = new Match();
+                match.buffer = new StringBuffer();
+                frame.match = match;
+                results.add(match);
+                openMatches.add(match);
+            }
+            else if (steps[last].kind == ATTRIBUTE
+                    && (matched & 1L << last) != 0) {
+                addAttributes(last);
+            }
+        }
+
+        /**
+         * Processes an end element.
+         */
+        private void endElement() {
+            Frame frame = stack[depth--];
+            if (frame.match != null) {
+                frame.match.value = frame.match.buffer.toString();
+                frame.match.buffer = null;
+                frame.match = null;
+                openMatches.remove(openMatches.size() - 1);
+            }
+        }
+
+        /**
+         * Pushes a frame for a new element, reusing an old one.
+         * @return Frame
+         */
+        private Frame push() {
+            depth++;
+            if (depth == stack.length) {
+                Frame[] newStack = new Frame[depth * 2];
+                System.arraycopy(stack, 0, newStack, 0, depth);
+                stack = newStack;
+            }
+            Frame frame = stack[depth];
+            if (frame == null) {
+                frame = new Frame();
+                stack[depth] = frame;
+            }
+            else if (frame.positions != null) {
+                for (int i = 0; i < frame.positions.length; i++) {
+                    if (frame.positions[i] != null) {
+                        Arrays.fill(frame.positions[i], 0);
+                    }
+                }
+            }
+            return frame;
+        }
+
+        /**
+         * Adds the steps of "descendant-or-self::node()" that the element
+         * matches simply by having matched the preceding step.
+         * @param matched bits of the matched steps
+         * @return bits of the matched steps
+         */
+        private long closure(long matched) {
+            for (int i = 0; i < steps.length; i++) {
+                if (steps[i].kind == DESCENDANT_OR_SELF
+                        && (matched & 1L << i) != 0) {
+                    matched |= 1L << (i + 1);
+                }
+            }
+            return matched;
+        }
+
+        /**
+         * Computes the steps the children of an element are candidates for.
+         * @param matched bits of the steps matched by the element
+         * @param inherited bits of the steps the element was a candidate for
+         * @return bits of the steps
+         */
+        private long expected(long matched, long inherited) {
+            long expected = inherited & descendantSteps;
+            for (int i = 0; i < steps.length; i++) {
+                if ((matched & 1L << i) != 0
+                        && (steps[i].kind == CHILD
+                            || steps[i].kind == DESCENDANT)) {
+                    expected |= 1L << i;
+                }
+            }
+            return expected;
+        }
+
+        /**
+         * Resolves the prefixes not registered with the context
+         * at the root element.
+         */
+        private void resolveNamespaces() {
+            resolvedURIs = new String[steps.length];
+            for (int i = 0; i < steps.length; i++) {
+                resolvedURIs[i] = namespaceURIs[i];
+                if (prefixes[i] != null && resolvedURIs[i] == null) {
+                    resolvedURIs[i] = reader.getNamespaceContext()
+                            .getNamespaceURI(prefixes[i]);
+                }
+            }
+        }
+
+        /**
+         * Applies the node test and the predicates of a step to the
+         * current start element.
+         * @param index of the step
+         * @param parent frame of the parent
+         * @return boolean
+         */
+        private boolean accept(int index, Frame parent) {
+            StreamStep step = steps[index];
+            if (step.nodeTest instanceof NodeNameTest) {
+                NodeNameTest test = (NodeNameTest) step.nodeTest;
+                QName testName = test.getNodeName();
+                String testPrefix = testName.getPrefix();
+                if (!test.isWildcard() || testPrefix != null) {
+                    if (!test.isWildcard() && !testName.getName()
+                            .equals(reader.getLocalName())) {
+                        return false;
+                    }
+                    String namespaceURI = reader.getNamespaceURI();
+                    if (!equalStrings(resolvedURIs[index], namespaceURI)
+                            && !(equalStrings(namespaceURI, null)
+                                && equalStrings(testPrefix,
+                                        reader.getPrefix()))) {
+                        return false;
+                    }
+                }
+            }
+            for (int i = 0; i < step.predicates.length; i++) {
+                StreamPredicate predicate = step.predicates[i];
+                if (predicate.expression == null) {
+                    if (!predicate.accept(++getPositions(parent, index)[i])) {
+                        return false;
+                    }
+                }
+                else if (!acceptPredicate(predicate.expression)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Get the position counters of a step within a frame.
+         * @param frame the parent frame
+         * @param index of the step
+         * @return int[] with a counter for each predicate
+         */
+        private int[] getPositions(Frame frame, int index) {
+            if (frame.positions == null) {
+                frame.positions = new int[steps.length][];
+            }
+            if (frame.positions[index] == null) {
+                frame.positions[index] = new int[steps[index].predicates.length];
+            }
+            return frame.positions[index];
+        }
+
+        /**
+         * Evaluates an attribute predicate for the current start element,
+         * on a detached DOM element carrying the same name and attributes.
+         * @param expression predicate
+         * @return boolean
+         */
+        private boolean acceptPredicate(Expression expression) {
+            if (pointer == null) {
+                if (rootContext == null) {
+                    rootContext = new RootContext(context,
+                            (NodePointer) context.getContextPointer());
+                    locale = context.getLocale();
+                    try {
+                        DocumentBuilderFactory factory =
+                            DocumentBuilderFactory.newInstance();
+                        factory.setNamespaceAware(true);
+                        document = factory.newDocumentBuilder().newDocument();
+                    }
+                    catch (Exception e) {
+                        throw new JXPathException(
+                                "Cannot create a DOM document", e);
+                    }
+                }
+                pointer = new DOMNodePointer(createElement(), locale);
+            }
+            BasicNodeSet nodeSet = new BasicNodeSet();
+            nodeSet.add(pointer);
+            EvalContext ctx = new PredicateContext(
+                    new NodeSetContext(rootContext, nodeSet), expression);
+            return ctx.nextSet() && ctx.nextNode();
+        }
+
+        /**
+         * Creates a DOM element for the current start element.
+         * @return Element
+         */
+        private Element createElement() {
+            String namespaceURI = reader.getNamespaceURI();
+            if ("".equals(namespaceURI)) {
+                namespaceURI = null;
+            }
+            Element element = document.createElementNS(namespaceURI,
+                    qualifiedName(reader.getPrefix(), reader.getLocalName()));
+            List declare = new ArrayList(predicatePrefixes);
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String uri = reader.getAttributeNamespace(i);
+                String prefix = reader.getAttributePrefix(i);
+                element.setAttributeNS("".equals(uri) ? null : uri,
+                        qualifiedName(prefix, reader.getAttributeLocalName(i)),
+                        reader.getAttributeValue(i));
+                if (prefix != null && prefix.length() != 0
+                        && !declare.contains(prefix)) {
+                    declare.add(prefix);
+                }
+            }
+            for (int i = 0; i < declare.size(); i++) {
+                String prefix = (String) declare.get(i);
+                String uri = reader.getNamespaceContext().getNamespaceURI(prefix);
+                if (uri != null && uri.length() != 0
+                        && !XMLConstants.XML_NS_URI.equals(uri)) {
+                    element.setAttributeNS(
+                            XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                            "xmlns:" + prefix, uri);
+                }
+            }
+            return element;
+        }
+
+        /**
+         * Adds the values of the attributes of the current start element
+         * that match the final attribute step, in the order of the source.
+         * @param index of the attribute step
+         */
+        private void addAttributes(int index) {
+            NodeNameTest test = (NodeNameTest) steps[index].nodeTest;
+            QName testName = test.getNodeName();
+            String testPrefix = testName.getPrefix();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (!test.isWildcard() && !testName.getName()
+                        .equals(reader.getAttributeLocalName(i))) {
+                    continue;
+                }
+                String prefix = reader.getAttributePrefix(i);
+                if (testPrefix == null || testPrefix.equals(prefix)
+                        || !equalStrings(prefix, null) && equalStrings(
+                                reader.getNamespaceContext()
+                                        .getNamespaceURI(testPrefix),
+                                reader.getAttributeNamespace(i))) {
+                    Match match = new Match();
+                    match.value = reader.getAttributeValue(i);
+                    results.add(match);
+                }
+            }
+        }
+
+        /**
+         * Ends the current text node, adding its value to the string
+         * values of the open matches.
+         */
+        private void flushText() {
+            if (!hasText) {
+                return;
+            }
+            Frame frame = stack[depth];
+            String value = frame.preserve ? text.toString()
+                    : text.toString().trim();
+            text.setLength(0);
+            hasText = false;
+            appendToOpenMatches(value);
+        }
+
+        /**
+         * Appends text to the string values of the open matches.
+         * @param value to append
+         */
+        private void appendToOpenMatches(String value) {
+            for (int i = 0; i < openMatches.size(); i++) {
+                ((Match) openMatches.get(i)).buffer.append(value);
+            }
+        }
+    }
+}
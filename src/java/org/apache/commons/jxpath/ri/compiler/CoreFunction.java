@@ -360,7 +360,7 @@ public class CoreFunction extends Operation {
         if (value instanceof EvalContext) {
             EvalContext ctx = (EvalContext) value;
             while (ctx.hasNext()) {
-                ctx.next();
+                ctx.skip();
                 count++;
             }
         }
@@ -0,0 +1,470 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.compiler;
+
+import java.util.Iterator;
+
+import org.apache.commons.jxpath.ri.Compiler;
+import org.apache.commons.jxpath.ri.EvalContext;
+
+/**
+ * Describes how an expression is evaluated: whether a path takes the
+ * {@link org.apache.commons.jxpath.ri.axes.SimplePathInterpreter
+ * SimplePathInterpreter} fast path, the chain of {@link EvalContext}s or
+ * the {@link org.apache.commons.jxpath.ri.axes.SetPathInterpreter
+ * SetPathInterpreter}, whether the nodes of each step have to be collected
+ * and sorted, and what kind of predicates each step has.
+ * <p>
+ * The report is plain text with one fact per line, meant to be read by
+ * people; its format may change between releases.
+ * </p>
+ *
+ * @version $Revision$ $Date$
+ */
+public final class EvaluationPlan {
+
+    private static final String INDENT = "  ";
+
+    /**
+     * This class is not to be instantiated.
+     */
+    private EvaluationPlan() {
+    }
+
+    /**
+     * Describe the evaluation strategy of an expression.
+     * @param expression to describe
+     * @return String
+     */
+    public static String explain(Expression expression) {
+        StringBuffer buffer = new StringBuffer();
+        explain(buffer, "", expression);
+        return buffer.toString();
+    }
+
+    /**
+     * Evaluate an expression in the supplied context and report, for every
+     * step of a location path, the number of nodes produced and the time
+     * spent producing them.  Every step is measured by evaluating the path
+     * up to and including that step with the strategy <code>iterate</code>
+     * would use, so the path is evaluated once per step; the time of a
+     * step is the difference to the time of the path without it.
+     * @param context evaluation context
+     * @param expression to profile
+     * @return String
+     */
+    public static String profile(EvalContext context, Expression expression) {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("expression: ").append(expression).append('\n');
+
+        long start = System.nanoTime();
+        expression.computeValue(context);
+        appendTime(buffer.append("value: "), System.nanoTime() - start);
+        buffer.append('\n');
+
+        if (expression instanceof LocationPath) {
+            LocationPath path = (LocationPath) expression;
+            Step[] steps = path.getSteps();
+            long previous = 0;
+            for (int i = 0; i < steps.length; i++) {
+                start = System.nanoTime();
+                EvalContext rootContext = path.createRootContext(context);
+                int count = count(
+                        path.buildContextChain(rootContext, i + 1, false));
+                long elapsed = System.nanoTime() - start;
+                buffer.append("step ").append(i + 1).append(": ")
+                        .append(steps[i]).append(" nodes=").append(count)
+                        .append(" time=");
+                appendTime(buffer, Math.max(0, elapsed - previous));
+                buffer.append('\n');
+                previous = elapsed;
+            }
+        }
+
+        start = System.nanoTime();
+        int count = count(expression.iterate(context));
+        buffer.append("iterate: nodes=").append(count).append(" time=");
+        appendTime(buffer, System.nanoTime() - start);
+        buffer.append('\n');
+        return buffer.toString();
+    }
+
+    /**
+     * Exhaust an iterator.
+     * @param iterator to exhaust
+     * @return the number of elements
+     */
+    private static int count(Iterator iterator) {
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Append a duration in microseconds.
+     * @param buffer to append to
+     * @param nanos duration
+     */
+    private static void appendTime(StringBuffer buffer, long nanos) {
+        buffer.append(nanos / 1000).append(" us");
+    }
+
+    /**
+     * Describe an expression and the paths among its arguments.
+     * @param buffer to append to
+     * @param indent of every line
+     * @param expression to describe
+     */
+    private static void explain(StringBuffer buffer, String indent,
+            Expression expression) {
+        buffer.append(indent).append("expression: ").append(expression)
+                .append('\n');
+        if (expression instanceof LocationPath) {
+            explainLocationPath(buffer, indent, (LocationPath) expression);
+        }
+        else if (expression instanceof ExpressionPath) {
+            explainExpressionPath(buffer, indent, (ExpressionPath) expression);
+        }
+        else {
+            buffer.append(indent).append("value: computed by ")
+                    .append(getKind(expression)).append('\n');
+            if (expression instanceof Operation) {
+                Expression[] args = ((Operation) expression).getArguments();
+                if (args != null) {
+                    for (int i = 0; i < args.length; i++) {
+                        if (args[i] instanceof Path
+                                || args[i] instanceof Operation) {
+                            buffer.append(indent).append("argument ")
+                                    .append(i + 1).append(":\n");
+                            explain(buffer, indent + INDENT, args[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Describe a location path.
+     * @param buffer to append to
+     * @param indent of every line
+     * @param path to describe
+     */
+    private static void explainLocationPath(StringBuffer buffer,
+            String indent, LocationPath path) {
+        Step[] steps = path.getSteps();
+        buffer.append(indent).append("value: ");
+        int notSimple = getFirstNonSimpleStep(path);
+        if (steps.length == 0) {
+            buffer.append("context node");
+        }
+        else if (notSimple == -1) {
+            buffer.append("simple path interpreter");
+        }
+        else {
+            buffer.append("context chain, first match (step ")
+                    .append(notSimple + 1).append(" is not simple)");
+        }
+        buffer.append('\n');
+
+        boolean set = path.isSetPath();
+        buffer.append(indent).append("iterate: context chain\n");
+        buffer.append(indent).append("node set: ")
+                .append(set ? "set-at-a-time" : "context chain").append('\n');
+        explainSteps(buffer, indent, path, set);
+    }
+
+    /**
+     * Describe an expression path.
+     * @param buffer to append to
+     * @param indent of every line
+     * @param path to describe
+     */
+    private static void explainExpressionPath(StringBuffer buffer,
+            String indent, ExpressionPath path) {
+        buffer.append(indent).append("value: ");
+        if (path.isSimpleExpressionPath()) {
+            buffer.append("simple path interpreter");
+        }
+        else {
+            buffer.append("context chain, first match");
+        }
+        buffer.append('\n');
+        buffer.append(indent).append("iterate: context chain\n");
+        buffer.append(indent).append("root:\n");
+        explain(buffer, indent + INDENT, path.getExpression());
+        explainPredicates(buffer, indent, path.getPredicates());
+        explainSteps(buffer, indent, path, false);
+    }
+
+    /**
+     * Describe the steps of a path.
+     * @param buffer to append to
+     * @param indent of every line
+     * @param path to describe
+     * @param set whether the node set of the path is computed set-at-a-time
+     */
+    private static void explainSteps(StringBuffer buffer, String indent,
+            Path path, boolean set) {
+        Step[] steps = path.getSteps();
+        boolean[] fused = getFusedSteps(path);
+        String stepIndent = indent + INDENT;
+        // Mirrors EvalContext.isChildOrderingRequired() along the chain
+        boolean childOrdering = false;
+        // Mirrors the bookkeeping of Path.evalStepsAsSet()
+        boolean nested = false;
+        for (int i = 0; i < steps.length; i++) {
+            Step step = steps[i];
+            buffer.append(indent).append("step ").append(i + 1).append(": ")
+                    .append(step).append('\n');
+
+            String reason = getNonSimpleReason(path, step);
+            buffer.append(stepIndent).append("simple: ")
+                    .append(reason == null ? "yes" : "no, " + reason)
+                    .append('\n');
+            if (fused[i]) {
+                buffer.append(stepIndent).append("fused: with the previous step"
+                        + " into a descendant search in document trees\n");
+            }
+
+            int axis = step.getAxis();
+            boolean descendant = axis == Compiler.AXIS_DESCENDANT
+                    || axis == Compiler.AXIS_DESCENDANT_OR_SELF;
+            Expression[] predicates = step.getPredicates();
+            boolean noPredicates = predicates == null || predicates.length == 0;
+            if (set) {
+                buffer.append(stepIndent).append("set: ");
+                if (descendant && noPredicates) {
+                    buffer.append(
+                        "descendant search, parallel when parallelism > 1");
+                }
+                else {
+                    buffer.append("step context over the node set");
+                    if (nested) {
+                        buffer.append(descendant ? ", deduplicated and sorted"
+                                : ", sorted");
+                    }
+                }
+                buffer.append('\n');
+                if (descendant) {
+                    nested = true;
+                }
+                else if (axis == Compiler.AXIS_ATTRIBUTE) {
+                    nested = false;
+                }
+            }
+            int order = getDocumentOrder(step, childOrdering);
+            childOrdering = order != 0 || descendant;
+            if (!noPredicates) {
+                order = childOrdering ? 1 : 0;
+            }
+            buffer.append(stepIndent).append("chain: ");
+            switch (order) {
+            case 1:
+                buffer.append("collected, deduplicated and sorted"
+                        + " in document order");
+                break;
+            case -1:
+                buffer.append("collected, deduplicated and sorted"
+                        + " in reverse document order");
+                break;
+            default:
+                buffer.append("streamed in natural order");
+                break;
+            }
+            buffer.append('\n');
+            explainPredicates(buffer, indent + INDENT, predicates);
+        }
+    }
+
+    /**
+     * Find the steps that are fused with the step before them when the
+     * path starts in a document tree, see {@link Path#getFusedSteps()}.
+     * @param path to check
+     * @return boolean[] with an element for every step of the path
+     */
+    private static boolean[] getFusedSteps(Path path) {
+        boolean[] fused = new boolean[path.getSteps().length];
+        Step[] fusedSteps = path.getFusedSteps();
+        if (fusedSteps != null) {
+            int j = 0;
+            for (int i = 0; i < fusedSteps.length; i++) {
+                if (fusedSteps[i].isFused()) {
+                    j++;
+                    fused[j] = true;
+                }
+                j++;
+            }
+        }
+        return fused;
+    }
+
+    /**
+     * Describe predicates.
+     * @param buffer to append to
+     * @param indent of every line
+     * @param predicates to describe, may be null
+     */
+    private static void explainPredicates(StringBuffer buffer, String indent,
+            Expression[] predicates) {
+        if (predicates == null) {
+            return;
+        }
+        for (int i = 0; i < predicates.length; i++) {
+            buffer.append(indent).append("predicate ").append(i + 1)
+                    .append(": ").append(getPredicateKind(predicates[i]))
+                    .append(" [").append(predicates[i]).append("]\n");
+        }
+    }
+
+    /**
+     * Find the first step that keeps a path off the simple path interpreter.
+     * @param path to check
+     * @return index of the step, -1 if the path is simple
+     */
+    private static int getFirstNonSimpleStep(Path path) {
+        Step[] steps = path.getSteps();
+        for (int i = 0; i < steps.length; i++) {
+            if (!path.isSimpleStep(steps[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Explain why a step is not simple, following
+     * {@link Path#isSimpleStep(Step)}.
+     * @param path owning the step
+     * @param step to check
+     * @return the reason, null if the step is simple
+     */
+    private static String getNonSimpleReason(Path path, Step step) {
+        if (path.isSimpleStep(step)) {
+            return null;
+        }
+        int axis = step.getAxis();
+        NodeTest nodeTest = step.getNodeTest();
+        if (axis == Compiler.AXIS_SELF) {
+            if (!(nodeTest instanceof NodeTypeTest)
+                    || ((NodeTypeTest) nodeTest).getNodeType()
+                        != Compiler.NODE_TYPE_NODE) {
+                return "self step other than self::node()";
+            }
+        }
+        else if (axis == Compiler.AXIS_CHILD
+                || axis == Compiler.AXIS_ATTRIBUTE) {
+            if (!(nodeTest instanceof NodeNameTest)) {
+                return "node test is not a name";
+            }
+            if (((NodeNameTest) nodeTest).isWildcard()) {
+                return "wildcard name test";
+            }
+        }
+        else {
+            return Step.axisToString(axis) + " axis";
+        }
+
+        Expression[] predicates = step.getPredicates();
+        boolean index = false;
+        for (int i = 0; i < predicates.length; i++) {
+            if (predicates[i] instanceof NameAttributeTest) {
+                if (((NameAttributeTest) predicates[i])
+                        .getNameTestExpression().isContextDependent()) {
+                    return "predicate " + (i + 1) + " has a context dependent"
+                            + " name";
+                }
+            }
+            else if (predicates[i].isContextDependent()) {
+                return "predicate " + (i + 1) + " is context dependent";
+            }
+            else if (index) {
+                return "predicate " + (i + 1) + " is a second index";
+            }
+            else {
+                index = true;
+            }
+        }
+        return "unsupported predicates";
+    }
+
+    /**
+     * Classify a predicate.
+     * @param predicate to classify
+     * @return String
+     */
+    private static String getPredicateKind(Expression predicate) {
+        if (predicate instanceof NameAttributeTest) {
+            if (((NameAttributeTest) predicate).getNameTestExpression()
+                    .isContextDependent()) {
+                return "name lookup, context dependent name";
+            }
+            return "name lookup";
+        }
+        if (!predicate.isContextDependent()) {
+            return "context independent, index or boolean";
+        }
+        return "context dependent filter, evaluated per node";
+    }
+
+    /**
+     * Describe the kind of a non-path expression.
+     * @param expression to describe
+     * @return String
+     */
+    private static String getKind(Expression expression) {
+        if (expression instanceof Constant) {
+            return "constant";
+        }
+        if (expression instanceof VariableReference) {
+            return "variable reference";
+        }
+        if (expression instanceof CoreFunction) {
+            return "function " + ((CoreFunction) expression).getFunctionName();
+        }
+        if (expression instanceof ExtensionFunction) {
+            return "extension function";
+        }
+        return "operation";
+    }
+
+    /**
+     * Compute the document order of the context created for a step,
+     * following the <code>getDocumentOrder()</code> implementations of
+     * the axis contexts.
+     * @param step to check
+     * @param childOrdering whether the parent context requires its
+     *   children to be ordered
+     * @return 1, -1 or 0, see {@link EvalContext#getDocumentOrder()}
+     */
+    private static int getDocumentOrder(Step step, boolean childOrdering) {
+        switch (step.getAxis()) {
+        case Compiler.AXIS_ANCESTOR :
+        case Compiler.AXIS_ANCESTOR_OR_SELF :
+        case Compiler.AXIS_PARENT :
+        case Compiler.AXIS_PRECEDING :
+            return -1;
+        case Compiler.AXIS_FOLLOWING :
+            return 1;
+        default:
+            return childOrdering ? 1 : 0;
+        }
+    }
+}
@@ -24,8 +24,10 @@ import org.apache.commons.jxpath.ri.QName;
 import org.apache.commons.jxpath.util.ValueUtils;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * Common superclass for several types of nodes in the parse tree. Provides
@@ -50,6 +52,33 @@ public abstract class Expression {
 
     private boolean contextDependencyKnown = false;
     private boolean contextDependent;
+    private final Set usedVariables;
+    private final Set usedPrefixes;
+    private final boolean extensionFunctionUsed;
+
+    /**
+     * Create a new Expression that refers to no variables or namespace
+     * prefixes and calls no extension functions.
+     */
+    protected Expression() {
+        this(null, null, false);
+    }
+
+    /**
+     * Create a new Expression.
+     * @param usedVariables Set of the QNames of the variables referenced
+     *   by the expression and its subexpressions, may be null
+     * @param usedPrefixes Set of the namespace prefixes used by the node
+     *   tests of the expression and its subexpressions, may be null
+     * @param extensionFunctionUsed whether the expression or one of its
+     *   subexpressions calls an extension function
+     */
+    protected Expression(Set usedVariables, Set usedPrefixes,
+            boolean extensionFunctionUsed) {
+        this.usedVariables = unmodifiable(usedVariables);
+        this.usedPrefixes = unmodifiable(usedPrefixes);
+        this.extensionFunctionUsed = extensionFunctionUsed;
+    }
 
     /**
      * Returns true if this expression should be re-evaluated
@@ -70,6 +99,94 @@ public abstract class Expression {
      */
     public abstract boolean computeContextDependent();
 
+    /**
+     * Returns the names of all variables referenced by this expression
+     * and its subexpressions.  The value of the expression cannot change
+     * unless the object graph or one of these variables does.
+     * @return unmodifiable Set of QName
+     */
+    public Set getUsedVariables() {
+        return usedVariables;
+    }
+
+    /**
+     * Returns the namespace prefixes used by the node tests of this
+     * expression and its subexpressions.
+     * @return unmodifiable Set of String
+     */
+    public Set getUsedPrefixes() {
+        return usedPrefixes;
+    }
+
+    /**
+     * Returns true if this expression or one of its subexpressions calls
+     * an extension function, whose result may depend on more than the
+     * object graph and the variables.
+     * @return boolean
+     */
+    public boolean isExtensionFunctionUsed() {
+        return extensionFunctionUsed;
+    }
+
+    /**
+     * Adds the variables referenced by some expressions to a set.
+     * @param expressions Expression[], may be null
+     * @param variables Set of QName
+     * @return <code>variables</code>
+     */
+    protected static Set collectUsedVariables(Expression[] expressions,
+            Set variables) {
+        if (expressions != null) {
+            for (int i = 0; i < expressions.length; i++) {
+                variables.addAll(expressions[i].getUsedVariables());
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Adds the namespace prefixes used by some expressions to a set.
+     * @param expressions Expression[], may be null
+     * @param prefixes Set of String
+     * @return <code>prefixes</code>
+     */
+    protected static Set collectUsedPrefixes(Expression[] expressions,
+            Set prefixes) {
+        if (expressions != null) {
+            for (int i = 0; i < expressions.length; i++) {
+                prefixes.addAll(expressions[i].getUsedPrefixes());
+            }
+        }
+        return prefixes;
+    }
+
+    /**
+     * Learn whether any of some expressions calls an extension function.
+     * @param expressions Expression[], may be null
+     * @return boolean
+     */
+    protected static boolean isExtensionFunctionUsed(
+            Expression[] expressions) {
+        if (expressions != null) {
+            for (int i = 0; i < expressions.length; i++) {
+                if (expressions[i].isExtensionFunctionUsed()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an unmodifiable copy of a set.
+     * @param set Set, may be null
+     * @return Set
+     */
+    private static Set unmodifiable(Set set) {
+        return set == null || set.isEmpty() ? Collections.EMPTY_SET
+                : Collections.unmodifiableSet(new HashSet(set));
+    }
+
     /**
      * Evaluates the expression. If the result is a node set, returns
      * the first element of the node set.
@@ -183,6 +300,9 @@ public abstract class Expression {
         }
 
         public Object next() {
+            if (iterator instanceof EvalContext) {
+                return ((EvalContext) iterator).nextValue();
+            }
             Object o = iterator.next();
             return o instanceof Pointer ? ((Pointer) o).getValue() : o;
         }
@@ -48,11 +48,28 @@ public class ExpressionPath extends Path {
      */
     public ExpressionPath(Expression expression, Expression[] predicates,
             Step[] steps) {
-        super(steps);
+        super(steps, getSubexpressions(expression, predicates));
         this.expression = expression;
         this.predicates = predicates;
     }
 
+    /**
+     * Get the expression followed by its predicates.
+     * @param expression Expression
+     * @param predicates Expression[], may be null
+     * @return Expression[]
+     */
+    private static Expression[] getSubexpressions(Expression expression,
+            Expression[] predicates) {
+        int count = predicates == null ? 0 : predicates.length;
+        Expression[] subexpressions = new Expression[count + 1];
+        subexpressions[0] = expression;
+        if (count > 0) {
+            System.arraycopy(predicates, 0, subexpressions, 1, count);
+        }
+        return subexpressions;
+    }
+
     /**
      * Get the expression.
      * @return Expression
@@ -42,7 +42,7 @@ public class ExtensionFunction extends Operation {
      * @param args Expression[] of function args
      */
     public ExtensionFunction(QName functionName, Expression[] args) {
-        super(args);
+        super(args, true);
         this.functionName = functionName;
     }
 
@@ -16,8 +16,13 @@
  */
 package org.apache.commons.jxpath.ri.compiler;
 
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.jxpath.ri.Compiler;
 import org.apache.commons.jxpath.ri.EvalContext;
 import org.apache.commons.jxpath.ri.axes.InitialContext;
+import org.apache.commons.jxpath.ri.axes.SetPathInterpreter;
 
 /**
  * @author Dmitri Plotnikov
@@ -33,7 +38,18 @@ public class LocationPath extends Path {
      * @param steps to evaluate
      */
     public LocationPath(boolean absolute, Step[] steps) {
-        super(steps);
+        this(absolute, steps, null);
+    }
+
+    /**
+     * Create a new LocationPath.
+     * @param absolute whether this is an absolute path
+     * @param steps to evaluate
+     * @param fusedSteps the same steps with <code>//foo</code> fused into
+     *   single descendant steps, see {@link Path#getFusedSteps()}; may be null
+     */
+    public LocationPath(boolean absolute, Step[] steps, Step[] fusedSteps) {
+        super(steps, fusedSteps, null);
         this.absolute = absolute;
     }
 
@@ -64,26 +80,137 @@ public class LocationPath extends Path {
     }
 
     public Object compute(EvalContext context) {
-        // Create a chain of contexts
-        EvalContext rootContext;
-        if (isAbsolute()) {
-            rootContext = context.getRootContext().getAbsoluteRootContext();
-        }
-        else {
-            rootContext = new InitialContext(context);
+        EvalContext rootContext = createRootContext(context);
+        if (isSetPath()) {
+            return evalStepsAsSet(rootContext);
         }
         return evalSteps(rootContext);
     }
 
     public Object computeValue(EvalContext context) {
-        // Create a chain of contexts
-        EvalContext rootContext;
+        EvalContext rootContext = createRootContext(context);
+        return getSingleNodePointerForSteps(rootContext);
+    }
+
+    /**
+     * Iterates along the chain of contexts, so that nodes are found only
+     * as they are consumed, even for paths that {@link #compute(EvalContext)}
+     * evaluates set-at-a-time.
+     * @param context evaluation context
+     * @return value Iterator
+     */
+    public Iterator iterate(EvalContext context) {
+        return new ValueIterator(evalSteps(createRootContext(context)));
+    }
+
+    /**
+     * Iterates along the chain of contexts, see {@link #iterate(EvalContext)}.
+     * @param context evaluation context
+     * @return pointer Iterator
+     */
+    public Iterator iteratePointers(EvalContext context) {
+        return evalSteps(createRootContext(context));
+    }
+
+    /**
+     * Create the context the first step of this path is applied to.
+     * @param context evaluation context
+     * @return the absolute root context for an absolute path, otherwise
+     *   an initial context wrapping <code>context</code>
+     */
+    protected EvalContext createRootContext(EvalContext context) {
         if (isAbsolute()) {
-            rootContext = context.getRootContext().getAbsoluteRootContext();
+            return context.getRootContext().getAbsoluteRootContext();
+        }
+        return new InitialContext(context);
+    }
+
+    /**
+     * Learn whether the nodes selected by this path are always produced
+     * in document order: the path only uses the child::, attribute:: and
+     * self:: axes, which never leave the subtree of a node. The nodes may
+     * still repeat, e.g. if a collection holds the same bean twice.
+     * @return boolean
+     */
+    public boolean isOrdered() {
+        Step[] steps = getSteps();
+        for (int i = 0; i < steps.length; i++) {
+            if (!isWithinSubtree(steps[i].getAxis(), false)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Recognizes paths like <code>/orders[@open]/items</code> whose first
+     * step selects children and whose other steps stay within the subtrees
+     * of those children. The result of such a path is the concatenation of
+     * the results of the other steps for each child, so its evaluation
+     * can be split between runs of children, see
+     * {@link #evalFirstStep(EvalContext)} and
+     * {@link #evalRemainingSteps(EvalContext, List)}.
+     * @return boolean
+     */
+    public boolean isSplittable() {
+        Step[] steps = getSteps();
+        if (steps.length == 0 || steps[0].getAxis() != Compiler.AXIS_CHILD) {
+            return false;
         }
-        else {
-            rootContext = new InitialContext(context);
+        for (int i = 1; i < steps.length; i++) {
+            if (!isWithinSubtree(steps[i].getAxis(), true)) {
+                return false;
+            }
         }
-        return getSingleNodePointerForSteps(rootContext);
+        return true;
+    }
+
+    /**
+     * Learn whether an axis stays within the subtree of the context node.
+     * @param axis code
+     * @param descendant whether the descendant axes count
+     * @return boolean
+     */
+    private static boolean isWithinSubtree(int axis, boolean descendant) {
+        switch (axis) {
+        case Compiler.AXIS_CHILD :
+        case Compiler.AXIS_ATTRIBUTE :
+        case Compiler.AXIS_SELF :
+            return true;
+        case Compiler.AXIS_DESCENDANT :
+        case Compiler.AXIS_DESCENDANT_OR_SELF :
+            return descendant;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Evaluates the first step of a splittable path.
+     * @param context evaluation context
+     * @return List of NodePointers in document order
+     * @see #isSplittable()
+     */
+    public List evalFirstStep(EvalContext context) {
+        return SetPathInterpreter.collectNodes(
+                buildContextForStep(createRootContext(context), getSteps()[0]),
+                true);
+    }
+
+    /**
+     * Evaluates the steps of a splittable path following the first one.
+     * @param context evaluation context
+     * @param nodes selected by the first step, as returned by
+     *   {@link #evalFirstStep(EvalContext)}, or a run of them
+     * @return EvalContext
+     * @see #isSplittable()
+     */
+    public EvalContext evalRemainingSteps(EvalContext context, List nodes) {
+        Step[] steps = getSteps();
+        EvalContext ctx = SetPathInterpreter.createNodeSetContext(context, nodes);
+        for (int i = 1; i < steps.length; i++) {
+            ctx = buildContextForStep(ctx, steps[i]);
+        }
+        return ctx;
     }
 }
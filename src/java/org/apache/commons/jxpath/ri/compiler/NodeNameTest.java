@@ -17,6 +17,7 @@
 package org.apache.commons.jxpath.ri.compiler;
 
 import org.apache.commons.jxpath.ri.QName;
+import org.apache.commons.jxpath.util.NameTable;
 
 /**
  * @author Dmitri Plotnikov
@@ -25,6 +26,7 @@ import org.apache.commons.jxpath.ri.QName;
 public class NodeNameTest extends NodeTest {
     private QName qname;
     private String namespaceURI;
+    private int symbol = NameTable.UNKNOWN;
 
     /**
      * Create a new NodeNameTest.
@@ -60,6 +62,25 @@ public class NodeNameTest extends NodeTest {
         return namespaceURI;
     }
 
+    /**
+     * Get the {@link NameTable} symbol of the namespace URI and local name
+     * to match. Tests do not intern their names, as expressions can be
+     * compiled from any string; the symbol is looked up until some bean
+     * property of that name has been interned, and then kept.
+     * @return symbol, {@link NameTable#UNKNOWN} for wildcards, for
+     *   prefixes that have not been resolved and for names that have not
+     *   been interned
+     */
+    public int getSymbol() {
+        if (symbol == NameTable.UNKNOWN
+                && (qname.getPrefix() == null || namespaceURI != null)
+                && !isWildcard()) {
+            // A racy cache of an int, like String.hashCode()
+            symbol = NameTable.lookup(namespaceURI, qname.getName());
+        }
+        return symbol;
+    }
+
     /**
      * Learn whether this is a wildcard test.
      * @return <code>true</code> if the node name is "*".
@@ -16,6 +16,8 @@
  */
 package org.apache.commons.jxpath.ri.compiler;
 
+import java.util.HashSet;
+
 /**
  * @author Dmitri Plotnikov
  * @version $Revision$ $Date$
@@ -30,6 +32,19 @@ public abstract class Operation extends Expression {
      * @param args Expression[]
      */
     public Operation(Expression[] args) {
+        this(args, false);
+    }
+
+    /**
+     * Create a new Operation.
+     * @param args Expression[]
+     * @param extensionFunction whether the operation itself calls
+     *   an extension function
+     */
+    protected Operation(Expression[] args, boolean extensionFunction) {
+        super(collectUsedVariables(args, new HashSet()),
+                collectUsedPrefixes(args, new HashSet()),
+                extensionFunction || isExtensionFunctionUsed(args));
         this.args = args;
     }
 
@@ -16,6 +16,11 @@
  */
 package org.apache.commons.jxpath.ri.compiler;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.apache.commons.jxpath.Pointer;
 import org.apache.commons.jxpath.ri.Compiler;
 import org.apache.commons.jxpath.ri.EvalContext;
@@ -26,10 +31,12 @@ import org.apache.commons.jxpath.ri.axes.ChildContext;
 import org.apache.commons.jxpath.ri.axes.DescendantContext;
 import org.apache.commons.jxpath.ri.axes.InitialContext;
 import org.apache.commons.jxpath.ri.axes.NamespaceContext;
+import org.apache.commons.jxpath.ri.axes.ParallelDescendantSearch;
 import org.apache.commons.jxpath.ri.axes.ParentContext;
 import org.apache.commons.jxpath.ri.axes.PrecedingOrFollowingContext;
 import org.apache.commons.jxpath.ri.axes.PredicateContext;
 import org.apache.commons.jxpath.ri.axes.SelfContext;
+import org.apache.commons.jxpath.ri.axes.SetPathInterpreter;
 import org.apache.commons.jxpath.ri.axes.SimplePathInterpreter;
 import org.apache.commons.jxpath.ri.axes.UnionContext;
 import org.apache.commons.jxpath.ri.model.NodePointer;
@@ -41,15 +48,101 @@ import org.apache.commons.jxpath.ri.model.NodePointer;
 public abstract class Path extends Expression {
 
     private Step[] steps;
+    private Step[] fusedSteps;
     private boolean basicKnown = false;
     private boolean basic;
+    private boolean setKnown = false;
+    private boolean set;
 
     /**
      * Create a new Path.
      * @param steps that compose the Path
      */
     public Path(Step[] steps) {
+        this(steps, null);
+    }
+
+    /**
+     * Create a new Path.
+     * @param steps that compose the Path
+     * @param subexpressions evaluated besides the predicates of the steps,
+     *   may be null
+     */
+    protected Path(Step[] steps, Expression[] subexpressions) {
+        this(steps, null, subexpressions);
+    }
+
+    /**
+     * Create a new Path.
+     * @param steps that compose the Path
+     * @param fusedSteps the same steps with <code>//foo</code> fused into
+     *   single descendant steps, used instead of <code>steps</code> when
+     *   the path starts in a document tree; may be null
+     * @param subexpressions evaluated besides the predicates of the steps,
+     *   may be null
+     */
+    protected Path(Step[] steps, Step[] fusedSteps,
+            Expression[] subexpressions) {
+        super(collectUsedVariables(
+                getSubexpressions(steps, subexpressions), new HashSet()),
+                collectUsedPrefixes(steps, subexpressions),
+                isExtensionFunctionUsed(
+                        getSubexpressions(steps, subexpressions)));
         this.steps = steps;
+        this.fusedSteps = fusedSteps;
+    }
+
+    /**
+     * Get the predicates of all steps along with other subexpressions.
+     * @param steps Step[], may be null
+     * @param subexpressions Expression[], may be null
+     * @return Expression[]
+     */
+    private static Expression[] getSubexpressions(Step[] steps,
+            Expression[] subexpressions) {
+        List list = new ArrayList();
+        if (subexpressions != null) {
+            for (int i = 0; i < subexpressions.length; i++) {
+                list.add(subexpressions[i]);
+            }
+        }
+        if (steps != null) {
+            for (int i = 0; i < steps.length; i++) {
+                Expression[] predicates = steps[i].getPredicates();
+                if (predicates != null) {
+                    for (int j = 0; j < predicates.length; j++) {
+                        list.add(predicates[j]);
+                    }
+                }
+            }
+        }
+        return (Expression[]) list.toArray(new Expression[list.size()]);
+    }
+
+    /**
+     * Get the namespace prefixes used by the node tests of the steps and
+     * by the subexpressions.
+     * @param steps Step[], may be null
+     * @param subexpressions Expression[], may be null
+     * @return Set of String
+     */
+    private static Set collectUsedPrefixes(Step[] steps,
+            Expression[] subexpressions) {
+        Set prefixes = collectUsedPrefixes(
+                getSubexpressions(steps, subexpressions), new HashSet());
+        if (steps != null) {
+            for (int i = 0; i < steps.length; i++) {
+                NodeTest nodeTest = steps[i].getNodeTest();
+                if (nodeTest instanceof NodeNameTest) {
+                    String prefix =
+                        ((NodeNameTest) nodeTest).getNodeName().getPrefix();
+                    if (prefix != null) {
+                        prefixes.add(prefix);
+                    }
+                }
+            }
+        }
+        return prefixes;
     }
 
     /**
@@ -60,6 +153,32 @@ public abstract class Path extends Expression {
         return steps;
     }
 
+    /**
+     * Get the steps with <code>//foo</code> fused into single descendant
+     * steps, if there are any.
+     * @return Step[], or null if no steps could be fused
+     */
+    public Step[] getFusedSteps() {
+        return fusedSteps;
+    }
+
+    /**
+     * Get the steps to walk from a context: the fused steps if the context
+     * node is part of a document tree, where they select the same nodes,
+     * otherwise the original steps.
+     * @param context evaluation context the first step is applied to
+     * @return Step[]
+     */
+    protected Step[] getStepsFrom(EvalContext context) {
+        if (fusedSteps != null) {
+            NodePointer pointer = context.getCurrentNodePointer();
+            if (pointer != null && pointer.isDocumentTree()) {
+                return fusedSteps;
+            }
+        }
+        return steps;
+    }
+
     public boolean computeContextDependent() {
         if (steps != null) {
             for (int i = 0; i < steps.length; i++) {
@@ -125,6 +244,39 @@ public abstract class Path extends Expression {
         return false;
     }
 
+    /**
+     * Recognizes paths like <code>//a//b[@c]</code> that only use the
+     * child::, attribute::, self:: and descendant axes and contain at
+     * least one descendant step. The node set of such a path has to be
+     * collected and sorted anyway, so it is computed one step at a time
+     * over duplicate-free node lists, see {@link SetPathInterpreter}.
+     * Iteration still walks the chain of contexts lazily.
+     * @return <code>true</code> if this path can be evaluated set-at-a-time
+     */
+    public synchronized boolean isSetPath() {
+        if (!setKnown) {
+            setKnown = true;
+            set = false;
+            Step[] steps = getSteps();
+            for (int i = 0; i < steps.length; i++) {
+                switch (steps[i].getAxis()) {
+                case Compiler.AXIS_DESCENDANT :
+                case Compiler.AXIS_DESCENDANT_OR_SELF :
+                    set = true;
+                    break;
+                case Compiler.AXIS_CHILD :
+                case Compiler.AXIS_ATTRIBUTE :
+                case Compiler.AXIS_SELF :
+                    break;
+                default:
+                    set = false;
+                    return set;
+                }
+            }
+        }
+        return set;
+    }
+
     /**
      * Learn whether the elements of the specified array are "basic" predicates.
      * @param predicates the Expression[] to check
@@ -238,6 +390,91 @@ public abstract class Path extends Expression {
         return buildContextChain(context, steps.length, false);
     }
 
+    /**
+     * Given a root context, walks a path therefrom one step at a time.
+     * Each step is applied to the complete node list produced by the
+     * previous step, yielding a context that contains all nodes matching
+     * the path, free of duplicates and in document order.
+     * @param context evaluation context
+     * @return EvaluationContext
+     */
+    protected EvalContext evalStepsAsSet(EvalContext context) {
+        return evalStepsAsSet(context, steps.length);
+    }
+
+    /**
+     * Walks the first <code>stepCount</code> steps of this path
+     * set-at-a-time, see {@link #evalStepsAsSet(EvalContext)}.
+     * @param context evaluation context
+     * @param stepCount number of steps to descend
+     * @return EvaluationContext
+     */
+    protected EvalContext evalStepsAsSet(EvalContext context, int stepCount) {
+        Step[] steps = this.steps;
+        if (stepCount == steps.length) {
+            steps = getStepsFrom(context);
+            stepCount = steps.length;
+        }
+        int parallelism = context.getJXPathContext().getParallelism();
+        List nodes = SetPathInterpreter.collectNodes(context, true);
+        // true if some of the nodes may be descendants of others
+        boolean nested = false;
+        // Mirror EvalContext.getDocumentOrder() along the chain of contexts
+        boolean ordered = false;
+        boolean childOrdering = false;
+        for (int i = 0; i < stepCount && !nodes.isEmpty(); i++) {
+            int axis = steps[i].getAxis();
+            boolean descendant = axis == Compiler.AXIS_DESCENDANT
+                    || axis == Compiler.AXIS_DESCENDANT_OR_SELF;
+            Expression[] predicates = steps[i].getPredicates();
+            boolean noPredicates = predicates == null || predicates.length == 0;
+            ordered = steps[i].isFused() || childOrdering
+                    || descendant && !noPredicates;
+            childOrdering = ordered || descendant;
+            if (descendant && noPredicates && parallelism > 1) {
+                NodeTest nodeTest = resolveNodeTest(context, steps[i].getNodeTest());
+                boolean includeSelf = axis == Compiler.AXIS_DESCENDANT_OR_SELF;
+                nodes = SetPathInterpreter.descendants(
+                        nodes,
+                        includeSelf,
+                        nodeTest,
+                        new ParallelDescendantSearch(includeSelf, nodeTest,
+                                parallelism));
+            }
+            else if (descendant && noPredicates) {
+                nodes = SetPathInterpreter.descendants(
+                        nodes,
+                        axis == Compiler.AXIS_DESCENDANT_OR_SELF,
+                        resolveNodeTest(context, steps[i].getNodeTest()));
+            }
+            else {
+                EvalContext ctx = buildContextForStep(
+                        SetPathInterpreter.createNodeSetContext(context, nodes),
+                        steps[i]);
+                nodes = SetPathInterpreter.collectNodes(ctx, false);
+                if (nested) {
+                    if (descendant) {
+                        nodes = SetPathInterpreter.distinct(nodes);
+                    }
+                    SetPathInterpreter.sort(nodes);
+                }
+            }
+            if (descendant) {
+                nested = true;
+            }
+            else if (axis == Compiler.AXIS_ATTRIBUTE) {
+                nested = false;
+            }
+        }
+        if (ordered) {
+            // Pointers can be equal without pointing to the same node, like
+            // the NullPointers of missing properties; the chain of contexts
+            // keeps only one of them if it collects its nodes, so does this
+            nodes = SetPathInterpreter.distinct(nodes);
+        }
+        return SetPathInterpreter.createNodeSetContext(context, nodes);
+    }
+
     /**
      * Build a context from a chain of contexts.
      * @param context evaluation context
@@ -255,20 +492,42 @@ public abstract class Path extends Expression {
         if (steps.length == 0) {
             return context;
         }
+        Step[] steps = this.steps;
+        if (stepCount == steps.length) {
+            steps = getStepsFrom(context);
+            stepCount = steps.length;
+        }
         for (int i = 0; i < stepCount; i++) {
+            context = buildContextForStep(context, steps[i]);
+        }
+        return context;
+    }
+
+    /**
+     * Build the contexts for a single step, including its predicates.
+     * @param context evaluation context
+     * @param step to evaluate
+     * @return created context
+     */
+    protected EvalContext buildContextForStep(EvalContext context, Step step) {
+        if (step.isFused()) {
+            context = new DescendantContext(context, false,
+                    resolveNodeTest(context, step.getNodeTest()), true);
+        }
+        else {
             context =
                 createContextForStep(
                     context,
-                    steps[i].getAxis(),
-                    steps[i].getNodeTest());
-            Expression[] predicates = steps[i].getPredicates();
-            if (predicates != null) {
-                for (int j = 0; j < predicates.length; j++) {
-                    if (j != 0) {
-                        context = new UnionContext(context, new EvalContext[]{context});
-                    }
-                    context = new PredicateContext(context, predicates[j]);
+                    step.getAxis(),
+                    step.getNodeTest());
+        }
+        Expression[] predicates = step.getPredicates();
+        if (predicates != null) {
+            for (int j = 0; j < predicates.length; j++) {
+                if (j != 0) {
+                    context = new UnionContext(context, new EvalContext[]{context});
                 }
+                context = new PredicateContext(context, predicates[j]);
             }
         }
         return context;
@@ -286,15 +545,7 @@ public abstract class Path extends Expression {
         EvalContext context,
         int axis,
         NodeTest nodeTest) {
-        if (nodeTest instanceof NodeNameTest) {
-            QName qname = ((NodeNameTest) nodeTest).getNodeName();
-            String prefix = qname.getPrefix();
-            if (prefix != null) {
-                String namespaceURI = context.getJXPathContext()
-                        .getNamespaceURI(prefix);
-                nodeTest = new NodeNameTest(qname, namespaceURI);
-            }
-        }
+        nodeTest = resolveNodeTest(context, nodeTest);
 
         switch (axis) {
         case Compiler.AXIS_ANCESTOR :
@@ -327,4 +578,23 @@ public abstract class Path extends Expression {
             return null; // Never happens
         }
     }
+
+    /**
+     * Resolves the namespace prefix of a name test, if any.
+     * @param context evaluation context
+     * @param nodeTest node test
+     * @return NodeTest
+     */
+    protected NodeTest resolveNodeTest(EvalContext context, NodeTest nodeTest) {
+        if (nodeTest instanceof NodeNameTest) {
+            QName qname = ((NodeNameTest) nodeTest).getNodeName();
+            String prefix = qname.getPrefix();
+            if (prefix != null) {
+                String namespaceURI = context.getJXPathContext()
+                        .getNamespaceURI(prefix);
+                nodeTest = new NodeNameTest(qname, namespaceURI);
+            }
+        }
+        return nodeTest;
+    }
 }
@@ -26,6 +26,7 @@ public class Step {
     private int axis;
     private NodeTest nodeTest;
     private Expression[] predicates;
+    private boolean fused;
 
     /**
      * Create a new Step.
@@ -34,9 +35,23 @@ public class Step {
      * @param predicates predicate expressions
      */
     protected Step(int axis, NodeTest nodeTest, Expression[] predicates) {
+        this(axis, nodeTest, predicates, false);
+    }
+
+    /**
+     * Create a new Step.
+     * @param axis axis code
+     * @param nodeTest step test
+     * @param predicates predicate expressions
+     * @param fused whether this step replaces the pair of steps
+     *  <code>descendant-or-self::node()/child::foo</code>
+     */
+    protected Step(int axis, NodeTest nodeTest, Expression[] predicates,
+            boolean fused) {
         this.axis = axis;
         this.nodeTest = nodeTest;
         this.predicates = predicates;
+        this.fused = fused;
     }
 
     /**
@@ -63,6 +78,16 @@ public class Step {
         return predicates;
     }
 
+    /**
+     * Learn whether this "descendant::" step has been fused from the pair
+     * <code>descendant-or-self::node()/child::foo</code>, which is what
+     * the abbreviation <code>//foo</code> stands for.
+     * @return boolean
+     */
+    public boolean isFused() {
+        return fused;
+    }
+
     /**
      * Learn whether this step contains any predicate that is context dependent.
      * @return boolean
@@ -84,6 +109,10 @@ public class Step {
         if (axis == Compiler.AXIS_CHILD) {
             buffer.append(nodeTest);
         }
+        else if (fused) {
+            buffer.append('/');
+            buffer.append(nodeTest);
+        }
         else if (axis == Compiler.AXIS_ATTRIBUTE) {
             buffer.append('@');
             buffer.append(nodeTest);
@@ -16,6 +16,8 @@
  */
 package org.apache.commons.jxpath.ri.compiler;
 
+import java.util.ArrayList;
+
 import org.apache.commons.jxpath.ri.Compiler;
 import org.apache.commons.jxpath.ri.QName;
 
@@ -122,7 +124,8 @@ public class TreeCompiler implements Compiler {
     }
 
     public Object locationPath(boolean absolute, Object[] steps) {
-        return new LocationPath(absolute, toStepArray(steps));
+        Step[] stepArray = toStepArray(steps);
+        return new LocationPath(absolute, stepArray, fuseSteps(stepArray));
     }
 
     public Object expressionPath(Object expression, Object[] predicates,
@@ -184,6 +187,168 @@ public class TreeCompiler implements Compiler {
         return stepArray;
     }
 
+    /**
+     * Replaces each pair of steps <code>descendant-or-self::node()/child::foo</code>,
+     * which is what <code>//foo</code> stands for, with the
+     * single step <code>descendant::foo</code>. This saves allocating
+     * a child iterator for every node visited by the descendant search.
+     * The pair is only fused if the predicates of the child step do not
+     * depend on the position of the node among its siblings, and if the
+     * steps before it cannot leave the subtree of the context node.
+     * <p>
+     * The two forms only select the same nodes in a document tree, see
+     * {@link org.apache.commons.jxpath.ri.model.NodePointer#isDocumentTree()},
+     * so the path keeps its original steps for other models.
+     * </p>
+     * @param steps Step[]
+     * @return Step[] with fused steps, or null if there is nothing to fuse
+     */
+    private Step[] fuseSteps(Step[] steps) {
+        if (steps == null || steps.length < 2) {
+            return null;
+        }
+        ArrayList list = new ArrayList();
+        boolean fused = false;
+        boolean downward = true;
+        for (int i = 0; i < steps.length; i++) {
+            if (downward && i + 1 < steps.length
+                    && isFusible(steps[i], steps[i + 1])) {
+                Step child = steps[i + 1];
+                list.add(new Step(Compiler.AXIS_DESCENDANT, child.getNodeTest(),
+                        child.getPredicates(), true));
+                fused = true;
+                i++;
+            }
+            else {
+                downward &= isDownward(steps[i].getAxis());
+                list.add(steps[i]);
+            }
+        }
+        return fused ? (Step[]) list.toArray(new Step[list.size()]) : null;
+    }
+
+    /**
+     * Learn whether an axis only selects nodes within the subtree of the
+     * context node, so that a path starting in a document tree stays
+     * there.
+     * @param axis code
+     * @return boolean
+     */
+    private boolean isDownward(int axis) {
+        switch (axis) {
+        case Compiler.AXIS_CHILD :
+        case Compiler.AXIS_ATTRIBUTE :
+        case Compiler.AXIS_NAMESPACE :
+        case Compiler.AXIS_SELF :
+        case Compiler.AXIS_DESCENDANT :
+        case Compiler.AXIS_DESCENDANT_OR_SELF :
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Learn whether two steps are <code>descendant-or-self::node()/child::foo</code>
+     * with no positional predicates.
+     * @param step first step
+     * @param next following step
+     * @return boolean
+     */
+    private boolean isFusible(Step step, Step next) {
+        if (step.getAxis() != Compiler.AXIS_DESCENDANT_OR_SELF
+                || !(step.getNodeTest() instanceof NodeTypeTest)
+                || ((NodeTypeTest) step.getNodeTest()).getNodeType()
+                    != Compiler.NODE_TYPE_NODE
+                || step.getPredicates() != null
+                    && step.getPredicates().length != 0) {
+            return false;
+        }
+        if (next.getAxis() != Compiler.AXIS_CHILD) {
+            return false;
+        }
+        Expression[] predicates = next.getPredicates();
+        if (predicates != null) {
+            for (int i = 0; i < predicates.length; i++) {
+                if (!isPositionIndependent(predicates[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Learn whether a predicate is known to select the same nodes regardless
+     * of the context position and size, i.e. it always evaluates to a
+     * boolean or node-set and does not call position() or last().
+     * @param predicate Expression
+     * @return boolean
+     */
+    private boolean isPositionIndependent(Expression predicate) {
+        if (predicate instanceof NameAttributeTest) {
+            // Has its own evaluation strategy in PredicateContext
+            return false;
+        }
+        if (predicate instanceof LocationPath
+                || predicate instanceof CoreOperationUnion) {
+            return !usesPosition(predicate);
+        }
+        if (predicate instanceof CoreOperationAnd
+                || predicate instanceof CoreOperationOr
+                || predicate instanceof CoreOperationCompare
+                || predicate instanceof CoreOperationRelationalExpression) {
+            return !usesPosition(predicate);
+        }
+        if (predicate instanceof CoreFunction) {
+            switch (((CoreFunction) predicate).getFunctionCode()) {
+            case Compiler.FUNCTION_BOOLEAN :
+            case Compiler.FUNCTION_NOT :
+            case Compiler.FUNCTION_TRUE :
+            case Compiler.FUNCTION_FALSE :
+            case Compiler.FUNCTION_LANG :
+            case Compiler.FUNCTION_STARTS_WITH :
+            case Compiler.FUNCTION_ENDS_WITH :
+            case Compiler.FUNCTION_CONTAINS :
+                return !usesPosition(predicate);
+            default:
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Learn whether an expression may access the context position or size.
+     * Predicates of nested paths have contexts of their own and are ignored.
+     * @param expression Expression
+     * @return boolean
+     */
+    private boolean usesPosition(Expression expression) {
+        if (expression instanceof ExtensionFunction) {
+            // Could access the position through the ExpressionContext
+            return true;
+        }
+        if (expression instanceof CoreFunction) {
+            int code = ((CoreFunction) expression).getFunctionCode();
+            if (code == Compiler.FUNCTION_POSITION
+                    || code == Compiler.FUNCTION_LAST) {
+                return true;
+            }
+        }
+        if (expression instanceof Operation) {
+            Expression[] args = ((Operation) expression).getArguments();
+            if (args != null) {
+                for (int i = 0; i < args.length; i++) {
+                    if (usesPosition(args[i])) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Learn whether arg is a name attribute test.
      * @param arg Expression to test
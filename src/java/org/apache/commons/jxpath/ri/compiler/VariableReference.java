@@ -16,6 +16,8 @@
  */
 package org.apache.commons.jxpath.ri.compiler;
 
+import java.util.Collections;
+
 import org.apache.commons.jxpath.ri.QName;
 import org.apache.commons.jxpath.ri.EvalContext;
 
@@ -34,6 +36,7 @@ public class VariableReference extends Expression {
      * @param varName variable name
      */
     public VariableReference(QName varName) {
+        super(Collections.singleton(varName), null, false);
         this.varName = varName;
     }
 
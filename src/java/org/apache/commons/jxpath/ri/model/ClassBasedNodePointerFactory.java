@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.model;
+
+/**
+ * A NodePointerFactory that can declare whether its decision to accept or
+ * decline an object depends on nothing but the object's runtime class.
+ * When every factory consulted for an object, up to and including the one
+ * that accepted it, makes a class-based decision, the winning factory is
+ * remembered for that class and later objects of the same class are
+ * dispatched to it directly.
+ * <p>
+ * The decision is assumed to be the same for both
+ * <code>createNodePointer</code> methods. It may depend on the bean infos
+ * of {@link org.apache.commons.jxpath.JXPathIntrospector}, as remembered
+ * factories are discarded when classes are registered there.
+ *
+ * @version $Revision$ $Date$
+ */
+public interface ClassBasedNodePointerFactory extends NodePointerFactory {
+
+    /**
+     * Learn whether this factory accepts or declines every non-null object
+     * of the supplied class in the same way.
+     * @param beanClass runtime class of the object
+     * @return boolean
+     */
+    boolean isDecidedByClass(Class beanClass);
+}
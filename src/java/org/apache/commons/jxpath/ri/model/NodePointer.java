@@ -18,11 +18,13 @@ package org.apache.commons.jxpath.ri.model;
 
 import java.util.HashSet;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.jxpath.AbstractFactory;
 import org.apache.commons.jxpath.ExceptionHandler;
 import org.apache.commons.jxpath.JXPathContext;
 import org.apache.commons.jxpath.JXPathException;
+import org.apache.commons.jxpath.JXPathIntrospector;
 import org.apache.commons.jxpath.JXPathNotFoundException;
 import org.apache.commons.jxpath.NodeSet;
 import org.apache.commons.jxpath.Pointer;
@@ -34,6 +36,7 @@ import org.apache.commons.jxpath.ri.compiler.NodeNameTest;
 import org.apache.commons.jxpath.ri.compiler.NodeTest;
 import org.apache.commons.jxpath.ri.compiler.NodeTypeTest;
 import org.apache.commons.jxpath.ri.model.beans.NullPointer;
+import org.apache.commons.jxpath.util.EvaluationCounters;
 
 /**
  * Common superclass for Pointers of all kinds.  A NodePointer maps to
@@ -55,6 +58,13 @@ public abstract class NodePointer implements Pointer {
     /** Constant to indicate unknown namespace */
     public static final String UNKNOWN_NAMESPACE = "<<unknown namespace>>";
 
+    /**
+     * Factory that last accepted objects of each runtime class, for classes
+     * on which all factories up to the winner decide by class alone.
+     */
+    private static final ConcurrentHashMap FACTORY_BY_CLASS =
+        new ConcurrentHashMap();
+
     /** Index for this NodePointer */
     protected int index = WHOLE_COLLECTION;
 
@@ -75,6 +85,7 @@ public abstract class NodePointer implements Pointer {
         QName name,
         Object bean,
         Locale locale) {
+        EvaluationCounters.pointerAllocated();
         NodePointer pointer = null;
         if (bean == null) {
             pointer = new NullPointer(name, locale);
@@ -83,9 +94,21 @@ public abstract class NodePointer implements Pointer {
 
         NodePointerFactory[] factories =
             JXPathContextReferenceImpl.getNodePointerFactories();
+        Class beanClass = bean.getClass();
+        int registrations = JXPathIntrospector.getRegistrationCount();
+        NodePointerFactory known =
+            getKnownFactory(factories, registrations, beanClass);
+        if (known != null) {
+            pointer = known.createNodePointer(name, bean, locale);
+            if (pointer != null) {
+                return pointer;
+            }
+        }
         for (int i = 0; i < factories.length; i++) {
             pointer = factories[i].createNodePointer(name, bean, locale);
             if (pointer != null) {
+                rememberFactory(factories, registrations, i, beanClass,
+                    pointer);
                 return pointer;
             }
         }
@@ -106,12 +129,25 @@ public abstract class NodePointer implements Pointer {
         NodePointer parent,
         QName name,
         Object bean) {
+        EvaluationCounters.pointerAllocated();
         NodePointerFactory[] factories =
             JXPathContextReferenceImpl.getNodePointerFactories();
+        Class beanClass = bean == null ? null : bean.getClass();
+        int registrations = JXPathIntrospector.getRegistrationCount();
+        NodePointerFactory known =
+            getKnownFactory(factories, registrations, beanClass);
+        if (known != null) {
+            NodePointer pointer = known.createNodePointer(parent, name, bean);
+            if (pointer != null) {
+                return pointer;
+            }
+        }
         for (int i = 0; i < factories.length; i++) {
             NodePointer pointer =
                 factories[i].createNodePointer(parent, name, bean);
             if (pointer != null) {
+                rememberFactory(factories, registrations, i, beanClass,
+                    pointer);
                 return pointer;
             }
         }
@@ -120,6 +156,121 @@ public abstract class NodePointer implements Pointer {
                 + bean.getClass());
     }
 
+    /**
+     * Learn whether a child pointer allocated for the supplied object would
+     * have the object itself as its value, see {@link #isSelfValued()}.
+     * This is only known once a pointer has been allocated for an object of
+     * the same class; until then the answer is false.
+     * @param bean Object, may be null
+     * @return boolean
+     */
+    public static boolean isSelfValued(Object bean) {
+        if (bean == null) {
+            return false;
+        }
+        FactoryChoice choice = getKnownChoice(
+            JXPathContextReferenceImpl.getNodePointerFactories(),
+            JXPathIntrospector.getRegistrationCount(),
+            bean.getClass());
+        return choice != null && choice.selfValued;
+    }
+
+    /**
+     * Get the factory previously remembered for objects of the given class.
+     * @param factories currently registered factories
+     * @param registrations current registration count of the introspector
+     * @param beanClass runtime class of the object, may be null
+     * @return NodePointerFactory or null
+     */
+    private static NodePointerFactory getKnownFactory(
+        NodePointerFactory[] factories,
+        int registrations,
+        Class beanClass) {
+        FactoryChoice choice = getKnownChoice(factories, registrations,
+            beanClass);
+        return choice == null ? null : choice.factory;
+    }
+
+    /**
+     * Get the choice previously remembered for objects of the given class.
+     * @param factories currently registered factories
+     * @param registrations current registration count of the introspector
+     * @param beanClass runtime class of the object, may be null
+     * @return FactoryChoice or null
+     */
+    private static FactoryChoice getKnownChoice(
+        NodePointerFactory[] factories,
+        int registrations,
+        Class beanClass) {
+        if (beanClass == null) {
+            return null;
+        }
+        FactoryChoice choice = (FactoryChoice) FACTORY_BY_CLASS.get(beanClass);
+        // A choice made against a different factory array is stale, and so
+        // is one made before a class was registered with the introspector
+        return choice == null || choice.factories != factories
+                || choice.registrations != registrations ? null : choice;
+    }
+
+    /**
+     * Remember the factory that accepted an object of the given class,
+     * provided that every factory consulted made a class-based decision.
+     * @param factories currently registered factories
+     * @param registrations registration count of the introspector
+     *   before the factories were consulted
+     * @param winner index of the accepting factory
+     * @param beanClass runtime class of the object, may be null
+     * @param pointer the pointer the factory allocated
+     */
+    private static void rememberFactory(
+        NodePointerFactory[] factories,
+        int registrations,
+        int winner,
+        Class beanClass,
+        NodePointer pointer) {
+        if (beanClass == null) {
+            return;
+        }
+        for (int i = 0; i <= winner; i++) {
+            if (!(factories[i] instanceof ClassBasedNodePointerFactory)
+                    || !((ClassBasedNodePointerFactory) factories[i])
+                            .isDecidedByClass(beanClass)) {
+                return;
+            }
+        }
+        FACTORY_BY_CLASS.put(beanClass,
+            new FactoryChoice(factories, registrations, factories[winner],
+                pointer.isSelfValued()));
+    }
+
+    /**
+     * The factory chosen for a class, together with the factory array
+     * and the introspector registration count it was chosen with.
+     */
+    private static final class FactoryChoice {
+        private final NodePointerFactory[] factories;
+        private final int registrations;
+        private final NodePointerFactory factory;
+        private final boolean selfValued;
+
+        /**
+         * Create a new FactoryChoice.
+         * @param factories registered factories
+         * @param registrations registration count of the introspector
+         * @param factory chosen factory
+         * @param selfValued whether the pointers of the factory have
+         *   their objects as values
+         */
+        private FactoryChoice(NodePointerFactory[] factories,
+                int registrations, NodePointerFactory factory,
+                boolean selfValued) {
+            this.factories = factories;
+            this.registrations = registrations;
+            this.factory = factory;
+            this.selfValued = selfValued;
+        }
+    }
+
     /** Parent pointer */
     protected NodePointer parent;
 
@@ -231,6 +382,30 @@ public abstract class NodePointer implements Pointer {
         return false;
     }
 
+    /**
+     * Learn whether the value of this pointer is always the object it was
+     * allocated for, so that values can be read without allocating
+     * pointers for them. Subclasses that return true must keep it that way
+     * for every object of the same class.
+     * @return boolean
+     */
+    public boolean isSelfValued() {
+        return false;
+    }
+
+    /**
+     * Learn whether the nodes below this one form a plain document tree,
+     * like a DOM or JDOM document: every node is the child of exactly one
+     * parent and there are no children beyond those the child iterators
+     * list. If so, <code>descendant::foo</code> selects the same nodes as
+     * <code>descendant-or-self::node()/child::foo</code>, which does not
+     * hold for beans, collections and maps.
+     * @return boolean
+     */
+    public boolean isDocumentTree() {
+        return false;
+    }
+
     /**
      * If the pointer represents a collection, the index identifies
      * an element of that collection.  The default value of <code>index</code>
@@ -461,6 +636,20 @@ public abstract class NodePointer implements Pointer {
 //        printPointerChain();
     }
 
+    /**
+     * Remove several elements of the collection this pointer's index
+     * refers to. The default implementation removes them one at a time,
+     * starting with the last one.
+     * @param indexes distinct zero-based indexes in ascending order
+     */
+    public void remove(int[] indexes) {
+        NodePointer pointer = (NodePointer) clone();
+        for (int i = indexes.length; --i >= 0;) {
+            pointer.setIndex(indexes[i]);
+            pointer.remove();
+        }
+    }
+
     /**
      * Called by a child pointer when it needs to create a parent object.
      * Must create an object described by this pointer and return
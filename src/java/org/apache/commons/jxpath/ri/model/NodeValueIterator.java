@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.model;
+
+/**
+ * A NodeIterator that can read the value of the current node without
+ * allocating a NodePointer for it.  Read-only evaluations that only need
+ * values, like value iteration and <code>count()</code>, use it to walk the
+ * last step of a path with the iterator's own mutable cursor.
+ *
+ * @version $Revision$ $Date$
+ */
+public interface NodeValueIterator extends NodeIterator {
+
+    /**
+     * Get the value of the current node.  The result is the same as
+     * <code>getNodePointer().getValue()</code>, or null if there is no
+     * current node.
+     * @return Object
+     */
+    Object getNodeValue();
+}
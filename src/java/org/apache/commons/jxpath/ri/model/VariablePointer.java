@@ -17,6 +17,7 @@
 package org.apache.commons.jxpath.ri.model;
 
 import org.apache.commons.jxpath.AbstractFactory;
+import org.apache.commons.jxpath.IndexedVariables;
 import org.apache.commons.jxpath.JXPathAbstractFactoryException;
 import org.apache.commons.jxpath.JXPathContext;
 import org.apache.commons.jxpath.JXPathException;
@@ -39,6 +40,7 @@ public class VariablePointer extends NodePointer {
     private QName name;
     private NodePointer valuePointer;
     private boolean actual;
+    private int slot = -1;
 
     private static final long serialVersionUID = -454731297397189293L;
 
@@ -52,6 +54,9 @@ public class VariablePointer extends NodePointer {
         this.variables = variables;
         this.name = name;
         actual = true;
+        if (variables instanceof IndexedVariables) {
+            slot = ((IndexedVariables) variables).getSlot(name.toString());
+        }
     }
 
     /**
@@ -76,6 +81,9 @@ public class VariablePointer extends NodePointer {
         if (!actual) {
             throw new JXPathException("Undefined variable: " + name);
         }
+        if (slot != -1) {
+            return ((IndexedVariables) variables).getVariable(slot);
+        }
         return variables.getVariable(name.toString());
     }
 
@@ -104,6 +112,9 @@ public class VariablePointer extends NodePointer {
             Object collection = getBaseValue();
             ValueUtils.setValue(collection, index, value);
         }
+        else if (slot != -1) {
+            ((IndexedVariables) variables).setVariable(slot, value);
+        }
         else {
             variables.declareVariable(name.toString(), value);
         }
@@ -261,6 +272,17 @@ public class VariablePointer extends NodePointer {
         }
     }
 
+    public void remove(int[] indexes) {
+        if (actual) {
+            Object collection = getBaseValue();
+            if (collection != null) {
+                collection = ValueUtils.remove(collection, indexes);
+                variables.declareVariable(name.toString(), collection);
+                valuePointer = null;
+            }
+        }
+    }
+
     /**
      * Assimilate the Variables instance associated with the specified context.
      * @param context JXPathContext to search
@@ -40,7 +40,7 @@ public class BeanAttributeIterator extends PropertyIterator {
     public BeanAttributeIterator(PropertyOwnerPointer parent, QName name) {
         super(
             parent, createName(parent, name),false,
-            null);
+            null, true);
         this.parent = parent;
         includeXmlLang =
             (name.getPrefix() != null && name.getPrefix().equals("xml"))
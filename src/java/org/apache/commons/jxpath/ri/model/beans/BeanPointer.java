@@ -103,6 +103,14 @@ public class BeanPointer extends PropertyOwnerPointer {
             || JXPathIntrospector.getBeanInfo(value.getClass()).isAtomic();
     }
 
+    /**
+     * {@inheritDoc}
+     * @return true, the value is the bean itself
+     */
+    public boolean isSelfValued() {
+        return true;
+    }
+
     public int hashCode() {
         return name == null ? 0 : name.hashCode();
     }
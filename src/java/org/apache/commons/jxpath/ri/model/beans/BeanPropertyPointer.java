@@ -19,6 +19,7 @@ package org.apache.commons.jxpath.ri.model.beans;
 import java.beans.IndexedPropertyDescriptor;
 import java.beans.PropertyDescriptor;
 import java.util.List;
+import org.apache.commons.jxpath.JXPathBasicBeanInfo;
 import org.apache.commons.jxpath.JXPathBeanInfo;
 import org.apache.commons.jxpath.JXPathContext;
 import org.apache.commons.jxpath.JXPathInvalidAccessException;
@@ -90,6 +91,36 @@ public class BeanPropertyPointer extends PropertyPointer {
 		return this.names;
 	}
 
+	public int findPropertyIndex(final PropertyIdentifier name, final int start, final boolean reverse) {
+		if (!(this.beanInfo instanceof JXPathBasicBeanInfo)) {
+			return super.findPropertyIndex(name, start, reverse);
+		}
+		final int[] indexes = ((JXPathBasicBeanInfo) this.beanInfo).getPropertyIndexes(name);
+		if (indexes != null) {
+			if (!reverse) {
+				for (final int index : indexes) {
+					if (index >= start) {
+						return index;
+					}
+				}
+			} else {
+				for (int i = indexes.length; --i >= 0; ) {
+					if (indexes[i] <= start) {
+						return indexes[i];
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	public int[] getPropertyIndexes(final boolean attribute) {
+		if (this.beanInfo.isAtomic() || !(this.beanInfo instanceof JXPathBasicBeanInfo)) {
+			return null;
+		}
+		return ((JXPathBasicBeanInfo) this.beanInfo).getPropertyIndexes(attribute);
+	}
+
 	/**
 	 * Selects a property by its offset in the alphabetically sorted list.
 	 *
@@ -151,8 +182,11 @@ public class BeanPropertyPointer extends PropertyPointer {
 				final PropertyDescriptor pd = getPropertyDescriptor();
 				if (pd == null) {
 					this.value = null;
-				} else {
+				} else if (pd instanceof IndexedPropertyDescriptor) {
 					this.value = ValueUtils.getValue(getBean(), pd, this.index);
+				} else {
+					// Index into the cached collection rather than calling the getter again
+					this.value = ValueUtils.getValue(getBaseValue(), this.index);
 				}
 			}
 		}
@@ -229,6 +263,8 @@ public class BeanPropertyPointer extends PropertyPointer {
 		} else {
 			ValueUtils.setValue(getBean(), pd, this.index, value);
 		}
+		// The setter may store a copy, so read the collection again
+		this.baseValue = BeanPropertyPointer.UNINITIALIZED;
 		this.value = value;
 	}
 
@@ -250,12 +286,24 @@ public class BeanPropertyPointer extends PropertyPointer {
 			if (collection != o) {
 				ValueUtils.setValue(getBean(), getPropertyDescriptor(), collection);
 			}
+			this.baseValue = BeanPropertyPointer.UNINITIALIZED;
+			this.value = BeanPropertyPointer.UNINITIALIZED;
 		} else if (this.index == 0) {
 			this.index = NodePointer.WHOLE_COLLECTION;
 			setValue(null);
 		}
 	}
 
+	public void remove(final int[] indexes) {
+		final Object o = getBaseValue();
+		final Object collection = ValueUtils.remove(o, indexes);
+		if (collection != o) {
+			ValueUtils.setValue(getBean(), getPropertyDescriptor(), collection);
+		}
+		this.baseValue = BeanPropertyPointer.UNINITIALIZED;
+		this.value = BeanPropertyPointer.UNINITIALIZED;
+	}
+
 	/**
 	 * Get the name of the currently selected property.
 	 *
@@ -319,7 +367,7 @@ public class BeanPropertyPointer extends PropertyPointer {
 	 *
 	 * @return PropertyDescriptor[]
 	 */
-	protected synchronized List<JXPathPropertyDescriptor> getPropertyDescriptors() {
+	protected List<JXPathPropertyDescriptor> getPropertyDescriptors() {
 		if (this.propertyDescriptors == null) {
 			this.propertyDescriptors = this.beanInfo.getPropertyDescriptors();
 		}
@@ -18,9 +18,10 @@ package org.apache.commons.jxpath.ri.model.beans;
 
 import java.util.Locale;
 
+import org.apache.commons.jxpath.Container;
 import org.apache.commons.jxpath.ri.QName;
+import org.apache.commons.jxpath.ri.model.ClassBasedNodePointerFactory;
 import org.apache.commons.jxpath.ri.model.NodePointer;
-import org.apache.commons.jxpath.ri.model.NodePointerFactory;
 import org.apache.commons.jxpath.util.ValueUtils;
 
 /**
@@ -29,7 +30,7 @@ import org.apache.commons.jxpath.util.ValueUtils;
  * @author Dmitri Plotnikov
  * @version $Revision$ $Date$
  */
-public class CollectionPointerFactory implements NodePointerFactory {
+public class CollectionPointerFactory implements ClassBasedNodePointerFactory {
 
     /** factory order constant */
     public static final int COLLECTION_POINTER_FACTORY_ORDER = 10;
@@ -46,4 +47,12 @@ public class CollectionPointerFactory implements NodePointerFactory {
             Object bean) {
         return ValueUtils.isCollection(bean) ? new CollectionPointer(parent, bean) : null;
     }
+
+    /**
+     * {@inheritDoc}
+     * Containers are unwrapped before the test, so their classes are not.
+     */
+    public boolean isDecidedByClass(Class beanClass) {
+        return !Container.class.isAssignableFrom(beanClass);
+    }
 }
@@ -16,9 +16,10 @@
  */
 package org.apache.commons.jxpath.ri.model.beans;
 
+import java.util.Arrays;
 import org.apache.commons.jxpath.JXPathException;
-import org.apache.commons.jxpath.ri.model.NodeIterator;
 import org.apache.commons.jxpath.ri.model.NodePointer;
+import org.apache.commons.jxpath.ri.model.NodeValueIterator;
 import org.apache.commons.jxpath.util.PropertyIdentifier;
 
 /**
@@ -28,10 +29,14 @@ import org.apache.commons.jxpath.util.PropertyIdentifier;
  * @author Dmitri Plotnikov
  * @version $Revision$ $Date$
  */
-public class PropertyIterator implements NodeIterator {
+public class PropertyIterator implements NodeValueIterator {
 	private final boolean reverse;
 	private final PropertyIdentifier name;
 	private final PropertyPointer propertyNodePointer;
+	/**
+	 * Indexes of the properties visible on the iterated axis, or null for all.
+	 */
+	private final int[] propertyIndexes;
 	private boolean empty = false;
 	private int startIndex = 0;
 	private boolean targetReady = false;
@@ -52,11 +57,30 @@ public class PropertyIterator implements NodeIterator {
 			final PropertyOwnerPointer pointer,
 			final PropertyIdentifier name,
 			final boolean reverse,
-			NodePointer startWith) {
+			final NodePointer startWith) {
+		this(pointer, name, reverse, startWith, name != null && name.isAttribute());
+	}
+
+	/**
+	 * Create a new PropertyIterator.
+	 *
+	 * @param pointer   owning pointer
+	 * @param name      property name
+	 * @param reverse   iteration order
+	 * @param startWith beginning pointer
+	 * @param attribute whether to iterate the attribute axis rather than the child axis
+	 */
+	protected PropertyIterator(
+			final PropertyOwnerPointer pointer,
+			final PropertyIdentifier name,
+			final boolean reverse,
+			NodePointer startWith,
+			final boolean attribute) {
 		this.propertyNodePointer =
 				(PropertyPointer) pointer.getPropertyPointer().clone();
 		this.propertyNodePointer.setAttribute(name != null && name.isAttribute());
 		this.propertyNodePointer.setPropertyName(name);
+		this.propertyIndexes = name == null ? this.propertyNodePointer.getPropertyIndexes(attribute) : null;
 		this.name = name;
 		this.reverse = reverse;
 		this.includeStart = true;
@@ -134,6 +158,27 @@ public class PropertyIterator implements NodeIterator {
 		}
 	}
 
+	/**
+	 * Reads the value through the property cursor, allocating a pointer only
+	 * if the value is not known to be its own node.
+	 *
+	 * @return Object
+	 */
+	public Object getNodeValue() {
+		if (this.position != 0 && !(this.propertyNodePointer instanceof NullPropertyPointer)) {
+			try {
+				final Object node = this.propertyNodePointer.getImmediateNode();
+				if (NodePointer.isSelfValued(node)) {
+					return node;
+				}
+			} catch (final RuntimeException e) {
+				// Let getNodePointer() read it again and handle the failure
+			}
+		}
+		final NodePointer pointer = getNodePointer();
+		return pointer == null ? null : pointer.getValue();
+	}
+
 	public int getPosition() {
 		return this.position;
 	}
@@ -202,10 +247,12 @@ public class PropertyIterator implements NodeIterator {
 		}
 
 		int offset;
-		final int count = this.propertyNodePointer.getPropertyCount();
+		final int count = this.propertyIndexes == null ? this.propertyNodePointer.getPropertyCount()
+				: this.propertyIndexes.length;
 		if (!this.reverse) {
 			int index = 1;
-			for (int i = this.startPropertyIndex; i < count; i++) {
+			for (int slot = toSlot(this.startPropertyIndex); slot < count; slot++) {
+				final int i = toPropertyIndex(slot);
 				this.propertyNodePointer.setPropertyIndex(i);
 				int length = getLength();
 				if (i == this.startPropertyIndex) {
@@ -228,11 +275,10 @@ public class PropertyIterator implements NodeIterator {
 			}
 		} else {
 			int index = 1;
-			int start = this.startPropertyIndex;
-			if (start == PropertyPointer.UNSPECIFIED_PROPERTY) {
-				start = count - 1;
-			}
-			for (int i = start; i >= 0; i--) {
+			final int start = this.startPropertyIndex == PropertyPointer.UNSPECIFIED_PROPERTY ? count - 1
+					: toSlot(this.startPropertyIndex);
+			for (int slot = start; slot >= 0; slot--) {
+				final int i = toPropertyIndex(slot);
 				this.propertyNodePointer.setPropertyIndex(i);
 				int length = getLength();
 				if (i == this.startPropertyIndex) {
@@ -269,7 +315,6 @@ public class PropertyIterator implements NodeIterator {
 		this.targetReady = true;
 		this.empty = true;
 
-		final PropertyIdentifier[] names = this.propertyNodePointer.getPropertyNames();
 		if (!this.reverse) {
 			if (this.startPropertyIndex == PropertyPointer.UNSPECIFIED_PROPERTY) {
 				this.startPropertyIndex = 0;
@@ -277,38 +322,53 @@ public class PropertyIterator implements NodeIterator {
 			if (this.startIndex == NodePointer.WHOLE_COLLECTION) {
 				this.startIndex = 0;
 			}
-			for (int i = this.startPropertyIndex; i < names.length; i++) {
-				if (names[i].equals(name)) {
-					this.propertyNodePointer.setPropertyIndex(i);
-					if (i != this.startPropertyIndex) {
-						this.startIndex = 0;
-						this.includeStart = true;
-					}
-					this.empty = false;
-					break;
-				}
-			}
 		} else {
 			if (this.startPropertyIndex == PropertyPointer.UNSPECIFIED_PROPERTY) {
-				this.startPropertyIndex = names.length - 1;
+				this.startPropertyIndex = this.propertyNodePointer.getPropertyNames().length - 1;
 			}
 			if (this.startIndex == NodePointer.WHOLE_COLLECTION) {
 				this.startIndex = -1;
 			}
-			for (int i = this.startPropertyIndex; i >= 0; i--) {
-				if (names[i].equals(name)) {
-					this.propertyNodePointer.setPropertyIndex(i);
-					if (i != this.startPropertyIndex) {
-						this.startIndex = -1;
-						this.includeStart = true;
-					}
-					this.empty = false;
-					break;
-				}
+		}
+		final int i = this.propertyNodePointer.findPropertyIndex(name, this.startPropertyIndex, this.reverse);
+		if (i != -1) {
+			this.propertyNodePointer.setPropertyIndex(i);
+			if (i != this.startPropertyIndex) {
+				this.startIndex = this.reverse ? -1 : 0;
+				this.includeStart = true;
 			}
+			this.empty = false;
 		}
 	}
 
+	/**
+	 * Get the slot in {@link #propertyIndexes} of the nearest visible property
+	 * in iteration order, starting with the supplied property.
+	 *
+	 * @param propertyIndex property index
+	 * @return slot
+	 */
+	private int toSlot(final int propertyIndex) {
+		if (this.propertyIndexes == null) {
+			return propertyIndex;
+		}
+		final int slot = Arrays.binarySearch(this.propertyIndexes, propertyIndex);
+		if (slot >= 0) {
+			return slot;
+		}
+		return this.reverse ? -slot - 2 : -slot - 1;
+	}
+
+	/**
+	 * Get the property index for a slot.
+	 *
+	 * @param slot position among the visible properties
+	 * @return property index
+	 */
+	private int toPropertyIndex(final int slot) {
+		return this.propertyIndexes == null ? slot : this.propertyIndexes[slot];
+	}
+
 	/**
 	 * Computes length for the current pointer - ignores any exceptions.
 	 *
@@ -25,6 +25,7 @@ import org.apache.commons.jxpath.ri.compiler.NodeTest;
 import org.apache.commons.jxpath.ri.compiler.NodeTypeTest;
 import org.apache.commons.jxpath.ri.model.NodeIterator;
 import org.apache.commons.jxpath.ri.model.NodePointer;
+import org.apache.commons.jxpath.util.NameTable;
 import org.apache.commons.jxpath.util.PropertyIdentifier;
 import org.apache.commons.jxpath.util.ValueUtils;
 
@@ -69,7 +70,9 @@ public abstract class PropertyOwnerPointer extends NodePointer {
 			final QName testName = nodeNameTest.getNodeName();
 			final String namespaceUri = nodeNameTest.getNamespaceURI();
 			if (isValidProperty(testName)) {
+				final int symbol = nodeNameTest.getSymbol();
 				return createNodeIterator(nodeNameTest.isWildcard() ? null
+						: symbol != NameTable.UNKNOWN ? PropertyIdentifier.create(symbol, testName.getPrefix(), isAttribute())
 						: PropertyIdentifier.fromQName(namespaceUri, testName, isAttribute()), reverse, startWith);
 			}
 			return null;
@@ -120,6 +120,44 @@ public abstract class PropertyPointer extends NodePointer {
 	 */
 	public abstract PropertyIdentifier[] getPropertyNames();
 
+	/**
+	 * Find the index of the nearest property with the supplied name,
+	 * starting with the property at <code>start</code>.
+	 *
+	 * @param name    property name
+	 * @param start   index of the first property to check
+	 * @param reverse whether to search towards the first property
+	 * @return property index, or -1 if there is no such property
+	 */
+	public int findPropertyIndex(final PropertyIdentifier name, final int start, final boolean reverse) {
+		final PropertyIdentifier[] names = getPropertyNames();
+		if (!reverse) {
+			for (int i = start; i < names.length; i++) {
+				if (names[i].equals(name)) {
+					return i;
+				}
+			}
+		} else {
+			for (int i = start; i >= 0; i--) {
+				if (names[i].equals(name)) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the indexes of the properties visible on the attribute axis or on
+	 * the child axis.
+	 *
+	 * @param attribute whether to get the properties on the attribute axis
+	 * @return ascending property indexes, or null if all properties are visible
+	 */
+	public int[] getPropertyIndexes(final boolean attribute) {
+		return null;
+	}
+
 	/**
 	 * Learn whether this pointer references an actual property.
 	 *
@@ -89,6 +89,10 @@ public class ContainerPointer extends NodePointer {
         return getValuePointer().isLeaf();
     }
 
+    public boolean isDocumentTree() {
+        return getValuePointer().isDocumentTree();
+    }
+
     public Object getImmediateNode() {
         Object value = getBaseValue();
         if (index != WHOLE_COLLECTION) {
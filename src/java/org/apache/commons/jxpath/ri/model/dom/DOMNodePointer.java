@@ -60,6 +60,7 @@ public class DOMNodePointer extends NodePointer {
     private String defaultNamespace;
     private String id;
     private NamespaceResolver localNamespaceResolver;
+    private NodeMaterializer materializer;
 
     /** XML namespace URI */
     public static final String XML_NAMESPACE_URI =
@@ -77,6 +78,7 @@ public class DOMNodePointer extends NodePointer {
     public DOMNodePointer(Node node, Locale locale) {
         super(null, locale);
         this.node = node;
+        this.materializer = findMaterializer(node);
     }
 
     /**
@@ -89,6 +91,7 @@ public class DOMNodePointer extends NodePointer {
         super(null, locale);
         this.node = node;
         this.id = id;
+        this.materializer = findMaterializer(node);
     }
 
     /**
@@ -99,6 +102,41 @@ public class DOMNodePointer extends NodePointer {
     public DOMNodePointer(NodePointer parent, Node node) {
         super(parent);
         this.node = node;
+        this.materializer = parent instanceof DOMNodePointer
+                ? ((DOMNodePointer) parent).materializer
+                : findMaterializer(node);
+    }
+
+    /**
+     * Get the NodeMaterializer of the document of a node.
+     * @param node Node
+     * @return NodeMaterializer or null if the document is complete
+     */
+    private static NodeMaterializer findMaterializer(Node node) {
+        Document document = node.getNodeType() == Node.DOCUMENT_NODE
+                ? (Document) node : node.getOwnerDocument();
+        if (document == null) {
+            return null;
+        }
+        try {
+            Object materializer = document.getUserData(NodeMaterializer.USER_DATA_KEY);
+            return materializer instanceof NodeMaterializer
+                    ? (NodeMaterializer) materializer : null;
+        }
+        catch (AbstractMethodError err) {
+            // Not a DOM level 3 implementation
+            return null;
+        }
+    }
+
+    /**
+     * Completes the node if its content is parsed on demand.
+     * @param deep whether to complete all descendants as well
+     */
+    private void materialize(boolean deep) {
+        if (materializer != null) {
+            materializer.materialize(node, deep);
+        }
     }
 
     public boolean testNode(NodeTest test) {
@@ -197,6 +235,7 @@ public class DOMNodePointer extends NodePointer {
 
     public NodeIterator childIterator(NodeTest test, boolean reverse,
             NodePointer startWith) {
+        materialize(false);
         return new DOMNodeIterator(this, test, reverse, startWith);
     }
 
@@ -316,9 +355,14 @@ public class DOMNodePointer extends NodePointer {
     }
 
     public boolean isLeaf() {
+        materialize(false);
         return !node.hasChildNodes();
     }
 
+    public boolean isDocumentTree() {
+        return true;
+    }
+
     /**
      * Returns true if the xml:lang attribute for the current node
      * or its parent has the specified prefix <i>lang</i>.
@@ -369,6 +413,7 @@ public class DOMNodePointer extends NodePointer {
      * @param value to set
      */
     public void setValue(Object value) {
+        materialize(false);
         if (node.getNodeType() == Node.TEXT_NODE
             || node.getNodeType() == Node.CDATA_SECTION_NODE) {
             String string = (String) TypeUtils.convert(value, String.class);
@@ -416,6 +461,7 @@ public class DOMNodePointer extends NodePointer {
         if (index == WHOLE_COLLECTION) {
             index = 0;
         }
+        materialize(false);
         boolean success =
             getAbstractFactory(context).createObject(
                 context,
@@ -723,6 +769,13 @@ public class DOMNodePointer extends NodePointer {
             String text = ((ProcessingInstruction) node).getData();
             return text == null ? "" : trim ? text.trim() : text;
         }
+        if (materializer != null) {
+            // Read the content of a placeholder without keeping it
+            Node content = materializer.readContent(node);
+            if (content != null) {
+                node = content;
+            }
+        }
         NodeList list = node.getChildNodes();
         StringBuffer buf = new StringBuffer();
         for (int i = 0; i < list.getLength(); i++) {
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.model.dom;
+
+import org.w3c.dom.Node;
+
+/**
+ * Completes DOM nodes whose content is parsed on demand. A Document whose
+ * nodes may be incomplete keeps its NodeMaterializer as user data under
+ * {@link #USER_DATA_KEY}; DOMNodePointer then asks it to complete a node
+ * before looking at the node's children or text.
+ *
+ * @version $Revision$ $Date$
+ */
+public interface NodeMaterializer {
+
+    /** The user data key of the NodeMaterializer of a Document */
+    String USER_DATA_KEY = NodeMaterializer.class.getName();
+
+    /**
+     * Completes a node if its content has not been parsed yet.
+     * @param node Node to complete
+     * @param deep whether to complete all descendants as well
+     */
+    void materialize(Node node, boolean deep);
+
+    /**
+     * Parses the content of a node that has not been parsed yet without
+     * adding it to the document, so that e.g. its string value can be
+     * computed without keeping the content in memory.
+     * @param node Node to read
+     * @return a detached copy of the node including its content, or
+     *   <code>null</code> if the node is complete
+     */
+    Node readContent(Node node);
+}
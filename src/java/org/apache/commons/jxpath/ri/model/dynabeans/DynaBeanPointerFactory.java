@@ -20,8 +20,8 @@ import java.util.Locale;
 
 import org.apache.commons.beanutils.DynaBean;
 import org.apache.commons.jxpath.ri.QName;
+import org.apache.commons.jxpath.ri.model.ClassBasedNodePointerFactory;
 import org.apache.commons.jxpath.ri.model.NodePointer;
-import org.apache.commons.jxpath.ri.model.NodePointerFactory;
 
 /**
  * Implements NodePointerFactory for DynaBeans.
@@ -32,7 +32,7 @@ import org.apache.commons.jxpath.ri.model.NodePointerFactory;
  * @author Dmitri Plotnikov
  * @version $Revision$ $Date$
  */
-public class DynaBeanPointerFactory implements NodePointerFactory {
+public class DynaBeanPointerFactory implements ClassBasedNodePointerFactory {
 
     /** factory order constant */
     public static final int DYNA_BEAN_POINTER_FACTORY_ORDER = 700;
@@ -49,4 +49,8 @@ public class DynaBeanPointerFactory implements NodePointerFactory {
             Object bean) {
         return bean instanceof DynaBean ? new DynaBeanPointer(parent, name, (DynaBean) bean) : null;
     }
+
+    public boolean isDecidedByClass(Class beanClass) {
+        return true;
+    }
 }
@@ -230,6 +230,17 @@ public class DynaBeanPropertyPointer extends PropertyPointer {
 		}
 	}
 
+	public void remove(final int[] indexes) {
+		if (isIndexedProperty()) {
+			for (int i = 0; i < indexes.length; i++) {
+				this.dynaBean.set(getPropertyName().getLocalName(), indexes[i], null);
+			}
+		} else {
+			final Object collection = ValueUtils.remove(getBaseValue(), indexes);
+			this.dynaBean.set(getPropertyName().getLocalName(), collection);
+		}
+	}
+
 	/**
 	 * Set an indexed value.
 	 *
@@ -72,6 +72,14 @@ public class DynamicPointer extends PropertyOwnerPointer {
         this.handler = handler;
     }
 
+    /**
+     * Get the handler used to access the properties of this node.
+     * @return DynamicPropertyHandler
+     */
+    public DynamicPropertyHandler getDynamicPropertyHandler() {
+        return handler;
+    }
+
     public PropertyPointer getPropertyPointer() {
         return new DynamicPropertyPointer(this, handler);
     }
@@ -106,6 +114,14 @@ public class DynamicPointer extends PropertyOwnerPointer {
         return value == null || JXPathIntrospector.getBeanInfo(value.getClass()).isAtomic();
     }
 
+    /**
+     * {@inheritDoc}
+     * @return true, the value is the bean itself
+     */
+    public boolean isSelfValued() {
+        return true;
+    }
+
     public boolean isCollection() {
         return false;
     }
@@ -22,8 +22,8 @@ import org.apache.commons.jxpath.DynamicPropertyHandler;
 import org.apache.commons.jxpath.JXPathBeanInfo;
 import org.apache.commons.jxpath.JXPathIntrospector;
 import org.apache.commons.jxpath.ri.QName;
+import org.apache.commons.jxpath.ri.model.ClassBasedNodePointerFactory;
 import org.apache.commons.jxpath.ri.model.NodePointer;
-import org.apache.commons.jxpath.ri.model.NodePointerFactory;
 import org.apache.commons.jxpath.ri.model.beans.NullPointer;
 import org.apache.commons.jxpath.util.ValueUtils;
 
@@ -33,7 +33,7 @@ import org.apache.commons.jxpath.util.ValueUtils;
  * @author Dmitri Plotnikov
  * @version $Revision$ $Date$
  */
-public class DynamicPointerFactory implements NodePointerFactory {
+public class DynamicPointerFactory implements ClassBasedNodePointerFactory {
 
     /**
      * Factory order constant.
@@ -66,6 +66,11 @@ public class DynamicPointerFactory implements NodePointerFactory {
             return new NullPointer(parent, name);
         }
 
+        DynamicPropertyHandler inherited = getOwnerHandler(parent, bean);
+        if (inherited != null) {
+            return new DynamicPointer(parent, name, bean, inherited);
+        }
+
         JXPathBeanInfo bi = JXPathIntrospector.getBeanInfo(bean.getClass());
         if (bi.isDynamic()) {
             DynamicPropertyHandler handler =
@@ -75,4 +80,30 @@ public class DynamicPointerFactory implements NodePointerFactory {
         }
         return null;
     }
+
+    /**
+     * If the parent is a property of a dynamic node of the same class as
+     * the bean, returns that node's handler, which is the one the bean info
+     * would select.  Nested maps are resolved this way without a lookup.
+     * @param parent pointer
+     * @param bean child object
+     * @return DynamicPropertyHandler or null
+     */
+    private static DynamicPropertyHandler getOwnerHandler(NodePointer parent,
+            Object bean) {
+        if (parent instanceof DynamicPropertyPointer) {
+            NodePointer owner = parent.getImmediateParentPointer();
+            if (owner instanceof DynamicPointer) {
+                Object ownerBean = owner.getBaseValue();
+                if (ownerBean != null && ownerBean.getClass() == bean.getClass()) {
+                    return ((DynamicPointer) owner).getDynamicPropertyHandler();
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean isDecidedByClass(Class beanClass) {
+        return true;
+    }
 }
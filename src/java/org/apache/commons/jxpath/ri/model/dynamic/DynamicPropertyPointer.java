@@ -284,6 +284,11 @@ public class DynamicPropertyPointer extends PropertyPointer {
 		}
 	}
 
+	public void remove(final int[] indexes) {
+		final Object collection = ValueUtils.remove(getBaseValue(), indexes);
+		this.handler.setProperty(getBean(), getPropertyName().getLocalName(), collection);
+	}
+
 	/**
 	 * Remove the current property.
 	 */
@@ -236,6 +236,10 @@ public class JDOMNodePointer extends NodePointer {
         return true;
     }
 
+    public boolean isDocumentTree() {
+        return true;
+    }
+
     public QName getName() {
         String ns = null;
         String ln = null;
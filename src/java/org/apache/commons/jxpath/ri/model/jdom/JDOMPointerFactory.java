@@ -19,8 +19,8 @@ package org.apache.commons.jxpath.ri.model.jdom;
 import java.util.Locale;
 
 import org.apache.commons.jxpath.ri.QName;
+import org.apache.commons.jxpath.ri.model.ClassBasedNodePointerFactory;
 import org.apache.commons.jxpath.ri.model.NodePointer;
-import org.apache.commons.jxpath.ri.model.NodePointerFactory;
 import org.jdom.Document;
 import org.jdom.Element;
 
@@ -30,7 +30,7 @@ import org.jdom.Element;
  * @author Dmitri Plotnikov
  * @version $Revision$ $Date$
  */
-public class JDOMPointerFactory implements NodePointerFactory {
+public class JDOMPointerFactory implements ClassBasedNodePointerFactory {
 
     /** factory order constant */
     public static final int JDOM_POINTER_FACTORY_ORDER = 110;
@@ -60,4 +60,8 @@ public class JDOMPointerFactory implements NodePointerFactory {
         }
         return null;
     }
+
+    public boolean isDecidedByClass(Class beanClass) {
+        return true;
+    }
 }
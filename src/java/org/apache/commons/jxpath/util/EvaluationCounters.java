@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the work done by the current thread while an evaluation is
+ * metered: nodes visited by the evaluation contexts, node pointers
+ * allocated by the pointer factories and reflective property accesses.
+ * Counting is only active between {@link #begin} and {@link #end}; while
+ * no thread is metering, the static counting methods return after reading
+ * a single shared field.
+ * <p>
+ * Work done by other threads on behalf of the evaluation, as in a
+ * parallel descendant search, is not counted.
+ *
+ * @version $Revision$ $Date$
+ */
+public final class EvaluationCounters {
+
+    /** Counters of the current thread */
+    private static final ThreadLocal CURRENT = new ThreadLocal();
+
+    /** Number of counters active on any thread */
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    private EvaluationCounters outer;
+    private boolean active;
+    private long nodesVisited;
+    private long pointersAllocated;
+    private long reflectiveCalls;
+
+    /**
+     * Make these the counters of the current thread.  Counters that were
+     * active before are restored by {@link #end}, and the work counted
+     * in between is added to them as well.
+     */
+    public void begin() {
+        if (active) {
+            throw new IllegalStateException("Counters are already active");
+        }
+        active = true;
+        outer = (EvaluationCounters) CURRENT.get();
+        CURRENT.set(this);
+        ACTIVE.incrementAndGet();
+    }
+
+    /**
+     * Stop counting on the current thread.
+     */
+    public void end() {
+        if (!active) {
+            throw new IllegalStateException("Counters are not active");
+        }
+        ACTIVE.decrementAndGet();
+        CURRENT.set(outer);
+        active = false;
+        outer = null;
+    }
+
+    /**
+     * Get the number of nodes visited.
+     * @return long
+     */
+    public long getNodesVisited() {
+        return nodesVisited;
+    }
+
+    /**
+     * Get the number of node pointers allocated.
+     * @return long
+     */
+    public long getPointersAllocated() {
+        return pointersAllocated;
+    }
+
+    /**
+     * Get the number of reflective property accesses.
+     * @return long
+     */
+    public long getReflectiveCalls() {
+        return reflectiveCalls;
+    }
+
+    /**
+     * Count a node visited by the current thread.
+     */
+    public static void nodeVisited() {
+        for (EvaluationCounters c = current(); c != null; c = c.outer) {
+            c.nodesVisited++;
+        }
+    }
+
+    /**
+     * Count a node pointer allocated by the current thread.
+     */
+    public static void pointerAllocated() {
+        for (EvaluationCounters c = current(); c != null; c = c.outer) {
+            c.pointersAllocated++;
+        }
+    }
+
+    /**
+     * Count a reflective property access by the current thread.
+     */
+    public static void reflectiveCall() {
+        for (EvaluationCounters c = current(); c != null; c = c.outer) {
+            c.reflectiveCalls++;
+        }
+    }
+
+    /**
+     * Get the counters of the current thread.
+     * @return EvaluationCounters or null
+     */
+    private static EvaluationCounters current() {
+        return ACTIVE.get() == 0 ? null : (EvaluationCounters) CURRENT.get();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A global table of interned names. Each distinct pair of a namespace URI
+ * and a local name gets a small, dense integer symbol, so that names
+ * resolved once, e.g. when an expression is compiled or a bean class is
+ * introspected, can be compared and indexed as ints. A missing namespace
+ * is the same as the empty namespace URI.
+ * <p>
+ * Symbols are never released. Only names from bounded sources, such as
+ * the properties of introspected bean classes, should be
+ * {@link #intern interned}; names found in the data or in expressions
+ * should be looked up with {@link #lookup}.
+ * Lookups take no lock and do not allocate.
+ *
+ * @version $Revision$ $Date$
+ */
+public final class NameTable {
+
+    /**
+     * The symbol of names that have not been interned.
+     */
+    public static final int UNKNOWN = -1;
+
+    private static final String NO_NAMESPACE = "";
+
+    /** Namespace URI to a map of local names to symbols */
+    private static final ConcurrentHashMap NAMESPACES = new ConcurrentHashMap();
+
+    private static volatile String[] namespaceURIs = new String[256];
+    private static volatile String[] localNames = new String[256];
+    private static int size;
+
+    /**
+     * Not instantiable.
+     */
+    private NameTable() {
+    }
+
+    /**
+     * Get the symbol of a name, adding the name to the table if needed.
+     * @param namespaceURI namespace URI, may be null
+     * @param localName local name
+     * @return symbol
+     */
+    public static int intern(String namespaceURI, String localName) {
+        int symbol = lookup(namespaceURI, localName);
+        return symbol == UNKNOWN ? add(namespaceURI, localName) : symbol;
+    }
+
+    /**
+     * Get the symbol of a name that has been interned.
+     * @param namespaceURI namespace URI, may be null
+     * @param localName local name
+     * @return symbol or {@link #UNKNOWN}
+     */
+    public static int lookup(String namespaceURI, String localName) {
+        ConcurrentHashMap names = (ConcurrentHashMap) NAMESPACES.get(
+                namespaceURI == null ? NO_NAMESPACE : namespaceURI);
+        if (names == null || localName == null) {
+            return UNKNOWN;
+        }
+        Integer symbol = (Integer) names.get(localName);
+        return symbol == null ? UNKNOWN : symbol.intValue();
+    }
+
+    /**
+     * Get the namespace URI of an interned name.
+     * @param symbol of the name
+     * @return String, null if the name has no namespace
+     */
+    public static String getNamespaceURI(int symbol) {
+        return namespaceURIs[symbol];
+    }
+
+    /**
+     * Get the local name of an interned name.
+     * @param symbol of the name
+     * @return String
+     */
+    public static String getLocalName(int symbol) {
+        return localNames[symbol];
+    }
+
+    /**
+     * Get the number of interned names. Symbols range from 0 to size - 1.
+     * @return int
+     */
+    public static synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Adds a name to the table.
+     * @param namespaceURI namespace URI, may be null
+     * @param localName local name
+     * @return symbol
+     */
+    private static synchronized int add(String namespaceURI, String localName) {
+        String key = namespaceURI == null || namespaceURI.length() == 0
+                ? NO_NAMESPACE : namespaceURI;
+        ConcurrentHashMap names = (ConcurrentHashMap) NAMESPACES.get(key);
+        if (names == null) {
+            names = new ConcurrentHashMap();
+            NAMESPACES.put(key, names);
+        }
+        Integer symbol = (Integer) names.get(localName);
+        if (symbol != null) {
+            return symbol.intValue();
+        }
+        if (size == localNames.length) {
+            String[] newNamespaceURIs = new String[size * 2];
+            String[] newLocalNames = new String[size * 2];
+            System.arraycopy(namespaceURIs, 0, newNamespaceURIs, 0, size);
+            System.arraycopy(localNames, 0, newLocalNames, 0, size);
+            namespaceURIs = newNamespaceURIs;
+            localNames = newLocalNames;
+        }
+        namespaceURIs[size] = key == NO_NAMESPACE ? null : key;
+        localNames[size] = localName;
+        // Publishing the symbol makes the array entries visible
+        names.put(localName, Integer.valueOf(size));
+        return size++;
+    }
+}
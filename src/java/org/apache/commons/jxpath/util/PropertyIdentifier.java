@@ -32,20 +32,36 @@ import org.apache.commons.jxpath.ri.QName;
 */
 public class PropertyIdentifier {
 	public static final PropertyIdentifier WILDCARD = createUnqualified("*");
+
+	/**
+	 * Shared identifiers of interned names, at index symbol * 2 for elements
+	 * and symbol * 2 + 1 for attributes. Entries are written without
+	 * synchronization; a thread that does not see an entry creates a new
+	 * identifier.
+	 */
+	private static volatile PropertyIdentifier[] canonical = new PropertyIdentifier[512];
+
 	private final String namespaceUri;
 	private final String localName;
 	private final String prefix;
 	private final boolean attribute;
+	private final int symbol;
+	private volatile QName qName;
 
 	public PropertyIdentifier(final String namespaceUri, final String localName, final boolean attribute) {
 		this(namespaceUri, null, localName, attribute);
 	}
 
 	protected PropertyIdentifier(final String namespaceUri, final String prefix, final String localName, final boolean attribute) {
+		this(namespaceUri, prefix, localName, attribute, NameTable.lookup(namespaceUri, localName));
+	}
+
+	private PropertyIdentifier(final String namespaceUri, final String prefix, final String localName, final boolean attribute, final int symbol) {
 		this.namespaceUri = namespaceUri;
 		this.prefix = prefix;
 		this.localName = localName;
 		this.attribute = attribute;
+		this.symbol = symbol;
 	}
 
 	public String getNamespaceUri() {
@@ -64,34 +80,115 @@ public class PropertyIdentifier {
 		return this.prefix;
 	}
 
+	/**
+	 * Get the {@link NameTable} symbol of the namespace URI and local name.
+	 *
+	 * @return symbol, or {@link NameTable#UNKNOWN} if the name had not been
+	 * interned when this identifier was created
+	 */
+	public int getSymbol() {
+		return this.symbol;
+	}
+
+	/**
+	 * Get the QName of this property, with the prefix the resolver maps the
+	 * namespace URI to. The last QName is reused while the prefix stays the same.
+	 *
+	 * @param namespaceResolver resolver, may be null
+	 * @return QName
+	 */
 	public QName toQName(final NamespaceResolver namespaceResolver) {
-		if(namespaceResolver == null) {
-			return new QName(this.localName);
-		} else {
-			final String prefix = namespaceResolver.getPrefix(this.namespaceUri);
-			return new QName(prefix, this.localName);
+		final String prefix = namespaceResolver == null ? null : namespaceResolver.getPrefix(this.namespaceUri);
+		QName result = this.qName;
+		if (result == null || (prefix == null ? result.getPrefix() != null : !prefix.equals(result.getPrefix()))) {
+			result = new QName(prefix, this.localName);
+			this.qName = result;
 		}
+		return result;
 	}
 
+	/**
+	 * Get an identifier, sharing the instances for interned names.
+	 *
+	 * @param namespaceUri namespace URI
+	 * @param prefix prefix
+	 * @param localName local name
+	 * @param attribute whether the property is an attribute
+	 * @return PropertyIdentifier
+	 */
 	public static PropertyIdentifier create(final String namespaceUri, final String prefix, final String localName, final boolean attribute) {
-		return new PropertyIdentifier(namespaceUri, prefix, localName, attribute);
+		final int symbol = NameTable.lookup(namespaceUri, localName);
+		if (symbol == NameTable.UNKNOWN) {
+			return new PropertyIdentifier(namespaceUri, prefix, localName, attribute);
+		}
+		return create(symbol, namespaceUri, prefix, localName, attribute);
+	}
+
+	/**
+	 * Get the shared identifier of an interned name.
+	 *
+	 * @param symbol {@link NameTable} symbol of the namespace URI and local name
+	 * @param prefix prefix
+	 * @param attribute whether the property is an attribute
+	 * @return PropertyIdentifier
+	 */
+	public static PropertyIdentifier create(final int symbol, final String prefix, final boolean attribute) {
+		return create(symbol, NameTable.getNamespaceURI(symbol), prefix, NameTable.getLocalName(symbol), attribute);
+	}
+
+	private static PropertyIdentifier create(final int symbol, final String namespaceUri, final String prefix, final String localName, final boolean attribute) {
+		final int index = symbol * 2 + (attribute ? 1 : 0);
+		PropertyIdentifier[] identifiers = PropertyIdentifier.canonical;
+		if (index < identifiers.length) {
+			final PropertyIdentifier identifier = identifiers[index];
+			if (identifier != null && equalStrings(identifier.namespaceUri, namespaceUri) && equalStrings(identifier.prefix, prefix)) {
+				return identifier;
+			}
+		}
+		final PropertyIdentifier identifier = new PropertyIdentifier(namespaceUri, prefix, localName, attribute, symbol);
+		if (index >= identifiers.length) {
+			identifiers = grow(index);
+		}
+		identifiers[index] = identifier;
+		return identifier;
+	}
+
+	/**
+	 * Makes room for more shared identifiers.
+	 *
+	 * @param index to make room for
+	 * @return the new array
+	 */
+	private static synchronized PropertyIdentifier[] grow(final int index) {
+		PropertyIdentifier[] identifiers = PropertyIdentifier.canonical;
+		if (index >= identifiers.length) {
+			final PropertyIdentifier[] newIdentifiers = new PropertyIdentifier[Math.max(index + 1, identifiers.length * 2)];
+			System.arraycopy(identifiers, 0, newIdentifiers, 0, identifiers.length);
+			identifiers = newIdentifiers;
+			PropertyIdentifier.canonical = identifiers;
+		}
+		return identifiers;
+	}
+
+	private static boolean equalStrings(final String s1, final String s2) {
+		return s1 == null ? s2 == null : s1.equals(s2);
 	}
 
 	public static PropertyIdentifier create(final String namespaceUri, final String localName, final boolean attribute) {
-		return new PropertyIdentifier(namespaceUri, localName, attribute);
+		return create(namespaceUri, null, localName, attribute);
 	}
 
 	public static PropertyIdentifier fromQName(final NamespaceResolver namespaceResolver, final QName qName, final boolean attribute) {
 		if(namespaceResolver == null) {
-			return new PropertyIdentifier(null, qName.getPrefix(), qName.getName(), attribute);
+			return create(null, qName.getPrefix(), qName.getName(), attribute);
 		} else {
 			final String namespaceUri = qName.getPrefix() == null ? null : namespaceResolver.getNamespaceURI(qName.getPrefix());
-			return new PropertyIdentifier(namespaceUri, qName.getPrefix(), qName.getName(), attribute);
+			return create(namespaceUri, qName.getPrefix(), qName.getName(), attribute);
 		}
 	}
 
 	public static PropertyIdentifier fromQName(final String namespaceUri, final QName qName, final boolean attribute) {
-		return new PropertyIdentifier(namespaceUri, qName.getPrefix(), qName.getName(), attribute);
+		return create(namespaceUri, qName.getPrefix(), qName.getName(), attribute);
 	}
 
 	public static PropertyIdentifier createUnqualified(final String name) {
@@ -106,6 +203,9 @@ public class PropertyIdentifier {
 		final PropertyIdentifier that = (PropertyIdentifier) o;
 
 		if (this.attribute != that.attribute) return false;
+		final int thisSymbol = getSymbol();
+		final int thatSymbol = that.getSymbol();
+		if (thisSymbol != thatSymbol && thisSymbol != NameTable.UNKNOWN && thatSymbol != NameTable.UNKNOWN) return false;
 		if (!this.localName.equals(that.localName)) return false;
 		if (this.namespaceUri != null ? !this.namespaceUri.equals(that.namespaceUri) : that.namespaceUri != null) return false;
 
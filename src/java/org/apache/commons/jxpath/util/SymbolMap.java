@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.util;
+
+/**
+ * A map from {@link NameTable} symbols, or other non-negative ints, to
+ * objects, using open addressing so that a lookup is an array index
+ * followed by int comparisons. A map is built once and then only read,
+ * so it can be shared between threads once it has been safely published.
+ *
+ * @version $Revision$ $Date$
+ */
+public final class SymbolMap {
+
+    private final int[] keys;
+    private final Object[] values;
+    private final int mask;
+    private int size;
+
+    /**
+     * Create a new SymbolMap.
+     * @param capacity maximum number of entries
+     */
+    public SymbolMap(int capacity) {
+        int length = 2;
+        while (length < capacity * 2) {
+            length <<= 1;
+        }
+        keys = new int[length];
+        values = new Object[length];
+        mask = length - 1;
+    }
+
+    /**
+     * Adds an entry, replacing any entry with the same key.
+     * @param key non-negative key
+     * @param value non-null value
+     */
+    public void put(int key, Object value) {
+        int i = key & mask;
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == null) {
+            if (size == keys.length / 2) {
+                throw new IllegalStateException("SymbolMap is full");
+            }
+            size++;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /**
+     * Get the value for a key.
+     * @param key to look up, may be negative
+     * @return Object or null
+     */
+    public Object get(int key) {
+        if (key < 0) {
+            return null;
+        }
+        int i = key & mask;
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                return value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of entries.
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -22,13 +22,12 @@ import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 import org.apache.commons.jxpath.Container;
 import org.apache.commons.jxpath.DynamicPropertyHandler;
@@ -41,7 +40,25 @@ import org.apache.commons.jxpath.JXPathException;
  * @version $Revision$ $Date$
  */
 public class ValueUtils {
-    private static Map dynamicPropertyHandlerMap = new HashMap();
+    /**
+     * Shared dynamic property handlers, one per handler class.  A handler
+     * may be instantiated more than once under contention, but only one
+     * instance is ever published.
+     */
+    private static final ClassValue DYNAMIC_PROPERTY_HANDLERS =
+        new ClassValue() {
+            protected Object computeValue(Class type) {
+                try {
+                    return (DynamicPropertyHandler) type.newInstance();
+                }
+                catch (Exception ex) {
+                    throw new JXPathException(
+                        "Cannot allocate dynamic property handler of class "
+                            + type.getName(),
+                        ex);
+                }
+            }
+        };
     private static final int UNKNOWN_LENGTH_MAX_COUNT = 16000;
 
     /**
@@ -119,6 +136,7 @@ public class ValueUtils {
 
         for (int i = 0; i < UNKNOWN_LENGTH_MAX_COUNT; i++) {
             try {
+                EvaluationCounters.reflectiveCall();
                 readMethod.invoke(object, new Object[] { new Integer(i)});
             }
             catch (Throwable t) {
@@ -167,11 +185,7 @@ public class ValueUtils {
             if (length == 0) {
                 return Collections.EMPTY_LIST.iterator();
             }
-            ArrayList list = new ArrayList();
-            for (int i = 0; i < length; i++) {
-                list.add(Array.get(collection, i));
-            }
-            return list.iterator();
+            return new ArrayIterator(collection, length);
         }
         if (collection instanceof Collection) {
             return ((Collection) collection).iterator();
@@ -282,6 +296,75 @@ public class ValueUtils {
                 + "]");
     }
 
+    /**
+     * Remove the elements at the specified indexes from the supplied
+     * collection. Unlike repeated calls to {@link #remove(Object, int)},
+     * an array is copied and a list is compacted only once.
+     * @param collection to edit
+     * @param indexes distinct indexes in ascending order
+     * @return the resulting collection
+     */
+    public static Object remove(Object collection, int[] indexes) {
+        collection = getValue(collection);
+        if (collection == null || indexes.length == 0) {
+            return collection;
+        }
+        int length = getLength(collection);
+        if (indexes[indexes.length - 1] >= length) {
+            throw new JXPathException("No such element at index "
+                    + indexes[indexes.length - 1]);
+        }
+        if (collection.getClass().isArray()) {
+            Object smaller =
+                Array.newInstance(
+                    collection.getClass().getComponentType(),
+                    length - indexes.length);
+            int from = 0;
+            int to = 0;
+            for (int i = 0; i < indexes.length; i++) {
+                int count = indexes[i] - from;
+                System.arraycopy(collection, from, smaller, to, count);
+                to += count;
+                from = indexes[i] + 1;
+            }
+            System.arraycopy(collection, from, smaller, to, length - from);
+            return smaller;
+        }
+        if (collection instanceof List && collection instanceof RandomAccess) {
+            List list = (List) collection;
+            int to = indexes[0];
+            int next = 0;
+            for (int from = indexes[0]; from < length; from++) {
+                if (next < indexes.length && indexes[next] == from) {
+                    next++;
+                }
+                else {
+                    list.set(to++, list.get(from));
+                }
+            }
+            list.subList(to, length).clear();
+            return collection;
+        }
+        if (collection instanceof Collection) {
+            Iterator it = ((Collection) collection).iterator();
+            int next = 0;
+            for (int i = 0; next < indexes.length && it.hasNext(); i++) {
+                it.next();
+                if (i == indexes[next]) {
+                    it.remove();
+                    next++;
+                }
+            }
+            return collection;
+        }
+        throw new JXPathException(
+            "Cannot remove "
+                + collection.getClass().getName()
+                + "["
+                + indexes[0]
+                + "]");
+    }
+
     /**
      * Returns the index'th element of the supplied collection.
      * @param collection to read
@@ -296,7 +379,7 @@ public class ValueUtils {
                 if (index < 0 || index >= Array.getLength(collection)) {
                     return null;
                 }
-                value = Array.get(collection, index);
+                value = getArrayElement(collection, index);
             }
             else if (collection instanceof List) {
                 if (index < 0 || index >= ((List) collection).size()) {
@@ -321,6 +404,43 @@ public class ValueUtils {
         return value;
     }
 
+    /**
+     * Returns an element of an array without reflection, wrapping primitives.
+     * @param array to read
+     * @param index valid index
+     * @return array[index]
+     */
+    private static Object getArrayElement(Object array, int index) {
+        if (array instanceof Object[]) {
+            return ((Object[]) array)[index];
+        }
+        if (array instanceof int[]) {
+            return Integer.valueOf(((int[]) array)[index]);
+        }
+        if (array instanceof double[]) {
+            return Double.valueOf(((double[]) array)[index]);
+        }
+        if (array instanceof long[]) {
+            return Long.valueOf(((long[]) array)[index]);
+        }
+        if (array instanceof boolean[]) {
+            return Boolean.valueOf(((boolean[]) array)[index]);
+        }
+        if (array instanceof char[]) {
+            return Character.valueOf(((char[]) array)[index]);
+        }
+        if (array instanceof byte[]) {
+            return Byte.valueOf(((byte[]) array)[index]);
+        }
+        if (array instanceof float[]) {
+            return Float.valueOf(((float[]) array)[index]);
+        }
+        if (array instanceof short[]) {
+            return Short.valueOf(((short[]) array)[index]);
+        }
+        return Array.get(array, index);
+    }
+
     /**
      * Modifies the index'th element of the supplied collection.
      * Converts the value to the required type if necessary.
@@ -364,6 +484,7 @@ public class ValueUtils {
             if (method == null) {
                 throw new JXPathException("No read method");
             }
+            EvaluationCounters.reflectiveCall();
             value = method.invoke(bean, new Object[0]);
         }
         catch (Exception ex) {
@@ -393,6 +514,7 @@ public class ValueUtils {
                 throw new JXPathException("No write method");
             }
             value = convert(value, propertyDescriptor.getPropertyType());
+            EvaluationCounters.reflectiveCall();
             method.invoke(bean, new Object[] { value });
         }
         catch (Exception ex) {
@@ -441,6 +563,7 @@ public class ValueUtils {
                     (IndexedPropertyDescriptor) propertyDescriptor;
                 Method method = ipd.getIndexedReadMethod();
                 if (method != null) {
+                    EvaluationCounters.reflectiveCall();
                     return method.invoke(
                         bean,
                         new Object[] { new Integer(index)});
@@ -484,6 +607,7 @@ public class ValueUtils {
                     (IndexedPropertyDescriptor) propertyDescriptor;
                 Method method = ipd.getIndexedWriteMethod();
                 if (method != null) {
+                    EvaluationCounters.reflectiveCall();
                     method.invoke(
                         bean,
                         new Object[] {
@@ -534,21 +658,7 @@ public class ValueUtils {
      * @return DynamicPropertyHandler
      */
     public static DynamicPropertyHandler getDynamicPropertyHandler(Class clazz) {
-        DynamicPropertyHandler handler =
-            (DynamicPropertyHandler) dynamicPropertyHandlerMap.get(clazz);
-        if (handler == null) {
-            try {
-                handler = (DynamicPropertyHandler) clazz.newInstance();
-            }
-            catch (Exception ex) {
-                throw new JXPathException(
-                    "Cannot allocate dynamic property handler of class "
-                        + clazz.getName(),
-                    ex);
-            }
-            dynamicPropertyHandlerMap.put(clazz, handler);
-        }
-        return handler;
+        return (DynamicPropertyHandler) DYNAMIC_PROPERTY_HANDLERS.get(clazz);
     }
 
     // -------------------------------------------------------- Private Methods
@@ -658,4 +768,39 @@ public class ValueUtils {
         // Return whatever we have found
         return (method);
     }
+
+    /**
+     * Iterates over the elements of an array in place, wrapping primitive
+     * elements one at a time.
+     */
+    private static final class ArrayIterator implements Iterator {
+        private final Object array;
+        private final int length;
+        private int index = 0;
+
+        /**
+         * Create a new ArrayIterator.
+         * @param array to iterate
+         * @param length of the array
+         */
+        private ArrayIterator(Object array, int length) {
+            this.array = array;
+            this.length = length;
+        }
+
+        public boolean hasNext() {
+            return index < length;
+        }
+
+        public Object next() {
+            if (index >= length) {
+                throw new NoSuchElementException();
+            }
+            return getArrayElement(array, index++);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
@@ -17,35 +17,97 @@
 package org.apache.commons.jxpath.xml;
 
 import java.io.InputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.jxpath.JXPathException;
 
 /**
  * An implementation of the XMLParser interface that produces a DOM Document.
+ * DocumentBuilders are reset and reused for subsequent documents with the
+ * same configuration. Which DocumentBuilderFactory is found depends on the
+ * context class loader, so idle builders are kept separately for each
+ * context class loader.
  *
  * @author Dmitri Plotnikov
  * @version $Revision$ $Date$
  */
 public class DOMParser extends XMLParser2 {
 
+    private static final Map BUILDERS = new WeakHashMap();
+
     public Object parseXML(InputStream stream) {
+        int key = getConfigurationKey();
+        ParserPool pool = getPool();
+        DocumentBuilder builder = (DocumentBuilder) pool.acquire(key);
+        Object document;
         try {
-            DocumentBuilderFactory factory =
-                    DocumentBuilderFactory.newInstance();
-
-            factory.setValidating(isValidating());
-            factory.setNamespaceAware(isNamespaceAware());
-            factory.setIgnoringElementContentWhitespace(
-                    isIgnoringElementContentWhitespace());
-            factory.setExpandEntityReferences(isExpandEntityReferences());
-            factory.setIgnoringComments(isIgnoringComments());
-            factory.setCoalescing(isCoalescing());
-            return factory.newDocumentBuilder().parse(stream);
+            if (builder == null) {
+                builder = newDocumentBuilder();
+            }
+            document = builder.parse(stream);
         }
         catch (Exception ex) {
             throw new JXPathException("DOM parser error", ex);
         }
+        release(pool, key, builder);
+        return document;
+    }
+
+    /**
+     * Get the pool of idle builders for the context class loader.
+     * @return ParserPool
+     */
+    private static ParserPool getPool() {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        synchronized (BUILDERS) {
+            ParserPool pool = (ParserPool) BUILDERS.get(loader);
+            if (pool == null) {
+                pool = new ParserPool();
+                BUILDERS.put(loader, pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Creates a DocumentBuilder with this parser's configuration.
+     * @return DocumentBuilder
+     * @throws ParserConfigurationException if the builder cannot be created
+     */
+    private DocumentBuilder newDocumentBuilder()
+            throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setValidating(isValidating());
+        factory.setNamespaceAware(isNamespaceAware());
+        factory.setIgnoringElementContentWhitespace(
+                isIgnoringElementContentWhitespace());
+        factory.setExpandEntityReferences(isExpandEntityReferences());
+        factory.setIgnoringComments(isIgnoringComments());
+        factory.setCoalescing(isCoalescing());
+        return factory.newDocumentBuilder();
+    }
+
+    /**
+     * Resets a DocumentBuilder after a successful parse and returns it
+     * to the pool.
+     * @param pool ParserPool
+     * @param key configuration key
+     * @param builder DocumentBuilder
+     */
+    private static void release(ParserPool pool, int key,
+            DocumentBuilder builder) {
+        try {
+            builder.reset();
+        }
+        catch (UnsupportedOperationException ex) {
+            // A pre-JAXP 1.3 builder cannot be reused
+            return;
+        }
+        pool.release(key, builder);
     }
 }
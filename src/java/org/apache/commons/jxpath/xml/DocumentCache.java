@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.xml;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.commons.jxpath.JXPathException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Shares parsed documents between {@link DocumentContainer}s. Documents
+ * are keyed by URL, model and parser configuration, and the least recently
+ * used ones are evicted once the total of their approximate sizes exceeds
+ * the maximum weight. Documents read from <code>file:</code> URLs are
+ * parsed again when the length or the modification time of the file
+ * changes. If several threads request a document that is not cached,
+ * it is parsed only once while the other threads wait for the result.
+ * <p>
+ * Containers using the same cache share the document objects, so
+ * modifications made through one container are seen by all of them.
+ * Documents of the "MAPPED" model are materialized completely before they
+ * are shared, as they are not safe to materialize from several threads.
+ *
+ * @see DocumentContainer#setDocumentCache(DocumentCache)
+ * @version $Revision$ $Date$
+ */
+public class DocumentCache {
+
+    /**
+     * Default maximum weight of the shared cache, in bytes.
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+    /**
+     * Approximate size of a DOM node without its text.
+     */
+    private static final int NODE_WEIGHT = 64;
+
+    /**
+     * Approximate size of a document for each byte of XML when the
+     * document is not a DOM.
+     */
+    private static final int BYTE_WEIGHT = 8;
+
+    private static final DocumentCache SHARED =
+        new DocumentCache(DEFAULT_MAX_WEIGHT);
+
+    private LinkedHashMap entries = new LinkedHashMap(16, 0.75f, true);
+    private long maxWeight;
+    private long weight;
+
+    /**
+     * Create a new DocumentCache.
+     * @param maxWeight maximum total of the approximate sizes of the
+     *   documents, in bytes
+     */
+    public DocumentCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Get the cache shared by the whole application.
+     * @return DocumentCache
+     */
+    public static DocumentCache getSharedCache() {
+        return SHARED;
+    }
+
+    /**
+     * Get the maximum weight.
+     * @return long
+     */
+    public synchronized long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Set the maximum weight, evicting documents if needed.
+     * @param maxWeight maximum total of the approximate sizes of the
+     *   documents, in bytes
+     */
+    public synchronized void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        evict();
+    }
+
+    /**
+     * Get the total of the approximate sizes of the cached documents.
+     * @return long
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Get the number of cached documents, including those being parsed.
+     * @return int
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all documents read from the URL, whatever their model.
+     * @param url URL
+     */
+    public synchronized void remove(URL url) {
+        String location = url.toExternalForm();
+        for (Iterator it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = (Entry) it.next();
+            if (entry.key.location.equals(location)) {
+                it.remove();
+                weight -= entry.weight;
+            }
+        }
+    }
+
+    /**
+     * Removes all documents.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Get the document read from the URL of a container, loading it
+     * through the container if it is not cached or no longer up to date.
+     * @param container DocumentContainer to load the document with
+     * @param url URL of the document, if null the container loads the
+     *   document without caching it
+     * @param model of the document
+     * @param configuration key of the parser configuration
+     * @return Object
+     */
+    Object getDocument(DocumentContainer container, URL url, String model,
+            int configuration) {
+        if (url == null) {
+            return container.loadDocument();
+        }
+        Key key = new Key(url.toExternalForm(), model, configuration);
+        File file = getFile(url);
+        long lastModified = file == null ? 0 : file.lastModified();
+        long length = file == null ? 0 : file.length();
+
+        Entry entry;
+        boolean load = false;
+        synchronized (this) {
+            entry = (Entry) entries.get(key);
+            if (entry != null && entry.isLoaded()
+                    && (entry.lastModified != lastModified
+                        || entry.length != length)) {
+                entries.remove(key);
+                weight -= entry.weight;
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(key, lastModified, length);
+                entries.put(key, entry);
+                load = true;
+            }
+        }
+        if (load) {
+            load(container, entry, file);
+        }
+        return entry.getDocument();
+    }
+
+    /**
+     * Loads the document of a new entry.
+     * @param container to load the document with
+     * @param entry new Entry
+     * @param file local file, if any
+     */
+    private void load(DocumentContainer container, Entry entry, File file) {
+        try {
+            Object document = container.loadDocument();
+            if (document instanceof Node) {
+                MappedDOMParser.materialize((Node) document);
+            }
+            long entryWeight = weigh(document, file == null ? -1 : entry.length);
+            synchronized (this) {
+                if (entries.get(entry.key) == entry) {
+                    entry.weight = entryWeight;
+                    weight += entryWeight;
+                }
+                entry.setDocument(document);
+                evict();
+            }
+        }
+        catch (Throwable ex) {
+            // Waiting threads must be woken up whatever goes wrong
+            fail(entry, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Removes an entry whose document could not be loaded and wakes up
+     * the threads waiting for it.
+     * @param entry Entry
+     * @param failure the exception or error thrown while loading
+     */
+    private void fail(Entry entry, Throwable failure) {
+        synchronized (this) {
+            if (entries.get(entry.key) == entry) {
+                entries.remove(entry.key);
+            }
+        }
+        entry.setFailure(failure);
+    }
+
+    /**
+     * Evicts the least recently used documents until the weight does not
+     * exceed the maximum, always keeping the most recently used one.
+     */
+    private void evict() {
+        Iterator it = entries.values().iterator();
+        int count = entries.size();
+        while (weight > maxWeight && count-- > 1) {
+            Entry entry = (Entry) it.next();
+            if (entry.isLoaded()) {
+                it.remove();
+                weight -= entry.weight;
+            }
+        }
+    }
+
+    /**
+     * Get the local file a URL points to.
+     * @param url URL
+     * @return File or null
+     */
+    static File getFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        }
+        catch (URISyntaxException ex) {
+            return null;
+        }
+        catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Estimates the memory taken by a document.
+     * @param document parsed document
+     * @param sourceLength length of the XML, -1 if unknown
+     * @return long
+     */
+    private static long weigh(Object document, long sourceLength) {
+        if (document instanceof Node) {
+            return weigh((Node) document);
+        }
+        return sourceLength < 0 ? NODE_WEIGHT : sourceLength * BYTE_WEIGHT;
+    }
+
+    /**
+     * Estimates the memory taken by a DOM node and its descendants.
+     * @param node Node
+     * @return long
+     */
+    private static long weigh(Node node) {
+        long result = 0;
+        for (Node n = node; n != null;) {
+            result += NODE_WEIGHT;
+            if (n instanceof CharacterData) {
+                result += 2L * ((CharacterData) n).getLength();
+            }
+            NamedNodeMap attributes = n.getAttributes();
+            if (attributes != null) {
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    String value = ((Attr) attributes.item(i)).getValue();
+                    result += NODE_WEIGHT + 2L * value.length();
+                }
+            }
+            Node next = n.getFirstChild();
+            while (next == null && n != node) {
+                next = n.getNextSibling();
+                if (next == null) {
+                    n = n.getParentNode();
+                }
+            }
+            n = next;
+        }
+        return result;
+    }
+
+    /**
+     * Identifies a parsed document.
+     */
+    private static final class Key {
+        private final String location;
+        private final String model;
+        private final int configuration;
+
+        /**
+         * Create a new Key.
+         * @param location URL
+         * @param model document model
+         * @param configuration parser configuration key
+         */
+        private Key(String location, String model, int configuration) {
+            this.location = location;
+            this.model = model;
+            this.configuration = configuration;
+        }
+
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) object;
+            return location.equals(other.location)
+                    && model.equals(other.model)
+                    && configuration == other.configuration;
+        }
+
+        public int hashCode() {
+            return (location.hashCode() * 31 + model.hashCode()) * 31
+                    + configuration;
+        }
+    }
+
+    /**
+     * A document, possibly still being parsed by another thread.
+     */
+    private static final class Entry {
+        private final Key key;
+        private final long lastModified;
+        private final long length;
+        private long weight;
+        private Object document;
+        private Throwable failure;
+        private boolean loaded;
+
+        /**
+         * Create a new Entry.
+         * @param key Key
+         * @param lastModified modification time of the file, if any
+         * @param length length of the file, if any
+         */
+        private Entry(Key key, long lastModified, long length) {
+            this.key = key;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * Learn whether the document has been parsed.
+         * @return boolean
+         */
+        private synchronized boolean isLoaded() {
+            return loaded;
+        }
+
+        /**
+         * Sets the parsed document and wakes up the waiting threads.
+         * @param document parsed document
+         */
+        private synchronized void setDocument(Object document) {
+            this.document = document;
+            loaded = true;
+            notifyAll();
+        }
+
+        /**
+         * Records a parse error and wakes up the waiting threads.
+         * @param failure exception or error
+         */
+        private synchronized void setFailure(Throwable failure) {
+            this.failure = failure;
+            loaded = true;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the document has been parsed.
+         * @return Object
+         */
+        private synchronized Object getDocument() {
+            boolean interrupted = false;
+            while (!loaded) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw new JXPathException(failure.getMessage(), failure);
+            }
+            return document;
+        }
+    }
+}
@@ -16,9 +16,11 @@
  */
 package org.apache.commons.jxpath.xml;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 
 import org.apache.commons.jxpath.Container;
@@ -46,6 +48,12 @@ public class DocumentContainer extends XMLParser2 implements Container {
     /** JDOM constant */
     public static final String MODEL_JDOM = "JDOM";
 
+    /**
+     * DOM parsed on demand, see {@link MappedDOMParser}. Local files are
+     * mapped into memory.
+     */
+    public static final String MODEL_MAPPED = "MAPPED";
+
     private static final long serialVersionUID = -8713290334113427066L;
 
     private static HashMap parserClasses = new HashMap();
@@ -54,6 +62,8 @@ public class DocumentContainer extends XMLParser2 implements Container {
                           "org.apache.commons.jxpath.xml.DOMParser");
         parserClasses.put(MODEL_JDOM,
                           "org.apache.commons.jxpath.xml.JDOMParser");
+        parserClasses.put(MODEL_MAPPED,
+                          "org.apache.commons.jxpath.xml.MappedDOMParser");
     }
 
     private static HashMap parsers = new HashMap();
@@ -61,6 +71,8 @@ public class DocumentContainer extends XMLParser2 implements Container {
     private Object document;
     private URL xmlURL;
     private String model;
+    private int mappedDepth = 1;
+    private transient DocumentCache documentCache;
 
     /**
      * Add an XML parser.  Parsers for the models "DOM" and "JDOM" are
@@ -109,33 +121,93 @@ public class DocumentContainer extends XMLParser2 implements Container {
         this.model = model;
     }
 
+    /**
+     * Set the cache to share the document with other containers reading
+     * the same URL. If a cache is set, the document is looked up in it
+     * on each access, so that a modified file is read again.
+     * @param documentCache DocumentCache, or null to keep the document
+     *   in this container only
+     * @see DocumentCache#getSharedCache()
+     */
+    public void setDocumentCache(DocumentCache documentCache) {
+        this.documentCache = documentCache;
+        document = null;
+    }
+
+    /**
+     * Set how many levels of elements are parsed up front by the
+     * "MAPPED" model. The setting only applies to this container.
+     * @param depth number of levels, 0 or more
+     * @see MappedDOMParser#setDepth(int)
+     */
+    public void setMappedDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must not be negative: "
+                    + depth);
+        }
+        this.mappedDepth = depth;
+    }
+
+    /**
+     * Get the number of levels of elements parsed up front by the
+     * "MAPPED" model.
+     * @return int
+     */
+    public int getMappedDepth() {
+        return mappedDepth;
+    }
+
+    /**
+     * Get the cache this container shares its document through.
+     * @return DocumentCache or null
+     */
+    public DocumentCache getDocumentCache() {
+        return documentCache;
+    }
+
     /**
      * Reads XML, caches it internally and returns the Document.
      * @return Object
      */
     public Object getValue() {
+        if (documentCache != null) {
+            return documentCache.getDocument(this, xmlURL, model,
+                    getConfigurationKey());
+        }
         if (document == null) {
+            document = loadDocument();
+        }
+        return document;
+    }
+
+    /**
+     * Reads and parses XML.
+     * @return Object
+     */
+    Object loadDocument() {
+        File file = getMappedFile();
+        if (file != null) {
+            return parseXML(file);
+        }
+        try {
+            InputStream stream = null;
             try {
-                InputStream stream = null;
-                try {
-                    if (xmlURL != null) {
-                        stream = xmlURL.openStream();
-                    }
-                    document = parseXML(stream);
-                }
-                finally {
-                    if (stream != null) {
-                        stream.close();
-                    }
+                if (xmlURL != null) {
+                    stream = xmlURL.openStream();
                 }
+                return parseXML(stream);
             }
-            catch (IOException ex) {
-                throw new JXPathException(
-                    "Cannot read XML from: " + xmlURL.toString(),
-                    ex);
+            finally {
+                if (stream != null) {
+                    stream.close();
+                }
             }
         }
-        return document;
+        catch (IOException ex) {
+            throw new JXPathException(
+                "Cannot read XML from: " + xmlURL.toString(),
+                ex);
+        }
     }
 
     /**
@@ -144,7 +216,45 @@ public class DocumentContainer extends XMLParser2 implements Container {
      * @return Object
      */
     public Object parseXML(InputStream stream) {
+        return getConfiguredParser().parseXML(stream);
+    }
+
+    /**
+     * Parses XML from a buffer using the parser for the specified model.
+     * @param buffer ByteBuffer
+     * @return Object
+     */
+    public Object parseXML(ByteBuffer buffer) {
+        XMLParser parser = getConfiguredParser();
+        return parser instanceof XMLParser2
+                ? ((XMLParser2) parser).parseXML(buffer)
+                : super.parseXML(buffer);
+    }
+
+    /**
+     * Parses an XML file using the parser for the specified model.
+     * @param file File
+     * @return Object
+     */
+    public Object parseXML(File file) {
+        XMLParser parser = getConfiguredParser();
+        return parser instanceof XMLParser2
+                ? ((XMLParser2) parser).parseXML(file)
+                : super.parseXML(file);
+    }
+
+    /**
+     * Get the parser for the model, configured like this container.
+     * @return XMLParser
+     */
+    private XMLParser getConfiguredParser() {
         XMLParser parser = getParser(model);
+        if (parser instanceof MappedDOMParser) {
+            // Not shared, so that each container has its own depth
+            MappedDOMParser mapped = new MappedDOMParser();
+            mapped.setDepth(mappedDepth);
+            parser = mapped;
+        }
         if (parser instanceof XMLParser2) {
             XMLParser2 parser2 = (XMLParser2) parser;
             parser2.setValidating(isValidating());
@@ -155,7 +265,23 @@ public class DocumentContainer extends XMLParser2 implements Container {
             parser2.setIgnoringComments(isIgnoringComments());
             parser2.setCoalescing(isCoalescing());
         }
-        return parser.parseXML(stream);
+        return parser;
+    }
+
+    protected int getConfigurationKey() {
+        int key = super.getConfigurationKey();
+        return getParser(model) instanceof MappedDOMParser
+                ? key | mappedDepth << 6 : key;
+    }
+
+    /**
+     * Get the local file to map into memory, if the model parses files
+     * on demand.
+     * @return File or null
+     */
+    private File getMappedFile() {
+        return getParser(model) instanceof MappedDOMParser
+                ? DocumentCache.getFile(xmlURL) : null;
     }
 
     /**
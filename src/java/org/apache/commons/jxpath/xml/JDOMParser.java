@@ -23,28 +23,42 @@ import org.jdom.input.SAXBuilder;
 
 /**
  * An implementation of the XMLParser interface that produces a JDOM Document.
+ * SAXBuilders, together with their underlying SAX parsers, are reused for
+ * subsequent documents with the same configuration once they have parsed
+ * a document successfully.
  *
  * @author Dmitri Plotnikov
  * @version $Revision$ $Date$
  */
 public class JDOMParser extends XMLParser2 {
 
+    private static final ParserPool BUILDERS = new ParserPool();
+
     public Object parseXML(InputStream stream) {
         if (!isNamespaceAware()) {
             throw new JXPathException("JDOM parser configuration error. JDOM "
                     + "does not support the namespaceAware=false setting.");
         }
 
-        try {
-            SAXBuilder builder = new SAXBuilder();
+        int key = getConfigurationKey();
+        SAXBuilder builder = (SAXBuilder) BUILDERS.acquire(key);
+        if (builder == null) {
+            builder = new SAXBuilder();
+            builder.setReuseParser(true);
             builder.setExpandEntities(isExpandEntityReferences());
             builder.setIgnoringElementContentWhitespace(
                     isIgnoringElementContentWhitespace());
             builder.setValidation(isValidating());
-            return builder.build(stream);
+        }
+        Object document;
+        try {
+            document = builder.build(stream);
         }
         catch (Exception ex) {
+            // The builder may be left in the middle of a document
             throw new JXPathException("JDOM parser error", ex);
         }
+        BUILDERS.release(key, builder);
+        return document;
     }
 }
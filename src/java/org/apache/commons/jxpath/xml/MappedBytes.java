@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.xml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only random access to the bytes of a file mapped into memory.
+ * Files larger than a single ByteBuffer can address are mapped in
+ * several segments.
+ *
+ * @version $Revision$ $Date$
+ */
+class MappedBytes {
+
+    private static final int SEGMENT_BITS = 30;
+
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    private static final int SEGMENT_MASK = (int) SEGMENT_SIZE - 1;
+
+    private ByteBuffer[] segments;
+    private long length;
+
+    /**
+     * Create a new MappedBytes for the remaining bytes of a buffer.
+     * @param buffer ByteBuffer
+     */
+    public MappedBytes(ByteBuffer buffer) {
+        this.segments = new ByteBuffer[] {buffer.slice()};
+        this.length = segments[0].capacity();
+    }
+
+    /**
+     * Create a new MappedBytes.
+     * @param segments buffers of SEGMENT_SIZE bytes, except for the last one
+     * @param length total length
+     */
+    private MappedBytes(ByteBuffer[] segments, long length) {
+        this.segments = segments;
+        this.length = length;
+    }
+
+    /**
+     * Maps a file into memory.
+     * @param file to map
+     * @return MappedBytes
+     * @throws IOException if the file cannot be mapped
+     */
+    public static MappedBytes map(File file) throws IOException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            FileChannel channel = stream.getChannel();
+            long length = channel.size();
+            ByteBuffer[] segments =
+                new ByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long offset = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        offset, Math.min(SEGMENT_SIZE, length - offset));
+            }
+            return new MappedBytes(segments, length);
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Get the length.
+     * @return long
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Get the byte at the specified position.
+     * @param position in the file
+     * @return byte
+     */
+    public byte get(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)]
+                .get((int) position & SEGMENT_MASK);
+    }
+
+    /**
+     * Copies bytes into an array.
+     * @param position of the first byte
+     * @param bytes destination
+     * @param offset in the destination
+     * @param count number of bytes, which must be available
+     */
+    public void get(long position, byte[] bytes, int offset, int count) {
+        while (count > 0) {
+            ByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)].duplicate();
+            segment.position((int) position & SEGMENT_MASK);
+            int n = Math.min(count, segment.remaining());
+            segment.get(bytes, offset, n);
+            position += n;
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Opens a stream over a range of bytes.
+     * @param from position of the first byte
+     * @param to position after the last byte
+     * @return InputStream
+     */
+    public InputStream openStream(final long from, final long to) {
+        return new InputStream() {
+            private long position = from;
+
+            public int read() {
+                return position < to ? get(position++) & 0xFF : -1;
+            }
+
+            public int read(byte[] bytes, int offset, int count) {
+                if (count == 0) {
+                    return 0;
+                }
+                if (position >= to) {
+                    return -1;
+                }
+                int n = (int) Math.min(count, to - position);
+                get(position, bytes, offset, n);
+                position += n;
+                return n;
+            }
+
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, to - position);
+            }
+        };
+    }
+}
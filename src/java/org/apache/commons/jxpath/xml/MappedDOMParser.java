@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.jxpath.JXPathException;
+import org.apache.commons.jxpath.ri.model.dom.NodeMaterializer;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * An implementation of the XMLParser interface that produces a DOM Document
+ * whose deeper elements are parsed only when XPath navigation reaches them.
+ * Files are mapped into memory and indexed in a single pass; the elements
+ * nested deeper than {@link #getDepth() depth} levels are left empty until
+ * their content is needed, so queries that touch a small part of a large
+ * document only build that part.
+ * <p>
+ * Nodes obtained directly, e.g. through {@link org.apache.commons.jxpath.Pointer#getNode()},
+ * may still be placeholders; call {@link #materialize(Node)} to complete them.
+ * Until the document is complete, only the thread that parsed it may use it.
+ * The document must use an ASCII-compatible encoding. Validation, external
+ * DTDs and <code>id()</code> lookups of elements that are parsed on demand
+ * are not supported.
+ *
+ * @version $Revision$ $Date$
+ */
+public class MappedDOMParser extends XMLParser2 {
+
+    private int depth = 1;
+
+    /**
+     * Set how many levels of elements are parsed up front. With the
+     * default of 1 only the document element is, and each of its child
+     * elements is parsed when it is first navigated to.
+     * @param depth number of levels, 0 or more
+     */
+    public void setDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must not be negative: "
+                    + depth);
+        }
+        this.depth = depth;
+    }
+
+    /**
+     * Get the number of levels of elements parsed up front.
+     * @return int
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    protected int getConfigurationKey() {
+        return super.getConfigurationKey() | depth << 6;
+    }
+
+    public Object parseXML(InputStream stream) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return parseXML(ByteBuffer.wrap(out.toByteArray()));
+        }
+        catch (IOException ex) {
+            throw new JXPathException("Cannot read XML", ex);
+        }
+    }
+
+    public Object parseXML(ByteBuffer buffer) {
+        return new MappedDocument(new MappedBytes(buffer), this).getDocument();
+    }
+
+    public Object parseXML(File file) {
+        MappedBytes bytes;
+        try {
+            bytes = MappedBytes.map(file);
+        }
+        catch (IOException ex) {
+            throw new JXPathException("Cannot read XML from: " + file, ex);
+        }
+        return new MappedDocument(bytes, this).getDocument();
+    }
+
+    /**
+     * Completes a node of a document produced by this parser, including
+     * all its descendants. Does nothing for other nodes.
+     * @param node Node
+     */
+    public static void materialize(Node node) {
+        Document document = node.getNodeType() == Node.DOCUMENT_NODE
+                ? (Document) node : node.getOwnerDocument();
+        Object materializer = document == null ? null
+                : document.getUserData(NodeMaterializer.USER_DATA_KEY);
+        if (materializer instanceof MappedDocument) {
+            ((MappedDocument) materializer).materialize(node, true);
+        }
+    }
+}
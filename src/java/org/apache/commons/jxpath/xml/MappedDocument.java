@@ -0,0 +1,683 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.apache.commons.jxpath.JXPathException;
+import org.apache.commons.jxpath.ri.model.dom.NodeMaterializer;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A DOM Document built from a mapped XML file, whose elements below
+ * a certain depth are parsed only when they are navigated to.
+ * <p>
+ * A single pass over the bytes indexes the elements at the cut-off
+ * level: the offsets of their start tags, contents and ends and the ids
+ * of their names. The document is then parsed with the content of those
+ * elements left out, so they appear as empty placeholders. When
+ * a placeholder is materialized, the bytes of its element are parsed
+ * with the in-scope namespace declarations and the DOCTYPE of the
+ * document, and the resulting children are moved into the placeholder.
+ * <p>
+ * Materializing modifies the DOM, which DOM implementations do not
+ * synchronize with readers. Until all placeholders have been materialized,
+ * the document may therefore only be used by the thread that parsed it;
+ * other threads get a JXPathException. Once it is complete, e.g. after
+ * {@link MappedDOMParser#materialize(Node)} of the document, it can be
+ * published to other threads like any other DOM.
+ *
+ * @version $Revision$ $Date$
+ */
+class MappedDocument implements NodeMaterializer {
+
+    private static final String FRAGMENT = "jxpath-fragment";
+
+    private static final byte[] EMPTY_TAG_END = {'/', '>'};
+
+    private MappedBytes bytes;
+    private long length;
+    private int placeholderLevel;
+    private DOMParser parser;
+    private Charset charset = Charset.forName("UTF-8");
+    private long declStart = -1;
+    private long declEnd;
+    private long doctypeStart = -1;
+    private long doctypeEnd;
+
+    private int count;
+    private long[] starts = new long[16];
+    private long[] contentStarts = new long[16];
+    private long[] ends = new long[16];
+    private int[] nameIds = new int[16];
+    private ArrayList names = new ArrayList();
+    private HashMap nameIdMap = new HashMap();
+
+    private Document document;
+    private IdentityHashMap pending = new IdentityHashMap();
+    private final Thread owner = Thread.currentThread();
+
+    /**
+     * Create a new MappedDocument.
+     * @param bytes XML
+     * @param config parser settings
+     */
+    public MappedDocument(MappedBytes bytes, MappedDOMParser config) {
+        this.bytes = bytes;
+        this.length = bytes.length();
+        this.placeholderLevel = config.getDepth() + 1;
+
+        // Fragments and the skeleton lack parts of the content
+        parser = new DOMParser();
+        parser.setNamespaceAware(config.isNamespaceAware());
+        parser.setIgnoringElementContentWhitespace(
+                config.isIgnoringElementContentWhitespace());
+        parser.setExpandEntityReferences(config.isExpandEntityReferences());
+        parser.setIgnoringComments(config.isIgnoringComments());
+        parser.setCoalescing(config.isCoalescing());
+
+        index();
+        document = (Document) parser.parseXML(new SkeletonInputStream());
+        int bound = bind(document.getDocumentElement(), 1, 0);
+        if (bound != count) {
+            throw new JXPathException("Cannot index the mapped XML document: "
+                    + count + " elements found at level " + placeholderLevel
+                    + ", " + bound + " parsed");
+        }
+        document.setUserData(USER_DATA_KEY, this, null);
+    }
+
+    /**
+     * Get the document.
+     * @return Document
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+    public void materialize(Node node, boolean deep) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        checkOwner();
+        Integer index = (Integer) pending.remove(node);
+        if (index != null) {
+            load((Element) node, index.intValue());
+        }
+        else if (deep && getLevel(node) < placeholderLevel) {
+            for (Node child = node.getFirstChild(); child != null;
+                    child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    materialize(child, true);
+                }
+            }
+        }
+    }
+
+    public Node readContent(Node node) {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        checkOwner();
+        Integer index = (Integer) pending.get(node);
+        return index == null ? null : parse((Element) node, index.intValue());
+    }
+
+    /**
+     * Throws a JXPathException unless called by the thread that parsed
+     * the document.
+     */
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new JXPathException("A mapped XML document can only be "
+                    + "used by the thread that parsed it until it is "
+                    + "materialized completely");
+        }
+    }
+
+    /**
+     * Get the level of a node, the document being level 0 and the
+     * document element level 1.
+     * @param node Node
+     * @return int, at most <code>placeholderLevel</code>
+     */
+    private int getLevel(Node node) {
+        int level = 0;
+        while (node != null && node.getNodeType() != Node.DOCUMENT_NODE
+                && level < placeholderLevel) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                level++;
+            }
+            node = node.getParentNode();
+        }
+        return level;
+    }
+
+    /**
+     * Parses the content of a placeholder and moves it into the placeholder.
+     * @param placeholder Element
+     * @param index of the placeholder
+     */
+    private void load(Element placeholder, int index) {
+        Node element = parse(placeholder, index);
+        if (element == null) {
+            return;
+        }
+        Node child;
+        while ((child = element.getFirstChild()) != null) {
+            Node adopted = null;
+            try {
+                adopted = document.adoptNode(child);
+            }
+            catch (DOMException ex) {
+                // Fall back to a copy
+                adopted = null;
+            }
+            if (adopted == null) {
+                element.removeChild(child);
+                adopted = document.importNode(child, true);
+            }
+            placeholder.appendChild(adopted);
+        }
+    }
+
+    /**
+     * Parses the element of a placeholder into a separate document.
+     * @param placeholder Element
+     * @param index of the placeholder
+     * @return the parsed element, or null if the element is empty
+     */
+    private Node parse(Element placeholder, int index) {
+        if (ends[index] == contentStarts[index]) {
+            return null;
+        }
+        Document fragment = (Document) parser.parseXML(openFragment(placeholder, index));
+        Node element = fragment.getDocumentElement().getFirstChild();
+        while (element.getNodeType() != Node.ELEMENT_NODE) {
+            element = element.getNextSibling();
+        }
+        return element;
+    }
+
+    /**
+     * Opens a stream over the element of a placeholder, wrapped in an
+     * element declaring the namespaces in scope of the placeholder and
+     * the <code>xml:space</code> attribute inherited by it.
+     * @param placeholder Element
+     * @param index of the placeholder
+     * @return InputStream
+     */
+    private InputStream openFragment(Element placeholder, int index) {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        if (declStart != -1) {
+            copy(declStart, declEnd, head);
+        }
+        if (doctypeStart != -1) {
+            copy(doctypeStart, doctypeEnd, head);
+        }
+        StringBuffer buffer = new StringBuffer();
+        buffer.append('<').append(FRAGMENT);
+        Set prefixes = new HashSet();
+        for (Node node = placeholder.getParentNode(); node instanceof Element;
+                node = node.getParentNode()) {
+            NamedNodeMap attributes = node.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attr = attributes.item(i);
+                String name = attr.getNodeName();
+                if ((name.equals("xmlns") || name.startsWith("xmlns:")
+                        || name.equals("xml:space"))
+                        && prefixes.add(name)) {
+                    buffer.append(' ').append(name).append("=\"");
+                    appendEscaped(buffer, attr.getNodeValue());
+                    buffer.append('"');
+                }
+            }
+        }
+        buffer.append('>');
+        byte[] start = buffer.toString().getBytes(charset);
+        head.write(start, 0, start.length);
+        byte[] end = ("</" + FRAGMENT + ">").getBytes(charset);
+        return new SequenceInputStream(
+                new SequenceInputStream(
+                        new ByteArrayInputStream(head.toByteArray()),
+                        bytes.openStream(starts[index], ends[index])),
+                new ByteArrayInputStream(end));
+    }
+
+    /**
+     * Appends an attribute value, escaping the characters that cannot
+     * appear in a double-quoted value.
+     * @param buffer StringBuffer
+     * @param value String
+     */
+    private static void appendEscaped(StringBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' :
+                    buffer.append("&amp;");
+                    break;
+                case '<' :
+                    buffer.append("&lt;");
+                    break;
+                case '"' :
+                    buffer.append("&quot;");
+                    break;
+                default :
+                    buffer.append(c);
+            }
+        }
+    }
+
+    /**
+     * Copies a range of bytes into a stream.
+     * @param from position of the first byte
+     * @param to position after the last byte
+     * @param out ByteArrayOutputStream
+     */
+    private void copy(long from, long to, ByteArrayOutputStream out) {
+        byte[] buffer = new byte[(int) (to - from)];
+        bytes.get(from, buffer, 0, buffer.length);
+        out.write(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Associates the placeholders of the parsed skeleton with the index.
+     * @param node current element
+     * @param level of the element
+     * @param next index of the next placeholder
+     * @return index of the next placeholder after this element
+     */
+    private int bind(Node node, int level, int next) {
+        if (level == placeholderLevel) {
+            if (next >= count
+                    || !node.getNodeName().equals(names.get(nameIds[next]))) {
+                throw new JXPathException(
+                        "Cannot index the mapped XML document: unexpected element "
+                                + node.getNodeName());
+            }
+            pending.put(node, Integer.valueOf(next));
+            return next + 1;
+        }
+        for (Node child = node.getFirstChild(); child != null;
+                child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                next = bind(child, level + 1, next);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Scans the bytes once, recording the XML declaration, the DOCTYPE
+     * and the elements at the placeholder level.
+     */
+    private void index() {
+        long pos = 0;
+        if (length >= 2) {
+            int b0 = bytes.get(0) & 0xFF;
+            int b1 = bytes.get(1) & 0xFF;
+            if (b0 == 0xFE && b1 == 0xFF || b0 == 0xFF && b1 == 0xFE
+                    || b0 == 0 || b1 == 0) {
+                throw new JXPathException("Mapped XML documents must use "
+                        + "an ASCII-compatible encoding such as UTF-8");
+            }
+        }
+        if (length >= 3 && (bytes.get(0) & 0xFF) == 0xEF
+                && (bytes.get(1) & 0xFF) == 0xBB && (bytes.get(2) & 0xFF) == 0xBF) {
+            pos = 3;
+        }
+        long first = pos;
+        int level = 0;
+        int open = -1;
+        while (true) {
+            long lt = indexOf('<', pos);
+            if (lt == -1) {
+                break;
+            }
+            byte c = at(lt + 1);
+            if (c == '?') {
+                long end = find("?>", lt + 2) + 2;
+                if (lt == first && startsWith(lt, "<?xml") && isSpace(at(lt + 5))) {
+                    declStart = lt;
+                    declEnd = end;
+                    parseEncoding(lt + 5, end);
+                }
+                pos = end;
+            }
+            else if (c == '!') {
+                if (startsWith(lt, "<!--")) {
+                    pos = find("-->", lt + 4) + 3;
+                }
+                else if (startsWith(lt, "<![CDATA[")) {
+                    pos = find("]]>", lt + 9) + 3;
+                }
+                else {
+                    pos = skipDeclaration(lt + 2);
+                    if (level == 0) {
+                        doctypeStart = lt;
+                        doctypeEnd = pos;
+                    }
+                }
+            }
+            else if (c == '/') {
+                pos = find(">", lt + 2) + 1;
+                if (level == placeholderLevel) {
+                    ends[open] = pos;
+                }
+                level--;
+            }
+            else {
+                long gt = skipTag(lt + 1);
+                boolean empty = at(gt - 1) == '/';
+                level++;
+                if (level == placeholderLevel) {
+                    open = add(lt, gt + 1, getNameId(lt + 1));
+                    if (empty) {
+                        ends[open] = gt + 1;
+                    }
+                }
+                if (empty) {
+                    level--;
+                }
+                pos = gt + 1;
+            }
+        }
+    }
+
+    /**
+     * Adds a placeholder to the index.
+     * @param start position of the start tag
+     * @param contentStart position after the start tag
+     * @param nameId id of the element name
+     * @return index of the placeholder
+     */
+    private int add(long start, long contentStart, int nameId) {
+        if (count == starts.length) {
+            int capacity = count * 2;
+            long[] newStarts = new long[capacity];
+            long[] newContentStarts = new long[capacity];
+            long[] newEnds = new long[capacity];
+            int[] newNameIds = new int[capacity];
+            System.arraycopy(starts, 0, newStarts, 0, count);
+            System.arraycopy(contentStarts, 0, newContentStarts, 0, count);
+            System.arraycopy(ends, 0, newEnds, 0, count);
+            System.arraycopy(nameIds, 0, newNameIds, 0, count);
+            starts = newStarts;
+            contentStarts = newContentStarts;
+            ends = newEnds;
+            nameIds = newNameIds;
+        }
+        starts[count] = start;
+        contentStarts[count] = contentStart;
+        ends[count] = contentStart;
+        nameIds[count] = nameId;
+        return count++;
+    }
+
+    /**
+     * Get the id of the name of the tag starting at the specified position.
+     * @param pos position of the name
+     * @return int
+     */
+    private int getNameId(long pos) {
+        long end = pos;
+        byte c = at(end);
+        while (!isSpace(c) && c != '/' && c != '>') {
+            c = at(++end);
+        }
+        byte[] buffer = new byte[(int) (end - pos)];
+        bytes.get(pos, buffer, 0, buffer.length);
+        String name = new String(buffer, charset);
+        Integer id = (Integer) nameIdMap.get(name);
+        if (id == null) {
+            id = Integer.valueOf(names.size());
+            names.add(name);
+            nameIdMap.put(name, id);
+        }
+        return id.intValue();
+    }
+
+    /**
+     * Reads the encoding from the pseudo-attributes of the XML declaration.
+     * @param from position after "&lt;?xml"
+     * @param to position after the declaration
+     */
+    private void parseEncoding(long from, long to) {
+        byte[] buffer = new byte[(int) (to - from)];
+        bytes.get(from, buffer, 0, buffer.length);
+        String decl = new String(buffer, charset);
+        int i = decl.indexOf("encoding");
+        if (i == -1) {
+            return;
+        }
+        i = decl.indexOf('=', i) + 1;
+        while (i < decl.length() && Character.isWhitespace(decl.charAt(i))) {
+            i++;
+        }
+        if (i > 0 && i < decl.length()) {
+            char quote = decl.charAt(i);
+            int end = decl.indexOf(quote, i + 1);
+            if (end != -1) {
+                charset = Charset.forName(decl.substring(i + 1, end));
+            }
+        }
+    }
+
+    /**
+     * Skips a markup declaration such as DOCTYPE, including an internal
+     * subset.
+     * @param pos position after "&lt;!"
+     * @return position after the declaration
+     */
+    private long skipDeclaration(long pos) {
+        int brackets = 0;
+        while (true) {
+            byte c = at(pos);
+            if (c == '"' || c == '\'') {
+                pos = find(c, pos + 1) + 1;
+            }
+            else if (c == '<' && startsWith(pos, "<!--")) {
+                pos = find("-->", pos + 4) + 3;
+            }
+            else if (c == '[') {
+                brackets++;
+                pos++;
+            }
+            else if (c == ']') {
+                brackets--;
+                pos++;
+            }
+            else if (c == '>' && brackets == 0) {
+                return pos + 1;
+            }
+            else {
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Finds the end of a start tag, skipping quoted attribute values.
+     * @param pos position of the name
+     * @return position of the closing "&gt;"
+     */
+    private long skipTag(long pos) {
+        while (true) {
+            byte c = at(pos);
+            if (c == '"' || c == '\'') {
+                pos = find(c, pos + 1) + 1;
+            }
+            else if (c == '>') {
+                return pos;
+            }
+            else {
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Get the byte at the specified position.
+     * @param pos position
+     * @return byte
+     */
+    private byte at(long pos) {
+        if (pos >= length) {
+            throw new JXPathException("Unexpected end of the XML document");
+        }
+        return bytes.get(pos);
+    }
+
+    /**
+     * Finds a byte.
+     * @param c byte to look for
+     * @param pos position to start at
+     * @return position or -1
+     */
+    private long indexOf(char c, long pos) {
+        while (pos < length) {
+            if (bytes.get(pos) == c) {
+                return pos;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a byte that must be present.
+     * @param c byte to look for
+     * @param pos position to start at
+     * @return position
+     */
+    private long find(byte c, long pos) {
+        while (at(pos) != c) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Finds an ASCII string that must be present.
+     * @param s to look for
+     * @param pos position to start at
+     * @return position
+     */
+    private long find(String s, long pos) {
+        byte first = (byte) s.charAt(0);
+        while (true) {
+            pos = find(first, pos);
+            if (startsWith(pos, s)) {
+                return pos;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Learn whether an ASCII string occurs at the specified position.
+     * @param pos position
+     * @param s String
+     * @return boolean
+     */
+    private boolean startsWith(long pos, String s) {
+        if (pos + s.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (bytes.get(pos + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Learn whether a byte is XML whitespace.
+     * @param c byte
+     * @return boolean
+     */
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    /**
+     * Reads the document with the content of the placeholders left out,
+     * turning their start tags into empty-element tags.
+     */
+    private class SkeletonInputStream extends InputStream {
+        private long position;
+        private int next = nextCut(0);
+        private int tagEnd = EMPTY_TAG_END.length;
+
+        /**
+         * Finds the next placeholder with content.
+         * @param from index to start at
+         * @return index or <code>count</code>
+         */
+        private int nextCut(int from) {
+            while (from < count && ends[from] == contentStarts[from]) {
+                from++;
+            }
+            return from;
+        }
+
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        public int read(byte[] b, int offset, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (tagEnd < EMPTY_TAG_END.length) {
+                b[offset] = EMPTY_TAG_END[tagEnd++];
+                return 1;
+            }
+            long stop = next < count ? contentStarts[next] - 1 : length;
+            if (position < stop) {
+                int n = (int) Math.min(len, stop - position);
+                bytes.get(position, b, offset, n);
+                position += n;
+                return n;
+            }
+            if (next >= count) {
+                return -1;
+            }
+            position = ends[next];
+            next = nextCut(next + 1);
+            tagEnd = 0;
+            return read(b, offset, len);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.xml;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Keeps idle parsers for reuse, keyed by their configuration. Parsers are
+ * not thread safe, so each one is held by a single thread between
+ * {@link #acquire(int)} and {@link #release(int, Object)}. Parsers that
+ * failed on a document are not returned, as they may not be reusable.
+ *
+ * @version $Revision$ $Date$
+ */
+class ParserPool {
+
+    /**
+     * Maximum number of idle parsers kept per configuration.
+     */
+    private static final int MAX_IDLE = 8;
+
+    private HashMap idle = new HashMap();
+
+    /**
+     * Takes an idle parser.
+     * @param key configuration key
+     * @return parser or <code>null</code> if there is none
+     */
+    public synchronized Object acquire(int key) {
+        ArrayList list = (ArrayList) idle.get(Integer.valueOf(key));
+        return list == null || list.isEmpty() ? null
+                : list.remove(list.size() - 1);
+    }
+
+    /**
+     * Returns a parser to the pool.
+     * @param key configuration key
+     * @param parser to keep, must be ready for the next document
+     */
+    public synchronized void release(int key, Object parser) {
+        Integer k = Integer.valueOf(key);
+        ArrayList list = (ArrayList) idle.get(k);
+        if (list == null) {
+            list = new ArrayList();
+            idle.put(k, list);
+        }
+        if (list.size() < MAX_IDLE) {
+            list.add(parser);
+        }
+    }
+}
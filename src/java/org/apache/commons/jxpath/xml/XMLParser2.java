@@ -16,7 +16,15 @@
  */
 package org.apache.commons.jxpath.xml;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.jxpath.JXPathException;
 
 /**
  * The abstract superclass of XML parsers that produce DOM Documents.
@@ -141,5 +149,57 @@ public abstract class XMLParser2 implements XMLParser {
         this.coalescing = coalescing;
     }
 
+    /**
+     * Get a key that is the same for all parsers configured the same way,
+     * used to share underlying parsers.
+     * @return int
+     */
+    protected int getConfigurationKey() {
+        return (validating ? 1 : 0)
+                | (namespaceAware ? 2 : 0)
+                | (whitespace ? 4 : 0)
+                | (expandEntityRef ? 8 : 0)
+                | (ignoreComments ? 16 : 0)
+                | (coalescing ? 32 : 0);
+    }
+
     public abstract Object parseXML(InputStream stream);
+
+    /**
+     * Reads XML from the remaining bytes of the supplied buffer, which
+     * can be a memory-mapped file.
+     * @param buffer ByteBuffer
+     * @return Object
+     */
+    public Object parseXML(ByteBuffer buffer) {
+        return parseXML(new ByteBufferInputStream(buffer));
+    }
+
+    /**
+     * Reads the supplied XML file, mapping it into memory rather than
+     * reading it through a FileInputStream. A single mapping is limited
+     * to 2GB, so larger files are read through a buffered stream instead.
+     * @param file File
+     * @return Object
+     */
+    public Object parseXML(File file) {
+        try {
+            FileInputStream stream = new FileInputStream(file);
+            try {
+                FileChannel channel = stream.getChannel();
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    return parseXML(new BufferedInputStream(stream));
+                }
+                return parseXML(channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+            finally {
+                stream.close();
+            }
+        }
+        catch (IOException ex) {
+            throw new JXPathException("Cannot read XML from: " + file, ex);
+        }
+    }
 }
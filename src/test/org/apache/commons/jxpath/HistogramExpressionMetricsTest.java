@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.jxpath.HistogramExpressionMetrics.ExpressionStatistics;
+import org.apache.commons.jxpath.HistogramExpressionMetrics.Histogram;
+
+/**
+ * Test for the collection of expression metrics.
+ */
+public class HistogramExpressionMetricsTest extends TestCase {
+
+    private HistogramExpressionMetrics metrics;
+    private JXPathContext context;
+
+    protected void setUp() throws Exception {
+        metrics = new HistogramExpressionMetrics();
+        context = JXPathContext.newContext(new TestBean());
+        context.setMetrics(metrics);
+    }
+
+    public void testGetValue() {
+        // An expression no other test compiles, so it is not cached
+        String xpath = "nestedBean/name[. = 'Name 0' or true()]";
+        assertEquals("Name 0", context.getValue(xpath));
+        context.getValue(xpath);
+
+        ExpressionStatistics stats = metrics.getStatistics(xpath);
+        assertEquals(1, stats.getCompileTime().getCount());
+        assertEquals(2, stats.getEvaluationTime().getCount());
+        assertTrue(stats.getNodesVisited().getMax() > 0);
+        assertTrue(stats.getPointersAllocated().getMax() > 0);
+        assertTrue(stats.getReflectiveCalls().getMax() > 0);
+    }
+
+    public void testIterate() {
+        Iterator it = context.iterate("beans/name");
+        assertNull(metrics.getStatistics("beans/name"));
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertEquals(2, count);
+        ExpressionStatistics stats = metrics.getStatistics("beans/name");
+        assertEquals(1, stats.getEvaluationTime().getCount());
+        assertTrue(stats.getNodesVisited().getMax() >= 2);
+        assertTrue(metrics.toString().indexOf("beans/name\tevalMicros\t1\t") >= 0);
+    }
+
+    public void testInherited() {
+        JXPathContext child = JXPathContext.newContext(context, new TestBean());
+        assertSame(metrics, child.getMetrics());
+        child.getValue("int");
+        assertEquals(1, metrics.getStatistics("int").getEvaluationTime().getCount());
+        context.setMetrics(null);
+        assertNull(child.getMetrics());
+    }
+
+    public void testHistogram() {
+        long[] values = { 0, 1, 3, 100 };
+        for (int i = 0; i < values.length; i++) {
+            metrics.evaluated("x", values[i], 0, 0, 0);
+        }
+        Histogram histogram = metrics.getStatistics("x").getEvaluationTime();
+        assertEquals(4, histogram.getCount());
+        assertEquals(104, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(1, histogram.getBucketCount(0));
+        assertEquals(1, histogram.getBucketCount(2));
+        assertEquals(1, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(127, Histogram.getBucketLimit(7));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests {@link IndexedVariables} and the resolution of variable references.
+ *
+ * @version $Revision$ $Date$
+ */
+public class IndexedVariablesTest extends JXPathTestCase {
+
+    /**
+     * Counts the lookups of declared variables.
+     */
+    private static class CountingVariables extends BasicVariables {
+        private int lookups;
+
+        public boolean isDeclaredVariable(String varName) {
+            lookups++;
+            return super.isDeclaredVariable(varName);
+        }
+    }
+
+    private JXPathContext context;
+    private IndexedVariables vars;
+
+    public void setUp() {
+        context = JXPathContext.newContext(new TestBean());
+        vars = new IndexedVariables();
+        context.setVariables(vars);
+    }
+
+    public void testSlots() {
+        vars.declareVariable("a", "x");
+        vars.declareVariable("b", null);
+        int slot = vars.getSlot("a");
+        assertEquals(0, slot);
+        assertEquals(1, vars.getSlot("b"));
+        assertEquals(-1, vars.getSlot("c"));
+        assertTrue(vars.isDeclaredVariable("b"));
+        assertNull(vars.getVariable("b"));
+
+        vars.declareVariable("a", "y");
+        assertEquals(slot, vars.getSlot("a"));
+        assertEquals("y", vars.getVariable(slot));
+
+        vars.undeclareVariable("a");
+        assertFalse(vars.isDeclaredVariable("a"));
+        assertEquals(-1, vars.getSlot("a"));
+        try {
+            vars.getVariable(slot);
+            fail("Undeclared variable");
+        }
+        catch (IllegalArgumentException ex) {
+            // expected
+        }
+        vars.declareVariable("a", "z");
+        assertEquals(slot, vars.getSlot("a"));
+        assertEquals("{a=z, b=null}", vars.toString());
+    }
+
+    public void testGrowth() {
+        for (int i = 0; i < 20; i++) {
+            vars.declareVariable("v" + i, Integer.valueOf(i));
+        }
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.valueOf(i), vars.getVariable("v" + i));
+        }
+    }
+
+    public void testEvaluation() {
+        vars.declareVariable("threshold", Integer.valueOf(2));
+        List values = context.selectNodes("integers[. > $threshold]");
+        assertEquals(Arrays.asList(new Integer[] {Integer.valueOf(3),
+                Integer.valueOf(4)}), values);
+        assertXPathValue(context, "$threshold + 1", Double.valueOf(3));
+    }
+
+    public void testSetValue() {
+        vars.declareVariable("x", "a");
+        context.setValue("$x", "b");
+        assertEquals("b", vars.getVariable("x"));
+        assertEquals(0, vars.getSlot("x"));
+    }
+
+    public void testParentVariables() {
+        vars.declareVariable("x", Integer.valueOf(1));
+        JXPathContext child = JXPathContext.newContext(context, new TestBean());
+        assertXPathValue(child, "integers[$x]", Integer.valueOf(1));
+    }
+
+    public void testUndefinedVariable() {
+        try {
+            context.getValue("integers[. > $missing]");
+            fail("Undefined variable");
+        }
+        catch (JXPathException ex) {
+            // expected
+        }
+    }
+
+    public void testLookupOncePerEvaluation() {
+        CountingVariables counting = new CountingVariables();
+        counting.declareVariable("threshold", Integer.valueOf(2));
+        context.setVariables(counting);
+        context.selectNodes("integers[. > $threshold]");
+        assertEquals(1, counting.lookups);
+    }
+}
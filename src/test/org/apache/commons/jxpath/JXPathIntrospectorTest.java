@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Test for the concurrent introspection of classes.
+ */
+public class JXPathIntrospectorTest extends TestCase {
+
+    public void testWarmUpClasses() {
+        List classes = Arrays.asList(new Class[] {
+                TestBean.class, NestedTestBean.class, String.class });
+        JXPathIntrospector.warmUp(classes, 2);
+        JXPathBeanInfo beanInfo = JXPathIntrospector.getBeanInfo(TestBean.class);
+        assertSame(beanInfo, JXPathIntrospector.getBeanInfo(TestBean.class));
+        assertNotNull(beanInfo.getPropertyDescriptor("nestedBean"));
+        try {
+            JXPathIntrospector.warmUp(classes, 0);
+            fail("Parallelism must be positive");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testWarmUpPackage() {
+        ClassLoader loader = getClass().getClassLoader();
+        List classes = JXPathIntrospector.warmUp(
+                "org.apache.commons.jxpath", loader, 4);
+        assertTrue(classes.contains(TestBean.class));
+        assertTrue(classes.contains(NestedTestBean.class));
+        assertFalse(classes.contains(
+                org.apache.commons.jxpath.ri.JXPathContextReferenceImpl.class));
+
+        // From a jar file
+        classes = JXPathIntrospector.warmUp("junit.framework", loader, 2);
+        assertTrue(classes.contains(TestCase.class));
+    }
+
+    public void testConcurrentInitialization() throws Exception {
+        final JXPathBasicBeanInfo beanInfo = new JXPathBasicBeanInfo(TestBean.class);
+        final Object[] results = new Object[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int n = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    results[n] = beanInfo.getPropertyDescriptors();
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertSame(beanInfo.getPropertyDescriptors(), results[i]);
+        }
+    }
+}
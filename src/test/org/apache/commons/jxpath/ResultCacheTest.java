@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.jxpath.ri.Parser;
+import org.apache.commons.jxpath.ri.QName;
+import org.apache.commons.jxpath.ri.compiler.Expression;
+import org.apache.commons.jxpath.ri.compiler.TreeCompiler;
+
+/**
+ * Tests {@link ResultCache}.
+ *
+ * @version $Revision$ $Date$
+ */
+public class ResultCacheTest extends JXPathTestCase {
+
+    public static class Snapshot {
+        private int calls;
+
+        public String getName() {
+            calls++;
+            return "snapshot";
+        }
+
+        public String[] getItems() {
+            calls++;
+            return new String[] {"a", "b", "c"};
+        }
+
+        public int getCalls() {
+            return calls;
+        }
+    }
+
+    private Snapshot snapshot;
+    private JXPathContext context;
+    private ResultCache cache;
+
+    public void setUp() {
+        snapshot = new Snapshot();
+        context = JXPathContext.newContext(snapshot);
+        cache = new ResultCache(100, 0);
+        context.setResultCache(cache);
+    }
+
+    public void testGetValueCached() {
+        assertEquals("snapshot", context.getValue("name"));
+        assertEquals("snapshot", context.getValue("name"));
+        assertEquals(1, snapshot.getCalls());
+        assertEquals(1, cache.size());
+    }
+
+    public void testCompiledExpressionCached() {
+        CompiledExpression expr = JXPathContext.compile("name");
+        expr.getValue(context);
+        expr.getValue(context);
+        assertEquals(1, snapshot.getCalls());
+    }
+
+    public void testSelectNodesCached() {
+        List nodes = context.selectNodes("items");
+        assertEquals(Arrays.asList(new String[] {"a", "b", "c"}), nodes);
+        nodes.clear();
+        assertEquals(Arrays.asList(new String[] {"a", "b", "c"}),
+            context.selectNodes("items"));
+        assertEquals(1, snapshot.getCalls());
+    }
+
+    public void testVariablesInKey() {
+        context.getVariables().declareVariable("i", Integer.valueOf(1));
+        assertEquals("a", context.getValue("items[$i]"));
+        context.getVariables().declareVariable("i", Integer.valueOf(2));
+        assertEquals("b", context.getValue("items[$i]"));
+        assertEquals("b", context.getValue("items[$i]"));
+        assertEquals(2, snapshot.getCalls());
+    }
+
+    public void testSettingsInKey() {
+        context.getValue("name");
+        context.setLocale(Locale.FRENCH);
+        context.getValue("name");
+        context.setLenient(true);
+        context.getValue("name");
+        context.setFunctions(new FunctionLibrary());
+        context.getValue("name");
+        context.getValue("name");
+        assertEquals(4, snapshot.getCalls());
+    }
+
+    public void testMutableValueNotCached() {
+        String[] items = (String[]) context.getValue("items");
+        items[0] = "x";
+        assertEquals("a", context.getValue("items[1]"));
+        assertEquals(2, snapshot.getCalls());
+    }
+
+    public void testRootInKey() {
+        Snapshot other = new Snapshot();
+        JXPathContext otherContext = JXPathContext.newContext(other);
+        otherContext.setResultCache(cache);
+        context.getValue("name");
+        otherContext.getValue("name");
+        assertEquals(1, other.getCalls());
+        assertEquals(2, cache.size());
+    }
+
+    public void testInheritedFromParent() {
+        JXPathContext child = JXPathContext.newContext(context, snapshot);
+        assertSame(cache, child.getResultCache());
+        child.getValue("name");
+        context.getValue("name");
+        assertEquals(1, snapshot.getCalls());
+    }
+
+    public void testInvalidate() {
+        context.getValue("name");
+        cache.invalidate(new Snapshot());
+        assertEquals(1, cache.size());
+        cache.invalidate(snapshot);
+        assertEquals(0, cache.size());
+        context.getValue("name");
+        assertEquals(2, snapshot.getCalls());
+    }
+
+    public void testMaximumSize() {
+        cache = new ResultCache(1, 0);
+        context.setResultCache(cache);
+        context.getValue("name");
+        context.getValue("items[1]");
+        assertEquals(1, cache.size());
+        context.getValue("name");
+        assertEquals(3, snapshot.getCalls());
+    }
+
+    public void testMaximumAge() throws InterruptedException {
+        cache = new ResultCache(100, 1);
+        context.setResultCache(cache);
+        context.getValue("name");
+        Thread.sleep(10);
+        context.getValue("name");
+        assertEquals(2, snapshot.getCalls());
+    }
+
+    public void testNullNotCached() {
+        context.setLenient(true);
+        assertNull(context.getValue("missing"));
+        assertEquals(0, cache.size());
+    }
+
+    public void testUsedVariables() {
+        assertEquals(new HashSet(Arrays.asList(new QName[] {
+                new QName(null, "a"), new QName(null, "b") })),
+            parse("foo[$a]/bar[. = $b] | $a").getUsedVariables());
+        assertTrue(parse("foo/bar").getUsedVariables().isEmpty());
+        assertFalse(parse("count(foo[$a])").isExtensionFunctionUsed());
+        assertTrue(parse("foo[test:func(.)]").isExtensionFunctionUsed());
+        assertEquals(new HashSet(Arrays.asList(new String[] {"p", "q", "r"})),
+            parse("p:foo[q:bar]/@r:baz | $s:v").getUsedPrefixes());
+    }
+
+    private Expression parse(String xpath) {
+        return (Expression) Parser.parseExpression(xpath, new TreeCompiler());
+    }
+}
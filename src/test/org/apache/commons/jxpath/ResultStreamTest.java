@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests {@link ResultStream}.
+ *
+ * @version $Revision$ $Date$
+ */
+public class ResultStreamTest extends JXPathTestCase {
+
+    public static class Orders {
+        private Order[] orders;
+        private int calls;
+
+        public Orders(int count) {
+            orders = new Order[count];
+            for (int i = 0; i < count; i++) {
+                orders[i] = new Order(this, "o" + (i + 1));
+            }
+        }
+
+        public Order[] getOrders() {
+            return orders;
+        }
+    }
+
+    public static class Order {
+        private Orders owner;
+        private String name;
+
+        public Order(Orders owner, String name) {
+            this.owner = owner;
+            this.name = name;
+        }
+
+        public String getName() {
+            owner.calls++;
+            return name;
+        }
+    }
+
+    private Orders orders;
+    private JXPathContext context;
+
+    public void setUp() {
+        orders = new Orders(4);
+        context = JXPathContext.newContext(orders);
+    }
+
+    public void testToList() {
+        ResultStream stream = context.stream("orders/name");
+        assertTrue(stream.isOrdered());
+        assertFalse(stream.isDistinct());
+        assertEquals(Arrays.asList(new String[] {"o1", "o2", "o3", "o4"}),
+            stream.toList());
+    }
+
+    public void testFindFirst() {
+        assertEquals("o1", context.stream("orders/name").findFirst());
+        assertTrue(orders.calls < 4);
+        assertNull(context.stream("orders/missing").findFirst());
+    }
+
+    public void testLimit() {
+        assertEquals(Arrays.asList(new String[] {"o1", "o2"}),
+            context.stream("orders/name").limit(2).toList());
+        assertTrue(orders.calls < 4);
+    }
+
+    public void testAnyMatch() {
+        ResultStream.Predicate isSecond = new ResultStream.Predicate() {
+            public boolean test(Object object) {
+                return "o2".equals(object);
+            }
+        };
+        assertTrue(context.stream("orders/name").anyMatch(isSecond));
+        assertTrue(orders.calls < 4);
+        assertFalse(context.stream("orders[1]/name").anyMatch(isSecond));
+    }
+
+    public void testStreamPointers() {
+        Object first = context.streamPointers("orders/name").findFirst();
+        assertTrue(first instanceof Pointer);
+        assertEquals("/orders[1]/name", ((Pointer) first).asPath());
+    }
+
+    public void testBasicResultStream() {
+        ResultStream stream = new BasicResultStream(
+            context.iterate("orders/name"));
+        assertFalse(stream.isOrdered());
+        assertFalse(stream.isDistinct());
+        assertNull(stream.trySplit());
+        assertEquals(Arrays.asList(new String[] {"o1", "o2"}),
+            stream.limit(2).toList());
+    }
+
+    public void testDuplicates() {
+        Order order = orders.getOrders()[0];
+        orders.getOrders()[1] = order;
+        ResultStream stream = context.stream("orders/name");
+        assertFalse(stream.isDistinct());
+        assertEquals(Arrays.asList(new String[] {"o1", "o1", "o3", "o4"}),
+            stream.toList());
+    }
+
+    public void testConsumedOnce() {
+        ResultStream stream = context.stream("orders/name");
+        stream.toList();
+        try {
+            stream.iterator();
+            fail("Consumed twice");
+        }
+        catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    public void testOrdering() {
+        assertTrue(context.stream("orders[@name]/name").isOrdered());
+        assertFalse(context.stream("//name").isOrdered());
+        assertFalse(context.stream("//name").isDistinct());
+        assertFalse(context.stream("orders/..").isOrdered());
+        assertFalse(context.stream("count(orders)").isOrdered());
+        assertFalse(context.stream("orders/name | orders/name").isDistinct());
+    }
+
+    public void testSplit() {
+        ResultStream rest = context.stream("orders/name");
+        ResultStream first = rest.trySplit();
+        assertNotNull(first);
+        ResultStream second = first.trySplit();
+        assertNotNull(second);
+        assertTrue(first.isOrdered());
+
+        List names = new ArrayList();
+        names.addAll(second.toList());
+        names.addAll(first.toList());
+        names.addAll(rest.toList());
+        assertEquals(Arrays.asList(new String[] {"o1", "o2", "o3", "o4"}),
+            names);
+        assertNull(second.trySplit());
+    }
+
+    public void testSplitPointers() {
+        ResultStream rest = context.streamPointers("orders");
+        ResultStream first = rest.trySplit();
+        assertEquals("/orders[1]",
+            ((Pointer) first.findFirst()).asPath());
+        assertEquals("/orders[3]",
+            ((Pointer) rest.findFirst()).asPath());
+    }
+
+    public void testNotSplittable() {
+        assertNull(context.stream("//name").trySplit());
+        assertNull(context.stream("orders/../orders").trySplit());
+        assertNull(context.stream("count(orders)").trySplit());
+        assertNull(context.stream("orders/name").limit(2).trySplit());
+        assertNull(JXPathContext.newContext(new Orders(1))
+            .stream("orders/name").trySplit());
+    }
+}
@@ -39,6 +39,8 @@ import org.apache.commons.jxpath.ri.compiler.ExpressionPath;
 import org.apache.commons.jxpath.ri.compiler.ExtensionFunction;
 import org.apache.commons.jxpath.ri.compiler.LocationPath;
 import org.apache.commons.jxpath.ri.compiler.NameAttributeTest;
+import org.apache.commons.jxpath.ri.compiler.Path;
+import org.apache.commons.jxpath.ri.compiler.Step;
 import org.apache.commons.jxpath.ri.compiler.VariableReference;
 
 /**
@@ -223,6 +225,26 @@ public class JXPathCompiledExpressionTest extends JXPathTestCase {
         assertXPathExpression("//foo", LocationPath.class);
         assertXPathExpression("foo//bar", LocationPath.class);
     }
+
+    public void testLocationPathStepFusion() {
+        assertFusedStepCount("//foo", 1);
+        assertFusedStepCount("foo//bar", 2);
+        assertFusedStepCount("//foo[bar = 'baz']", 1);
+        assertFusedStepCount("//foo[not(@bar)]", 1);
+        assertFusedStepCount("//foo[1]", 2);
+        assertFusedStepCount("//foo[last()]", 2);
+        assertFusedStepCount("//foo[bar = position()]", 2);
+        assertFusedStepCount("//foo[@name_ = 'bar']", 2);
+        assertFusedStepCount("//foo[bar]", 1);
+        assertFusedStepCount("//foo[bar][1]", 2);
+        assertFusedStepCount("//node()", 1);
+        assertFusedStepCount("//@foo", 2);
+        assertFusedStepCount("foo/..//bar", 4);
+        assertFusedStepCount("foo//bar/..//baz", 5);
+        assertFusedStepCount("(foo)//bar", 2);
+        assertXPathExpression("//foo[bar = 'baz']", LocationPath.class);
+        assertXPathExpression("foo//bar[not(@baz)]", LocationPath.class);
+    }
     
     public void testLocationPathAxisOther() {
         assertXPathExpression("ancestor::foo:bar", LocationPath.class);
@@ -262,5 +284,16 @@ public class JXPathCompiledExpressionTest extends JXPathTestCase {
     private void assertXPathExpression(String xpath, Class expectedClass) {
         assertXPathExpression(xpath, expectedClass, xpath);
     }
+
+    private void assertFusedStepCount(String xpath, int expected) {
+        JXPathCompiledExpression expression = (JXPathCompiledExpression) JXPathContext.compile(xpath);
+        Path path = (Path) expression.getExpression();
+        Step[] steps = path instanceof LocationPath
+                ? ((LocationPath) path).getFusedSteps() : null;
+        if (steps == null) {
+            steps = path.getSteps();
+        }
+        assertEquals("Step count for " + xpath, expected, steps.length);
+    }
     
 }
@@ -1,8 +1,21 @@
 package org.apache.commons.jxpath.ri;
 
+import java.util.Locale;
+
 import junit.framework.TestCase;
 
+import org.apache.commons.jxpath.ClassFunctions;
+import org.apache.commons.jxpath.CompiledExpression;
+import org.apache.commons.jxpath.ExpressionContext;
+import org.apache.commons.jxpath.DynamicPropertyHandler;
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathIntrospector;
+import org.apache.commons.jxpath.NestedTestBean;
+import org.apache.commons.jxpath.ri.model.ClassBasedNodePointerFactory;
+import org.apache.commons.jxpath.ri.model.NodePointer;
+import org.apache.commons.jxpath.ri.model.beans.BeanPointer;
 import org.apache.commons.jxpath.ri.model.container.ContainerPointerFactory;
+import org.apache.commons.jxpath.ri.model.dynamic.DynamicPointer;
 
 public class JXPathContextReferenceImplTestCase extends TestCase {
 
@@ -12,4 +25,121 @@ public class JXPathContextReferenceImplTestCase extends TestCase {
     public void testInit() {
         JXPathContextReferenceImpl.addNodePointerFactory(new ContainerPointerFactory());
     }
+
+    private MarkerPointerFactory markerFactory;
+
+    protected void tearDown() throws Exception {
+        if (markerFactory != null) {
+            JXPathContextReferenceImpl.removeNodePointerFactory(markerFactory);
+            markerFactory = null;
+        }
+        super.tearDown();
+    }
+
+    public void testFactoryDispatchInvalidated() {
+        JXPathContext.newContext(new Marker());
+        assertTrue(NodePointer.newNodePointer(new QName("m"), new Marker(),
+                Locale.getDefault()) instanceof BeanPointer);
+
+        markerFactory = new MarkerPointerFactory();
+        JXPathContextReferenceImpl.addNodePointerFactory(markerFactory);
+        JXPathContext.newContext(new Marker());
+        assertTrue(NodePointer.newNodePointer(new QName("m"), new Marker(),
+                Locale.getDefault()) instanceof MarkerPointer);
+
+        assertTrue(JXPathContextReferenceImpl.removeNodePointerFactory(markerFactory));
+        markerFactory = null;
+        JXPathContext.newContext(new Marker());
+        assertTrue(NodePointer.newNodePointer(new QName("m"), new Marker(),
+                Locale.getDefault()) instanceof BeanPointer);
+    }
+
+    public void testFactoryDispatchInvalidatedByIntrospector() {
+        assertTrue(NodePointer.newNodePointer(new QName("m"), new DynamicMarker(),
+                Locale.getDefault()) instanceof BeanPointer);
+
+        JXPathIntrospector.registerDynamicClass(DynamicMarker.class,
+                MarkerPropertyHandler.class);
+        assertTrue(NodePointer.newNodePointer(new QName("m"), new DynamicMarker(),
+                Locale.getDefault()) instanceof DynamicPointer);
+    }
+
+    public static class DynamicMarker {
+    }
+
+    public static class MarkerPropertyHandler implements DynamicPropertyHandler {
+        public String[] getPropertyNames(Object object) {
+            return new String[0];
+        }
+
+        public Object getProperty(Object object, String propertyName) {
+            return null;
+        }
+
+        public void setProperty(Object object, String propertyName, Object value) {
+        }
+    }
+
+    public void testRebind() {
+        JXPathContext context = JXPathContext.newContext(new NestedTestBean("a"));
+        context.getVariables().declareVariable("suffix", "!");
+        CompiledExpression expr = JXPathContext.compile("concat(/name, $suffix)");
+        assertEquals("a!", expr.getValue(context));
+
+        context.rebind(new NestedTestBean("b"));
+        assertEquals("b!", expr.getValue(context));
+        assertEquals("b", context.getValue("name"));
+        assertEquals("b", context.getPointer("name").getValue());
+        assertEquals("b", ((NestedTestBean) context.getContextBean()).getName());
+    }
+
+    public void testRebindMemoizing() {
+        JXPathContext context = JXPathContext.newContext(new NestedTestBean("a"));
+        context.setMemoizing(true);
+        assertEquals("a", context.getValue("name[../name = 'a']"));
+        context.rebind(new NestedTestBean("b"));
+        assertEquals("b", context.getValue("name[../name = 'b']"));
+    }
+
+    public void testReentrantEvaluation() {
+        JXPathContext context = JXPathContext.newContext(new NestedTestBean("a"));
+        context.setFunctions(new ClassFunctions(
+                JXPathContextReferenceImplTestCase.class, "test"));
+        assertEquals("a", context.getValue("test:lookup('name')"));
+        assertEquals("a", context.getValue("/name[. = test:lookup('/name')]"));
+    }
+
+    public static Object lookup(ExpressionContext context, String xpath) {
+        return context.getJXPathContext().getValue(xpath);
+    }
+
+    public static class Marker {
+    }
+
+    private static class MarkerPointer extends BeanPointer {
+        private static final long serialVersionUID = 1L;
+
+        MarkerPointer(QName name, Object bean, Locale locale) {
+            super(name, bean, JXPathIntrospector
+                    .getBeanInfo(bean.getClass()), locale);
+        }
+    }
+
+    private static class MarkerPointerFactory implements ClassBasedNodePointerFactory {
+        public int getOrder() {
+            return 1;
+        }
+
+        public NodePointer createNodePointer(QName name, Object object, Locale locale) {
+            return object instanceof Marker ? new MarkerPointer(name, object, locale) : null;
+        }
+
+        public NodePointer createNodePointer(NodePointer parent, QName name, Object object) {
+            return null;
+        }
+
+        public boolean isDecidedByClass(Class beanClass) {
+            return true;
+        }
+    }
 }
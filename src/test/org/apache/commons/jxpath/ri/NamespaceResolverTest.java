@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri;
+
+import java.io.ByteArrayInputStream;
+import java.util.Locale;
+
+import org.apache.commons.jxpath.JXPathTestCase;
+import org.apache.commons.jxpath.ri.model.NodePointer;
+import org.apache.commons.jxpath.ri.model.dom.DOMNodePointer;
+import org.apache.commons.jxpath.xml.DOMParser;
+import org.w3c.dom.Document;
+
+/**
+ * Test for NamespaceResolver.
+ */
+public class NamespaceResolverTest extends JXPathTestCase {
+
+    public void testRegisterNamespace() {
+        NamespaceResolver parent = new NamespaceResolver();
+        parent.registerNamespace("a", "urnA");
+        NamespaceResolver child = new NamespaceResolver(parent);
+        child.registerNamespace("b", "urnB");
+        assertEquals("urnA", child.getNamespaceURI("a"));
+        assertEquals("urnB", child.getNamespaceURI("b"));
+        assertEquals("a", child.getPrefix("urnA"));
+        assertNull(parent.getNamespaceURI("b"));
+    }
+
+    public void testCloneIsIndependent() {
+        NamespaceResolver resolver = new NamespaceResolver();
+        resolver.registerNamespace("a", "urnA");
+        resolver.seal();
+        NamespaceResolver copy = (NamespaceResolver) resolver.clone();
+        assertFalse(copy.isSealed());
+        copy.registerNamespace("b", "urnB");
+        assertEquals("urnB", copy.getNamespaceURI("b"));
+        assertEquals("urnA", copy.getNamespaceURI("a"));
+        assertNull(resolver.getNamespaceURI("b"));
+        try {
+            resolver.registerNamespace("c", "urnC");
+            fail("Sealed resolver accepted a namespace");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testPrefixFromContextPointer() {
+        NamespaceResolver resolver = new NamespaceResolver();
+        resolver.setNamespaceContextPointer(root("<a xmlns:p='urnP'/>"));
+        assertEquals("p", resolver.getPrefix("urnP"));
+        assertEquals("p", resolver.getPrefix("urnP"));
+        assertNull(resolver.getPrefix("urnQ"));
+        assertNull(resolver.getPrefix("urnQ"));
+
+        resolver.setNamespaceContextPointer(root("<a xmlns:q='urnQ'/>"));
+        assertNull(resolver.getPrefix("urnP"));
+        assertEquals("q", resolver.getPrefix("urnQ"));
+
+        resolver.registerNamespace("r", "urnQ");
+        assertEquals("r", resolver.getPrefix("urnQ"));
+    }
+
+    public void testConcurrentAccess() throws Exception {
+        final NamespaceResolver resolver = new NamespaceResolver();
+        resolver.registerNamespace("a", "urnA");
+        final boolean[] failed = new boolean[1];
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        if (index == 0) {
+                            resolver.registerNamespace("p" + j, "urn" + j);
+                        }
+                        else if (!"urnA".equals(resolver.getNamespaceURI("a"))
+                                || !"a".equals(resolver.getPrefix("urnA"))) {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        assertFalse(failed[0]);
+        assertEquals("urn999", resolver.getNamespaceURI("p999"));
+        assertEquals("p999", resolver.getPrefix("urn999"));
+    }
+
+    private NodePointer root(String xml) {
+        Document document = (Document) new DOMParser().parseXML(
+                new ByteArrayInputStream(xml.getBytes()));
+        return new DOMNodePointer(document.getDocumentElement(),
+                Locale.getDefault());
+    }
+}
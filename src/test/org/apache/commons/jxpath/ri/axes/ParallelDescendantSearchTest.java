@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.axes;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathTestCase;
+
+/**
+ * Test for the parallel search of the descendant axis.
+ */
+public class ParallelDescendantSearchTest extends JXPathTestCase {
+
+    private RecursiveBean root;
+    private JXPathContext context;
+    private JXPathContext parallelContext;
+
+    protected void setUp() throws Exception {
+        root = build("r", 7);
+        context = JXPathContext.newContext(root);
+        parallelContext = JXPathContext.newContext(root);
+        parallelContext.setParallelism(4);
+    }
+
+    private RecursiveBean build(String name, int depth) {
+        RecursiveBean bean = new RecursiveBean(name);
+        if (depth > 0) {
+            bean.setFirst(build(name + "1", depth - 1));
+            bean.setSecond(build(name + "2", depth - 1));
+        }
+        return bean;
+    }
+
+    public void testParallelism() {
+        assertEquals(1, context.getParallelism());
+        assertEquals(4, parallelContext.getParallelism());
+        JXPathContext child = JXPathContext.newContext(parallelContext, root);
+        assertEquals(4, child.getParallelism());
+        try {
+            context.setParallelism(0);
+            fail("Parallelism must be positive");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testPools() {
+        assertEquals(4, ParallelDescendantSearch.getPool(4).getParallelism());
+        assertEquals(2, ParallelDescendantSearch.getPool(2).getParallelism());
+        assertSame(ParallelDescendantSearch.getPool(4),
+                ParallelDescendantSearch.getPool(4));
+    }
+
+    public void testDescendants() {
+        assertSameResult("//name");
+        assertSameResult("//first/name");
+        assertSameResult("//first//second/name");
+        assertSameResult("/descendant-or-self::node()");
+        assertSameResult("/first/descendant::*");
+        assertValue("count(//name)", Double.valueOf(255));
+    }
+
+    public void testPredicates() {
+        assertSameResult("//first[second/name = 'r1112']/name");
+        assertSameResult("//second[not(first)]");
+        assertSameResult("//*[starts-with(name, 'r21')]/name");
+        assertSameResult("//first//name[1]");
+        assertValue("count(//second[not(first)])", Double.valueOf(65));
+    }
+
+    public void testRecursiveGraph() {
+        root.getFirst().getSecond().getFirst().setSecond(root.getFirst());
+        assertSameResult("//name");
+        assertSameResult("//first//first/name");
+        assertSameResult("//second[first]/name");
+    }
+
+    private void assertValue(String xpath, Object expected) {
+        assertXPathValue(parallelContext, xpath, expected);
+    }
+
+    private void assertSameResult(String xpath) {
+        List expected = new ArrayList();
+        Iterator it = context.iteratePointers(xpath);
+        while (it.hasNext()) {
+            expected.add(it.next().toString());
+        }
+        assertXPathPointerIterator(parallelContext, xpath, expected);
+        // count() takes the node set computed set-at-a-time
+        assertValue("count(" + xpath + ")", Double.valueOf(expected.size()));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.axes;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathTestCase;
+
+/**
+ * Test for the memoization of child pointers within an evaluation.
+ */
+public class PointerMemoTest extends JXPathTestCase {
+
+    private Catalog catalog;
+    private JXPathContext context;
+
+    protected void setUp() throws Exception {
+        catalog = new Catalog(20);
+        context = JXPathContext.newContext(catalog);
+    }
+
+    public void testMemoizing() {
+        assertFalse(context.isMemoizing());
+        context.setMemoizing(true);
+        assertTrue(context.isMemoizing());
+        JXPathContext child = JXPathContext.newContext(context, catalog);
+        assertTrue(child.isMemoizing());
+    }
+
+    public void testSimplePathInPredicate() {
+        assertXPathValue(context, "count(items[price < /limit])", Double.valueOf(10));
+        assertEquals(20, catalog.limitCalls);
+
+        catalog.limitCalls = 0;
+        context.setMemoizing(true);
+        assertXPathValue(context, "count(items[price < /limit])", Double.valueOf(10));
+        assertEquals(1, catalog.limitCalls);
+
+        // The memo does not outlive the evaluation
+        assertXPathValue(context, "count(items[price < /limit])", Double.valueOf(10));
+        assertEquals(2, catalog.limitCalls);
+    }
+
+    public void testRelativePathInPredicate() {
+        context.setMemoizing(true);
+        assertXPathValue(context, "count(items[price < ../limit])", Double.valueOf(10));
+        assertEquals(1, catalog.limitCalls);
+        assertXPathValueIterator(context, "items[price > ../limit + 7]/price",
+                list(Integer.valueOf(18), Integer.valueOf(19)));
+    }
+
+    public void testVariablePathInPredicate() {
+        context.getVariables().declareVariable("catalog", catalog);
+        context.setMemoizing(true);
+        assertXPathValue(context, "count(items[price < $catalog/limit])",
+                Double.valueOf(10));
+        assertEquals(1, catalog.limitCalls);
+    }
+
+    public void testPointers() {
+        context.setMemoizing(true);
+        assertXPathPointerIterator(context, "items[price = ../limit]/price",
+                list("/items[11]/price"));
+        assertXPathPointerIterator(context, "items[price < 2]/../limit",
+                list("/limit"));
+    }
+
+    public static class Catalog {
+        private Item[] items;
+        private int limitCalls;
+
+        public Catalog(int count) {
+            items = new Item[count];
+            for (int i = 0; i < count; i++) {
+                items[i] = new Item(i);
+            }
+        }
+
+        public Item[] getItems() {
+            return items;
+        }
+
+        public int getLimit() {
+            limitCalls++;
+            return 10;
+        }
+    }
+
+    public static class Item {
+        private int price;
+
+        public Item(int price) {
+            this.price = price;
+        }
+
+        public int getPrice() {
+            return price;
+        }
+    }
+}
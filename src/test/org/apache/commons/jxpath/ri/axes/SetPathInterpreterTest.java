@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.axes;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathTestCase;
+import org.apache.commons.jxpath.TestMixedModelBean;
+import org.apache.commons.jxpath.ri.Parser;
+import org.apache.commons.jxpath.ri.compiler.Path;
+import org.apache.commons.jxpath.ri.compiler.TreeCompiler;
+
+/**
+ * Test for the set-at-a-time evaluation of location paths.
+ */
+public class SetPathInterpreterTest extends JXPathTestCase {
+
+    /**
+     * Returns a new String on every read, like boxed or computed values.
+     */
+    public static class ComputedNameBean extends RecursiveBean {
+        public ComputedNameBean(String name) {
+            super(name);
+        }
+
+        public String getName() {
+            return new String(super.getName());
+        }
+    }
+
+    private JXPathContext context;
+
+    protected void setUp() throws Exception {
+        RecursiveBean bean = new RecursiveBean("zero");
+        RecursiveBean bean1 = new RecursiveBean("one");
+        RecursiveBean bean2 = new RecursiveBean("two");
+        RecursiveBean bean3 = new RecursiveBean("three");
+        RecursiveBean bean4 = new RecursiveBean("four");
+        bean.setFirst(bean1);
+        bean.setSecond(bean4);
+        bean1.setFirst(bean2);
+        bean2.setSecond(bean3);
+
+        context = JXPathContext.newContext(null, bean);
+    }
+
+    public void testIsSetPath() {
+        assertSetPath("//a//b", true);
+        assertSetPath("/a//b[@c]/@d", true);
+        assertSetPath("descendant::a", true);
+        assertSetPath("/a/b", false);
+        assertSetPath("//a/..", false);
+        assertSetPath("//a/following::b", false);
+    }
+
+    public void testNestedDescendants() {
+        // Properties are in alphabetical order: first, name, second
+        assertXPathValueIterator(context, "//first//name",
+                list("two", "three", "one"));
+        assertXPathValueIterator(context, "//first//first/name",
+                list("two"));
+        assertXPathValueIterator(context, "//name",
+                list("two", "three", "one", "zero", "four"));
+        assertXPathValue(context, "count(//first//name)", Double.valueOf(3));
+    }
+
+    public void testDocumentOrder() {
+        assertXPathPointerIterator(context, "//first//name",
+                list("/first/first/name", "/first/first/second/name",
+                        "/first/name"));
+        assertXPathPointerIterator(context, "//*[name = 'two']//second/name",
+                list("/first/first/second/name"));
+    }
+
+    public void testDescendantPredicate() {
+        assertXPathValueIterator(context, "//first/descendant::name[1]",
+                list("two"));
+    }
+
+    public void testRecursiveGraph() {
+        RecursiveBean bean = (RecursiveBean) context.getContextBean();
+        bean.getFirst().getFirst().setFirst(bean.getFirst());
+        // An expression path is evaluated by the chain of EvalContexts
+        assertSameResult("//first//name", "(/)//first//name");
+        assertSameResult("//first//first/name", "(/)//first//first/name");
+        assertSameResult("//first/descendant::name[1]",
+                "(/)//first/descendant::name[1]");
+    }
+
+    public void testComputedValues() {
+        RecursiveBean bean = new ComputedNameBean("zero");
+        RecursiveBean bean1 = new ComputedNameBean("one");
+        RecursiveBean bean2 = new ComputedNameBean("two");
+        bean.setFirst(bean1);
+        bean1.setFirst(bean2);
+        bean2.setFirst(bean1);
+        context = JXPathContext.newContext(null, bean);
+        assertSameResult("//first//name", "(/)//first//name");
+        assertSameResult("//first//first/name", "(/)//first//first/name");
+    }
+
+    public void testMixedModel() {
+        // The same DOM nodes are reachable along several paths, which
+        // makes the document order of the pointers inconsistent.
+        // Iteration walks the chain of contexts, count() does not.
+        context = JXPathContext.newContext(new TestMixedModelBean());
+        assertSameResult("//*", "//*");
+        assertSameResult("/descendant-or-self::node()[true()]/*",
+                "/descendant-or-self::node()[true()]/*");
+    }
+
+    private void assertSameResult(String xpath, String reference) {
+        List expected = new ArrayList();
+        Iterator it = context.iteratePointers(reference);
+        while (it.hasNext()) {
+            expected.add(it.next().toString());
+        }
+        assertXPathPointerIterator(context, xpath, expected);
+        // count() takes the node set computed set-at-a-time
+        assertEquals(xpath, Double.valueOf(expected.size()),
+                context.getValue("count(" + xpath + ")"));
+    }
+
+    private void assertSetPath(String xpath, boolean expected) {
+        Path path = (Path) Parser.parseExpression(xpath, new TreeCompiler());
+        assertEquals("Set path <" + xpath + ">", expected, path.isSetPath());
+    }
+}
@@ -20,6 +20,7 @@ import java.util.HashMap;
 
 import junit.framework.TestCase;
 
+import org.apache.commons.jxpath.CompiledExpression;
 import org.apache.commons.jxpath.JXPathContext;
 import org.apache.commons.jxpath.NestedTestBean;
 import org.apache.commons.jxpath.Pointer;
@@ -555,6 +556,41 @@ public class SimplePathInterpreterTest extends TestCase {
                 "VBbE");
     }
 
+    public void testInterpretSimpleLocationPaths() {
+        String[] paths = new String[] {
+            "/int",
+            "/nestedBean/int",
+            "/nestedBean/strings[2]",
+            "/nestedBean/name",
+            "nestedBean/name",
+            "/nestedBean/foo",
+            "/nestedBean/foo/bar",
+            "/map/Key1",
+            "/map/Key3[2]",
+            "/map/Key3/name",
+            "/map/Key5/key/name",
+            "/map/Key5/strings[1]",
+            "/map/Key5/key/foo",
+            "/map/Key4/location/address/city",
+            "/map/Key4/location[2]/@id",
+            "/vendor/location/address/street",
+            "/vendor/location[@id = '101']/address/city",
+            "/list[2]",
+            "/beans/name",
+            "count(/beans)",
+        };
+        CompiledExpression[] expressions = new CompiledExpression[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            expressions[i] = JXPathContext.compile(paths[i]);
+        }
+        Object[] values = context.getValues(expressions);
+        assertEquals(paths.length, values.length);
+        for (int i = 0; i < paths.length; i++) {
+            assertEquals("Evaluating <" + paths[i] + ">",
+                    context.getValue(paths[i]), values[i]);
+        }
+    }
+
     private void assertValueAndPointer(
             String path, Object expectedValue, String expectedPath,
             String expectedSignature)
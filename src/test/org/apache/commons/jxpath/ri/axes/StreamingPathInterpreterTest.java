@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.axes;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathException;
+import org.apache.commons.jxpath.JXPathTestCase;
+import org.apache.commons.jxpath.ri.JXPathCompiledExpression;
+import org.apache.commons.jxpath.xml.DOMParser;
+
+/**
+ * Test for the evaluation of location paths over an XML stream.
+ */
+public class StreamingPathInterpreterTest extends JXPathTestCase {
+
+    private static final String REPORT_CDATA =
+        "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    private static final String FEED = "<feed>"
+        + "<entry>text<![CDATA[cdata]]>&amp;more</entry>"
+        + "<entry> a <![CDATA[ b ]]> c </entry>"
+        + "</feed>";
+
+    private JXPathContext context;
+
+    protected void setUp() throws Exception {
+        InputStream stream = open();
+        try {
+            context = JXPathContext.newContext(new DOMParser().parseXML(stream));
+        }
+        finally {
+            stream.close();
+        }
+        context.registerNamespace("value", "priceNS");
+        context.getVariables().declareVariable("name", "jack");
+    }
+
+    public void testStreamable() {
+        assertStreamable("vendor/contact", true);
+        assertStreamable("//contact[@name = $name][2]/@name", true);
+        assertStreamable("vendor//street/text()", false);
+        assertStreamable("vendor/*[position() < 3]", true);
+        assertStreamable("count(//contact)", false);
+        assertStreamable("//contact[last()]", false);
+        assertStreamable("//contact[. = 'Jack']", false);
+        assertStreamable("//contact[$name]", false);
+        assertStreamable("vendor/descendant::contact[2]", false);
+        assertStreamable("vendor/node()", false);
+        assertStreamable("vendor/@name/..", false);
+        assertStreamable("//contact/..", false);
+    }
+
+    public void testChildAndDescendant() throws Exception {
+        assertSameValues("vendor/contact");
+        assertSameValues("/vendor/location/address/street");
+        assertSameValues("//street");
+        assertSameValues("vendor//address//street");
+        assertSameValues("vendor/*/address/street");
+        assertSameValues("./vendor/location/descendant::street");
+        assertSameValues("/vendor/product");
+        assertSameValues("//price:sale/saleEnds");
+        assertSameValues("//pos//number");
+        assertSameValues("//nosuchelement");
+    }
+
+    public void testPredicates() throws Exception {
+        assertSameValues("vendor/contact[@name='jack']");
+        assertSameValues("vendor/contact[@name = $name][2]");
+        assertSameValues("//contact[2]");
+        assertSameValues("vendor/contact[position() > 2]");
+        assertSameValues("vendor/contact[3 > position()]");
+        assertSameValues("//location[@id = '101']//city");
+        assertSameValues("//*[@stores]/saleEnds");
+        assertSameValues("//*[starts-with(@name, 'ja') and @name != 'jim']");
+        assertSameValues("vendor/*[name() = 'contact'][not(@name)]");
+    }
+
+    public void testAttributes() throws Exception {
+        assertSameValues("vendor/location/@id");
+        assertSameValues("//@name");
+        assertSameValues("//value:amount/@price:discount");
+    }
+
+    public void testCDATA() throws Exception {
+        JXPathContext feed = JXPathContext.newContext(new DOMParser()
+                .parseXML(new ByteArrayInputStream(FEED.getBytes("UTF-8"))));
+        assertStreamable("/feed/entry/text()", false);
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        assertSameValues(feed, factory.createXMLStreamReader(
+                new StringReader(FEED)), "/feed/entry[1]");
+        if (factory.isPropertySupported(REPORT_CDATA)) {
+            factory.setProperty(REPORT_CDATA, Boolean.TRUE);
+            assertSameValues(feed, factory.createXMLStreamReader(
+                    new StringReader(FEED)), "/feed/entry");
+        }
+    }
+
+    public void testLazy() throws Exception {
+        XMLStreamReader reader = createReader();
+        Iterator it = compile("vendor/contact").iterate(context, reader);
+        assertEquals("John", it.next());
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.getEventType());
+        assertEquals("contact", reader.getLocalName());
+        assertEquals("Jack", it.next());
+        reader.close();
+    }
+
+    public void testSubtree() throws Exception {
+        XMLStreamReader reader = createReader();
+        while (!(reader.isStartElement()
+                && reader.getLocalName().equals("location"))) {
+            reader.next();
+        }
+        List values = values(compile("location//street").iterate(context, reader));
+        assertEquals(list("Orchard Road"), values);
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.getEventType());
+        assertEquals("location", reader.getLocalName());
+        reader.close();
+    }
+
+    public void testNotStreamable() {
+        try {
+            compile("//contact[last()]").iterate(context, null);
+            fail("Expected JXPathException");
+        }
+        catch (JXPathException e) {
+            // expected
+        }
+    }
+
+    private void assertStreamable(String xpath, boolean streamable) {
+        assertEquals(xpath, streamable, compile(xpath).isStreamable());
+    }
+
+    private void assertSameValues(String xpath) throws Exception {
+        assertSameValues(context, createReader(), xpath);
+    }
+
+    private void assertSameValues(JXPathContext context,
+            XMLStreamReader reader, String xpath) throws Exception {
+        try {
+            assertEquals(xpath, values(context.iterate(xpath)),
+                    values(compile(xpath).iterate(context, reader)));
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    private JXPathCompiledExpression compile(String xpath) {
+        return (JXPathCompiledExpression) JXPathContext.compile(xpath);
+    }
+
+    private List values(Iterator it) {
+        List list = new ArrayList();
+        while (it.hasNext()) {
+            list.add(it.next());
+        }
+        return list;
+    }
+
+    private XMLStreamReader createReader() throws Exception {
+        return XMLInputFactory.newInstance().createXMLStreamReader(open());
+    }
+
+    private InputStream open() {
+        return JXPathTestCase.class.getResourceAsStream("Vendor.xml");
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.axes;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathTestCase;
+import org.apache.commons.jxpath.Pointer;
+import org.apache.commons.jxpath.TestBean;
+import org.apache.commons.jxpath.ri.model.NodePointer;
+
+/**
+ * Test for value iteration that reads values without allocating pointers.
+ */
+public class ValueIterationTest extends JXPathTestCase {
+
+    private JXPathContext context;
+
+    protected void setUp() throws Exception {
+        context = JXPathContext.newContext(new TestBean());
+    }
+
+    public void testValuesMatchPointers() {
+        String[] paths = { "beans", "integers", "nestedBean/*", "map/*",
+                "list", "beans/name", "*", "beans[2]/*", "object" };
+        // The second round sees the remembered pointer factories
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < paths.length; i++) {
+                assertEquals(paths[i], pointerValues(paths[i]),
+                        values(paths[i]));
+            }
+        }
+    }
+
+    public void testSelfValued() {
+        TestBean bean = (TestBean) context.getContextBean();
+        context.getValue("nestedBean/name");
+        context.getValue("map/Key1");
+        context.getValue("integers");
+        assertTrue(NodePointer.isSelfValued(bean.getNestedBean()));
+        assertTrue(NodePointer.isSelfValued(bean.getMap()));
+        assertFalse(NodePointer.isSelfValued(bean.getIntegers()));
+    }
+
+    public void testCount() {
+        assertXPathValue(context, "count(beans)", Double.valueOf(2));
+        assertXPathValue(context, "count(integers)", Double.valueOf(4));
+        assertXPathValue(context, "count(beans/name)", Double.valueOf(2));
+    }
+
+    private List values(String path) {
+        List list = new ArrayList();
+        for (Iterator it = context.iterate(path); it.hasNext();) {
+            list.add(it.next());
+        }
+        return list;
+    }
+
+    private List pointerValues(String path) {
+        List list = new ArrayList();
+        for (Iterator it = context.iteratePointers(path); it.hasNext();) {
+            list.add(((Pointer) it.next()).getValue());
+        }
+        return list;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.compiler;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathTestCase;
+import org.apache.commons.jxpath.TestBean;
+import org.apache.commons.jxpath.ri.JXPathCompiledExpression;
+
+/**
+ * Tests the reports of {@link JXPathCompiledExpression#explain()} and
+ * {@link JXPathCompiledExpression#profile(JXPathContext)}.
+ *
+ * @version $Revision$ $Date$
+ */
+public class EvaluationPlanTest extends JXPathTestCase {
+
+    public void testSimplePath() {
+        String plan = compile("/beans[@name_ = 'Name 1']/int")
+                .explain();
+        assertContains(plan, "value: simple path interpreter");
+        assertContains(plan, "iterate: context chain");
+        assertContains(plan, "predicate 1: name lookup");
+        assertContains(plan, "streamed in natural order");
+    }
+
+    public void testContextDependentPredicate() {
+        String plan = compile("/beans[name = 'Name 1']/int")
+                .explain();
+        assertContains(plan,
+            "value: context chain, first match (step 1 is not simple)");
+        assertContains(plan, "simple: no, predicate 1 is context dependent");
+        assertContains(plan,
+            "predicate 1: context dependent filter, evaluated per node");
+    }
+
+    public void testIndexPredicates() {
+        String plan = compile("/beans[1][2]").explain();
+        assertContains(plan, "simple: no, predicate 2 is a second index");
+        assertContains(plan, "predicate 1: context independent");
+    }
+
+    public void testSetPath() {
+        String plan = compile("//name").explain();
+        assertContains(plan, "iterate: context chain");
+        assertContains(plan, "node set: set-at-a-time");
+        assertContains(plan, "simple: no, descendant-or-self axis");
+        assertContains(plan, "fused: with the previous step");
+    }
+
+    public void testReverseAxis() {
+        String plan = compile("/beans/ancestor::node()")
+                .explain();
+        assertContains(plan, "in reverse document order");
+    }
+
+    public void testOperationArguments() {
+        String plan = compile("count(/beans) + 1").explain();
+        assertContains(plan, "value: computed by operation");
+        assertContains(plan, "value: computed by function count");
+        assertContains(plan, "expression: /beans");
+    }
+
+    public void testProfile() {
+        JXPathContext context = JXPathContext.newContext(new TestBean());
+        String profile = compile("/beans/name").profile(context);
+        assertContains(profile, "step 1: beans nodes=2 ");
+        assertContains(profile, "step 2: name nodes=2 ");
+        assertContains(profile, "iterate: nodes=2 ");
+    }
+
+    public void testProfileSetPath() {
+        JXPathContext context = JXPathContext.newContext(new TestBean());
+        String profile = compile("/beans//int").profile(context);
+        assertContains(profile, "step 1: beans nodes=2 ");
+        assertContains(profile, "iterate: nodes=2 ");
+    }
+
+    private void assertContains(String report, String text) {
+        assertTrue("<" + text + "> in:\n" + report,
+            report.indexOf(text) != -1);
+    }
+
+    private static JXPathCompiledExpression compile(String xpath) {
+        return (JXPathCompiledExpression) JXPathContext.compile(xpath);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.compiler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathTestCase;
+import org.apache.commons.jxpath.Pointer;
+import org.apache.commons.jxpath.TestBean;
+import org.apache.commons.jxpath.TestMixedModelBean;
+import org.apache.commons.jxpath.ri.Parser;
+import org.apache.commons.jxpath.xml.DocumentContainer;
+
+/**
+ * Tests that <code>//foo</code> selects the same nodes as the unfused
+ * pair of steps it stands for, whether or not it is fused into a single
+ * descendant step.
+ */
+public class StepFusionTest extends JXPathTestCase {
+
+    private static final String[] BEAN_NAMES = {
+        "nestedBean", "object", "set", "string", "matrix", "element",
+        "container", "strings", "integers", "list", "int", "name", "map",
+        "Key1", "*" };
+
+    private static final String[] XML_NAMES = {
+        "location", "address", "street", "price:amount", "*" };
+
+    public void testTestBean() {
+        assertSameAsUnfused(JXPathContext.newContext(new TestBean()),
+                BEAN_NAMES);
+    }
+
+    public void testMixedModelBean() {
+        assertSameAsUnfused(JXPathContext.newContext(new TestMixedModelBean()),
+                BEAN_NAMES);
+    }
+
+    public void testDocument() {
+        JXPathContext context = JXPathContext.newContext(
+                new DocumentContainer(
+                    JXPathTestCase.class.getResource("Vendor.xml")));
+        context.registerNamespace("price", "priceNS");
+        assertSameAsUnfused(context, XML_NAMES);
+        assertXPathValue(context, "count(//location)", Double.valueOf(2));
+    }
+
+    public void testFusedSteps() {
+        Path path = (Path) Parser.parseExpression("//location",
+                new TreeCompiler());
+        assertEquals("steps", 2, path.getSteps().length);
+        assertEquals("fused steps", 1, path.getFusedSteps().length);
+        assertTrue("fused", path.getFusedSteps()[0].isFused());
+    }
+
+    /**
+     * Compares <code>//name</code> with
+     * <code>/descendant-or-self::node()[true()]/name</code>, whose steps
+     * are never fused.
+     * @param context to evaluate in
+     * @param names to select
+     */
+    private void assertSameAsUnfused(JXPathContext context, String[] names) {
+        context.setLenient(true);
+        for (int i = 0; i < names.length; i++) {
+            String fused = "//" + names[i];
+            String unfused = "/descendant-or-self::node()[true()]/" + names[i];
+            assertEquals("value of " + fused, context.getValue(unfused),
+                    context.getValue(fused));
+            assertEquals("pointer of " + fused,
+                    context.getPointer(unfused).asPath(),
+                    context.getPointer(fused).asPath());
+            assertEquals("count of " + fused,
+                    context.getValue("count(" + unfused + ")"),
+                    context.getValue("count(" + fused + ")"));
+            assertEquals("pointers of " + fused,
+                    asPaths(context.iteratePointers(unfused)),
+                    asPaths(context.iteratePointers(fused)));
+        }
+    }
+
+    /**
+     * Collects the paths of the pointers.
+     * @param pointers Iterator
+     * @return List of String
+     */
+    private static List asPaths(Iterator pointers) {
+        List paths = new ArrayList();
+        while (pointers.hasNext()) {
+            paths.add(((Pointer) pointers.next()).asPath());
+        }
+        return paths;
+    }
+}
@@ -16,6 +16,8 @@
  */
 package org.apache.commons.jxpath.ri.compiler;
 
+import java.util.LinkedList;
+
 import org.apache.commons.jxpath.JXPathContext;
 import org.apache.commons.jxpath.JXPathTestCase;
 import org.apache.commons.jxpath.TestMixedModelBean;
@@ -257,6 +259,29 @@ public class VariableTest extends JXPathTestCase {
             "temp2",
             context.getValue("$temp[1]"));
     }
+
+    public void testRemoveAllArrayElements() {
+        // Assigns a single new array to the var
+        context.getVariables().declareVariable(
+            "temp",
+            new String[] { "temp1", "temp2", "temp3", "temp4", "temp5" });
+        context.removeAll("$temp[position() mod 2 = 1]");
+        assertXPathValueIterator(context, "$temp", list("temp2", "temp4"));
+    }
+
+    public void testRemoveAllCollectionElements() {
+        context.getVariables().declareVariable(
+            "temp",
+            list("temp1", "temp2", "temp3", "temp4", "temp5"));
+        context.removeAll("$temp[. != 'temp3']");
+        assertXPathValueIterator(context, "$temp", list("temp3"));
+
+        context.getVariables().declareVariable(
+            "temp",
+            new LinkedList(list("temp1", "temp2", "temp3", "temp4")));
+        context.removeAll("$temp[position() > 2]");
+        assertXPathValueIterator(context, "$temp", list("temp1", "temp2"));
+    }
     
     public void testUnionOfVariableAndNode() throws Exception {
         assertXPathValue(context, "count($a | /document/vendor/location)", new Double(3));
@@ -18,9 +18,11 @@ package org.apache.commons.jxpath.ri.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.apache.commons.jxpath.AbstractFactory;
 import org.apache.commons.jxpath.ClassFunctions;
@@ -816,6 +818,40 @@ public abstract class BeanModelTestCase extends JXPathTestCase {
             "/nestedBean/int");
     }
 
+    public void testSetValues() {
+        Map values = new HashMap();
+        values.put("/nestedBean/int", Integer.valueOf(3));
+        values.put("/nestedBean/name", "Name 9");
+        values.put("nestedBean/strings[1]", "String 9");
+        values.put("/beans[2]/name", "Name 8");
+        values.put("/int", Integer.valueOf(4));
+        context.setValues(values);
+        assertValues(values);
+    }
+
+    public void testCreatePathsAndSetValues() {
+        context.setValue("nestedBean", null);
+        context.setValue("beans", null);
+
+        // Calls factory.createObject(..., TestBean, "nestedBean") once
+        Map values = new HashMap();
+        values.put("/nestedBean/int", Integer.valueOf(3));
+        values.put("/nestedBean/name", "Name 9");
+        values.put("/nestedBean/strings[2]", "String 9");
+        values.put("/beans[2]/int", Integer.valueOf(5));
+        values.put("/beans[2]/name", "Name 8");
+        values.put("/int", Integer.valueOf(4));
+        context.createPathsAndSetValues(values);
+        assertValues(values);
+    }
+
+    private void assertValues(Map values) {
+        for (Iterator it = values.entrySet().iterator(); it.hasNext();) {
+            Map.Entry entry = (Map.Entry) it.next();
+            assertXPathValue(context, (String) entry.getKey(), entry.getValue());
+        }
+    }
+
     public void testCreatePathExpandNewCollection() {
         context.setValue("beans", null);
 
@@ -918,6 +954,24 @@ public abstract class BeanModelTestCase extends JXPathTestCase {
             list());
     }
 
+    public void testRemoveSomeArrayElements() {
+        context.removeAll("nestedBean/strings[position() != 2]");
+        assertXPathValueIterator(
+            context,
+            "nestedBean/strings",
+            list("String 2"));
+    }
+
+    public void testRemoveAllNestedElements() {
+        // Elements are removed from the nested arrays before the
+        // outer array is compacted
+        context.removeAll("beans[1] | beans/strings[position() < 3]");
+        assertXPathValueIterator(
+            context,
+            "beans/strings",
+            list("String 3"));
+    }
+
     public void testRemoveAllListElements() {
         context.removeAll("list");
         assertXPathValueIterator(
@@ -19,6 +19,7 @@ package org.apache.commons.jxpath.ri.model.beans;
 import org.apache.commons.jxpath.AbstractFactory;
 import org.apache.commons.jxpath.JXPathContext;
 import org.apache.commons.jxpath.TestBean;
+import org.apache.commons.jxpath.ri.model.NodePointer;
 import org.apache.commons.jxpath.ri.model.BeanModelTestCase;
 
 /**
@@ -48,5 +49,24 @@ public class BeanModelTest extends BeanModelTestCase {
             "/indexed[1]");
     }
 
+    public void testSetValueRereadsCollection() {
+        JXPathContext context = JXPathContext.newContext(createContextBean());
+        BeanPropertyPointer pointer =
+            (BeanPropertyPointer) context.getPointer("nestedBean/strings");
+        pointer.setIndex(0);
+        assertEquals("String 1", pointer.getValue());
+
+        pointer.setIndex(NodePointer.WHOLE_COLLECTION);
+        pointer.setValue(new String[] { "a", "b" });
+        pointer.setIndex(1);
+        assertEquals("b", pointer.getValue());
+
+        pointer.remove();
+        pointer.setIndex(0);
+        assertEquals("a", pointer.getValue());
+        pointer.setIndex(1);
+        assertNull(pointer.getValue());
+    }
+
 
 }
\ No newline at end of file
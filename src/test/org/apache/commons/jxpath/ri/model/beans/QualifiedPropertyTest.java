@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.model.beans;
+
+import java.beans.PropertyDescriptor;
+import java.util.List;
+
+import org.apache.commons.jxpath.JXPathBasicBeanInfo;
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathIntrospector;
+import org.apache.commons.jxpath.JXPathTestCase;
+import org.apache.commons.jxpath.util.JXPathPropertyDescriptor;
+import org.apache.commons.jxpath.util.PropertyIdentifier;
+
+/**
+ * Test for bean properties mapped to attributes and namespace-qualified
+ * elements, as a JAXB-aware bean info would map them.
+ */
+public class QualifiedPropertyTest extends JXPathTestCase {
+
+    private JXPathContext context;
+
+    protected void setUp() throws Exception {
+        context = JXPathContext.newContext(new Item());
+    }
+
+    public void testPropertyIndexes() {
+        JXPathBasicBeanInfo beanInfo =
+            (JXPathBasicBeanInfo) JXPathIntrospector.getBeanInfo(Item.class);
+        List descriptors = beanInfo.getPropertyDescriptors();
+        int[] indexes = beanInfo.getPropertyIndexes(
+                PropertyIdentifier.create("urn:item", "title", false));
+        assertEquals(1, indexes.length);
+        assertEquals("title", ((JXPathPropertyDescriptor) descriptors
+                .get(indexes[0])).getPropertyDescriptor().getName());
+        assertNull(beanInfo.getPropertyIndexes(
+                PropertyIdentifier.create(null, "title", false)));
+        assertNull(beanInfo.getPropertyIndexes(
+                PropertyIdentifier.create("urn:item", "title", true)));
+        assertNotNull(beanInfo.getPropertyIndexes(
+                PropertyIdentifier.create(null, "id", true)));
+        assertNull(beanInfo.getPropertyIndexes(
+                PropertyIdentifier.create(null, "id", false)));
+
+        assertEquals(2, beanInfo.getPropertyIndexes(true).length);
+        assertEquals(2, beanInfo.getPropertyIndexes(false).length);
+        assertNull(((JXPathBasicBeanInfo) JXPathIntrospector
+                .getBeanInfo(PropertyIdentifier.class)).getPropertyIndexes(true));
+    }
+
+    public void testAxes() {
+        assertXPathValueIterator(context, "@*", list("I1", "en"));
+        assertXPathValueIterator(context, "*", list("Three", "Title"));
+        assertXPathValue(context, "@id", "I1");
+        assertXPathValue(context, "count(id)", Double.valueOf(0));
+        assertXPathValue(context, "count(@count)", Double.valueOf(0));
+        assertXPathValueIterator(context, "count/preceding-sibling::*",
+                list());
+        assertXPathValueIterator(context, "*[last()]/preceding-sibling::*",
+                list("Three"));
+    }
+
+    /**
+     * A bean with two attribute and two element properties.
+     */
+    public static class Item {
+        public String getId() {
+            return "I1";
+        }
+
+        public String getLang() {
+            return "en";
+        }
+
+        public String getCount() {
+            return "Three";
+        }
+
+        public String getTitle() {
+            return "Title";
+        }
+    }
+
+    /**
+     * Maps "id" and "lang" to attributes and "title" to the "urn:item" namespace.
+     */
+    public static class ItemXBeanInfo extends JXPathBasicBeanInfo {
+        public ItemXBeanInfo() {
+            super(Item.class);
+        }
+
+        protected JXPathPropertyDescriptor createMappingDescriptor(
+                PropertyDescriptor propertyDescriptor) {
+            String name = propertyDescriptor.getName();
+            PropertyIdentifier id;
+            if (name.equals("id") || name.equals("lang")) {
+                id = new PropertyIdentifier(null, name, true);
+            }
+            else if (name.equals("title")) {
+                id = new PropertyIdentifier("urn:item", name, false);
+            }
+            else {
+                id = new PropertyIdentifier(null, name, false);
+            }
+            return new JXPathPropertyDescriptor(id, propertyDescriptor);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.ri.model.dom;
+
+import java.io.ByteArrayInputStream;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathException;
+import org.apache.commons.jxpath.JXPathTestCase;
+import org.apache.commons.jxpath.xml.DocumentContainer;
+import org.apache.commons.jxpath.xml.MappedDOMParser;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Tests JXPath with a DOM whose elements are parsed on demand.
+ */
+public class MappedDOMModelTest extends DOMModelTest {
+
+    protected String getModel() {
+        return DocumentContainer.MODEL_MAPPED;
+    }
+
+    protected String getXMLSignature(
+        Object node,
+        boolean elements,
+        boolean attributes,
+        boolean text,
+        boolean pi)
+    {
+        MappedDOMParser.materialize((Node) node);
+        return super.getXMLSignature(node, elements, attributes, text, pi);
+    }
+
+    public void testMaterializeOnDemand() {
+        JXPathContext context = JXPathContext.newContext(new DocumentContainer(
+                JXPathTestCase.class.getResource("Vendor.xml"), getModel()));
+        Element product = (Element) context.getPointer("vendor/product").getNode();
+        Element location = (Element) context.getPointer("vendor/location[2]").getNode();
+        assertFalse(product.hasChildNodes());
+        assertFalse(location.hasChildNodes());
+
+        assertXPathValue(context, "vendor/location[2]/address/city", "Fruit Market");
+        assertTrue(location.hasChildNodes());
+        assertFalse(product.hasChildNodes());
+
+        MappedDOMParser.materialize(product);
+        assertTrue(product.hasChildNodes());
+        assertXPathValue(context, "vendor/product/price:sale/saleEnds", "never");
+    }
+
+    public void testValueWithoutMaterializing() {
+        JXPathContext context = JXPathContext.newContext(new DocumentContainer(
+                JXPathTestCase.class.getResource("Vendor.xml"), getModel()));
+        Element location = (Element) context.getPointer("vendor/location[2]").getNode();
+        String value = (String) context.getValue("vendor/location[2]");
+        assertTrue(value.indexOf("Fruit Market") != -1);
+        assertFalse(location.hasChildNodes());
+    }
+
+    public void testOtherThread() throws Exception {
+        final JXPathContext context = JXPathContext.newContext(new DocumentContainer(
+                JXPathTestCase.class.getResource("Vendor.xml"), getModel()));
+        context.getValue("vendor");
+        final Object[] result = new Object[1];
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    result[0] = context.getValue("vendor/location[2]/address/city");
+                }
+                catch (JXPathException ex) {
+                    result[0] = ex;
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertTrue(result[0] instanceof JXPathException);
+
+        MappedDOMParser.materialize((Node) ((DocumentContainer)
+                context.getContextBean()).getValue());
+        thread = new Thread() {
+            public void run() {
+                result[0] = context.getValue("vendor/location[2]/address/city");
+            }
+        };
+        thread.start();
+        thread.join();
+        assertEquals("Fruit Market", result[0]);
+    }
+
+    public void testContainerDepth() {
+        DocumentContainer container = new DocumentContainer(
+                JXPathTestCase.class.getResource("Vendor.xml"), getModel());
+        container.setMappedDepth(2);
+        JXPathContext context = JXPathContext.newContext(container);
+        Element location = (Element) context.getPointer("vendor/location[2]").getNode();
+        assertTrue(location.hasChildNodes());
+        assertXPathValue(context, "vendor/location[2]/address/city", "Fruit Market");
+    }
+
+    public void testDepth() {
+        MappedDOMParser parser = new MappedDOMParser();
+        parser.setDepth(0);
+        Object document = parser.parseXML(new ByteArrayInputStream(
+                "<a x='1'><b>1</b><b>2</b></a>".getBytes()));
+        JXPathContext context = JXPathContext.newContext(document);
+        assertXPathValue(context, "a/@x", "1");
+        assertXPathValue(context, "sum(a/b)", Double.valueOf(3));
+    }
+}
@@ -56,6 +56,14 @@ public class DynamicPropertiesModelTest extends JXPathTestCase {
         assertXPathValue(context, "//Key1", "Value 1");
     }
 
+    public void testAxisDescendantUndeclaredKey() {
+        // Like map/Key5, //Key5 selects the missing key of the map
+        assertXPathPointerIterator(context, "//Key5",
+            list("/map[@name_='Key5']"));
+        assertXPathPointerIterator(context, "//Key5",
+            list(context.getPointer("map/Key5").asPath()));
+    }
+
     /**
      * Testing the pseudo-attribute "name" that dynamic property
      * objects appear to have.
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.util;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.jxpath.JXPathBasicBeanInfo;
+import org.apache.commons.jxpath.JXPathBeanInfo;
+import org.apache.commons.jxpath.TestBean;
+import org.apache.commons.jxpath.ri.QName;
+import org.apache.commons.jxpath.ri.compiler.NodeNameTest;
+
+/**
+ * Test for interned names.
+ */
+public class NameTableTest extends TestCase {
+
+    public void testIntern() {
+        int symbol = NameTable.intern("urn:test", "interned");
+        assertEquals(symbol, NameTable.intern("urn:test", "interned"));
+        assertEquals(symbol, NameTable.lookup("urn:test", "interned"));
+        assertEquals("urn:test", NameTable.getNamespaceURI(symbol));
+        assertEquals("interned", NameTable.getLocalName(symbol));
+        assertTrue(symbol < NameTable.size());
+
+        int unqualified = NameTable.intern(null, "interned");
+        assertTrue(unqualified != symbol);
+        assertEquals(unqualified, NameTable.lookup("", "interned"));
+        assertNull(NameTable.getNamespaceURI(unqualified));
+
+        assertEquals(NameTable.UNKNOWN,
+                NameTable.lookup("urn:test", "neverInterned"));
+    }
+
+    public void testSymbolMap() {
+        SymbolMap map = new SymbolMap(3);
+        map.put(5, "five");
+        map.put(13, "thirteen");
+        map.put(21, "twenty-one");
+        map.put(13, "13");
+        assertEquals(3, map.size());
+        assertEquals("five", map.get(5));
+        assertEquals("13", map.get(13));
+        assertEquals("twenty-one", map.get(21));
+        assertNull(map.get(29));
+        assertNull(map.get(NameTable.UNKNOWN));
+    }
+
+    public void testNodeNameTest() {
+        // A name no other test interns, even when run twice in one VM
+        String name = "nameTest" + System.identityHashCode(this);
+        int size = NameTable.size();
+        NodeNameTest test = new NodeNameTest(new QName(name));
+        assertEquals(NameTable.UNKNOWN, test.getSymbol());
+        assertEquals("Name tests do not intern", size, NameTable.size());
+        int symbol = NameTable.intern(null, name);
+        assertEquals(symbol, test.getSymbol());
+        assertEquals(NameTable.UNKNOWN,
+                new NodeNameTest(new QName("p:" + name)).getSymbol());
+        NodeNameTest resolved = new NodeNameTest(new QName("p:" + name), "urn:p");
+        assertEquals(NameTable.UNKNOWN, resolved.getSymbol());
+        NameTable.intern("urn:p", name);
+        assertEquals(NameTable.lookup("urn:p", name), resolved.getSymbol());
+        assertEquals(NameTable.UNKNOWN,
+                new NodeNameTest(new QName("*")).getSymbol());
+    }
+
+    public void testPropertyIdentifier() {
+        NameTable.intern("urn:test", "shared");
+        PropertyIdentifier id = PropertyIdentifier.create("urn:test", "shared", false);
+        assertSame(id, PropertyIdentifier.create("urn:test", "shared", false));
+        assertNotSame(id, PropertyIdentifier.create("urn:test", "shared", true));
+        assertSame(id, PropertyIdentifier.create(id.getSymbol(), null, false));
+        assertNotSame(id, PropertyIdentifier.create("urn:test", "p", "shared", false));
+
+        PropertyIdentifier unknown = PropertyIdentifier.create("urn:test", "notShared", false);
+        assertEquals(NameTable.UNKNOWN, unknown.getSymbol());
+        assertNotSame(unknown, PropertyIdentifier.create("urn:test", "notShared", false));
+        assertEquals(unknown, PropertyIdentifier.create("urn:test", "notShared", false));
+        assertFalse(id.equals(unknown));
+        assertEquals(id, new PropertyIdentifier("urn:test", "shared", false));
+
+        QName qname = id.toQName(null);
+        assertEquals("shared", qname.toString());
+        assertSame(qname, id.toQName(null));
+    }
+
+    public void testBeanInfoLookup() {
+        JXPathBeanInfo beanInfo = new JXPathBasicBeanInfo(TestBean.class);
+        assertEquals("int",
+                beanInfo.getPropertyDescriptor(PropertyIdentifier.createUnqualified("int"))
+                        .getPropertyDescriptor().getName());
+        assertNull(beanInfo.getPropertyDescriptor(
+                PropertyIdentifier.createUnqualified("noSuchProperty")));
+        // Namespaces are ignored by the default keys
+        assertNotNull(beanInfo.getPropertyDescriptor(
+                PropertyIdentifier.create("urn:test", "int", false)));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.MapDynamicPropertyHandler;
+import org.apache.commons.jxpath.ri.model.NodePointer;
+import org.apache.commons.jxpath.ri.model.dynamic.DynamicPointer;
+
+/**
+ * Test for array access in ValueUtils.
+ */
+public class ValueUtilsTest extends TestCase {
+
+    public void testIteratePrimitiveArray() {
+        Iterator it = ValueUtils.iterate(new double[] { 1.5, 2.5 });
+        assertEquals(Double.valueOf(1.5), it.next());
+        assertEquals(Double.valueOf(2.5), it.next());
+        assertFalse(it.hasNext());
+        try {
+            it.next();
+            fail("Expected NoSuchElementException");
+        }
+        catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testIterateObjectArray() {
+        Iterator it = ValueUtils.iterate(new String[] { "a", "b" });
+        assertEquals("a", it.next());
+        assertEquals("b", it.next());
+        assertFalse(it.hasNext());
+        assertFalse(ValueUtils.iterate(new int[0]).hasNext());
+    }
+
+    public void testGetArrayElement() {
+        assertEquals(Integer.valueOf(3), ValueUtils.getValue(new int[] { 1, 2, 3 }, 2));
+        assertEquals(Boolean.TRUE, ValueUtils.getValue(new boolean[] { true }, 0));
+        assertEquals(Character.valueOf('x'), ValueUtils.getValue(new char[] { 'x' }, 0));
+        assertEquals(Short.valueOf((short) 7), ValueUtils.getValue(new short[] { 7 }, 0));
+        assertEquals("b", ValueUtils.getValue(new String[] { "a", "b" }, 1));
+        assertNull(ValueUtils.getValue(new long[] { 1L }, 1));
+    }
+
+    public void testPrimitiveArrayPath() {
+        JXPathContext context = JXPathContext.newContext(new double[] { 1.0, 2.0, 3.0 });
+        assertEquals(Double.valueOf(6.0), context.getValue("sum(.)"));
+        assertEquals(Double.valueOf(2.0), context.getValue(".[2]"));
+    }
+
+    public void testDynamicPropertyHandlerShared() {
+        assertSame(
+            ValueUtils.getDynamicPropertyHandler(MapDynamicPropertyHandler.class),
+            ValueUtils.getDynamicPropertyHandler(MapDynamicPropertyHandler.class));
+    }
+
+    public void testNestedMapsShareHandler() {
+        Map inner = new HashMap();
+        inner.put("leaf", "value");
+        Map outer = new HashMap();
+        outer.put("inner", inner);
+        JXPathContext context = JXPathContext.newContext(outer);
+        DynamicPointer root = (DynamicPointer) context.getContextPointer();
+        DynamicPointer child = (DynamicPointer) ((NodePointer) context
+                .getPointer("inner")).getValuePointer();
+        assertSame(root.getDynamicPropertyHandler(), child.getDynamicPropertyHandler());
+        assertEquals("value", context.getValue("inner/leaf"));
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.xml;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URL;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathTestCase;
+import org.apache.commons.jxpath.XMLDocumentContainer;
+
+/**
+ * Test for sharing parsed documents between DocumentContainers.
+ */
+public class DocumentCacheTest extends JXPathTestCase {
+
+    private DocumentCache cache;
+    private URL url;
+
+    protected void setUp() throws Exception {
+        cache = new DocumentCache(DocumentCache.DEFAULT_MAX_WEIGHT);
+        url = JXPathTestCase.class.getResource("Vendor.xml");
+    }
+
+    public void testSharing() {
+        DocumentContainer first = createContainer(url, DocumentContainer.MODEL_DOM);
+        DocumentContainer second = createContainer(url, DocumentContainer.MODEL_DOM);
+        Object document = first.getValue();
+        assertSame(document, second.getValue());
+        assertEquals(1, cache.size());
+        assertTrue(cache.getWeight() > 0);
+        assertXPathValue(JXPathContext.newContext(second),
+                "vendor/location[@id = '101']//city", "Fruit Market");
+
+        DocumentContainer mapped = createContainer(url, DocumentContainer.MODEL_MAPPED);
+        assertNotSame(first.getValue(), mapped.getValue());
+        DocumentContainer configured = createContainer(url, DocumentContainer.MODEL_DOM);
+        configured.setIgnoringComments(true);
+        assertNotSame(first.getValue(), configured.getValue());
+        assertEquals(3, cache.size());
+
+        cache.remove(url);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertNotSame(document, second.getValue());
+    }
+
+    public void testFileChange() throws Exception {
+        File file = File.createTempFile("jxpath", ".xml");
+        try {
+            write(file, "<doc>one</doc>");
+            DocumentContainer container =
+                createContainer(file.toURI().toURL(), DocumentContainer.MODEL_DOM);
+            Object document = container.getValue();
+            assertXPathValue(JXPathContext.newContext(container), "doc", "one");
+            assertSame(document, container.getValue());
+
+            write(file, "<doc>three</doc>");
+            assertNotSame(document, container.getValue());
+            assertXPathValue(JXPathContext.newContext(container), "doc", "three");
+            assertEquals(1, cache.size());
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    public void testEviction() {
+        URL other = JXPathTestCase.class.getResource("VendorUpper.xml");
+        DocumentContainer first = createContainer(url, DocumentContainer.MODEL_DOM);
+        DocumentContainer second = createContainer(other, DocumentContainer.MODEL_DOM);
+        first.getValue();
+        long weight = cache.getWeight();
+        cache.setMaxWeight(weight);
+        second.getValue();
+        assertEquals(1, cache.size());
+        assertTrue(cache.getWeight() < weight * 2);
+
+        cache.setMaxWeight(DocumentCache.DEFAULT_MAX_WEIGHT);
+        first.getValue();
+        assertEquals(2, cache.size());
+    }
+
+    public void testSingleFlight() throws Exception {
+        final CountingParser parser = new CountingParser();
+        DocumentContainer.registerXMLParser("COUNTING", parser);
+        final Object[] documents = new Object[8];
+        Thread[] threads = new Thread[documents.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    documents[index] = createContainer(url, "COUNTING").getValue();
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        assertEquals(1, parser.count);
+        for (int i = 0; i < documents.length; i++) {
+            assertNotNull(documents[i]);
+            assertSame(documents[0], documents[i]);
+        }
+    }
+
+    public void testErrorWakesWaiters() throws Exception {
+        DocumentContainer.registerXMLParser("FAILING", new FailingParser());
+        final Throwable[] failures = new Throwable[4];
+        Thread[] threads = new Thread[failures.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        createContainer(url, "FAILING").getValue();
+                    }
+                    catch (Throwable t) {
+                        failures[index] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join(10000);
+            assertFalse(threads[i].isAlive());
+            assertNotNull(failures[i]);
+        }
+        assertEquals(0, cache.size());
+    }
+
+    public void testXMLDocumentContainer() throws Exception {
+        XMLDocumentContainer first = new XMLDocumentContainer(url);
+        first.setDocumentCache(cache);
+        assertSame(cache, first.getDocumentCache());
+        assertSame(createContainer(url, DocumentContainer.MODEL_DOM).getValue(),
+                first.getValue());
+
+        File file = File.createTempFile("jxpath", ".xml");
+        try {
+            write(file, "<doc>one</doc>");
+            XMLDocumentContainer container =
+                new XMLDocumentContainer(file.toURI().toURL());
+            container.setDocumentCache(cache);
+            Object document = container.getValue();
+            assertSame(document, container.getValue());
+
+            write(file, "<doc>three</doc>");
+            assertNotSame(document, container.getValue());
+            assertXPathValue(JXPathContext.newContext(container), "doc", "three");
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    public void testNoCache() {
+        DocumentContainer first = new DocumentContainer(url);
+        DocumentContainer second = new DocumentContainer(url);
+        assertNull(first.getDocumentCache());
+        assertNotSame(first.getValue(), second.getValue());
+        assertSame(first.getValue(), first.getValue());
+    }
+
+    private DocumentContainer createContainer(URL xmlURL, String model) {
+        DocumentContainer container = new DocumentContainer(xmlURL, model);
+        container.setDocumentCache(cache);
+        return container;
+    }
+
+    private void write(File file, String xml) throws Exception {
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(xml);
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Fails with an Error after a while.
+     */
+    private static class FailingParser implements XMLParser {
+        public Object parseXML(InputStream stream) {
+            try {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException e) {
+                // ignore
+            }
+            throw new AssertionError("parser failure");
+        }
+    }
+
+    /**
+     * Counts the documents it parses, parsing slowly.
+     */
+    private static class CountingParser implements XMLParser {
+        private int count;
+
+        public synchronized Object parseXML(InputStream stream) {
+            count++;
+            try {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException e) {
+                // ignore
+            }
+            return new DOMParser().parseXML(stream);
+        }
+    }
+}
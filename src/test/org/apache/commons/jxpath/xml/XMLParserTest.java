@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jxpath.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathException;
+import org.apache.commons.jxpath.JXPathTestCase;
+
+/**
+ * Test for reusing parsers and for parsing from buffers and mapped files.
+ */
+public class XMLParserTest extends JXPathTestCase {
+
+    private static final String XML =
+        "<doc><!-- note --><item id='1'>a</item><item id='2'>b</item></doc>";
+
+    public void testReuseDOMParser() {
+        doTestReuse(new DOMParser());
+    }
+
+    public void testReuseJDOMParser() {
+        doTestReuse(new JDOMParser());
+    }
+
+    public void testParseByteBuffer() {
+        ByteBuffer buffer = ByteBuffer.wrap(("<?xml version='1.0'?>" + XML).getBytes());
+        buffer.position(21);
+        assertDocument(new DOMParser().parseXML(buffer));
+        assertDocument(new JDOMParser().parseXML(
+                ByteBuffer.wrap(XML.getBytes())));
+    }
+
+    public void testParseFile() throws Exception {
+        File file = new File(JXPathTestCase.class.getResource("Vendor.xml").toURI());
+        assertXPathValue(JXPathContext.newContext(new DOMParser().parseXML(file)),
+                "vendor/location[@id = '101']//city", "Fruit Market");
+        assertXPathValue(JXPathContext.newContext(new JDOMParser().parseXML(file)),
+                "vendor/location[@id = '101']//city", "Fruit Market");
+    }
+
+    public void testReuseAfterError() {
+        doTestReuseAfterError(new DOMParser());
+        doTestReuseAfterError(new JDOMParser());
+    }
+
+    private void doTestReuseAfterError(XMLParser2 parser) {
+        try {
+            parser.parseXML(new ByteArrayInputStream("<doc><item>".getBytes()));
+            fail("Malformed XML should fail to parse");
+        }
+        catch (JXPathException ex) {
+            // expected
+        }
+        assertDocument(parse(parser));
+    }
+
+    private void doTestReuse(XMLParser2 parser) {
+        Object first = parse(parser);
+        Object second = parse(parser);
+        assertNotSame(first, second);
+        assertDocument(first);
+        assertDocument(second);
+        assertXPathValue(JXPathContext.newContext(first), "count(doc/comment())",
+                Double.valueOf(1));
+
+        // A differently configured parser is not shared
+        parser.setIgnoringComments(true);
+        if (parser instanceof DOMParser) {
+            assertXPathValue(JXPathContext.newContext(parse(parser)),
+                    "count(doc/comment())", Double.valueOf(0));
+        }
+        parser.setIgnoringComments(false);
+        assertXPathValue(JXPathContext.newContext(parse(parser)),
+                "count(doc/comment())", Double.valueOf(1));
+    }
+
+    private Object parse(XMLParser parser) {
+        return parser.parseXML(new ByteArrayInputStream(XML.getBytes()));
+    }
+
+    private void assertDocument(Object document) {
+        JXPathContext context = JXPathContext.newContext(document);
+        assertXPathValue(context, "doc/item[@id = '2']", "b");
+        assertXPathValue(context, "count(doc/item)", Double.valueOf(2));
+    }
+}